@@ -0,0 +1,269 @@
+package org.sofosim.clustering;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a clusterer on a dedicated worker thread. Each call to
+ * {@link #applyClustering()} hands the VertexPoints last set to the worker
+ * and returns immediately; if the worker is still busy, only the latest
+ * snapshot is clustered next. Results are published as immutable
+ * {@link ClusterResult}s, so readers always see the clusters, member lookup
+ * and ids of the same run (see {@link #getPublishedResult()}).
+ * VertexPoints passed in must not be modified afterwards (the layout
+ * creates new instances each round).
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class AsynchronousClusterer<V> implements SpatialProximityClusterer<V> {
+
+	/** clusterer running on worker thread */
+	private final SpatialProximityClusterer<V> clusterer;
+	/** last published result */
+	private final AtomicReference<ClusterResult<V>> result = new AtomicReference<ClusterResult<V>>(
+			new ClusterResult<V>(0, -1, new ArrayList<ArrayList<V>>(), null,
+					null));
+	/**
+	 * published results providing changes that have not been drained yet
+	 * (see {@link #drainChangesSince(long)})
+	 */
+	private final ConcurrentLinkedQueue<ClusterResult<V>> resultsWithChanges = new ConcurrentLinkedQueue<ClusterResult<V>>();
+	/** snapshot waiting to be clustered */
+	private final AtomicReference<Snapshot<V>> pendingSnapshot = new AtomicReference<Snapshot<V>>();
+	/** indicates if a clustering task is scheduled or running */
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final ExecutorService worker;
+
+	/** VertexPoints set since last call to applyClustering() */
+	private ArrayList<V> vertexPoints = null;
+	/** round the next snapshot is taken in */
+	private long round = 0;
+	/** parameters to be passed to clusterer before next run */
+	private volatile int minimalNumberOfMembers = -1;
+	private volatile float maximalDistance = Float.NaN;
+
+	/** number of snapshots replaced before being clustered */
+	private volatile long skippedSnapshots = 0;
+
+	/**
+	 * Snapshot of VertexPoints for a given round.
+	 */
+	private static class Snapshot<V> {
+
+		final ArrayList<V> vertexPoints;
+		final long round;
+
+		Snapshot(ArrayList<V> vertexPoints, long round) {
+			this.vertexPoints = vertexPoints;
+			this.round = round;
+		}
+	}
+
+	/**
+	 * Instantiates an asynchronous clusterer delegating to the given
+	 * clusterer, which must not be used elsewhere afterwards.
+	 *
+	 * @param clusterer
+	 */
+	public AsynchronousClusterer(SpatialProximityClusterer<V> clusterer) {
+		this.clusterer = clusterer;
+		this.worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "AsynchronousClusterer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Sets the round the next snapshot is taken in (reported in
+	 * {@link ClusterResult#round}).
+	 *
+	 * @param round
+	 */
+	public void setRound(long round) {
+		this.round = round;
+	}
+
+	@Override
+	public void setVertexPoints(Collection<V> collection) {
+		this.vertexPoints = new ArrayList<V>(collection);
+	}
+
+	@Override
+	public void setMinimalNumberOfMembersForCluster(int minimalNumberOfMembers) {
+		this.minimalNumberOfMembers = minimalNumberOfMembers;
+	}
+
+	@Override
+	public void setMaximalDistanceOfClusterMembers(float maximalDistance) {
+		this.maximalDistance = maximalDistance;
+	}
+
+	/**
+	 * Schedules clustering of the VertexPoints last set and returns without
+	 * waiting for the result.
+	 */
+	@Override
+	public void applyClustering() {
+		if (vertexPoints == null || vertexPoints.isEmpty()) {
+			return;
+		}
+		if (pendingSnapshot.getAndSet(new Snapshot<V>(vertexPoints, round)) != null) {
+			skippedSnapshots++;
+		}
+		vertexPoints = null;
+		if (running.compareAndSet(false, true)) {
+			worker.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					processSnapshots();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Clusters pending snapshots until none is left.
+	 */
+	private void processSnapshots() {
+		while (true) {
+			Snapshot<V> snapshot = pendingSnapshot.getAndSet(null);
+			if (snapshot == null) {
+				running.set(false);
+				// snapshot may have been added before flag was reset
+				if (pendingSnapshot.get() != null
+						&& running.compareAndSet(false, true)) {
+					continue;
+				}
+				return;
+			}
+			try {
+				cluster(snapshot);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Clusters a snapshot and publishes the result.
+	 *
+	 * @param snapshot
+	 */
+	private void cluster(Snapshot<V> snapshot) {
+		if (minimalNumberOfMembers != -1) {
+			clusterer.setMinimalNumberOfMembersForCluster(minimalNumberOfMembers);
+		}
+		if (!Float.isNaN(maximalDistance)) {
+			clusterer.setMaximalDistanceOfClusterMembers(maximalDistance);
+		}
+		clusterer.setVertexPoints(snapshot.vertexPoints);
+		clusterer.applyClustering();
+		ArrayList<ArrayList<V>> clusters = clusterer.getLastResultList();
+		int[] clusterIds = null;
+		ArrayList<ClusterChangeEvent<V>> changes = null;
+		if (clusterer instanceof IncrementalDBSCAN) {
+			IncrementalDBSCAN<V> incremental = (IncrementalDBSCAN<V>) clusterer;
+			clusterIds = new int[clusters.size()];
+			for (int i = 0; i < clusterIds.length; i++) {
+				clusterIds[i] = incremental.getClusterId(i);
+			}
+			changes = incremental.getLastChanges();
+		}
+		ClusterResult<V> published = new ClusterResult<V>(
+				result.get().version + 1, snapshot.round, clusters,
+				clusterIds, changes);
+		// queue before publishing, so changes of a visible result can be drained
+		if (changes != null) {
+			resultsWithChanges.add(published);
+		}
+		result.set(published);
+	}
+
+	/**
+	 * Returns the changes of all results published after the given version
+	 * (in order of publication) and removes them from the queue, so that
+	 * no changes are lost if several results are published between two
+	 * calls. Returns null if there are no such changes.
+	 *
+	 * @param version
+	 *            version of the last result whose changes have been processed
+	 * @return
+	 */
+	public ArrayList<ClusterChangeEvent<V>> drainChangesSince(long version) {
+		ArrayList<ClusterChangeEvent<V>> changes = null;
+		ClusterResult<V> queued;
+		while ((queued = resultsWithChanges.poll()) != null) {
+			if (queued.version <= version) {
+				continue;
+			}
+			if (changes == null) {
+				changes = new ArrayList<ClusterChangeEvent<V>>();
+			}
+			changes.addAll(queued.getChanges());
+		}
+		return changes;
+	}
+
+	/**
+	 * Returns the last published result.
+	 *
+	 * @return
+	 */
+	public ClusterResult<V> getPublishedResult() {
+		return result.get();
+	}
+
+	@Override
+	public ArrayList<ArrayList<V>> getLastResultList() {
+		return result.get().getClusters();
+	}
+
+	@Override
+	public ArrayList<V> getClusterNeighbours(String memberName) {
+		return result.get().getClusterNeighbours(memberName);
+	}
+
+	/**
+	 * Indicates if a snapshot is currently clustered or waiting.
+	 *
+	 * @return
+	 */
+	public boolean isBusy() {
+		return running.get();
+	}
+
+	/**
+	 * Returns the number of snapshots that have been replaced by newer ones
+	 * before being clustered.
+	 *
+	 * @return
+	 */
+	public long getSkippedSnapshots() {
+		return skippedSnapshots;
+	}
+
+	/**
+	 * Stops the worker thread (and the threads of a parallel clusterer).
+	 */
+	public void shutdown() {
+		worker.shutdownNow();
+		if (clusterer instanceof ParallelDBSCAN) {
+			((ParallelDBSCAN<V>) clusterer).shutdown();
+		}
+	}
+
+}
@@ -1,13 +1,26 @@
 package org.sofosim.clustering;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map.Entry;
 
 public class AttractionClusterer<V> {
 
-	private HashMap<V, HashMap<String, Float>> attractingAgentSpheres = new HashMap<V, HashMap<String, Float>>();
+	/** maximal number of spheres (one bit of signature per sphere) */
+	public static final int MAX_SPHERES = 64;
+	
+	/** index (row in attraction matrix) of each vertex */
+	private HashMap<V, Integer> vertexIndex = new HashMap<V, Integer>();
+	/** vertices by index */
+	private ArrayList<V> vertices = new ArrayList<V>();
+	/** index (column in attraction matrix and bit in signatures) of each sphere */
+	private HashMap<String, Integer> sphereIndex = new HashMap<String, Integer>();
+	/** spheres by index */
 	private ArrayList<String> sphereList = new ArrayList<String>();
+	/** attraction values (vertex index x sphere index, row length sphereCapacity) */
+	private float[] attraction = new float[0];
+	/** number of columns reserved per vertex in attraction matrix */
+	private int sphereCapacity = 8;
 	private boolean calculateIndividualSphere = false;
 	private boolean calculateCompositeSphere = true;
 	
@@ -19,24 +32,44 @@ public class AttractionClusterer<V> {
 	 * @param value attraction value for that sphere
 	 */
 	public void addAttractionValue(V vertex, String sphere, Float value){
-		//add to sphere list
-		if(!sphereList.contains(sphere)){
-			sphereList.add(sphere);
-		}
-		//if(value > 0){
-			if(!attractingAgentSpheres.containsKey(vertex)){
-				HashMap<String, Float> innerList = new HashMap<String, Float>();
-				innerList.put(sphere, value);
-				attractingAgentSpheres.put(vertex, innerList);
-			} else {
-				HashMap<String, Float> innerList = attractingAgentSpheres.get(vertex);
-				if(!innerList.containsKey(sphere)){
-					innerList.put(sphere, value);
-				} else {
-					innerList.put(sphere, innerList.get(sphere) + value);
-				}
+		Integer column = sphereIndex.get(sphere);
+		if(column == null){
+			column = addSphere(sphere);
+		}
+		Integer row = vertexIndex.get(vertex);
+		if(row == null){
+			row = vertices.size();
+			vertexIndex.put(vertex, row);
+			vertices.add(vertex);
+			if((row + 1) * sphereCapacity > attraction.length){
+				attraction = Arrays.copyOf(attraction, Math.max((row + 1) * sphereCapacity, attraction.length * 2));
 			}
-		//}
+		}
+		attraction[row * sphereCapacity + column] += value;
+	}
+	
+	/**
+	 * Registers a new sphere and widens the attraction matrix if necessary.
+	 * @param sphere
+	 * @return column of sphere
+	 */
+	private int addSphere(String sphere){
+		int column = sphereList.size();
+		if(column == MAX_SPHERES){
+			throw new IllegalStateException("AttractionClusterer supports at most " + MAX_SPHERES + " spheres, cannot add sphere '" + sphere + "'.");
+		}
+		if(column == sphereCapacity){
+			int newCapacity = Math.min(MAX_SPHERES, sphereCapacity * 2);
+			float[] widened = new float[Math.max(vertices.size() * newCapacity, attraction.length / sphereCapacity * newCapacity)];
+			for(int row=0; row<vertices.size(); row++){
+				System.arraycopy(attraction, row * sphereCapacity, widened, row * newCapacity, sphereCapacity);
+			}
+			attraction = widened;
+			sphereCapacity = newCapacity;
+		}
+		sphereIndex.put(sphere, column);
+		sphereList.add(sphere);
+		return column;
 	}
 
 	
@@ -46,47 +79,69 @@ public class AttractionClusterer<V> {
 	 * explicitly every round before refilling with attraction values via addAttractionValue().
 	 */
 	public void clearAttractionValues(){
-		for(Entry<V, HashMap<String, Float>> entry: attractingAgentSpheres.entrySet()){
-			for(Entry<String, Float> entry2: entry.getValue().entrySet()){
-				entry2.setValue(0.0f);
-			}
-		}
-		
+		Arrays.fill(attraction, 0, vertices.size() * sphereCapacity, 0.0f);
 	}
 
-	/** Map containing agent - sphereClusters relationships */
-	private HashMap<V, ArrayList<String>> agentSphereMap = new HashMap<V, ArrayList<String>>();
+	/** group (index in group lists) of each vertex in last clustering (-1 if not clustered) */
+	private int[] groupOfVertex = new int[0];
+	/** vertices that have been assigned to groups in last clustering */
+	private int[] groupedVertices = new int[0];
+	private int numberOfGroupedVertices = 0;
+	/** signature (bitmask of positive spheres) of each group */
+	private long[] groupSignatures = new long[16];
+	/** sphere combinations of each group (as returned by getSpheresForAgent()) */
+	private ArrayList<ArrayList<String>> groupSpheres = new ArrayList<ArrayList<String>>();
+	/** members of each group */
+	private ArrayList<ArrayList<V>> groupMembers = new ArrayList<ArrayList<V>>();
+	/** open-addressing table mapping signatures to groups (group index + 1, 0 if empty) */
+	private long[] signatureKeys = new long[32];
+	private int[] signatureGroups = new int[32];
 	/** Map containing sphereClusters - agent relationships */
 	private HashMap<String, ArrayList<V>> sphereAgentMap = new HashMap<String, ArrayList<V>>();
 	
-	private void addAgentSphereEntry(V vertex, String sphere){
-		if(!agentSphereMap.containsKey(vertex)){
-			ArrayList<String> innerList = new ArrayList<String>();
-			innerList.add(sphere);
-			agentSphereMap.put(vertex, innerList);
-		} else {
-			agentSphereMap.get(vertex).add(sphere);
-		}
+	/**
+	 * Returns the attracting sphere combinations for a given agent. 
+	 * The returned list is shared by all agents of the same combination
+	 * and must not be modified.
+	 * @param agent
+	 * @return
+	 */
+	public ArrayList<String> getSpheresForAgent(V agent){
+		int group = getGroupOfAgent(agent);
+		return group == -1 ? null : groupSpheres.get(group);
 	}
 	
-	private void addSphereAgentEntry(String sphere, V vertex){
-		if(!sphereAgentMap.containsKey(sphere)){
-			ArrayList<V> innerList = new ArrayList<V>();
-			innerList.add(vertex);
-			sphereAgentMap.put(sphere, innerList);
-		} else {
-			sphereAgentMap.get(sphere).add(vertex);
-		}
+	/**
+	 * Returns the signature of the sphere combination for a given agent, with 
+	 * bit i set if the agent is attracted by the sphere with index i 
+	 * (see {@link #getSpheres()}), or 0 if the agent has not been clustered.
+	 * @param agent
+	 * @return
+	 */
+	public long getSignatureForAgent(V agent){
+		int group = getGroupOfAgent(agent);
+		return group == -1 ? 0L : groupSignatures[group];
 	}
 	
 	/**
-	 * Returns the attracting sphere combinations for a given agent.
+	 * Returns the group of the given agent in the last clustering (or -1).
 	 * @param agent
 	 * @return
 	 */
-	public ArrayList<String> getSpheresForAgent(V agent){
-		//System.out.println("Sys: " + agent + " " + agent.getClass().getSimpleName() + " " + agentSphereMap.get(agent) + " " + agentSphereMap.toString());
-		return agentSphereMap.get(agent);
+	private int getGroupOfAgent(V agent){
+		Integer row = vertexIndex.get(agent);
+		if(row == null || row >= groupOfVertex.length){
+			return -1;
+		}
+		return groupOfVertex[row];
+	}
+	
+	/**
+	 * Returns all spheres known to the clusterer (in order of their index).
+	 * @return
+	 */
+	public ArrayList<String> getSpheres(){
+		return new ArrayList<String>(sphereList);
 	}
 	
 	/**
@@ -104,69 +159,158 @@ public class AttractionClusterer<V> {
 	 * values are used. calculateIndividualSphere and calculateCompositeSphere
 	 * determine degree of granularity (e.g. list agent for all individual 
 	 * spheres he is grouped under, or/and only sphere combinations (i.e. two or more
-	 * characteristics by which agents are clustered)
+	 * characteristics by which agents are clustered). 
+	 * Agents are grouped by the bitmask of spheres they are positively attracted 
+	 * by; names of sphere combinations are only built once per group.
 	 * @param initialCluster
 	 */
 	public void clusterMatrixEntries(ArrayList<V> initialCluster){
-		//map holding agent-<sphere combination> association
-		agentSphereMap.clear();
-		//map holding sphere-<agent combination> association
+		//reset groups of last clustering
+		for(int i=0; i<numberOfGroupedVertices; i++){
+			groupOfVertex[groupedVertices[i]] = -1;
+		}
+		numberOfGroupedVertices = 0;
+		groupSpheres.clear();
+		groupMembers.clear();
+		Arrays.fill(signatureGroups, 0);
 		sphereAgentMap.clear();
-		HashMap<V, HashMap<String, Float>> basisMap = null;
-		//if parameter initialCluster not null, use it as clustering corpus
-		if(initialCluster != null){
-			basisMap = new HashMap<V, HashMap<String, Float>>();
-			for(int i=0; i<initialCluster.size(); i++){
-				V key = initialCluster.get(i);
-				//System.out.println("Attracting spheres: " + attractingAgentSpheres.toString() + ", key: " + key);
-				basisMap.put(key, attractingAgentSpheres.get(key));
-			}
-		} else {
-			//else use all agent information available
-			basisMap = attractingAgentSpheres;
+		if(groupOfVertex.length < vertices.size()){
+			int oldLength = groupOfVertex.length;
+			groupOfVertex = Arrays.copyOf(groupOfVertex, vertices.size());
+			Arrays.fill(groupOfVertex, oldLength, groupOfVertex.length, -1);
+			groupedVertices = new int[vertices.size()];
 		}
-		
-		ArrayList<String> sphereList = new ArrayList<String>();
-		for(Entry<V, HashMap<String, Float>> entryOne: basisMap.entrySet()){
-			//ensure that sphereSet is cleared for each agent
-			sphereList.clear();
+		//if parameter initialCluster not null, use it as clustering corpus, 
+		//else use all agent information available
+		int corpusSize = initialCluster != null ? initialCluster.size() : vertices.size();
+		for(int i=0; i<corpusSize; i++){
+			int row;
+			if(initialCluster != null){
+				Integer index = vertexIndex.get(initialCluster.get(i));
+				if(index == null || groupOfVertex[index] != -1){
+					continue;
+				}
+				row = index;
+			} else {
+				row = i;
+			}
 			//for each agent, find related spheres
-			if(entryOne.getValue() != null){
-				for(Entry<String, Float> entrySpheres: entryOne.getValue().entrySet()){
-					if(entrySpheres.getValue() > 0){
-						//add all spheres positive for particular agent into cluster set
-						if(!sphereList.contains(entrySpheres.getKey())){
-							sphereList.add(entrySpheres.getKey());
-						}
-					}
+			long signature = 0L;
+			int offset = row * sphereCapacity;
+			for(int column=0; column<sphereList.size(); column++){
+				if(attraction[offset + column] > 0){
+					signature |= 1L << column;
 				}
 			}
-			if(!sphereList.isEmpty()){
-				V agent = entryOne.getKey();
-				if(calculateCompositeSphere){
-					addAgentSphereEntry(agent, sphereList.toString());
-					addSphereAgentEntry(sphereList.toString(), agent);
-				} else {
-					StringBuffer compositeSphere = null;
-					for(String soleSphere: sphereList){
-						//add sphere to agent-spheres map
-						if(calculateIndividualSphere){
-							addAgentSphereEntry(agent, soleSphere);
-							//add agent to sphere-agents map
-							addSphereAgentEntry(soleSphere, agent);
-						}
-						if(compositeSphere == null){
-							compositeSphere = new StringBuffer();
-							compositeSphere.append(soleSphere);
-						} else {
-							compositeSphere.append("|").append(soleSphere);
-							addAgentSphereEntry(agent, compositeSphere.toString());
-							addSphereAgentEntry(compositeSphere.toString(), agent);
-						}
+			if(signature != 0L){
+				int group = getGroupForSignature(signature);
+				groupMembers.get(group).add(vertices.get(row));
+				groupOfVertex[row] = group;
+				groupedVertices[numberOfGroupedVertices++] = row;
+			}
+		}
+		//derive sphere combinations for each group
+		for(int group=0; group<groupMembers.size(); group++){
+			ArrayList<String> spheres = new ArrayList<String>();
+			long signature = groupSignatures[group];
+			if(calculateCompositeSphere){
+				spheres.add(getSphereNames(signature).toString());
+			} else {
+				StringBuffer compositeSphere = null;
+				for(String soleSphere: getSphereNames(signature)){
+					if(calculateIndividualSphere){
+						spheres.add(soleSphere);
+					}
+					if(compositeSphere == null){
+						compositeSphere = new StringBuffer();
+						compositeSphere.append(soleSphere);
+					} else {
+						compositeSphere.append("|").append(soleSphere);
+						spheres.add(compositeSphere.toString());
 					}
 				}
 			}
+			groupSpheres.add(spheres);
+			for(String sphere: spheres){
+				ArrayList<V> agents = sphereAgentMap.get(sphere);
+				if(agents == null){
+					agents = new ArrayList<V>();
+					sphereAgentMap.put(sphere, agents);
+				}
+				agents.addAll(groupMembers.get(group));
+			}
+		}
+		//agents without sphere combination are not associated with any group
+		for(int i=0; i<numberOfGroupedVertices; i++){
+			if(groupSpheres.get(groupOfVertex[groupedVertices[i]]).isEmpty()){
+				groupOfVertex[groupedVertices[i]] = -1;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the group for the given signature and creates it if necessary.
+	 * @param signature
+	 * @return
+	 */
+	private int getGroupForSignature(long signature){
+		int mask = signatureKeys.length - 1;
+		int slot = hashSignature(signature) & mask;
+		while(signatureGroups[slot] != 0){
+			if(signatureKeys[slot] == signature){
+				return signatureGroups[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int group = groupMembers.size();
+		if(group == groupSignatures.length){
+			groupSignatures = Arrays.copyOf(groupSignatures, group * 2);
+		}
+		groupSignatures[group] = signature;
+		groupMembers.add(new ArrayList<V>());
+		signatureKeys[slot] = signature;
+		signatureGroups[slot] = group + 1;
+		if((group + 1) * 2 > signatureKeys.length){
+			rehashSignatures();
+		}
+		return group;
+	}
+	
+	/**
+	 * Doubles the size of the signature table.
+	 */
+	private void rehashSignatures(){
+		signatureKeys = new long[signatureKeys.length * 2];
+		signatureGroups = new int[signatureGroups.length * 2];
+		int mask = signatureKeys.length - 1;
+		for(int group=0; group<groupMembers.size(); group++){
+			int slot = hashSignature(groupSignatures[group]) & mask;
+			while(signatureGroups[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			signatureKeys[slot] = groupSignatures[group];
+			signatureGroups[slot] = group + 1;
+		}
+	}
+	
+	private static int hashSignature(long signature){
+		long hash = signature * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	/**
+	 * Returns the names of all spheres contained in the given signature (in order of their index).
+	 * @param signature
+	 * @return
+	 */
+	private ArrayList<String> getSphereNames(long signature){
+		ArrayList<String> names = new ArrayList<String>(Long.bitCount(signature));
+		while(signature != 0L){
+			int column = Long.numberOfTrailingZeros(signature);
+			names.add(sphereList.get(column));
+			signature &= signature - 1;
 		}
+		return names;
 	}
 	
 	/**
@@ -176,10 +320,9 @@ public class AttractionClusterer<V> {
 	 */
 	public ArrayList<String> getListOfClusterCharacteristics(){
 		ArrayList<String> clusterSpheres = new ArrayList<String>();
-		for(Entry<V, ArrayList<String>> entry: agentSphereMap.entrySet()){
-			String clusterSphere = entry.getValue().toString();
-			if(!clusterSpheres.contains(clusterSphere)){
-				clusterSpheres.add(clusterSphere);
+		for(int group=0; group<groupSpheres.size(); group++){
+			if(!groupSpheres.get(group).isEmpty()){
+				clusterSpheres.add(groupSpheres.get(group).toString());
 			}
 		}
 		return clusterSpheres;
@@ -0,0 +1,64 @@
+package org.sofosim.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Describes a change of a cluster between two clustering rounds of an
+ * {@link IncrementalDBSCAN}. Clusters are identified by ids that remain
+ * stable across rounds as long as the cluster persists.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class ClusterChangeEvent<V> {
+
+	public enum Type {
+		/** cluster has formed from previously unclustered points */
+		FORMED,
+		/** clusters (related ids) have been merged into this cluster */
+		MERGED,
+		/** cluster has split off from another cluster (related id) */
+		SPLIT,
+		/** cluster does not exist anymore (members are former members) */
+		DISSOLVED,
+		/** members have joined a persisting cluster */
+		MEMBERS_JOINED,
+		/** members have left a persisting cluster */
+		MEMBERS_LEFT
+	}
+
+	public final Type type;
+	/** id of cluster the event refers to */
+	public final int clusterId;
+	/** ids of merged clusters (MERGED) or original cluster (SPLIT) */
+	public final int[] relatedClusterIds;
+	/**
+	 * index of cluster in current result list (-1 if cluster has dissolved)
+	 */
+	public final int clusterIndex;
+	/**
+	 * members concerned: all members (FORMED, MERGED, SPLIT), former members
+	 * (DISSOLVED), or joining/leaving members
+	 */
+	public final ArrayList<V> members;
+
+	public ClusterChangeEvent(Type type, int clusterId,
+			int[] relatedClusterIds, int clusterIndex, ArrayList<V> members) {
+		this.type = type;
+		this.clusterId = clusterId;
+		this.relatedClusterIds = relatedClusterIds;
+		this.clusterIndex = clusterIndex;
+		this.members = members;
+	}
+
+	@Override
+	public String toString() {
+		return "ClusterChangeEvent [type=" + type + ", clusterId=" + clusterId
+				+ ", relatedClusterIds=" + Arrays.toString(relatedClusterIds)
+				+ ", clusterIndex=" + clusterIndex + ", members=" + members
+				+ "]";
+	}
+
+}
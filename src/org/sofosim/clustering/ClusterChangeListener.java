@@ -0,0 +1,23 @@
+package org.sofosim.clustering;
+
+import java.util.ArrayList;
+
+/**
+ * Is notified about changes of clusters after each round of incremental
+ * clustering (see {@link IncrementalDBSCAN}).
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public interface ClusterChangeListener<V> {
+
+	/**
+	 * Receives all changes of the last clustering round (empty if clusters
+	 * have not changed).
+	 *
+	 * @param changes
+	 */
+	void clustersChanged(ArrayList<ClusterChangeEvent<V>> changes);
+
+}
@@ -0,0 +1,94 @@
+package org.sofosim.clustering;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Result of a single clustering run as published by
+ * {@link AsynchronousClusterer}. Instances are not modified after
+ * publication, so all information (clusters, member lookup, ids and
+ * changes) refers to the same run.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class ClusterResult<V> {
+
+	/** number of result (increases with each published result) */
+	public final long version;
+	/** simulation round the clustered positions have been taken in */
+	public final long round;
+	/** clusters (must not be modified) */
+	private final ArrayList<ArrayList<V>> clusters;
+	/** cluster of each member (by vertex name) */
+	private final HashMap<String, ArrayList<V>> clusterOfMember;
+	/** stable ids of clusters (null if clusterer does not provide them) */
+	private final int[] clusterIds;
+	/** changes since previous run (null if not provided by clusterer) */
+	private final ArrayList<ClusterChangeEvent<V>> changes;
+
+	public ClusterResult(long version, long round,
+			ArrayList<ArrayList<V>> clusters, int[] clusterIds,
+			ArrayList<ClusterChangeEvent<V>> changes) {
+		this.version = version;
+		this.round = round;
+		this.clusters = clusters;
+		this.clusterIds = clusterIds;
+		this.changes = changes;
+		this.clusterOfMember = new HashMap<String, ArrayList<V>>();
+		for (int i = 0; i < clusters.size(); i++) {
+			ArrayList<V> cluster = clusters.get(i);
+			for (int m = 0; m < cluster.size(); m++) {
+				clusterOfMember.put(((VertexPoint3D) cluster.get(m)).vertex
+						.toString(), cluster);
+			}
+		}
+	}
+
+	/**
+	 * Returns all clusters of this result.
+	 *
+	 * @return
+	 */
+	public ArrayList<ArrayList<V>> getClusters() {
+		return clusters;
+	}
+
+	/**
+	 * Returns the members of the cluster the given vertex belongs to (or null
+	 * if it is not clustered).
+	 *
+	 * @param memberName
+	 * @return
+	 */
+	public ArrayList<V> getClusterNeighbours(String memberName) {
+		return clusterOfMember.get(memberName);
+	}
+
+	/**
+	 * Returns the stable id of the cluster with the given index (or -1 if
+	 * ids are not provided by the clusterer).
+	 *
+	 * @param clusterIndex
+	 * @return
+	 */
+	public int getClusterId(int clusterIndex) {
+		if (clusterIds == null || clusterIndex < 0
+				|| clusterIndex >= clusterIds.length) {
+			return -1;
+		}
+		return clusterIds[clusterIndex];
+	}
+
+	/**
+	 * Returns the changes since the previous run (or null if not provided by
+	 * the clusterer).
+	 *
+	 * @return
+	 */
+	public ArrayList<ClusterChangeEvent<V>> getChanges() {
+		return changes;
+	}
+
+}
@@ -4,10 +4,15 @@ import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javax.vecmath.Point3d;
 
 public class ClusterUtility {
 
+	/** number of clusters processed sequentially by a single task in {@link #calculateCentroids(List, int, int, boolean, ForkJoinPool)} */
+	private static final int clustersPerCentroidTask = 16;
+
 	/**
 	 * Calculates the centroid for a given List of VertexPoints, a 
 	 * maximal distance to consider them clustered and grid dimensions 
@@ -186,4 +191,187 @@ public class ClusterUtility {
 		return new CentroidWithMinMaxValues(new Point2D.Float(xMean, yMean), xMinValue, xMaxValue, yMinValue, yMaxValue, xRadius, yRadius, xSplitDetected, xMajorityOnLeft, ySplitDetected, yMajorityOnTop);
 	}
 	
+	/**
+	 * Calculates centroids, extents and split information for all given clusters 
+	 * in one batch. Coordinates are copied into primitive arrays and clusters are 
+	 * processed in parallel on the given pool (or sequentially if pool is null). 
+	 * On toroidal grids, splits are detected using the circular mean of each 
+	 * dimension (instead of sorting coordinates): members further than half the 
+	 * grid size from the circular mean are considered to be on the other side of 
+	 * the split. Results correspond to {@link #calculateCentroid(List, float, int, int, boolean)} 
+	 * for clusters that extend over less than half the grid in each dimension.
+	 * @param clusters
+	 * @param gridWidth
+	 * @param gridHeight
+	 * @param toroidal
+	 * @param pool
+	 * @return CentroidWithMinMaxValues for each cluster (in order of clusters)
+	 */
+	public static CentroidWithMinMaxValues[] calculateCentroids(final List<? extends List<? extends VertexPoint3D>> clusters, final int gridWidth, final int gridHeight, final boolean toroidal, final ForkJoinPool pool){
+		int[] start = new int[clusters.size() + 1];
+		for(int i=0; i<clusters.size(); i++){
+			start[i + 1] = start[i] + clusters.get(i).size();
+		}
+		CentroidTask task = new CentroidTask(clusters, start, new float[start[clusters.size()]], new float[start[clusters.size()]], 
+				gridWidth, gridHeight, toroidal, new CentroidWithMinMaxValues[clusters.size()], 0, clusters.size());
+		if(pool == null || clusters.size() <= clustersPerCentroidTask){
+			task.compute();
+		} else {
+			pool.invoke(task);
+		}
+		return task.results;
+	}
+	
+	/**
+	 * Calculates centroids for a range of clusters. Ranges are split recursively.
+	 */
+	private static class CentroidTask extends RecursiveAction {
+		
+		final List<? extends List<? extends VertexPoint3D>> clusters;
+		/** first coordinate of each cluster in coordinate arrays */
+		final int[] start;
+		final float[] xValues;
+		final float[] yValues;
+		final int gridWidth;
+		final int gridHeight;
+		final boolean toroidal;
+		final CentroidWithMinMaxValues[] results;
+		final int from;
+		final int to;
+		
+		CentroidTask(List<? extends List<? extends VertexPoint3D>> clusters, int[] start, float[] xValues, float[] yValues, 
+				int gridWidth, int gridHeight, boolean toroidal, CentroidWithMinMaxValues[] results, int from, int to){
+			this.clusters = clusters;
+			this.start = start;
+			this.xValues = xValues;
+			this.yValues = yValues;
+			this.gridWidth = gridWidth;
+			this.gridHeight = gridHeight;
+			this.toroidal = toroidal;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from > clustersPerCentroidTask){
+				int middle = (from + to) >>> 1;
+				invokeAll(new CentroidTask(clusters, start, xValues, yValues, gridWidth, gridHeight, toroidal, results, from, middle), 
+						new CentroidTask(clusters, start, xValues, yValues, gridWidth, gridHeight, toroidal, results, middle, to));
+				return;
+			}
+			//mean, min, max, radius, split, majority on lower side
+			float[] x = new float[6];
+			float[] y = new float[6];
+			for(int c=from; c<to; c++){
+				List<? extends VertexPoint3D> cluster = clusters.get(c);
+				for(int i=0; i<cluster.size(); i++){
+					Point3d point = cluster.get(i).point;
+					xValues[start[c] + i] = (float) point.x;
+					yValues[start[c] + i] = (float) point.y;
+				}
+				calculateDimension(xValues, start[c], start[c + 1], gridWidth, toroidal, x);
+				calculateDimension(yValues, start[c], start[c + 1], gridHeight, toroidal, y);
+				results[c] = new CentroidWithMinMaxValues(new Point2D.Float(x[0], y[0]), x[1], x[2], y[1], y[2], x[3], y[3], 
+						x[4] != 0, x[5] != 0, y[4] != 0, y[5] != 0);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Calculates mean, minimum, maximum, radius, split flag and majority flag 
+	 * (1 if majority of members is on lower side of split) for the values in 
+	 * the given range and writes them to result (in that order).
+	 * @param values
+	 * @param from
+	 * @param to
+	 * @param gridSize
+	 * @param toroidal
+	 * @param result
+	 */
+	private static void calculateDimension(final float[] values, final int from, final int to, final int gridSize, final boolean toroidal, final float[] result){
+		int count = to - from;
+		float minValue = Float.MAX_VALUE;
+		float maxValue = Float.MIN_VALUE;
+		double sum = 0;
+		double sinSum = 0;
+		double cosSum = 0;
+		double toAngle = 2 * Math.PI / gridSize;
+		for(int i=from; i<to; i++){
+			float value = values[i];
+			sum += value;
+			if(value > maxValue){
+				maxValue = value;
+			}
+			if(value < minValue){
+				minValue = value;
+			}
+			if(toroidal){
+				sinSum += Math.sin(value * toAngle);
+				cosSum += Math.cos(value * toAngle);
+			}
+		}
+		float mean = (float) (sum / count);
+		float radius = -1;
+		boolean split = false;
+		boolean majorityOnLowerSide = false;
+		if(toroidal){
+			//circular mean
+			double center = Math.atan2(sinSum, cosSum) / toAngle;
+			if(center < 0){
+				center += gridSize;
+			}
+			double halfGrid = gridSize / 2.0;
+			//unwrap values relative to circular mean
+			double unwrappedSum = 0;
+			double unwrappedMin = Double.MAX_VALUE;
+			double unwrappedMax = -Double.MAX_VALUE;
+			//members on upper side moved below zero, members on lower side moved beyond grid size
+			int movedDown = 0;
+			int movedUp = 0;
+			for(int i=from; i<to; i++){
+				double value = values[i];
+				if(value - center > halfGrid){
+					value -= gridSize;
+					movedDown++;
+				} else if(center - value > halfGrid){
+					value += gridSize;
+					movedUp++;
+				}
+				unwrappedSum += value;
+				if(value > unwrappedMax){
+					unwrappedMax = value;
+				}
+				if(value < unwrappedMin){
+					unwrappedMin = value;
+				}
+			}
+			split = movedDown > 0 || movedUp > 0;
+			if(split){
+				double unwrappedMean = unwrappedSum / count;
+				int membersOnLowerSide = movedDown > 0 ? count - movedDown : movedUp;
+				majorityOnLowerSide = membersOnLowerSide > count / 2;
+				//express mean relative to side of majority
+				if(movedDown > 0 && !majorityOnLowerSide){
+					mean = (float) (unwrappedMean + gridSize);
+				} else if(movedUp > 0 && majorityOnLowerSide){
+					mean = (float) (unwrappedMean - gridSize);
+				} else {
+					mean = (float) unwrappedMean;
+				}
+				radius = (float) Math.max(unwrappedMax - unwrappedMean, unwrappedMean - unwrappedMin);
+			} else {
+				radius = Math.max(maxValue - mean, mean - minValue);
+			}
+		}
+		result[0] = mean;
+		result[1] = minValue;
+		result[2] = maxValue;
+		result[3] = radius;
+		result[4] = split ? 1 : 0;
+		result[5] = majorityOnLowerSide ? 1 : 0;
+	}
+	
 }
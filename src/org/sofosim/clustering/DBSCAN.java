@@ -1,10 +1,13 @@
 package org.sofosim.clustering;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import javax.vecmath.Point3d;
 import org.nzdis.micro.util.SimpleSemaphore;
+import org.sofosim.structures.CartesianDistance3D;
 import org.sofosim.util.ProximityCalculator3D;
 
 public class DBSCAN<V> implements SpatialProximityClusterer<V> {
@@ -44,7 +47,18 @@ public class DBSCAN<V> implements SpatialProximityClusterer<V> {
 		return resultList;
 	}
 
-	private HashMap<String, Integer> clusterNeighbourIndex = new HashMap<String, Integer>();
+	/**
+	 * index of cluster each point of the last execution round belongs to (-1
+	 * if not clustered); border points of multiple clusters refer to the last
+	 * of those
+	 */
+	private int[] clusterOfPoint = new int[0];
+
+	/** index of each vertex name in the point list of the last execution round */
+	private HashMap<String, Integer> pointIndex = new HashMap<String, Integer>();
+
+	/** vertices indexed in {@link #pointIndex} (to detect unchanged point lists) */
+	private Object[] indexedVertices = new Object[0];
 
 	/**
 	 * Returns the members of the same cluster.
@@ -54,76 +68,260 @@ public class DBSCAN<V> implements SpatialProximityClusterer<V> {
 	 * @return
 	 */
 	public ArrayList<V> getClusterNeighbours(String memberName) {
-		//semaphore.acquire();
-		// try{
-		if (!resultList.isEmpty()
-				&& clusterNeighbourIndex.containsKey(memberName)) {
-			//semaphore.release();
-			return resultList.get(clusterNeighbourIndex.get(memberName));
-		}
-		/*
-		 * }catch (IndexOutOfBoundsException e) { // TODO: handle exception
-		 * }catch (NullPointerException e){
-		 * 
-		 * }
-		 */
-		//semaphore.release();
-		return null;
+		Integer index = pointIndex.get(memberName);
+		if (index == null) {
+			return null;
+		}
+		return getClusterNeighbours(index);
+	}
+
+	/**
+	 * Returns the members of the same cluster as the point with the given
+	 * index in the point list of the last execution round (or null if the
+	 * point is not clustered).
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public ArrayList<V> getClusterNeighbours(int index) {
+		// read both references once as they are replaced after each run
+		ArrayList<ArrayList<V>> results = resultList;
+		int[] clusters = clusterOfPoint;
+		if (index < 0 || index >= clusters.length) {
+			return null;
+		}
+		int cluster = clusters[index];
+		if (cluster == -1 || cluster >= results.size()) {
+			return null;
+		}
+		return results.get(cluster);
+	}
+
+	/**
+	 * Returns the index of the cluster (in {@link #getLastResultList()}) the
+	 * point with the given index in the point list of the last execution
+	 * round belongs to, or -1 if it is not clustered.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getClusterIndex(int index) {
+		int[] clusters = clusterOfPoint;
+		if (index < 0 || index >= clusters.length) {
+			return -1;
+		}
+		return clusters[index];
 	}
 
 	/** internal field for list of VertexPoints to be clustered */
 	private ArrayList<V> pointList = null;
 
-	/** index maintaining visited points */
-	private HashSet<V> visitedPoints = new HashSet<V>();
+	/** indicates which points have at least the minimal number of neighbours */
+	private final BitSet corePoints = new BitSet();
+
+	/** first entry in {@link #neighbourIndices} for each point (plus end marker) */
+	protected int[] neighbourStart = new int[1];
+	/** indices of neighbours, ordered by point */
+	protected int[] neighbourIndices = new int[0];
+	/** scratch array for neighbour queries */
+	private int[] candidates = new int[0];
+	/** disjoint-set forest over core points (root is lowest index) */
+	private int[] parent = new int[0];
+	/** cluster index for each root in {@link #parent} */
+	private int[] clusterOfRoot = new int[0];
 
 	/** ProximityCalculator for calculating distance between points */
-	private ProximityCalculator3D proximityCalculator = null;
+	protected ProximityCalculator3D proximityCalculator = null;
+
+	/** scratch instance for distance calculation */
+	protected final CartesianDistance3D distance = new CartesianDistance3D();
 
 	/**
-	 * Calculates the neighbours of a given VertexPoint.
+	 * Returns the VertexPoints to be clustered (in the order they have been
+	 * passed to {@link #setVertexPoints(Collection)}).
 	 * 
-	 * @param p
-	 *            VertexPoint whose neighbours are looked for
-	 * @return Vector of VertexPoints that are neighbours to p
+	 * @return
 	 */
-	private ArrayList<V> getNeighbours(V p) {
-		ArrayList<V> neighbours = new ArrayList<V>();
-		//Iterator<V> points = pointList.iterator();
-		for(int i=0; i<pointList.size(); i++){
-		//while (points.hasNext()) {
-			V q = pointList.get(i);
-			if (proximityCalculator.calculateGridDistance(
-					((VertexPoint3D) p).point, ((VertexPoint3D) q).point,
-					proximityCalculator.isToroidalGraph()).getLength() <= epsilon) {
-				neighbours.add(q);
+	protected ArrayList<V> getVertexPoints() {
+		return pointList;
+	}
+
+	/**
+	 * Returns the maximal distance of cluster members.
+	 * 
+	 * @return
+	 */
+	public float getMaximalDistanceOfClusterMembers() {
+		return epsilon;
+	}
+
+	/**
+	 * Is called once per clustering run before any neighbours are
+	 * calculated. Allows subclasses to index the current VertexPoints.
+	 */
+	protected void prepareNeighbourQueries() {
+		// nothing to prepare for exhaustive search
+	}
+
+	/**
+	 * Writes the indices of all points within epsilon of the point with the
+	 * given index (including the point itself) into the result array and
+	 * returns their number. The result array holds at least as many entries
+	 * as points to be clustered.
+	 * 
+	 * @param index
+	 *            index of point whose neighbours are looked for
+	 * @param result
+	 * @return number of neighbours
+	 */
+	protected int collectNeighbours(int index, int[] result) {
+		boolean toroidal = proximityCalculator.isToroidalGraph();
+		double squaredEpsilon = (double) epsilon * epsilon;
+		Point3d pPoint = ((VertexPoint3D) pointList.get(index)).point;
+		int count = 0;
+		for (int i = 0; i < pointList.size(); i++) {
+			Point3d qPoint = ((VertexPoint3D) pointList.get(i)).point;
+			if (proximityCalculator.calculateGridDistance(pPoint.x, pPoint.y,
+					pPoint.z, qPoint.x, qPoint.y, qPoint.z, toroidal, distance).squaredLength <= squaredEpsilon) {
+				result[count++] = i;
 			}
 		}
-		return neighbours;
+		return count;
+	}
+
+	/**
+	 * Determines the neighbours of all points and stores them in
+	 * {@link #neighbourStart} and {@link #neighbourIndices} (whose capacity
+	 * is ensured by {@link #storeNeighbours(int, int[], int, int)}). Queries
+	 * each point once; subclasses may reuse lists from previous runs.
+	 * 
+	 * @param size
+	 *            number of points
+	 */
+	protected void determineNeighbours(int size) {
+		int pairs = 0;
+		for (int i = 0; i < size; i++) {
+			neighbourStart[i] = pairs;
+			int count = collectNeighbours(i, candidates);
+			pairs = storeNeighbours(pairs, candidates, 0, count);
+		}
+		neighbourStart[size] = pairs;
+	}
+
+	/**
+	 * Copies neighbour indices to the given position in
+	 * {@link #neighbourIndices} (growing it if necessary) and returns the
+	 * position after the last copied entry.
+	 * 
+	 * @param pairs
+	 *            position to copy to
+	 * @param neighbours
+	 * @param offset
+	 *            first entry in neighbours to copy
+	 * @param count
+	 * @return
+	 */
+	protected int storeNeighbours(int pairs, int[] neighbours, int offset,
+			int count) {
+		ensureNeighbourCapacity(pairs + count);
+		System.arraycopy(neighbours, offset, neighbourIndices, pairs, count);
+		return pairs + count;
+	}
+
+	/**
+	 * Ensures {@link #neighbourIndices} holds at least the given number of
+	 * entries (retaining its contents).
+	 * 
+	 * @param pairs
+	 */
+	protected void ensureNeighbourCapacity(int pairs) {
+		if (pairs > neighbourIndices.length) {
+			neighbourIndices = Arrays.copyOf(neighbourIndices,
+					Math.max(pairs, neighbourIndices.length * 2));
+		}
 	}
 
 	/**
-	 * Merges the elements of the right collection to the left one and returns
-	 * the combination.
+	 * Indicates if the point with the given index has been identified as
+	 * core point in the current run.
 	 * 
-	 * @param neighbours1
-	 *            left collection
-	 * @param neighbours2
-	 *            right collection
-	 * @return amended left collection
+	 * @param index
+	 * @return
+	 */
+	protected boolean isCorePoint(int index) {
+		return corePoints.get(index);
+	}
+
+	/**
+	 * Merges the sets of all core points within epsilon of each other, so
+	 * that each set's root is its core point with the lowest index.
+	 * Subclasses determining the sets differently need to assign each core
+	 * point's root using {@link #setRoot(int, int)}.
+	 * 
+	 * @param size
+	 *            number of points
 	 */
-	private ArrayList<V> mergeRightToLeftCollection(ArrayList<V> neighbours1,
-			ArrayList<V> neighbours2) {
-		/*HashSet<V> set = new HashSet<V>(neighbours1);
-		set.addAll(neighbours2);
-		return new ArrayList<V>(set);*/
-		for (int i = 0; i < neighbours2.size(); i++) {
-			V tempPt = neighbours2.get(i);
-			if (!neighbours1.contains(tempPt)) {
-				neighbours1.add(tempPt);
+	protected void connectCorePoints(int size) {
+		for (int i = corePoints.nextSetBit(0); i >= 0; i = corePoints
+				.nextSetBit(i + 1)) {
+			for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+				int other = neighbourIndices[n];
+				if (other > i && corePoints.get(other)) {
+					union(i, other);
+				}
 			}
 		}
-		return neighbours1;
+	}
+
+	/**
+	 * Assigns the root of the set of the given core point.
+	 * 
+	 * @param index
+	 * @param root
+	 *            core point with lowest index in set
+	 */
+	protected void setRoot(int index, int root) {
+		parent[index] = root;
+	}
+
+	/**
+	 * Is called once a clustering run has completed and its results have
+	 * been published.
+	 */
+	protected void clusteringCompleted() {
+		// nothing to do by default
+	}
+
+	/**
+	 * Returns the root of the set the given core point belongs to (halving
+	 * paths on the way).
+	 * 
+	 * @param index
+	 * @return
+	 */
+	private int findRoot(int index) {
+		while (parent[index] != index) {
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+
+	/**
+	 * Merges the sets of both given core points. The lower index becomes the
+	 * root, so each root is the first core point of its cluster.
+	 * 
+	 * @param first
+	 * @param second
+	 */
+	private void union(int first, int second) {
+		int firstRoot = findRoot(first);
+		int secondRoot = findRoot(second);
+		if (firstRoot < secondRoot) {
+			parent[secondRoot] = firstRoot;
+		} else if (secondRoot < firstRoot) {
+			parent[firstRoot] = secondRoot;
+		}
 	}
 
 	/**
@@ -170,55 +368,119 @@ public class DBSCAN<V> implements SpatialProximityClusterer<V> {
 			throw new RuntimeException(
 					"DBSCAN: No points added for clustering!");
 		}
+		int size = pointList.size();
+		if (candidates.length < size) {
+			candidates = new int[size];
+			parent = new int[size];
+			clusterOfRoot = new int[size];
+		}
+		if (neighbourStart.length < size + 1) {
+			neighbourStart = new int[size + 1];
+		}
+		prepareNeighbourQueries();
+
+		// determine neighbours and core points
+		determineNeighbours(size);
+		corePoints.clear();
+		for (int i = 0; i < size; i++) {
+			if (neighbourStart[i + 1] - neighbourStart[i] >= minimumNumberOfClusterMembers) {
+				corePoints.set(i);
+				parent[i] = i;
+			}
+		}
+
+		updatePointIndex();
+		assembleClusters(size);
+		//semaphore.release();
+		clusteringCompleted();
+	}
+
+	/**
+	 * Assembles the clusters from the core points and their neighbours
+	 * determined in the current run and publishes them (see
+	 * {@link #getLastResultList()}). Subclasses deriving clusters
+	 * differently may skip it.
+	 * 
+	 * @param size
+	 *            number of points
+	 */
+	protected void assembleClusters(int size) {
+		// connect core points in each other's neighbourhood
+		connectCorePoints(size);
+
+		// number clusters by their first core point (i.e. in the order they
+		// are discovered when expanding clusters point by point)
+		int numberOfClusters = 0;
+		for (int i = corePoints.nextSetBit(0); i >= 0; i = corePoints
+				.nextSetBit(i + 1)) {
+			if (findRoot(i) == i) {
+				clusterOfRoot[i] = numberOfClusters++;
+			}
+		}
+
 		// temporary result list - result to be copied later to maintain
 		// updated and complete results list
-		ArrayList<ArrayList<V>> tempResultList = new ArrayList<ArrayList<V>>();
-		// resultList.clear();
-		HashMap<String, Integer> tempClusterNeighbourIndex = new HashMap<String, Integer>();
-		//clusterNeighbourIndex.clear();
-		visitedPoints.clear();
-
-		ArrayList<V> neighbours;
-		int index = 0;
-
-		while (pointList.size() > index) {
-			V p = pointList.get(index);
-			if (!visitedPoints.contains(p)) {
-				visitedPoints.add(p);
-				neighbours = getNeighbours(p);
-
-				if (neighbours.size() >= minimumNumberOfClusterMembers) {
-					int ind = 0;
-					while (neighbours.size() > ind) {
-						V r = neighbours.get(ind);
-						if (!visitedPoints.contains(r)) {
-							visitedPoints.add(r);
-							ArrayList<V> individualNeighbours = getNeighbours(r);
-							if (individualNeighbours.size() >= minimumNumberOfClusterMembers) {
-								neighbours = mergeRightToLeftCollection(
-										neighbours,
-										individualNeighbours);
-							}
-						}
-						ind++;
+		ArrayList<ArrayList<V>> tempResultList = new ArrayList<ArrayList<V>>(
+				numberOfClusters);
+		for (int c = 0; c < numberOfClusters; c++) {
+			tempResultList.add(new ArrayList<V>());
+		}
+		int[] tempClusterOfPoint = new int[size];
+		// last point added to each cluster (avoids duplicate border points)
+		int[] lastAdded = new int[numberOfClusters];
+		Arrays.fill(lastAdded, -1);
+		for (int i = 0; i < size; i++) {
+			if (corePoints.get(i)) {
+				int cluster = clusterOfRoot[findRoot(i)];
+				tempResultList.get(cluster).add(pointList.get(i));
+				tempClusterOfPoint[i] = cluster;
+				continue;
+			}
+			// border points belong to the clusters of all core points in
+			// their neighbourhood
+			tempClusterOfPoint[i] = -1;
+			for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+				int other = neighbourIndices[n];
+				if (corePoints.get(other)) {
+					int cluster = clusterOfRoot[findRoot(other)];
+					if (lastAdded[cluster] != i) {
+						lastAdded[cluster] = i;
+						tempResultList.get(cluster).add(pointList.get(i));
+						tempClusterOfPoint[i] = Math.max(
+								tempClusterOfPoint[i], cluster);
 					}
-					tempResultList.add(neighbours);
 				}
 			}
-			index++;
-		}
-		// create inverted index
-		for (int i = 0; i < tempResultList.size(); i++) {
-			ArrayList<V> vpList = tempResultList.get(i);
-			for (int l = 0; l < vpList.size(); l++) {
-				tempClusterNeighbourIndex.put(((VertexPoint3D) vpList
-						.get(l)).vertex.toString(), i);
-			}
 		}
-		// System.out.println("Index: " + clusterNeighbourIndex.size());
-		clusterNeighbourIndex = tempClusterNeighbourIndex;
+		clusterOfPoint = tempClusterOfPoint;
 		resultList = tempResultList;//(ArrayList<ArrayList<V>>) tempResultList.clone();
-		//semaphore.release();
+	}
+
+	/**
+	 * Updates the index of vertex names for the current point list, unless
+	 * it holds the same vertices in the same order as in the previous round.
+	 */
+	private void updatePointIndex() {
+		int size = pointList.size();
+		boolean unchanged = indexedVertices.length == size;
+		for (int i = 0; unchanged && i < size; i++) {
+			Object vertex = ((VertexPoint3D) pointList.get(i)).vertex;
+			unchanged = vertex == indexedVertices[i]
+					|| vertex.equals(indexedVertices[i]);
+		}
+		if (unchanged) {
+			return;
+		}
+		HashMap<String, Integer> tempPointIndex = new HashMap<String, Integer>(
+				size * 2);
+		Object[] tempIndexedVertices = new Object[size];
+		for (int i = 0; i < size; i++) {
+			Object vertex = ((VertexPoint3D) pointList.get(i)).vertex;
+			tempIndexedVertices[i] = vertex;
+			tempPointIndex.put(vertex.toString(), i);
+		}
+		pointIndex = tempPointIndex;
+		indexedVertices = tempIndexedVertices;
 	}
 
 }
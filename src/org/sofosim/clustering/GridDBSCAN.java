@@ -0,0 +1,162 @@
+package org.sofosim.clustering;
+
+import javax.vecmath.Point3d;
+import org.sofosim.forceLayout.SectorGrid;
+import org.sofosim.structures.CartesianDistance3D;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * DBSCAN variant that indexes all VertexPoints in a uniform grid of
+ * epsilon-sized sectors (wrapping on toroidal grids), so neighbour queries
+ * only check the points in the 3^d sectors around a point instead of all
+ * points. Produces the same clusters as {@link DBSCAN}.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class GridDBSCAN<V> extends DBSCAN<V> {
+
+	/**
+	 * Maximal number of sectors per dimension (bounds memory for small
+	 * epsilon values relative to the grid size)
+	 */
+	public static int maxSectorsPerDimension = 100;
+
+	/** grid indexing points of current clustering run */
+	private SectorGrid grid = null;
+	/** epsilon the grid has been built for */
+	private float gridEpsilon = Float.NaN;
+
+	public GridDBSCAN(float epsilon, int minimumNoOfMembersPerCluster,
+			ProximityCalculator3D proxCalc) {
+		super(epsilon, minimumNoOfMembersPerCluster, proxCalc);
+	}
+
+	@Override
+	protected void prepareNeighbourQueries() {
+		float epsilon = getMaximalDistanceOfClusterMembers();
+		if (grid == null || epsilon != gridEpsilon) {
+			grid = createGrid(epsilon);
+			gridEpsilon = epsilon;
+		}
+		int size = getVertexPoints().size();
+		grid.clear(size);
+		for (int i = 0; i < size; i++) {
+			Point3d point = getPosition(i);
+			grid.setPosition(i, point.x, point.y, point.z);
+		}
+		grid.build();
+	}
+
+	/**
+	 * Creates a grid whose sectors are at least epsilon wide, so that all
+	 * neighbours of a point lie in the adjacent sectors.
+	 *
+	 * @param epsilon
+	 * @return
+	 */
+	private SectorGrid createGrid(float epsilon) {
+		boolean toroidal = proximityCalculator.isToroidalGraph();
+		int xGridSize = proximityCalculator.getXGridSize();
+		int yGridSize = proximityCalculator.getYGridSize();
+		int zGridSize = proximityCalculator.getZGridSize() == null ? 0
+				: proximityCalculator.getZGridSize();
+		boolean use3d = zGridSize > 0;
+		int xSizeOfSector = getSizeOfSector(xGridSize, epsilon);
+		int ySizeOfSector = getSizeOfSector(yGridSize, epsilon);
+		int zSizeOfSector = use3d ? getSizeOfSector(zGridSize, epsilon) : 0;
+		SectorGrid sectorGrid = new SectorGrid(xGridSize, yGridSize,
+				zGridSize, xSizeOfSector, ySizeOfSector, zSizeOfSector, use3d,
+				toroidal);
+		sectorGrid.setNeighbourhoodRadius(epsilon);
+		return sectorGrid;
+	}
+
+	/**
+	 * Returns the sector size for a given grid dimension. Prefers sizes that
+	 * divide the grid evenly (up to twice epsilon).
+	 *
+	 * @param gridSize
+	 * @param epsilon
+	 * @return
+	 */
+	private static int getSizeOfSector(int gridSize, float epsilon) {
+		int minimalSize = Math.max(1, (int) Math.ceil(epsilon));
+		minimalSize = Math.max(minimalSize, (int) Math.ceil(gridSize
+				/ (double) Math.max(1, maxSectorsPerDimension)));
+		if (minimalSize >= gridSize) {
+			return Math.max(1, gridSize);
+		}
+		for (int size = minimalSize; size <= minimalSize * 2
+				&& size <= gridSize; size++) {
+			if (gridSize % size == 0) {
+				return size;
+			}
+		}
+		return minimalSize;
+	}
+
+	/**
+	 * Returns the position the point with the given index is clustered by
+	 * (its current position by default).
+	 *
+	 * @param index
+	 * @return
+	 */
+	protected Point3d getPosition(int index) {
+		return ((VertexPoint3D) getVertexPoints().get(index)).point;
+	}
+
+	@Override
+	protected int collectNeighbours(int index, int[] result) {
+		return collectNeighbours(getPosition(index), result);
+	}
+
+	/**
+	 * Writes the indices of all points within epsilon of the given position
+	 * into the result array and returns their number.
+	 *
+	 * @param position
+	 * @param result
+	 *            array holding at least as many entries as points
+	 * @return
+	 */
+	protected int collectNeighbours(Point3d position, int[] result) {
+		return collectNeighbours(position, result, distance);
+	}
+
+	/**
+	 * Writes the indices of all points within epsilon of the given position
+	 * into the result array and returns their number, using the given
+	 * instance for distance calculation. Does not modify any shared state,
+	 * so it can be called concurrently once the grid has been prepared.
+	 *
+	 * @param position
+	 * @param result
+	 *            array holding at least as many entries as points
+	 * @param distance
+	 *            scratch instance for distance calculation
+	 * @return
+	 */
+	protected int collectNeighbours(Point3d position, int[] result,
+			CartesianDistance3D distance) {
+		boolean toroidal = proximityCalculator.isToroidalGraph();
+		float epsilon = getMaximalDistanceOfClusterMembers();
+		double squaredEpsilon = (double) epsilon * epsilon;
+		int candidates = grid.collectNeighbours(position.x, position.y,
+				position.z, result);
+		// retain candidates within epsilon (in place)
+		int count = 0;
+		for (int c = 0; c < candidates; c++) {
+			Point3d qPoint = getPosition(result[c]);
+			if (proximityCalculator.calculateGridDistance(position.x,
+					position.y, position.z, qPoint.x, qPoint.y, qPoint.z,
+					toroidal, distance).squaredLength <= squaredEpsilon) {
+				result[count++] = result[c];
+			}
+		}
+		return count;
+	}
+
+}
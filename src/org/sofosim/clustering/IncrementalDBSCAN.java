@@ -0,0 +1,425 @@
+package org.sofosim.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import javax.vecmath.Point3d;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * Grid-indexed DBSCAN that reuses the neighbourhoods of the previous round.
+ * Each point is clustered by a reference position that is only updated once
+ * the point has moved further than a tolerance (a fraction of epsilon), and
+ * only points within epsilon of the old or new reference position of such a
+ * point are re-examined. Clusters keep stable ids across rounds, and the
+ * changes between rounds are available as {@link ClusterChangeEvent}s (see
+ * {@link #getLastChanges()}).
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class IncrementalDBSCAN<V> extends GridDBSCAN<V> {
+
+	/**
+	 * displacement (as fraction of epsilon) below which points are clustered
+	 * by their previous reference position
+	 */
+	private float displacementTolerance;
+
+	/** positions points are clustered by */
+	private Point3d[] references = new Point3d[0];
+	/** reference positions prior to update (for points moved in this round) */
+	private Point3d[] previousReferences = new Point3d[0];
+	/** points whose reference position has been updated in this round */
+	private final BitSet moved = new BitSet();
+	/** points whose neighbours are determined anew in this round */
+	private final BitSet affected = new BitSet();
+	/** indicates if all neighbourhoods are determined anew in this round */
+	private boolean fullRun = true;
+	/** indicates if point list differs from previous round */
+	private boolean pointsChanged = true;
+	/** epsilon of previous round */
+	private float previousEpsilon = Float.NaN;
+	/** number of points re-examined in last round */
+	private int reexaminedPoints = 0;
+
+	/** neighbour arrays of previous round (swapped with current ones) */
+	private int[] spareStart = new int[1];
+	private int[] spareIndices = new int[0];
+	/** scratch array for neighbour queries */
+	private int[] scratch = new int[0];
+
+	/** points and vertices of previous round */
+	private ArrayList<V> previousPoints = new ArrayList<V>();
+	private Object[] previousVertices = new Object[0];
+	/** cluster (index) of each point in previous round */
+	private int[] previousClusterOfPoint = new int[0];
+	/** clusters of previous round */
+	private ArrayList<ArrayList<V>> previousResults = new ArrayList<ArrayList<V>>();
+	/** ids of clusters in previous round */
+	private int[] previousClusterIds = new int[0];
+	/** ids of clusters in current result list */
+	private volatile int[] clusterIds = new int[0];
+	private int nextClusterId = 0;
+	/** changes between last two rounds */
+	private volatile ArrayList<ClusterChangeEvent<V>> lastChanges = new ArrayList<ClusterChangeEvent<V>>();
+
+	/**
+	 * Creates an incremental DBSCAN instance.
+	 *
+	 * @param epsilon
+	 * @param minimumNoOfMembersPerCluster
+	 * @param proxCalc
+	 * @param displacementTolerance
+	 *            displacement (as fraction of epsilon) up to which points are
+	 *            not re-examined
+	 */
+	public IncrementalDBSCAN(float epsilon, int minimumNoOfMembersPerCluster,
+			ProximityCalculator3D proxCalc, float displacementTolerance) {
+		super(epsilon, minimumNoOfMembersPerCluster, proxCalc);
+		this.displacementTolerance = displacementTolerance;
+	}
+
+	/**
+	 * Sets the displacement (as fraction of epsilon) up to which points are
+	 * clustered by their previous position.
+	 *
+	 * @param displacementTolerance
+	 */
+	public void setDisplacementTolerance(float displacementTolerance) {
+		this.displacementTolerance = displacementTolerance;
+	}
+
+	/**
+	 * Returns the changes between the last two clustering rounds.
+	 *
+	 * @return
+	 */
+	public ArrayList<ClusterChangeEvent<V>> getLastChanges() {
+		return lastChanges;
+	}
+
+	/**
+	 * Returns the stable id of the cluster with the given index in
+	 * {@link #getLastResultList()} (or -1 if no such cluster exists).
+	 *
+	 * @param clusterIndex
+	 * @return
+	 */
+	public int getClusterId(int clusterIndex) {
+		int[] ids = clusterIds;
+		if (clusterIndex < 0 || clusterIndex >= ids.length) {
+			return -1;
+		}
+		return ids[clusterIndex];
+	}
+
+	/**
+	 * Returns the number of points whose neighbourhoods have been determined
+	 * in the last round.
+	 *
+	 * @return
+	 */
+	public int getReexaminedPoints() {
+		return reexaminedPoints;
+	}
+
+	@Override
+	protected Point3d getPosition(int index) {
+		return references[index];
+	}
+
+	@Override
+	protected void prepareNeighbourQueries() {
+		ArrayList<V> points = getVertexPoints();
+		int size = points.size();
+		float epsilon = getMaximalDistanceOfClusterMembers();
+		pointsChanged = previousVertices.length != size;
+		for (int i = 0; !pointsChanged && i < size; i++) {
+			Object vertex = ((VertexPoint3D) points.get(i)).vertex;
+			pointsChanged = vertex != previousVertices[i]
+					&& !vertex.equals(previousVertices[i]);
+		}
+		fullRun = pointsChanged || epsilon != previousEpsilon;
+		previousEpsilon = epsilon;
+		if (references.length < size) {
+			int oldLength = references.length;
+			references = Arrays.copyOf(references, size);
+			previousReferences = Arrays.copyOf(previousReferences, size);
+			for (int i = oldLength; i < size; i++) {
+				references[i] = new Point3d();
+				previousReferences[i] = new Point3d();
+			}
+		}
+		moved.clear();
+		boolean toroidal = proximityCalculator.isToroidalGraph();
+		double tolerance = displacementTolerance * epsilon;
+		double squaredTolerance = tolerance * tolerance;
+		for (int i = 0; i < size; i++) {
+			Point3d point = ((VertexPoint3D) points.get(i)).point;
+			if (fullRun) {
+				references[i].set(point);
+			} else if (proximityCalculator.calculateGridDistance(point,
+					references[i], toroidal, distance).squaredLength > squaredTolerance) {
+				previousReferences[i].set(references[i]);
+				references[i].set(point);
+				moved.set(i);
+			}
+		}
+		super.prepareNeighbourQueries();
+	}
+
+	@Override
+	protected void determineNeighbours(int size) {
+		if (fullRun) {
+			super.determineNeighbours(size);
+			reexaminedPoints = size;
+			return;
+		}
+		if (scratch.length < size) {
+			scratch = new int[size];
+		}
+		// neighbourhoods change only within epsilon of moved points
+		affected.clear();
+		for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+			affected.set(i);
+			int count = collectNeighbours(previousReferences[i], scratch);
+			for (int c = 0; c < count; c++) {
+				affected.set(scratch[c]);
+			}
+			count = collectNeighbours(references[i], scratch);
+			for (int c = 0; c < count; c++) {
+				affected.set(scratch[c]);
+			}
+		}
+		reexaminedPoints = affected.cardinality();
+		// build new lists, copying those of unaffected points
+		int[] oldStart = neighbourStart;
+		int[] oldIndices = neighbourIndices;
+		if (spareStart.length < size + 1) {
+			spareStart = new int[size + 1];
+		}
+		neighbourStart = spareStart;
+		neighbourIndices = spareIndices;
+		int pairs = 0;
+		for (int i = 0; i < size; i++) {
+			neighbourStart[i] = pairs;
+			if (affected.get(i)) {
+				int count = collectNeighbours(i, scratch);
+				pairs = storeNeighbours(pairs, scratch, 0, count);
+			} else {
+				pairs = storeNeighbours(pairs, oldIndices, oldStart[i],
+						oldStart[i + 1] - oldStart[i]);
+			}
+		}
+		neighbourStart[size] = pairs;
+		spareStart = oldStart;
+		spareIndices = oldIndices;
+	}
+
+	@Override
+	protected void clusteringCompleted() {
+		ArrayList<V> points = getVertexPoints();
+		ArrayList<ArrayList<V>> results = getLastResultList();
+		int size = points.size();
+		int clusters = results.size();
+		int previousClusters = previousResults.size();
+
+		// cluster of each point in this and the previous round
+		int[] current = new int[size];
+		int[] previous = new int[size];
+		boolean[] retained = new boolean[previousPoints.size()];
+		HashMap<Object, Integer> previousIndex = null;
+		if (pointsChanged) {
+			previousIndex = new HashMap<Object, Integer>(
+					previousVertices.length * 2);
+			for (int j = 0; j < previousVertices.length; j++) {
+				previousIndex.put(previousVertices[j], j);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			current[i] = getClusterIndex(i);
+			int j = i;
+			if (pointsChanged) {
+				Integer index = previousIndex
+						.get(((VertexPoint3D) points.get(i)).vertex);
+				j = index == null ? -1 : index;
+			}
+			if (j == -1) {
+				previous[i] = -1;
+			} else {
+				previous[i] = previousClusterOfPoint[j];
+				retained[j] = true;
+			}
+		}
+
+		// count members shared by current and previous clusters (sorted by
+		// current, then previous cluster)
+		long[] pairs = new long[size];
+		int numberOfPairs = 0;
+		for (int i = 0; i < size; i++) {
+			if (current[i] != -1 && previous[i] != -1) {
+				pairs[numberOfPairs++] = (long) current[i] * previousClusters
+						+ previous[i];
+			}
+		}
+		Arrays.sort(pairs, 0, numberOfPairs);
+		int numberOfOverlaps = 0;
+		int[] overlapCurrent = new int[numberOfPairs];
+		int[] overlapPrevious = new int[numberOfPairs];
+		int[] overlapSize = new int[numberOfPairs];
+		for (int k = 0; k < numberOfPairs; k++) {
+			if (k > 0 && pairs[k] == pairs[k - 1]) {
+				overlapSize[numberOfOverlaps - 1]++;
+			} else {
+				overlapCurrent[numberOfOverlaps] = (int) (pairs[k] / previousClusters);
+				overlapPrevious[numberOfOverlaps] = (int) (pairs[k] % previousClusters);
+				overlapSize[numberOfOverlaps] = 1;
+				numberOfOverlaps++;
+			}
+		}
+
+		// each previous cluster continues in the current cluster holding
+		// most of its members; each current cluster descends mainly from
+		// the previous cluster contributing most members
+		int[] successor = new int[previousClusters];
+		int[] successorOverlap = new int[previousClusters];
+		Arrays.fill(successor, -1);
+		int[] mainPredecessor = new int[clusters];
+		int[] mainPredecessorOverlap = new int[clusters];
+		Arrays.fill(mainPredecessor, -1);
+		for (int k = 0; k < numberOfOverlaps; k++) {
+			int c = overlapCurrent[k];
+			int p = overlapPrevious[k];
+			if (overlapSize[k] > successorOverlap[p]) {
+				successor[p] = c;
+				successorOverlap[p] = overlapSize[k];
+			}
+			if (overlapSize[k] > mainPredecessorOverlap[c]) {
+				mainPredecessor[c] = p;
+				mainPredecessorOverlap[c] = overlapSize[k];
+			}
+		}
+		// previous cluster whose id is continued by each current cluster
+		int[] inheritedFrom = new int[clusters];
+		int[] inheritedOverlap = new int[clusters];
+		int[] continuedClusters = new int[clusters];
+		Arrays.fill(inheritedFrom, -1);
+		for (int p = 0; p < previousClusters; p++) {
+			int c = successor[p];
+			if (c != -1) {
+				continuedClusters[c]++;
+				if (successorOverlap[p] > inheritedOverlap[c]) {
+					inheritedFrom[c] = p;
+					inheritedOverlap[c] = successorOverlap[p];
+				}
+			}
+		}
+
+		ArrayList<ClusterChangeEvent<V>> changes = new ArrayList<ClusterChangeEvent<V>>();
+		int[] ids = new int[clusters];
+		for (int c = 0; c < clusters; c++) {
+			int p = inheritedFrom[c];
+			if (p != -1) {
+				ids[c] = previousClusterIds[p];
+				if (continuedClusters[c] > 1) {
+					int[] merged = new int[continuedClusters[c] - 1];
+					int m = 0;
+					for (int q = 0; q < previousClusters; q++) {
+						if (successor[q] == c && q != p) {
+							merged[m++] = previousClusterIds[q];
+						}
+					}
+					changes.add(new ClusterChangeEvent<V>(
+							ClusterChangeEvent.Type.MERGED, ids[c], merged, c,
+							results.get(c)));
+				}
+			} else if (mainPredecessor[c] != -1) {
+				ids[c] = nextClusterId++;
+				changes.add(new ClusterChangeEvent<V>(
+						ClusterChangeEvent.Type.SPLIT, ids[c],
+						new int[] { previousClusterIds[mainPredecessor[c]] },
+						c, results.get(c)));
+			} else {
+				ids[c] = nextClusterId++;
+				changes.add(new ClusterChangeEvent<V>(
+						ClusterChangeEvent.Type.FORMED, ids[c], new int[0], c,
+						results.get(c)));
+			}
+		}
+
+		// members joining or leaving continued clusters
+		int[] continuedBy = new int[previousClusters];
+		Arrays.fill(continuedBy, -1);
+		for (int c = 0; c < clusters; c++) {
+			if (inheritedFrom[c] != -1) {
+				continuedBy[inheritedFrom[c]] = c;
+			}
+		}
+		ArrayList<V>[] joined = new ArrayList[clusters];
+		ArrayList<V>[] left = new ArrayList[clusters];
+		for (int i = 0; i < size; i++) {
+			int c = current[i];
+			int p = previous[i];
+			if (c != -1 && inheritedFrom[c] != -1 && inheritedFrom[c] != p) {
+				if (joined[c] == null) {
+					joined[c] = new ArrayList<V>();
+				}
+				joined[c].add(points.get(i));
+			}
+			if (p != -1 && continuedBy[p] != -1 && continuedBy[p] != c) {
+				if (left[continuedBy[p]] == null) {
+					left[continuedBy[p]] = new ArrayList<V>();
+				}
+				left[continuedBy[p]].add(points.get(i));
+			}
+		}
+		// removed points have left their cluster
+		for (int j = 0; j < retained.length; j++) {
+			int p = previousClusterOfPoint[j];
+			if (!retained[j] && p != -1 && continuedBy[p] != -1) {
+				if (left[continuedBy[p]] == null) {
+					left[continuedBy[p]] = new ArrayList<V>();
+				}
+				left[continuedBy[p]].add(previousPoints.get(j));
+			}
+		}
+		for (int c = 0; c < clusters; c++) {
+			if (joined[c] != null) {
+				changes.add(new ClusterChangeEvent<V>(
+						ClusterChangeEvent.Type.MEMBERS_JOINED, ids[c],
+						new int[0], c, joined[c]));
+			}
+			if (left[c] != null) {
+				changes.add(new ClusterChangeEvent<V>(
+						ClusterChangeEvent.Type.MEMBERS_LEFT, ids[c],
+						new int[0], c, left[c]));
+			}
+		}
+		for (int p = 0; p < previousClusters; p++) {
+			if (successor[p] == -1) {
+				changes.add(new ClusterChangeEvent<V>(
+						ClusterChangeEvent.Type.DISSOLVED,
+						previousClusterIds[p], new int[0], -1,
+						previousResults.get(p)));
+			}
+		}
+
+		// retain state for next round
+		if (pointsChanged) {
+			previousVertices = new Object[size];
+			for (int i = 0; i < size; i++) {
+				previousVertices[i] = ((VertexPoint3D) points.get(i)).vertex;
+			}
+		}
+		previousPoints = points;
+		previousClusterOfPoint = current;
+		previousResults = results;
+		previousClusterIds = ids;
+		clusterIds = ids;
+		lastChanges = changes;
+	}
+
+}
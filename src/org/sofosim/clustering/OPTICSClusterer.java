@@ -0,0 +1,506 @@
+package org.sofosim.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.vecmath.Point3d;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * OPTICS-based clusterer. Each call to {@link #applyClustering()} computes
+ * the reachability ordering of all points up to the maximal distance given
+ * at construction (using the grid index of {@link GridDBSCAN}). Clusters
+ * for any distance up to that maximum can then be extracted in linear time
+ * ({@link #extractClusters(float)}), e.g. for multi-scale cluster
+ * statistics, without clustering again.
+ * <br>
+ * Extracted clusters contain the same points as DBSCAN clusters for the
+ * same distance, except that border points belong to a single cluster only.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class OPTICSClusterer<V> extends GridDBSCAN<V> {
+
+	/** reachability/core distance of points that are not reachable/core */
+	public static final float UNDEFINED = Float.POSITIVE_INFINITY;
+
+	/** minimum number of members to start cluster */
+	private int minimumNumberOfClusterMembers;
+	/** distance clusters are extracted for after each run */
+	private float extractionDistance;
+
+	/** distances corresponding to {@link #neighbourIndices} */
+	private float[] neighbourDistances = new float[0];
+	/** core distance of each point */
+	private float[] coreDistance = new float[0];
+	/** reachability distance of each point */
+	private float[] reachability = new float[0];
+	/** point indices in cluster ordering */
+	private int[] ordering = new int[0];
+	/** scratch array for core distance selection */
+	private float[] scratchDistances = new float[0];
+	/** number of points ordered in last run */
+	private int orderedPoints = 0;
+
+	/** indexed binary min-heap of seeds (by reachability, then index) */
+	private int[] heap = new int[0];
+	/** position of each point in heap (-1 if not contained) */
+	private int[] heapPosition = new int[0];
+	private int heapSize = 0;
+
+	/** clusters extracted for {@link #extractionDistance} in last run */
+	private ArrayList<ArrayList<V>> extractedClusters = new ArrayList<ArrayList<V>>();
+	/** cluster of each point for {@link #extractionDistance} (-1 if noise) */
+	private int[] extractedClusterOfPoint = new int[0];
+
+	/**
+	 * Creates an OPTICS clusterer computing orderings up to the given
+	 * maximal distance (which is also the initial distance clusters are
+	 * extracted for).
+	 *
+	 * @param maximalDistance
+	 * @param minimumNoOfMembersPerCluster
+	 * @param proxCalc
+	 */
+	public OPTICSClusterer(float maximalDistance,
+			int minimumNoOfMembersPerCluster, ProximityCalculator3D proxCalc) {
+		super(maximalDistance, minimumNoOfMembersPerCluster, proxCalc);
+		this.minimumNumberOfClusterMembers = minimumNoOfMembersPerCluster;
+		this.extractionDistance = maximalDistance;
+	}
+
+	@Override
+	public void setMinimalNumberOfMembersForCluster(int minimalNumberOfMembers) {
+		super.setMinimalNumberOfMembersForCluster(minimalNumberOfMembers);
+		this.minimumNumberOfClusterMembers = minimalNumberOfMembers;
+	}
+
+	/**
+	 * Sets the distance clusters are extracted for. Distances up to the
+	 * maximal distance of the last ordering are applied to the current
+	 * ordering immediately; larger distances raise the maximal distance for
+	 * the next run.
+	 *
+	 * @param maximalDistance
+	 */
+	@Override
+	public void setMaximalDistanceOfClusterMembers(float maximalDistance) {
+		this.extractionDistance = maximalDistance;
+		if (maximalDistance > getMaximalDistanceOfClusterMembers()) {
+			super.setMaximalDistanceOfClusterMembers(maximalDistance);
+		} else if (orderedPoints > 0) {
+			publishExtraction();
+		}
+	}
+
+	/**
+	 * Returns the distance clusters are currently extracted for.
+	 *
+	 * @return
+	 */
+	public float getExtractionDistance() {
+		return extractionDistance;
+	}
+
+	/**
+	 * Clusters are not assembled from connected core points, but extracted
+	 * from the reachability ordering determined once the neighbours are
+	 * known (see {@link #clusteringCompleted()}).
+	 */
+	@Override
+	protected void assembleClusters(int size) {
+		// clusters are extracted from ordering
+	}
+
+	@Override
+	protected void clusteringCompleted() {
+		int size = getVertexPoints().size();
+		ensureCapacity(size);
+		calculateDistances(size);
+		calculateOrdering(size);
+		orderedPoints = size;
+		publishExtraction();
+	}
+
+	/**
+	 * Ensures all arrays hold entries for the given number of points.
+	 *
+	 * @param size
+	 */
+	private void ensureCapacity(int size) {
+		if (coreDistance.length < size) {
+			coreDistance = new float[size];
+			reachability = new float[size];
+			ordering = new int[size];
+			scratchDistances = new float[size];
+			heap = new int[size];
+			heapPosition = new int[size];
+		}
+		int pairs = neighbourStart[size];
+		if (neighbourDistances.length < pairs) {
+			neighbourDistances = new float[Math.max(pairs,
+					neighbourDistances.length * 2)];
+		}
+	}
+
+	/**
+	 * Calculates the distance of each point to its neighbours and its core
+	 * distance (distance to the minimal number of cluster members, counting
+	 * the point itself).
+	 *
+	 * @param size
+	 */
+	private void calculateDistances(int size) {
+		boolean toroidal = proximityCalculator.isToroidalGraph();
+		int k = minimumNumberOfClusterMembers;
+		for (int i = 0; i < size; i++) {
+			Point3d pPoint = getPosition(i);
+			int first = neighbourStart[i];
+			int count = neighbourStart[i + 1] - first;
+			for (int n = first; n < first + count; n++) {
+				Point3d qPoint = getPosition(neighbourIndices[n]);
+				neighbourDistances[n] = (float) proximityCalculator
+						.calculateGridDistance(pPoint.x, pPoint.y, pPoint.z,
+								qPoint.x, qPoint.y, qPoint.z, toroidal,
+								distance).getLength();
+			}
+			if (k <= 0) {
+				coreDistance[i] = 0;
+			} else if (count < k) {
+				coreDistance[i] = UNDEFINED;
+			} else {
+				System.arraycopy(neighbourDistances, first, scratchDistances,
+						0, count);
+				coreDistance[i] = select(scratchDistances, count, k - 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the k-th smallest (zero-based) of the first count values
+	 * (reordering them).
+	 *
+	 * @param values
+	 * @param count
+	 * @param k
+	 * @return
+	 */
+	private static float select(float[] values, int count, int k) {
+		int left = 0;
+		int right = count - 1;
+		while (left < right) {
+			float pivot = values[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot) {
+					i++;
+				}
+				while (values[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					float swap = values[i];
+					values[i] = values[j];
+					values[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return values[k];
+			}
+		}
+		return values[k];
+	}
+
+	/**
+	 * Determines the cluster ordering and reachability distances of all
+	 * points.
+	 *
+	 * @param size
+	 */
+	private void calculateOrdering(int size) {
+		Arrays.fill(reachability, 0, size, UNDEFINED);
+		Arrays.fill(heapPosition, 0, size, -1);
+		heapSize = 0;
+		boolean[] processed = new boolean[size];
+		int position = 0;
+		for (int i = 0; i < size; i++) {
+			if (processed[i]) {
+				continue;
+			}
+			processed[i] = true;
+			ordering[position++] = i;
+			updateSeeds(i, processed);
+			while (heapSize > 0) {
+				int next = pollHeap();
+				processed[next] = true;
+				ordering[position++] = next;
+				updateSeeds(next, processed);
+			}
+		}
+	}
+
+	/**
+	 * Updates reachability distances of unprocessed neighbours of the given
+	 * point (if it is a core point).
+	 *
+	 * @param index
+	 * @param processed
+	 */
+	private void updateSeeds(int index, boolean[] processed) {
+		float core = coreDistance[index];
+		if (core == UNDEFINED) {
+			return;
+		}
+		for (int n = neighbourStart[index]; n < neighbourStart[index + 1]; n++) {
+			int other = neighbourIndices[n];
+			if (processed[other]) {
+				continue;
+			}
+			float reach = Math.max(core, neighbourDistances[n]);
+			if (heapPosition[other] == -1) {
+				reachability[other] = reach;
+				heap[heapSize] = other;
+				heapPosition[other] = heapSize;
+				siftUp(heapSize++);
+			} else if (reach < reachability[other]) {
+				reachability[other] = reach;
+				siftUp(heapPosition[other]);
+			}
+		}
+	}
+
+	/**
+	 * Indicates if the first point precedes the second one in the heap.
+	 *
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	private boolean precedes(int first, int second) {
+		return reachability[first] < reachability[second]
+				|| (reachability[first] == reachability[second] && first < second);
+	}
+
+	private void siftUp(int position) {
+		int point = heap[position];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			int parent = heap[parentPosition];
+			if (!precedes(point, parent)) {
+				break;
+			}
+			heap[position] = parent;
+			heapPosition[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = point;
+		heapPosition[point] = position;
+	}
+
+	private void siftDown(int position) {
+		int point = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && precedes(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!precedes(heap[child], point)) {
+				break;
+			}
+			heap[position] = heap[child];
+			heapPosition[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = point;
+		heapPosition[point] = position;
+	}
+
+	/**
+	 * Removes and returns the point with the lowest reachability distance.
+	 *
+	 * @return
+	 */
+	private int pollHeap() {
+		int first = heap[0];
+		heapPosition[first] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * Assigns the points of the last ordering to clusters for the given
+	 * distance and returns the number of clusters.
+	 *
+	 * @param distance
+	 *            distance up to the maximal distance of the last run
+	 * @param clusterOfPoint
+	 *            receives cluster index of each point (-1 if noise)
+	 * @return
+	 */
+	public int extractClusterIndices(float distance, int[] clusterOfPoint) {
+		int clusters = 0;
+		int current = -1;
+		for (int o = 0; o < orderedPoints; o++) {
+			int point = ordering[o];
+			if (reachability[point] > distance) {
+				if (coreDistance[point] <= distance) {
+					current = clusters++;
+					clusterOfPoint[point] = current;
+				} else {
+					current = -1;
+					clusterOfPoint[point] = -1;
+				}
+			} else {
+				clusterOfPoint[point] = current;
+			}
+		}
+		// border points preceding all core points within distance in the
+		// ordering are assigned to the cluster of such a core point
+		for (int point = 0; point < orderedPoints; point++) {
+			if (clusterOfPoint[point] != -1 || coreDistance[point] <= distance) {
+				continue;
+			}
+			for (int n = neighbourStart[point]; n < neighbourStart[point + 1]; n++) {
+				int other = neighbourIndices[n];
+				if (neighbourDistances[n] <= distance
+						&& coreDistance[other] <= distance) {
+					clusterOfPoint[point] = clusterOfPoint[other];
+					break;
+				}
+			}
+		}
+		return clusters;
+	}
+
+	/**
+	 * Returns the clusters for the given distance (up to the maximal distance
+	 * of the last run) without changing the result returned by
+	 * {@link #getLastResultList()}. Members are listed in cluster ordering.
+	 *
+	 * @param distance
+	 * @return
+	 */
+	public ArrayList<ArrayList<V>> extractClusters(float distance) {
+		return extractClusters(distance, new int[orderedPoints]);
+	}
+
+	/**
+	 * Extracts clusters for the given distance, filling clusterOfPoint.
+	 *
+	 * @param distance
+	 * @param clusterOfPoint
+	 * @return
+	 */
+	private ArrayList<ArrayList<V>> extractClusters(float distance,
+			int[] clusterOfPoint) {
+		if (distance > getMaximalDistanceOfClusterMembers()) {
+			throw new IllegalArgumentException("OPTICSClusterer: Distance "
+					+ distance + " exceeds maximal distance of ordering ("
+					+ getMaximalDistanceOfClusterMembers() + ").");
+		}
+		int numberOfClusters = extractClusterIndices(distance, clusterOfPoint);
+		ArrayList<ArrayList<V>> clusters = new ArrayList<ArrayList<V>>(
+				numberOfClusters);
+		for (int c = 0; c < numberOfClusters; c++) {
+			clusters.add(new ArrayList<V>());
+		}
+		ArrayList<V> points = getVertexPoints();
+		for (int o = 0; o < orderedPoints; o++) {
+			int point = ordering[o];
+			if (clusterOfPoint[point] != -1) {
+				clusters.get(clusterOfPoint[point]).add(points.get(point));
+			}
+		}
+		return clusters;
+	}
+
+	/**
+	 * Extracts clusters for the current extraction distance and makes them
+	 * the result of this clusterer.
+	 */
+	private void publishExtraction() {
+		int[] clusterOfPoint = new int[orderedPoints];
+		ArrayList<ArrayList<V>> clusters = extractClusters(
+				Math.min(extractionDistance,
+						getMaximalDistanceOfClusterMembers()), clusterOfPoint);
+		extractedClusterOfPoint = clusterOfPoint;
+		extractedClusters = clusters;
+	}
+
+	@Override
+	public ArrayList<ArrayList<V>> getLastResultList() {
+		return extractedClusters;
+	}
+
+	@Override
+	public ArrayList<V> getClusterNeighbours(int index) {
+		// read both references once as they are replaced after each run
+		ArrayList<ArrayList<V>> results = extractedClusters;
+		int cluster = getClusterIndex(index);
+		if (cluster == -1 || cluster >= results.size()) {
+			return null;
+		}
+		return results.get(cluster);
+	}
+
+	@Override
+	public int getClusterIndex(int index) {
+		int[] clusters = extractedClusterOfPoint;
+		if (index < 0 || index >= clusters.length) {
+			return -1;
+		}
+		return clusters[index];
+	}
+
+	/**
+	 * Returns the point indices of the last run in cluster ordering.
+	 *
+	 * @return
+	 */
+	public int[] getOrdering() {
+		return Arrays.copyOf(ordering, orderedPoints);
+	}
+
+	/**
+	 * Returns the reachability distances of the last run in cluster ordering
+	 * (i.e. the reachability plot; {@link #UNDEFINED} for points not
+	 * reachable within the maximal distance).
+	 *
+	 * @return
+	 */
+	public float[] getReachabilityPlot() {
+		float[] plot = new float[orderedPoints];
+		for (int o = 0; o < orderedPoints; o++) {
+			plot[o] = reachability[ordering[o]];
+		}
+		return plot;
+	}
+
+	/**
+	 * Returns the core distance of the point with the given index in the
+	 * last run ({@link #UNDEFINED} if it is no core point for the maximal
+	 * distance).
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getCoreDistance(int index) {
+		return coreDistance[index];
+	}
+
+}
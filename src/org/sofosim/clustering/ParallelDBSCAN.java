@@ -0,0 +1,415 @@
+package org.sofosim.clustering;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.vecmath.Point3d;
+import org.sofosim.structures.CartesianDistance3D;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * Parallel DBSCAN for large numbers of points. Space is partitioned into
+ * slabs along the x axis (at least epsilon wide). Slabs are processed on a
+ * fork-join pool: neighbourhoods of each slab's points are determined using
+ * the shared (read-only) grid, which includes the epsilon-wide halo of
+ * points in adjacent slabs without copying them. Core points are first
+ * connected within each slab (local clusters), then clusters spanning slab
+ * borders (including the toroidal wrap) are merged using a concurrent
+ * union-find. Produces the same clusters as {@link DBSCAN}.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class ParallelDBSCAN<V> extends GridDBSCAN<V> {
+
+	/** number of slabs per thread (smaller slabs balance load better) */
+	public static int slabsPerThread = 4;
+
+	private static final int PHASE_NEIGHBOURS = 0;
+	private static final int PHASE_COPY_NEIGHBOURS = 1;
+	private static final int PHASE_LOCAL_CLUSTERS = 2;
+	private static final int PHASE_BORDER_MERGE = 3;
+	private static final int PHASE_ROOTS = 4;
+
+	private final ForkJoinPool pool;
+
+	private int numberOfSlabs = 1;
+	/** slab of each point */
+	private int[] slabOfPoint = new int[0];
+	/** first entry in {@link #slabMembers} for each slab (plus end marker) */
+	private int[] slabStart = new int[2];
+	/** point indices ordered by slab (ascending within slab) */
+	private int[] slabMembers = new int[0];
+	/** number of neighbours of each point */
+	private int[] neighbourCounts = new int[0];
+	/** neighbours of all members of each slab (in member order) */
+	private int[][] slabNeighbours = new int[0][];
+	/** concurrent disjoint-set forest over core points */
+	private AtomicIntegerArray roots = new AtomicIntegerArray(0);
+	/** number of merges across slab borders in last run */
+	private final AtomicLong borderMerges = new AtomicLong();
+
+	/** per-thread scratch space */
+	private final ThreadLocal<int[]> scratch = new ThreadLocal<int[]>();
+	private final ThreadLocal<CartesianDistance3D> scratchDistance = new ThreadLocal<CartesianDistance3D>() {
+
+		@Override
+		protected CartesianDistance3D initialValue() {
+			return new CartesianDistance3D();
+		}
+	};
+
+	/** durations of phases in last run (nanoseconds) */
+	private long partitionTime = 0;
+	private long neighbourTime = 0;
+	private long localClusterTime = 0;
+	private long borderMergeTime = 0;
+	private long assemblyTime = 0;
+	private long phaseStart = 0;
+
+	/**
+	 * Creates a parallel DBSCAN instance using the given number of threads.
+	 *
+	 * @param epsilon
+	 * @param minimumNoOfMembersPerCluster
+	 * @param proxCalc
+	 * @param threads
+	 */
+	public ParallelDBSCAN(float epsilon, int minimumNoOfMembersPerCluster,
+			ProximityCalculator3D proxCalc, int threads) {
+		super(epsilon, minimumNoOfMembersPerCluster, proxCalc);
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+	}
+
+	@Override
+	protected void prepareNeighbourQueries() {
+		phaseStart = System.nanoTime();
+		super.prepareNeighbourQueries();
+		int size = getVertexPoints().size();
+		int xGridSize = proximityCalculator.getXGridSize();
+		boolean toroidal = proximityCalculator.isToroidalGraph();
+		numberOfSlabs = Math.max(1, Math.min(pool.getParallelism()
+				* slabsPerThread, (int) Math.floor(xGridSize
+				/ getMaximalDistanceOfClusterMembers())));
+		double slabWidth = xGridSize / (double) numberOfSlabs;
+		if (slabOfPoint.length < size) {
+			slabOfPoint = new int[size];
+			slabMembers = new int[size];
+			neighbourCounts = new int[size];
+		}
+		if (slabStart.length < numberOfSlabs + 1) {
+			slabStart = new int[numberOfSlabs + 1];
+		}
+		// counting sort of points into slabs
+		Arrays.fill(slabStart, 0, numberOfSlabs + 1, 0);
+		for (int i = 0; i < size; i++) {
+			double x = getPosition(i).x;
+			if (toroidal) {
+				x = ((x % xGridSize) + xGridSize) % xGridSize;
+			}
+			int slab = Math.max(0,
+					Math.min(numberOfSlabs - 1, (int) (x / slabWidth)));
+			slabOfPoint[i] = slab;
+			slabStart[slab + 1]++;
+		}
+		for (int s = 0; s < numberOfSlabs; s++) {
+			slabStart[s + 1] += slabStart[s];
+		}
+		int[] next = new int[numberOfSlabs];
+		System.arraycopy(slabStart, 0, next, 0, numberOfSlabs);
+		for (int i = 0; i < size; i++) {
+			slabMembers[next[slabOfPoint[i]]++] = i;
+		}
+		if (slabNeighbours.length < numberOfSlabs) {
+			slabNeighbours = new int[numberOfSlabs][];
+		}
+		partitionTime = System.nanoTime() - phaseStart;
+	}
+
+	@Override
+	protected void determineNeighbours(int size) {
+		phaseStart = System.nanoTime();
+		pool.invoke(new SlabTask(PHASE_NEIGHBOURS, 0, numberOfSlabs));
+		int pairs = 0;
+		for (int i = 0; i < size; i++) {
+			neighbourStart[i] = pairs;
+			pairs += neighbourCounts[i];
+		}
+		neighbourStart[size] = pairs;
+		ensureNeighbourCapacity(pairs);
+		pool.invoke(new SlabTask(PHASE_COPY_NEIGHBOURS, 0, numberOfSlabs));
+		neighbourTime = System.nanoTime() - phaseStart;
+	}
+
+	@Override
+	protected void connectCorePoints(int size) {
+		phaseStart = System.nanoTime();
+		if (roots.length() < size) {
+			roots = new AtomicIntegerArray(size);
+		}
+		borderMerges.set(0);
+		pool.invoke(new SlabTask(PHASE_LOCAL_CLUSTERS, 0, numberOfSlabs));
+		localClusterTime = System.nanoTime() - phaseStart;
+		phaseStart = System.nanoTime();
+		pool.invoke(new SlabTask(PHASE_BORDER_MERGE, 0, numberOfSlabs));
+		pool.invoke(new SlabTask(PHASE_ROOTS, 0, numberOfSlabs));
+		borderMergeTime = System.nanoTime() - phaseStart;
+		phaseStart = System.nanoTime();
+	}
+
+	@Override
+	protected void clusteringCompleted() {
+		assemblyTime = System.nanoTime() - phaseStart;
+	}
+
+	/**
+	 * Processes a range of slabs in a given phase. Ranges are split
+	 * recursively down to individual slabs.
+	 */
+	private class SlabTask extends RecursiveAction {
+
+		private final int phase;
+		private final int from;
+		private final int to;
+
+		SlabTask(int phase, int from, int to) {
+			this.phase = phase;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new SlabTask(phase, from, middle), new SlabTask(
+						phase, middle, to));
+				return;
+			}
+			for (int s = from; s < to; s++) {
+				switch (phase) {
+				case PHASE_NEIGHBOURS:
+					collectSlabNeighbours(s);
+					break;
+				case PHASE_COPY_NEIGHBOURS:
+					copySlabNeighbours(s);
+					break;
+				case PHASE_LOCAL_CLUSTERS:
+					connectWithinSlab(s);
+					break;
+				case PHASE_BORDER_MERGE:
+					connectAcrossSlabs(s);
+					break;
+				case PHASE_ROOTS:
+					assignRoots(s);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines the neighbours of all points in the given slab.
+	 *
+	 * @param slab
+	 */
+	private void collectSlabNeighbours(int slab) {
+		int size = getVertexPoints().size();
+		int[] result = scratch.get();
+		if (result == null || result.length < size) {
+			result = new int[size];
+			scratch.set(result);
+		}
+		CartesianDistance3D distance = scratchDistance.get();
+		int[] neighbours = slabNeighbours[slab];
+		if (neighbours == null) {
+			neighbours = new int[64];
+		}
+		int pairs = 0;
+		for (int m = slabStart[slab]; m < slabStart[slab + 1]; m++) {
+			int i = slabMembers[m];
+			Point3d position = getPosition(i);
+			int count = collectNeighbours(position, result, distance);
+			if (pairs + count > neighbours.length) {
+				neighbours = Arrays.copyOf(neighbours,
+						Math.max(pairs + count, neighbours.length * 2));
+			}
+			System.arraycopy(result, 0, neighbours, pairs, count);
+			pairs += count;
+			neighbourCounts[i] = count;
+		}
+		slabNeighbours[slab] = neighbours;
+	}
+
+	/**
+	 * Copies the neighbours of all points in the given slab to their
+	 * position in the neighbour arrays.
+	 *
+	 * @param slab
+	 */
+	private void copySlabNeighbours(int slab) {
+		int[] neighbours = slabNeighbours[slab];
+		int offset = 0;
+		for (int m = slabStart[slab]; m < slabStart[slab + 1]; m++) {
+			int i = slabMembers[m];
+			System.arraycopy(neighbours, offset, neighbourIndices,
+					neighbourStart[i], neighbourCounts[i]);
+			offset += neighbourCounts[i];
+		}
+	}
+
+	/**
+	 * Connects core points of the given slab that are in each other's
+	 * neighbourhood (local clusters). Only touches sets of the slab's own
+	 * points.
+	 *
+	 * @param slab
+	 */
+	private void connectWithinSlab(int slab) {
+		for (int m = slabStart[slab]; m < slabStart[slab + 1]; m++) {
+			int i = slabMembers[m];
+			roots.set(i, i);
+		}
+		for (int m = slabStart[slab]; m < slabStart[slab + 1]; m++) {
+			int i = slabMembers[m];
+			if (!isCorePoint(i)) {
+				continue;
+			}
+			for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+				int other = neighbourIndices[n];
+				if (other > i && slabOfPoint[other] == slab
+						&& isCorePoint(other)) {
+					union(i, other);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges clusters of the given slab with clusters of other slabs whose
+	 * core points are in the neighbourhood of the slab's core points.
+	 *
+	 * @param slab
+	 */
+	private void connectAcrossSlabs(int slab) {
+		for (int m = slabStart[slab]; m < slabStart[slab + 1]; m++) {
+			int i = slabMembers[m];
+			if (!isCorePoint(i)) {
+				continue;
+			}
+			for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+				int other = neighbourIndices[n];
+				if (other > i && slabOfPoint[other] != slab
+						&& isCorePoint(other) && union(i, other)) {
+					borderMerges.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes the final root of each core point of the given slab on for
+	 * cluster assembly.
+	 *
+	 * @param slab
+	 */
+	private void assignRoots(int slab) {
+		for (int m = slabStart[slab]; m < slabStart[slab + 1]; m++) {
+			int i = slabMembers[m];
+			if (isCorePoint(i)) {
+				setRoot(i, find(i));
+			}
+		}
+	}
+
+	/**
+	 * Returns the root of the set of the given point (halving paths
+	 * concurrently).
+	 *
+	 * @param index
+	 * @return
+	 */
+	private int find(int index) {
+		while (true) {
+			int parent = roots.get(index);
+			if (parent == index) {
+				return index;
+			}
+			int grandParent = roots.get(parent);
+			if (parent != grandParent) {
+				roots.compareAndSet(index, parent, grandParent);
+			}
+			index = grandParent;
+		}
+	}
+
+	/**
+	 * Merges the sets of both points, linking the root with the higher index
+	 * to the one with the lower index (so each root remains the lowest index
+	 * of its set). Safe for concurrent use.
+	 *
+	 * @param first
+	 * @param second
+	 * @return true if sets have been merged, false if already the same set
+	 */
+	private boolean union(int first, int second) {
+		while (true) {
+			int firstRoot = find(first);
+			int secondRoot = find(second);
+			if (firstRoot == secondRoot) {
+				return false;
+			}
+			int lower = Math.min(firstRoot, secondRoot);
+			int higher = Math.max(firstRoot, secondRoot);
+			if (roots.compareAndSet(higher, higher, lower)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the duration of each phase of the last run in milliseconds.
+	 *
+	 * @return
+	 */
+	public LinkedHashMap<String, Double> getPhaseTimings() {
+		LinkedHashMap<String, Double> timings = new LinkedHashMap<String, Double>();
+		timings.put("partition", partitionTime / 1000000.0);
+		timings.put("neighbours", neighbourTime / 1000000.0);
+		timings.put("local clusters", localClusterTime / 1000000.0);
+		timings.put("border merge", borderMergeTime / 1000000.0);
+		timings.put("assembly", assemblyTime / 1000000.0);
+		return timings;
+	}
+
+	/**
+	 * Returns the number of slabs used in the last run.
+	 *
+	 * @return
+	 */
+	public int getNumberOfSlabs() {
+		return numberOfSlabs;
+	}
+
+	/**
+	 * Returns the number of merges of clusters across slab borders in the
+	 * last run.
+	 *
+	 * @return
+	 */
+	public long getBorderMerges() {
+		return borderMerges.get();
+	}
+
+	/**
+	 * Stops the threads used for clustering.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+}
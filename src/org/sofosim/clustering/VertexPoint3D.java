@@ -36,7 +36,8 @@ public class VertexPoint3D<V> {
 	
 	@Override
 	public int hashCode(){
-		return toString().hashCode();
+		//consistent with equals (vertex only); same as name hash for String vertices
+		return vertex.hashCode();
 	}
 	
 	@Override
@@ -1,8 +1,8 @@
 package org.sofosim.environment.memoryTypes;
 
 import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+
+import org.sofosim.environment.memoryTypes.util.ObjectFloatMap;
 
 
 public class CountingDiscountingMemory<K, V extends Number> extends DiscountingMemory<K, V> {
@@ -68,14 +68,12 @@ public class CountingDiscountingMemory<K, V extends Number> extends DiscountingM
 	 * @param countingMemory
 	 */
 	public void mergeMemory(CountingDiscountingMemory<K, V> countingMemory){
-		for(Entry<K, V> entry: countingMemory.memory.entrySet()){
-			if(memory.containsKey(entry.getKey())){
-				memory.put(entry.getKey(), (V) addTwoValues(memory.get(entry.getKey()), entry.getValue()));
-			} else {
-				memory.put(entry.getKey(), entry.getValue());
-			}
+		countingMemory.updateMemory();
+		ObjectFloatMap<K> entries = countingMemory.memory;
+		for(int slot = entries.first(); slot != -1; slot = entries.next(slot)){
+			mergeValue(entries.keyAt(slot), entries.valueAt(slot));
 			//also add up memorization counts
-			saveCountForKey(entry.getKey(), countingMemory.memoryCount.get(entry.getKey()));
+			saveCountForKey(entries.keyAt(slot), countingMemory.memoryCount.get(entries.keyAt(slot)));
 		}
 	}
 	
@@ -87,20 +85,27 @@ public class CountingDiscountingMemory<K, V extends Number> extends DiscountingM
 	 */
 	public static CountingDiscountingMemory mergeCountingMemories(CountingDiscountingMemory countingMemoryOne, CountingDiscountingMemory<String, Float> countingMemoryTwo, boolean invertAddition){
 		CountingDiscountingMemory baseMemory = new CountingDiscountingMemory(countingMemoryOne.getDiscountFactor(), countingMemoryOne.owner);
-		baseMemory.memory = (LinkedHashMap<String, Float>) countingMemoryOne.memory.clone();
+		countingMemoryOne.updateMemory();
+		ObjectFloatMap entriesOne = countingMemoryOne.memory;
+		for(int slot = entriesOne.first(); slot != -1; slot = entriesOne.next(slot)){
+			baseMemory.mergeValue(entriesOne.keyAt(slot), entriesOne.valueAt(slot));
+		}
 		baseMemory.memoryCount = (HashMap<String, Integer>) countingMemoryOne.memoryCount.clone();
-		for(Entry<String, Float> entry: countingMemoryTwo.memory.entrySet()){
-			if(baseMemory.containsKey(entry.getKey())){
+		countingMemoryTwo.updateMemory();
+		ObjectFloatMap<String> entriesTwo = countingMemoryTwo.memory;
+		for(int slot = entriesTwo.first(); slot != -1; slot = entriesTwo.next(slot)){
+			String key = entriesTwo.keyAt(slot);
+			if(baseMemory.containsKey(key)){
 				if(invertAddition){
-					baseMemory.memory.put(entry.getKey(), subtractTwoValues((Number) baseMemory.memory.get(entry.getKey()), entry.getValue()));
+					baseMemory.mergeValue(key, -entriesTwo.valueAt(slot));
 				} else {
-					baseMemory.memory.put(entry.getKey(), addTwoValues((Number) baseMemory.memory.get(entry.getKey()), entry.getValue()));
+					baseMemory.mergeValue(key, entriesTwo.valueAt(slot));
 				}
 			} else {
-				baseMemory.memory.put(entry.getKey(), entry.getValue());
+				baseMemory.mergeValue(key, entriesTwo.valueAt(slot));
 			}
 			//also add up memorization counts
-			baseMemory.saveCountForKey(entry.getKey(), countingMemoryTwo.memoryCount.get(entry.getKey()));
+			baseMemory.saveCountForKey(key, countingMemoryTwo.memoryCount.get(key));
 		}
 		return baseMemory;
 	}
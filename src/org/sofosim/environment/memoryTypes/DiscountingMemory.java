@@ -1,26 +1,79 @@
 package org.sofosim.environment.memoryTypes;
 
-import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 
-import org.sofosim.environment.memoryTypes.util.ScaleDifferenceCalculator;
-
 /**
  * Holds memory for memorized items as float value. Discounts this value (towards zero) 
  * upon call to discountForRound() with given discount factor.
  * If value for item hits a given minimum threshold, memory value is moved to aggregate 
  * value without association with original item. It then acts like a tendency in aggregate 
  * measures (e.g. mean), but is not associated with a given entry.  
+ * <br>
+ * Discounting is applied lazily: Each entry holds its value as of the discount 
+ * round it has last been updated in, and is brought up to date (by applying the 
+ * discount factor once for each round passed) when read. Discounting a round is 
+ * hence a single increment of the round counter. Entries are scheduled for 
+ * removal in the round their value is predicted to fall below the deletion 
+ * threshold. All entries are brought up to date periodically 
+ * ({@link #RENORMALISATION_INTERVAL}).
  * 
  * @author Christopher Frantz
  *
  */
 public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V>{
 
+	/**
+	 * Number of discount rounds after which all entries are brought up to date.
+	 */
+	public static final int RENORMALISATION_INTERVAL = 64;
+	
+	/*
+	 * Per-entry data, indexed by the entry's slot in memory
+	 */
+	
+	/**
+	 * Discount round the value of each entry refers to.
+	 */
+	private long[] entryRound = new long[0];
+	
+	/**
+	 * Round each entry is scheduled to be checked for removal in (-1 if not scheduled).
+	 */
+	private long[] removalRound = new long[0];
+	
+	/**
+	 * Insertion order of each entry.
+	 */
+	private long[] sequence = new long[0];
+	
+	/**
+	 * Number of rounds discounted so far.
+	 */
+	private long discountRound = 0;
+	
+	/**
+	 * Round all entries have last been brought up to date in.
+	 */
+	private long lastRenormalisation = 0;
+	
+	/**
+	 * Counter for insertion order of entries.
+	 */
+	private long insertions = 0;
+	
+	/**
+	 * Slots of entries to be checked for removal by discount round (timing wheel).
+	 */
+	private HashMap<Long, int[]> removalSchedule = new HashMap<>();
+	
+	/**
+	 * Deletion threshold removals are currently scheduled for (NaN if not scheduled yet).
+	 */
+	private float scheduledThreshold = Float.NaN;
+
 	private Float discountFactor = 0.99f;
 	private HashMap<K, V> trendMemory = null;
 	private HashMap<K, V> lastValue = null;
@@ -59,10 +112,162 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 */
 	public DiscountingMemory(HashMap<K, V> entries, Float discountFactor, String owner){
 		this(discountFactor, owner);
-		this.memory = new LinkedHashMap<>(entries);
+		for(Entry<K, V> entry: entries.entrySet()){
+			mergeValue(entry.getKey(), entry.getValue().floatValue());
+		}
 		notifyMemoryChangeListeners();
 	}
 	
+	/**
+	 * Returns the current value of the entry in the given slot (bringing it up to 
+	 * date if discount rounds have passed since it has last been updated).
+	 * @param slot
+	 * @return
+	 */
+	private float currentValue(int slot){
+		if(entryRound[slot] != discountRound){
+			float value = memory.valueAt(slot);
+			float factor = this.discountFactor;
+			for(long round = entryRound[slot]; round < discountRound; round++){
+				value = value * factor;
+			}
+			memory.setValueAt(slot, value);
+			entryRound[slot] = discountRound;
+		}
+		return memory.valueAt(slot);
+	}
+	
+	/**
+	 * Brings all entries up to date.
+	 */
+	private void renormalise(){
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			currentValue(slot);
+		}
+		lastRenormalisation = discountRound;
+	}
+	
+	/**
+	 * Sets the value of the entry for the given key (creating it if necessary) 
+	 * and reschedules its removal.
+	 * @param key
+	 * @param value
+	 */
+	private void setValue(K key, float value){
+		int slot = memory.indexOf(key);
+		boolean existing = slot != -1;
+		if(existing && orderedIndex != null){
+			orderedIndex.remove(slot);
+		}
+		slot = memory.put(key, value);
+		if(slot >= entryRound.length){
+			int capacity = memory.getCapacity();
+			entryRound = Arrays.copyOf(entryRound, capacity);
+			removalRound = Arrays.copyOf(removalRound, capacity);
+			sequence = Arrays.copyOf(sequence, capacity);
+		}
+		entryRound[slot] = discountRound;
+		if(!existing){
+			removalRound[slot] = -1;
+			sequence[slot] = insertions++;
+			if(keyIndex != null){
+				keyIndex.add(key);
+			}
+		}
+		scheduleRemoval(slot);
+		if(orderedIndex != null){
+			orderedIndex.insert(slot);
+		}
+	}
+	
+	/**
+	 * Adds the given value to the entry for the given key (without consideration 
+	 * of the zero base), or creates the entry if not existing.
+	 * @param key
+	 * @param value
+	 */
+	protected void mergeValue(K key, float value){
+		int slot = memory.indexOf(key);
+		setValue(key, slot == -1 ? value : currentValue(slot) + value);
+	}
+	
+	/**
+	 * Schedules the check for removal of the entry in the given slot for the first 
+	 * round its value may fall below the deletion threshold.
+	 * @param slot
+	 */
+	private void scheduleRemoval(int slot){
+		long round = predictRemovalRound(currentValue(slot));
+		if(round != removalRound[slot]){
+			removalRound[slot] = round;
+			if(round != -1){
+				int[] scheduled = removalSchedule.get(round);
+				if(scheduled == null){
+					scheduled = new int[5];
+					removalSchedule.put(round, scheduled);
+				} else if(scheduled[0] == scheduled.length - 1){
+					scheduled = Arrays.copyOf(scheduled, scheduled.length * 2);
+					removalSchedule.put(round, scheduled);
+				}
+				//first element holds number of scheduled slots
+				scheduled[++scheduled[0]] = slot;
+			}
+		}
+	}
+	
+	/**
+	 * Predicts the first discount round in which the given (current) value may fall 
+	 * below the scheduled deletion threshold. Errs on the early side, so entries 
+	 * are checked no later than in the round they need to be removed in.
+	 * @param value
+	 * @return round, or -1 if value will not fall below threshold
+	 */
+	private long predictRemovalRound(float value){
+		float threshold = scheduledThreshold;
+		float factor = this.discountFactor;
+		if(!(threshold > 0) || factor == 1.0f){
+			//no deletion
+			return -1;
+		}
+		float magnitude = Math.abs(value);
+		if(factor > 1.0f){
+			//values grow - can only fall below threshold in next round
+			return Math.abs(value * factor) < threshold ? discountRound + 1 : -1;
+		}
+		if(factor <= 0f || magnitude < threshold || Float.isNaN(value)){
+			return discountRound + 1;
+		}
+		double logFactor = Math.log(factor);
+		long rounds = (long)Math.ceil(Math.log(threshold / magnitude) / logFactor);
+		//allow for rounding errors accumulated across rounds
+		long margin = 1 + (long)Math.ceil(rounds * 2.4e-7 / -logFactor);
+		return discountRound + Math.max(1, rounds - margin);
+	}
+	
+	/**
+	 * Reschedules the removal of all entries (e.g. after changing the deletion 
+	 * threshold or discount factor).
+	 */
+	private void rescheduleRemovals(){
+		removalSchedule.clear();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			removalRound[slot] = -1;
+			scheduleRemoval(slot);
+		}
+	}
+	
+	@Override
+	protected float currentValueAt(int slot){
+		return currentValue(slot);
+	}
+	
+	@Override
+	protected void updateMemory(){
+		if(lastRenormalisation != discountRound){
+			renormalise();
+		}
+	}
+	
 	/**
 	 * Memorize an agent score. Will add score to old score.
 	 * @param agent
@@ -70,20 +275,22 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 */
 	@Override
 	public void memorize(K agent, V value){
-		if(!memory.containsKey(agent)){
+		int slot = memory.indexOf(agent);
+		float offset = Math.abs(this.zeroBase);
+		if(slot == -1){
 			if(debug){
 				System.out.println(this.owner + ": Adding value " + value + " for key agent " + agent + ", zero base: " + this.zeroBase);
 			}
-			//memory.put(agent, value);
-			memory.put(agent, (V) (this.zeroBase != 0 ? (this.zeroBase < 0 ? addTwoValues(value.floatValue(), Math.abs(this.zeroBase)) : subtractTwoValues(value.floatValue(), Math.abs(this.zeroBase))) : value));
+			float newValue = value.floatValue();
+			setValue(agent, this.zeroBase != 0 ? (this.zeroBase < 0 ? newValue + offset : newValue - offset) : newValue);
 		} else {
+			float sum = value.floatValue() + currentValue(slot);
 			if(debug){
-				System.out.println(this.owner + ": Adding value " + value + " to existing value " + memory.get(agent) + " for key agent " + agent + ", zero base: " + this.zeroBase);
+				System.out.println(this.owner + ": Adding value " + value + " to existing value " + currentValue(slot) + " for key agent " + agent + ", zero base: " + this.zeroBase);
 			}
-			//memory.put(agent, memory.get(agent) + value);
-			memory.put(agent, (V) (this.zeroBase != 0 ? (this.zeroBase < 0 ? addTwoValues(addTwoValues(value.floatValue(), memory.get(agent).floatValue()), Math.abs(this.zeroBase)) : subtractTwoValues(addTwoValues(value.floatValue(), memory.get(agent).floatValue()), Math.abs(this.zeroBase))) : value.floatValue() + memory.get(agent).floatValue()));
+			setValue(agent, this.zeroBase != 0 ? (this.zeroBase < 0 ? sum + offset : sum - offset) : sum);
 		}
-		notifyMemoryChangeListeners();
+		notifyMemoryChangeListeners(agent);
 	}
 	
 	/**
@@ -92,20 +299,14 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 */
 	public Double getMeanOfAllEntries(){
 		double sum = 0.0;
-		try{
-			for(Entry<K, V> entry: memory.entrySet()){
-				sum = (Double) addTwoValues(sum, entry.getValue());
-			}
-			if(memory.size() == 0){
-				return null;
-			}
-			//include discounted aggregate values in calculation
-			return (sum + aggregateMemoryBelowDeletionThreshold) / (double)memory.size();
-		} catch (ConcurrentModificationException e){
-			//if you fail, try again :)
-			return getMeanOfAllEntries();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			sum += currentValue(slot);
 		}
-		
+		if(memory.isEmpty()){
+			return null;
+		}
+		//include discounted aggregate values in calculation
+		return (sum + aggregateMemoryBelowDeletionThreshold) / (double)memory.size();
 	}
 	
 	/**
@@ -130,7 +331,7 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 		}
 		//add as new element/overwrite old element
 		lastValue.put(agent, value);
-		notifyMemoryChangeListeners();
+		notifyMemoryChangeListeners(agent);
 	}
 	
 	public V getTrendForAgent(String agent){
@@ -151,15 +352,11 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 * @return
 	 */
 	public HashMap<K, V> getAllEntries(){
-		HashMap<K, V> adjustedMemory = new HashMap<>();
-		if(this.zeroBase != 0f){
-			for(Entry<K, V> entry: memory.entrySet()){
-				adjustedMemory.put(entry.getKey(), (V) getValueForKey(entry.getKey()));//this.zeroBase != 0 ? (this.zeroBase < 0 ? entry.getValue() + Math.abs(this.zeroBase) : entry.getValue() - Math.abs(this.zeroBase)) : entry.getValue());
-			}
-			return adjustedMemory;
-		} else {
-			return memory;
+		LinkedHashMap<K, V> adjustedMemory = new LinkedHashMap<>();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			adjustedMemory.put(memory.keyAt(slot), (V) getValueForKey(memory.keyAt(slot)));
 		}
+		return adjustedMemory;
 	}
 	
 	/**
@@ -178,6 +375,11 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 		return memory.isEmpty();
 	}
 	
+	@Override
+	public boolean hasEntries(){
+		return !memory.isEmpty();
+	}
+	
 	@Override
 	public boolean containsKey(K key) {
 		return memory.containsKey(key);
@@ -190,7 +392,12 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 */
 	@Override
 	public Float getValueForKey(K agent){
-		return (this.zeroBase != 0f ? this.zeroBase < 0 ? memory.get(agent).floatValue() - Math.abs(this.zeroBase) : memory.get(agent).floatValue() + Math.abs(this.zeroBase) : memory.get(agent).floatValue());
+		int slot = memory.indexOf(agent);
+		if(slot == -1){
+			return null;
+		}
+		float value = currentValue(slot);
+		return (this.zeroBase != 0f ? this.zeroBase < 0 ? value - Math.abs(this.zeroBase) : value + Math.abs(this.zeroBase) : value);
 	}
 	
 	/**
@@ -217,27 +424,30 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 * @return
 	 */
 	private K getKeyForValue(boolean highestOrLowest){
-		ArrayList<Entry<K, V>> list = new ArrayList<Entry<K,V>>(memory.entrySet());
+		if(orderedIndex != null){
+			int slot = highestOrLowest ? orderedIndex.last() : orderedIndex.first();
+			return slot == -1 ? null : memory.keyAt(slot);
+		}
 		K extremeKey = null;
-		Float extremeValue = null;
+		float extremeValue;
 		if(highestOrLowest){
 			//highest
 			extremeValue = -Float.MAX_VALUE;
-			for(int i = 0; i < list.size(); i++){
-				Entry<K, V> entry = list.get(i);
-				if(entry.getValue().floatValue() > extremeValue.floatValue()){
-					extremeValue = entry.getValue().floatValue();
-					extremeKey = entry.getKey();
+			for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+				float value = currentValue(slot);
+				if(value > extremeValue){
+					extremeValue = value;
+					extremeKey = memory.keyAt(slot);
 				}
 			}
 		} else {
 			//lowest
 			extremeValue = Float.MAX_VALUE;
-			for(int i = 0; i < list.size(); i++){
-				Entry<K, V> entry = list.get(i);
-				if(entry.getValue().floatValue() < extremeValue.floatValue()){
-					extremeValue = entry.getValue().floatValue();
-					extremeKey = entry.getKey();
+			for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+				float value = currentValue(slot);
+				if(value < extremeValue){
+					extremeValue = value;
+					extremeKey = memory.keyAt(slot);
 				}
 			}
 		}
@@ -266,13 +476,18 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 * @return
 	 */
 	private Float getExtremeValue(boolean highestOrLowest){
-		ArrayList<Entry<K, V>> list = new ArrayList<Entry<K, V>>(memory.entrySet());
-		Float extremeValue = null;
-		if(highestOrLowest){
+		float extremeValue;
+		if(orderedIndex != null){
+			int slot = highestOrLowest ? orderedIndex.last() : orderedIndex.first();
+			if(slot == -1){
+				return null;
+			}
+			extremeValue = currentValue(slot);
+		} else if(highestOrLowest){
 			//highest
 			extremeValue = -Float.MAX_VALUE;
-			for(int i = 0; i < list.size(); i++){
-				Float value = list.get(i).getValue().floatValue();
+			for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+				float value = currentValue(slot);
 				if(value > extremeValue){
 					extremeValue = value;
 				}
@@ -280,8 +495,8 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 		} else {
 			//lowest
 			extremeValue = Float.MAX_VALUE;
-			for(int i = 0; i < list.size(); i++){
-				Float value = list.get(i).getValue().floatValue();
+			for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+				float value = currentValue(slot);
 				if(value < extremeValue){
 					extremeValue = value;
 				}
@@ -299,7 +514,10 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	 * @param updatedMemoryDiscountFactor Updated discount factor
 	 */
 	public void setMemoryDiscountFactor(Float updatedMemoryDiscountFactor){
+		//apply previous discount factor to rounds passed so far
+		renormalise();
 		this.discountFactor = updatedMemoryDiscountFactor;
+		rescheduleRemovals();
 	}
 	
 	/**
@@ -312,105 +530,84 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	
 	/**
 	 * Discounts all memory entries for current round. Should only be 
-	 * called once during a round. Discounts zero-based or towards 
-	 * zero base if different one set using {@link #setZeroBasisForDiscounting(Float)
-	 *  setZeroBasisForDiscounting}.
+	 * called once during a round. Discounts towards zero (even if 
+	 * a different zero base has been set using {@link #setZeroBasisForDiscounting(Float)
+	 *  setZeroBasisForDiscounting}). Entries are discounted lazily, so only 
+	 * entries scheduled for removal in this round are visited.
 	 * @param thresholdForDeletion Add entry to aggregate value when going 
 	 * below this threshold to shift from association to general bias.
 	 */
 	private void discountForRound(float thresholdForDeletion){
 		
-		//ensures that system always discounts from zero, even if different zero-base is set
-		boolean alwaysDiscountFromRealZero = true;
-		
 		if(this.discountFactor != 1.0f){
-			if(alwaysDiscountFromRealZero || this.zeroBase == 0f){
-				Iterator<Entry<K, V>> it = memory.entrySet().iterator();
-				while(it.hasNext()){
-					Entry<K, V> entry = it.next();
-					entry.setValue((V)new Float(entry.getValue().floatValue() * this.discountFactor));
-					//delete values below certain threshold
-					if(thresholdForDeletion != 0.0f){
-						float discountedEntry = entry.getValue().floatValue();
+			if(Float.compare(thresholdForDeletion, scheduledThreshold) != 0){
+				//schedule removals for new threshold
+				scheduledThreshold = thresholdForDeletion;
+				rescheduleRemovals();
+			}
+			discountRound++;
+			int[] scheduled = removalSchedule.remove(discountRound);
+			if(scheduled != null){
+				int removed = 0;
+				for(int i = 1; i <= scheduled[0]; i++){
+					int slot = scheduled[i];
+					//ignore entries that have been rescheduled (or scheduled repeatedly) in the meantime
+					if(removalRound[slot] == discountRound){
+						float discountedEntry = currentValue(slot);
 						//if discounted value is in range of 0-threshold && 0+threshold --> move to aggregate value
 						if(discountedEntry > (0 - thresholdForDeletion) && discountedEntry < thresholdForDeletion){
-							//move to aggregate value
-							aggregateMemoryBelowDeletionThreshold += discountedEntry; 
-							memory.remove(entry.getKey());
-							it = memory.entrySet().iterator();
+							removalRound[slot] = -1;
+							scheduled[++removed] = slot;
+						} else {
+							scheduleRemoval(slot);
 						}
 					}
 				}
-				/*
-				 * discount aggregated value as well
-				 */
-				aggregateMemoryBelowDeletionThreshold *= this.discountFactor;
-				notifyMemoryChangeListeners();
-			} else {
-				if(debug){
-					System.out.println("=====\n" + owner + ": Zero base: " + this.zeroBase);
-				}
-				//different calculation method if zerobase is not 0
-				Iterator<Entry<K, V>> it = memory.entrySet().iterator();
-				while(it.hasNext()){
-					Entry<K, V> entry = it.next();
-					if(!entry.getValue().equals(this.zeroBase)){
-						//calculate difference from zero base
-						float diff = ScaleDifferenceCalculator.calculateDifferenceOnScale(entry.getValue().floatValue(), this.zeroBase);
-						if(debug){
-							System.out.println(owner + ": Input value: " + entry.getValue());
-							System.out.println(owner + ": Difference on scale: " + diff);
-						}
-						//THIS:
-						//calculate how much absolute reduction would be cause for that difference
-						//float absChange = Math.abs(diff - diff * this.discountFactor);
-						
-						//OR THIS:
-						//calculate discount relative to absolute zero point, but discount towards modified zero-base to avoid drift towards extreme
-						//but correct only to modified zero base (no overshooting with too high absolute change values
-						float absChange = Math.min(Math.abs(entry.getValue().floatValue()) - Math.abs(entry.getValue().floatValue() * this.discountFactor), diff);
-						if(debug){
-							System.out.println(owner + ": Absolute change: " + absChange);
-						}
-						//add to current value to discount towards zerobase
-						if(debug){
-							System.out.println(owner + ": Zero value: " + this.zeroBase);
-							System.out.println(owner + ": Value before discounting: " + entry.getValue());
-						}
-						entry.setValue((V) (entry.getValue().floatValue() < this.zeroBase ? addTwoValues(entry.getValue(), absChange) : subtractTwoValues(entry.getValue(), absChange)));
-						if(debug){
-							System.out.println(owner + ": Value after discounting: " + entry.getValue());
-						}
+				//move to aggregate value in order of memory entries
+				sortByInsertion(scheduled, 1, removed + 1);
+				for(int i = 1; i <= removed; i++){
+					aggregateMemoryBelowDeletionThreshold += memory.valueAt(scheduled[i]);
+					if(orderedIndex != null){
+						orderedIndex.remove(scheduled[i]);
 					}
-					//if value equals zero base - no discounting
-					if(thresholdForDeletion != 0.0){
-						float discountedEntry = entry.getValue().floatValue();
-						//if discounted value is in range of left and right threshold of zerobase --> move to aggregate value
-						if(discountedEntry > (this.zeroBase - thresholdForDeletion) && discountedEntry < (this.zeroBase + thresholdForDeletion)){
-							//move to aggregate value
-							aggregateMemoryBelowDeletionThreshold += discountedEntry; 
-							memory.remove(entry.getKey());
-							it = memory.entrySet().iterator();
-						}
-					}
-				}
-
-				/*
-				 *  discount aggregated value as well
-				 */
-				if(!aggregateMemoryBelowDeletionThreshold.equals(this.zeroBase)){
-					float diff = ScaleDifferenceCalculator.calculateDifferenceOnScale(aggregateMemoryBelowDeletionThreshold, this.zeroBase);
-					float change = diff - diff * this.discountFactor;
-					if(aggregateMemoryBelowDeletionThreshold < this.zeroBase){
-						//approximate upwards towards neutral base
-						aggregateMemoryBelowDeletionThreshold += change;
-					} else {
-						//approximate downwards towards neutral base
-						aggregateMemoryBelowDeletionThreshold -= change;
+					if(keyIndex != null){
+						keyIndex.remove(memory.keyAt(scheduled[i]));
 					}
+					memory.removeAt(scheduled[i]);
 				}
-				notifyMemoryChangeListeners();
 			}
+			if(discountRound - lastRenormalisation >= RENORMALISATION_INTERVAL){
+				renormalise();
+			}
+			if(orderedIndex != null && this.discountFactor < 0f){
+				//negative discount factor inverts order of entries
+				setOrderedIndexEnabled(false);
+				setOrderedIndexEnabled(true);
+			}
+			/*
+			 * discount aggregated value as well
+			 */
+			aggregateMemoryBelowDeletionThreshold *= this.discountFactor;
+			notifyMemoryChangeListeners();
+		}
+	}
+	
+	/**
+	 * Sorts the given range of slots by insertion order of their entries 
+	 * (insertion sort; only few entries are removed per round).
+	 * @param slots
+	 * @param from inclusive
+	 * @param to exclusive
+	 */
+	private void sortByInsertion(int[] slots, int from, int to){
+		for(int i = from + 1; i < to; i++){
+			int slot = slots[i];
+			int j = i - 1;
+			while(j >= from && sequence[slots[j]] > sequence[slot]){
+				slots[j + 1] = slots[j];
+				j--;
+			}
+			slots[j + 1] = slot;
 		}
 	}
 	
@@ -433,6 +630,7 @@ public class DiscountingMemory<K, V extends Number> extends ForgetfulMemory<K, V
 	@Override
 	public void forgetAtRoundEnd(float thresholdForDeletion) {
 		discountForRound(thresholdForDeletion);
+		roundCompleted();
 	}
 
 	@Override
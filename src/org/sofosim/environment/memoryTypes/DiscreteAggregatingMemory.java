@@ -2,7 +2,7 @@ package org.sofosim.environment.memoryTypes;
 
 import org.sofosim.environment.memoryTypes.util.PairValueComparison;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
@@ -37,7 +37,10 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 	
 	public DiscreteAggregatingMemory(HashMap<K, V> entries, Integer numberOfEntries, String owner){
 		this(numberOfEntries, owner);
-		this.memory = new LinkedHashMap<>(entries);
+		for(Entry<K, V> entry: entries.entrySet()){
+			registerValueType(entry.getValue());
+			memory.put(entry.getKey(), entry.getValue().floatValue());
+		}
 		notifyMemoryChangeListeners();
 	}
 
@@ -48,19 +51,41 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 	 */
 	@Override
 	public void memorize(K agent, V value) {
+		registerValueType(value);
 		//delete value first to ensure that new entry is added to end position
-		V previous = memory.remove(agent);
+		int slot = memory.indexOf(agent);
+		float previous = 0f;
+		if(slot != -1){
+			previous = memory.valueAt(slot);
+			removeSlot(slot);
+		} else if(keyIndex != null){
+			keyIndex.add(agent);
+		}
 		//now enter new entry at end
-		memory.put(agent, (V) addTwoValues(value, (previous != null ? previous : 0)));
+		slot = memory.put(agent, value.floatValue() + previous);
+		if(orderedIndex != null){
+			orderedIndex.insert(slot);
+		}
 		//notify change listeners
-		notifyMemoryChangeListeners();
+		notifyMemoryChangeListeners(agent);
+	}
+
+	/**
+	 * Removes the entry in the given memory slot (and from the ordered index).
+	 * @param slot
+	 */
+	private void removeSlot(int slot){
+		if(orderedIndex != null){
+			orderedIndex.remove(slot);
+		}
+		memory.removeAt(slot);
 	}
 
 	@Override
 	public Double getMeanOfAllEntries() {
-		Double sum = 0.0;
-		for(V value: memory.values()){
-			sum = new BigDecimal(addTwoValues(sum, value).toString()).doubleValue();
+		double sum = 0.0;
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			sum += memory.valueAt(slot);
 		}
 		return sum / (double)memory.size();
 	}
@@ -75,7 +100,11 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 	 * @return
 	 */
 	public HashMap<K, V> getAllEntries() {
-		return memory;
+		LinkedHashMap<K, V> entries = new LinkedHashMap<>();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			entries.put(memory.keyAt(slot), toValue(memory.valueAt(slot)));
+		}
+		return entries;
 	}
 
 	/**
@@ -89,7 +118,8 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 
 	@Override
 	public Float getValueForKey(K agent) {
-		return memory.get(agent).floatValue();
+		int slot = memory.indexOf(agent);
+		return slot == -1 ? null : memory.valueAt(slot);
 	}
 
 	@Override
@@ -103,6 +133,10 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 	}
 	
 	private PairValueComparison<K, Number> getExtremeKeyValueEntry(boolean highestOrLowest){
+		if(orderedIndex != null && orderedIndex.size() > 0){
+			int slot = highestOrLowest ? orderedIndex.last() : orderedIndex.first();
+			return new PairValueComparison<K, Number>(memory.keyAt(slot), toValue(memory.valueAt(slot)));
+		}
 		K key = null;
 		Float extremeValue = null;
 		if(highestOrLowest){
@@ -112,22 +146,22 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 			//lowest
 			extremeValue = Float.MAX_VALUE;
 		}
-		for(Entry<K, V> entry: memory.entrySet()){
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
 			if(highestOrLowest){
 				//highest
-				if(entry.getValue().floatValue() > extremeValue){
-					extremeValue = entry.getValue().floatValue();
-					key = entry.getKey();
+				if(memory.valueAt(slot) > extremeValue){
+					extremeValue = memory.valueAt(slot);
+					key = memory.keyAt(slot);
 				}
 			} else {
 				//lowest
-				if(entry.getValue().floatValue() < extremeValue){
-					extremeValue = entry.getValue().floatValue();
-					key = entry.getKey();
+				if(memory.valueAt(slot) < extremeValue){
+					extremeValue = memory.valueAt(slot);
+					key = memory.keyAt(slot);
 				}
 			}
 		}
-		return new PairValueComparison<K, Number>(key, (V)extremeValue);
+		return new PairValueComparison<K, Number>(key, toValue(extremeValue));
 	}
 
 	/**
@@ -153,19 +187,23 @@ public class DiscreteAggregatingMemory<K, V extends Number> extends ForgetfulMem
 	 */
 	@Override
 	public void forgetAtRoundEnd(float unusedParameterForDiscreteMemory) {
-		boolean change = false;
+		ArrayList<K> removedKeys = null;
 		while(memory.size() > numberOfEntries && memory.size() > 0){
+			if (removedKeys == null) {
+				removedKeys = new ArrayList<>();
+			}
 			//remove first entry
-			K key = memory.keySet().iterator().next();
-			memory.remove(key);
-			if (!change) {
-				change = true;
+			removedKeys.add(memory.keyAt(memory.first()));
+			if(keyIndex != null){
+				keyIndex.remove(memory.keyAt(memory.first()));
 			}
+			removeSlot(memory.first());
 		}
 		// Notifier listeners about changes
-		if (change) {
-			notifyMemoryChangeListeners();
+		if (removedKeys != null) {
+			notifyMemoryChangeListeners(removedKeys);
 		}
+		roundCompleted();
 	}
 
 	@Override
@@ -15,6 +15,10 @@ import org.sofosim.environment.stats.StatsCalculator;
  * values for that key across the array. However, the values 
  * are not stored as aggregated values, which is unlike 
  * DiscreteAggregatingMemory.
+ * Per-key aggregates (sum, count, max) are maintained incrementally 
+ * upon memorization (and eviction of overwritten entries) and are 
+ * ordered by value, so that extreme value and threshold queries do 
+ * not need to aggregate the array.
  * 
  * @author Christopher Frantz
  *
@@ -46,6 +50,57 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 */
 	private boolean hasEntries = false;
 	
+	/**
+	 * Aggregated values of all array entries for a given key.
+	 */
+	private static class KeyAggregate<K> {
+		
+		final K key;
+		/** insertion order of aggregate (tie breaker for ordering) */
+		final long sequence;
+		/** sum of values (held as double to prevent drift when subtracting evicted values) */
+		double sum = 0.0;
+		/** sum as reported (and ordered by) */
+		float value = 0f;
+		int count = 0;
+		float max = -Float.MAX_VALUE;
+		/** indicates that max may exceed actual maximum after eviction of maximum value */
+		boolean maxOutdated = false;
+		
+		KeyAggregate(K key, long sequence){
+			this.key = key;
+			this.sequence = sequence;
+		}
+		
+	}
+	
+	/**
+	 * Orders aggregates by value (and insertion for equal values).
+	 */
+	private static final Comparator<KeyAggregate<?>> valueOrder = new Comparator<KeyAggregate<?>>() {
+
+		@Override
+		public int compare(KeyAggregate<?> o1, KeyAggregate<?> o2) {
+			int result = Float.compare(o1.value, o2.value);
+			return result != 0 ? result : Long.compare(o1.sequence, o2.sequence);
+		}
+	};
+	
+	/**
+	 * Aggregates by key.
+	 */
+	private HashMap<K, KeyAggregate<K>> aggregates = new HashMap<>();
+	
+	/**
+	 * Aggregates ordered by value.
+	 */
+	private TreeSet<KeyAggregate<K>> orderedAggregates = new TreeSet<>(valueOrder);
+	
+	/**
+	 * Counter for insertion order of aggregates.
+	 */
+	private long aggregateSequence = 0;
+	
 	public DiscreteNonAggregatingMemory(Integer numberOfEntries){
 		setNumberOfMemoryEntries(numberOfEntries);
 	}
@@ -60,11 +115,8 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 		if(entries.size() > this.numberOfEntries){
 			throw new RuntimeException("Tried to initialize DiscreteAggregationMemory with greater number than permissible memory entries.");
 		}
-		this.memoryArray = new MemoryEntry[this.numberOfEntries];
-		int i = 0;
 		for(Entry<K, V> entry: entries.entrySet()){
-			this.memoryArray[i] = new MemoryEntry(entry.getKey(), entry.getValue());
-			i++;
+			memorize(entry.getKey(), entry.getValue());
 		}
 		notifyMemoryChangeListeners();
 	}
@@ -86,8 +138,15 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 * ensure you save a copy to the memory to prevent modification after storing values. 
 	 */
 	public void memorize(K key, V value, String comment) {
+		registerValueType(value);
 		//replace old entry
+		K evictedKey = null;
+		if(memoryArray[currentCounter] != null){
+			evictedKey = memoryArray[currentCounter].key;
+			removeFromAggregate(evictedKey, memoryArray[currentCounter].value.floatValue());
+		}
 		memoryArray[currentCounter] = new MemoryEntry<K,V>(key, value, comment);
+		addToAggregate(key, value.floatValue());
 		currentCounter++;
 
 		if(usedCapacity < memoryArray.length) {
@@ -98,14 +157,94 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 		if(currentCounter == memoryArray.length){
 			currentCounter = 0;
 		}
-		//notify change listeners
-		notifyMemoryChangeListeners();
+		//notify change listeners (including key whose value has been evicted)
+		if(evictedKey == null || evictedKey.equals(key)){
+			notifyMemoryChangeListeners(key);
+		} else {
+			notifyMemoryChangeListeners(Arrays.asList(key, evictedKey));
+		}
 		//adjust memory write flag
 		if (!hasEntries) {
 			hasEntries = true;
 		}
 	}
 
+	/**
+	 * Adds a memorized value to the aggregate for the given key.
+	 * @param key
+	 * @param value
+	 */
+	private void addToAggregate(K key, float value){
+		KeyAggregate<K> aggregate = aggregates.get(key);
+		if(aggregate == null){
+			aggregate = new KeyAggregate<K>(key, aggregateSequence++);
+			aggregates.put(key, aggregate);
+			if(keyIndex != null){
+				keyIndex.add(key);
+			}
+		} else {
+			orderedAggregates.remove(aggregate);
+		}
+		aggregate.sum += value;
+		aggregate.value = (float)aggregate.sum;
+		aggregate.count++;
+		if(value >= aggregate.max){
+			aggregate.max = value;
+			aggregate.maxOutdated = false;
+		}
+		orderedAggregates.add(aggregate);
+	}
+	
+	/**
+	 * Removes an evicted value from the aggregate for the given key.
+	 * @param key
+	 * @param value
+	 */
+	private void removeFromAggregate(K key, float value){
+		KeyAggregate<K> aggregate = aggregates.get(key);
+		orderedAggregates.remove(aggregate);
+		aggregate.count--;
+		if(aggregate.count == 0){
+			aggregates.remove(key);
+			if(keyIndex != null){
+				keyIndex.remove(key);
+			}
+			return;
+		}
+		aggregate.sum -= value;
+		aggregate.value = (float)aggregate.sum;
+		if(value == aggregate.max){
+			aggregate.maxOutdated = true;
+		}
+		orderedAggregates.add(aggregate);
+	}
+	
+	/**
+	 * Recalculates the maximum values of aggregates whose maximum value has been evicted.
+	 */
+	private void updateMaxValues(){
+		boolean outdated = false;
+		for(KeyAggregate<K> aggregate: aggregates.values()){
+			if(aggregate.maxOutdated){
+				aggregate.max = -Float.MAX_VALUE;
+				outdated = true;
+			}
+		}
+		if(outdated){
+			for(int i = 0; i < memoryArray.length; i++){
+				if(memoryArray[i] != null){
+					KeyAggregate<K> aggregate = aggregates.get(memoryArray[i].key);
+					if(aggregate.maxOutdated){
+						aggregate.max = Math.max(aggregate.max, memoryArray[i].value.floatValue());
+					}
+				}
+			}
+			for(KeyAggregate<K> aggregate: aggregates.values()){
+				aggregate.maxOutdated = false;
+			}
+		}
+	}
+	
 	/**
 	 * Indicates whether memory has entries.
 	 * @return
@@ -139,12 +278,7 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 */
 	@Override
 	public boolean containsKey(K key) {
-		for(int i = 0; i < memoryArray.length; i++){
-			if(memoryArray[i] != null && memoryArray[i].key.equals(key)){
-				return true;
-			}
-		}
-		return false;
+		return aggregates.containsKey(key);
 	}
 
 	/**
@@ -155,14 +289,8 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	@Override
 	public HashMap<K, V> getAllEntries() {
 		HashMap<K, V> returnedMemory = new HashMap<>();
-		for(int i = 0; i < memoryArray.length; i++){
-			if(memoryArray[i] != null){
-				if(returnedMemory.containsKey(memoryArray[i].key)){
-					returnedMemory.put(memoryArray[i].key, (V) addTwoValues(memoryArray[i].value, returnedMemory.get(memoryArray[i].key)));
-				} else {
-					returnedMemory.put(memoryArray[i].key, memoryArray[i].value);
-				}
-			}
+		for(KeyAggregate<K> aggregate: aggregates.values()){
+			returnedMemory.put(aggregate.key, toValue(aggregate.value));
 		}
 		return returnedMemory;
 	}
@@ -196,24 +324,13 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 */
 	public HashMap<K, CountSumEntry> getCompleteEntries() {
 		HashMap<K, CountSumEntry> returnedMemory = new HashMap<>();
-		for(int i = 0; i < memoryArray.length; i++){
-			if(memoryArray[i] != null){
-				if(returnedMemory.containsKey(memoryArray[i].key)){
-					// Revise existing entry
-					CountSumEntry entry = returnedMemory.get(memoryArray[i].key);
-					entry.sum += (Float) memoryArray[i].value;
-					entry.count++;
-					entry.max = Math.max(entry.max, (Float)memoryArray[i].value);
-					returnedMemory.put(memoryArray[i].key, entry);
-				} else {
-					// Initialize entry
-					CountSumEntry entry = new CountSumEntry();
-					entry.sum = (Float) memoryArray[i].value;
-					entry.count = 1;
-					entry.max = (Float) memoryArray[i].value;
-					returnedMemory.put(memoryArray[i].key, entry);
-				}
-			}
+		updateMaxValues();
+		for(KeyAggregate<K> aggregate: aggregates.values()){
+			CountSumEntry entry = new CountSumEntry();
+			entry.sum = aggregate.value;
+			entry.count = aggregate.count;
+			entry.max = aggregate.max;
+			returnedMemory.put(aggregate.key, entry);
 		}
 		return returnedMemory;
 	}
@@ -243,13 +360,8 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 */
 	@Override
 	public Float getValueForKey(K key) {
-		Float retValue = 0.0f;
-		for(int i = 0; i < memoryArray.length; i++){
-			if(memoryArray[i] != null && memoryArray[i].key.equals(key)){
-				retValue += memoryArray[i].value.floatValue();
-			}
-		}
-		return retValue;
+		KeyAggregate<K> aggregate = aggregates.get(key);
+		return aggregate == null ? 0.0f : aggregate.value;
 	}
 	
 	/**
@@ -307,46 +419,11 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 * @return
 	 */
 	private PairValueComparison<K, Number> getExtremeKeyValueEntry(boolean highestOrLowest){
-		K key = null;
-		Float extremeValue = null;
-		HashMap<K, Float> map = new HashMap<>();
-		if(highestOrLowest){
-			//highest
-			extremeValue = -Float.MAX_VALUE;
-		} else {
-			//lowest
-			extremeValue = Float.MAX_VALUE;
-		}
-		//aggregating all array entries
-		for(int i = 0; i < memoryArray.length; i++){
-			if(memoryArray[i] != null){
-				if(map.containsKey(memoryArray[i].key)){
-					map.put(memoryArray[i].key, memoryArray[i].value.floatValue() + map.get(memoryArray[i].key).floatValue());
-				} else {
-					map.put(memoryArray[i].key, memoryArray[i].value.floatValue());
-				}
-			}
-		}
-		//finally iterate over aggregated map
-		for(Entry<K, Float> entry: map.entrySet()){
-			if(highestOrLowest){
-				//highest		
-				if(entry.getValue() > extremeValue){
-					extremeValue = entry.getValue();
-					key = entry.getKey();
-				}
-			} else {
-				//lowest
-				if(entry.getValue() < extremeValue){
-					extremeValue = entry.getValue();
-					key = entry.getKey();
-				}
-			}
-		}
-		if (key == null) {
+		if(orderedAggregates.isEmpty()){
 			return null;
 		}
-		return new PairValueComparison<K, Number>(key, (V)extremeValue);
+		KeyAggregate<K> extreme = highestOrLowest ? orderedAggregates.last() : orderedAggregates.first();
+		return new PairValueComparison<K, Number>(extreme.key, toValue(extreme.value));
 	}
 	
 	/**
@@ -354,11 +431,89 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	 * @param threshold Threshold (from zero) to be considered.
 	 * @param greaterOrSmaller Indicates if values should be greater or smaller than threshold (true: greater)
 	 * @param inclusiveThreshold Indicates if the threshold value is included or excluded from selection (true: inclusive)
+	 * @return keys in order of ascending values
+	 */
+	private List<K> getAllKeysForValuesWithThreshold(float threshold, boolean greaterOrSmaller, boolean inclusiveThreshold){
+		//boundary that sorts before (or after) all aggregates with the threshold value
+		KeyAggregate<K> boundary = new KeyAggregate<K>(null, greaterOrSmaller == inclusiveThreshold ? Long.MIN_VALUE : Long.MAX_VALUE);
+		boundary.value = threshold;
+		NavigableSet<KeyAggregate<K>> selection = greaterOrSmaller ? orderedAggregates.tailSet(boundary, false) : orderedAggregates.headSet(boundary, false);
+		List<K> results = new ArrayList<K>(selection.size());
+		for(KeyAggregate<K> aggregate: selection){
+			results.add(aggregate.key);
+		}
+		return results;
+	}
+	
+	/**
+	 * Aggregates are always ordered by value in this memory type, so no 
+	 * additional index is maintained.
+	 */
+	@Override
+	public void setOrderedIndexEnabled(boolean enabled) {
+		// Nothing to do
+	}
+	
+	@Override
+	public boolean isOrderedIndexEnabled() {
+		return true;
+	}
+	
+	/**
+	 * Returns the k keys with the highest aggregated values (in descending order).
+	 * @param k
+	 * @return
+	 */
+	@Override
+	public List<Entry<K, V>> getTopK(int k) {
+		List<Entry<K, V>> results = new ArrayList<>(Math.min(k, orderedAggregates.size()));
+		Iterator<KeyAggregate<K>> it = orderedAggregates.descendingIterator();
+		while(it.hasNext() && results.size() < k){
+			KeyAggregate<K> aggregate = it.next();
+			results.add(new AbstractMap.SimpleEntry<K, V>(aggregate.key, toValue(aggregate.value)));
+		}
+		return results;
+	}
+	
+	/**
+	 * Returns the k keys with the lowest aggregated values (in ascending order).
+	 * @param k
+	 * @return
+	 */
+	@Override
+	public List<Entry<K, V>> getBottomK(int k) {
+		List<Entry<K, V>> results = new ArrayList<>(Math.min(k, orderedAggregates.size()));
+		Iterator<KeyAggregate<K>> it = orderedAggregates.iterator();
+		while(it.hasNext() && results.size() < k){
+			KeyAggregate<K> aggregate = it.next();
+			results.add(new AbstractMap.SimpleEntry<K, V>(aggregate.key, toValue(aggregate.value)));
+		}
+		return results;
+	}
+	
+	/**
+	 * Returns all keys whose aggregated values lie within the given bounds (inclusive), 
+	 * in ascending order of values.
+	 * @param lowerBound
+	 * @param upperBound
 	 * @return
 	 */
-	private List<K> getAllKeysForValuesWithThreshold(Float threshold, boolean greaterOrSmaller, boolean inclusiveThreshold){
-		throw new RuntimeException("Threshold-based key aggregation not implemented for DiscreteNonAggregatingMemory.");
+	@Override
+	public List<Entry<K, V>> getEntriesInRange(float lowerBound, float upperBound) {
+		List<Entry<K, V>> results = new ArrayList<>();
+		if(Float.compare(lowerBound, upperBound) > 0){
+			return results;
+		}
+		KeyAggregate<K> from = new KeyAggregate<K>(null, Long.MIN_VALUE);
+		from.value = lowerBound;
+		KeyAggregate<K> to = new KeyAggregate<K>(null, Long.MAX_VALUE);
+		to.value = upperBound;
+		for(KeyAggregate<K> aggregate: orderedAggregates.subSet(from, true, to, true)){
+			results.add(new AbstractMap.SimpleEntry<K, V>(aggregate.key, toValue(aggregate.value)));
+		}
+		return results;
 	}
+	
 	/**
 	 * Returns a list of keys whose values are greater than a given threshold.
 	 * @param threshold Lower value boundary (excluded) for values whose keys are to be returned
@@ -423,6 +578,12 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	public HashMap<K, V> getAllEntriesThatStartWith(
 			String startOfKeyName) {
 		HashMap<K, V> returnedMap = new HashMap<>();
+		if(keyIndex != null){
+			for(K key: keyIndex.getKeysStartingWith(startOfKeyName)){
+				returnedMap.put(key, toValue(aggregates.get(key).value));
+			}
+			return returnedMap;
+		}
 		for(int i = 0; i < memoryArray.length; i++){
 			if(memoryArray[i] != null && memoryArray[i].key.toString().startsWith(startOfKeyName)){
 				if(returnedMap.containsKey(memoryArray[i].key)){
@@ -444,6 +605,12 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	public HashMap<K, V> getAllEntriesThatContain(
 			String containedInKeyName) {
 		HashMap<K, V> returnedMap = new HashMap<>();
+		if(keyIndex != null){
+			for(K key: keyIndex.getKeysContaining(containedInKeyName)){
+				returnedMap.put(key, toValue(aggregates.get(key).value));
+			}
+			return returnedMap;
+		}
 		for(int i = 0; i < memoryArray.length; i++){
 			if(memoryArray[i] != null && memoryArray[i].key.toString().contains(containedInKeyName)){
 				if(returnedMap.containsKey(memoryArray[i].key)){
@@ -472,6 +639,14 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 		this.numberOfEntries = updatedNumberOfMemoryEntries;
 		// Initialize array used for DiscreteNonAggregatingMemory
 		this.memoryArray = new MemoryEntry[this.numberOfEntries];
+		this.currentCounter = 0;
+		this.usedCapacity = 0;
+		this.hasEntries = false;
+		this.aggregates.clear();
+		this.orderedAggregates.clear();
+		if(this.keyIndex != null){
+			this.keyIndex.clear();
+		}
 		notifyMemoryChangeListeners();
 	}
 
@@ -483,6 +658,7 @@ public class DiscreteNonAggregatingMemory<K,V extends Number> extends ForgetfulM
 	@Override
 	public void forgetAtRoundEnd(float unusedParameterForDiscreteMemory) {
 		// Nothing happens as values are overridden by reiterating over array
+		roundCompleted();
 	}
 
 	@Override
@@ -4,6 +4,9 @@ import java.util.*;
 import java.util.Map.Entry;
 
 import org.sofosim.environment.memoryTypes.listeners.MemoryChangeListener;
+import org.sofosim.environment.memoryTypes.util.KeyStringIndex;
+import org.sofosim.environment.memoryTypes.util.ObjectFloatMap;
+import org.sofosim.environment.memoryTypes.util.OrderedSlotIndex;
 import org.sofosim.environment.stats.StatsCalculator;
 
 /**
@@ -23,9 +26,104 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	protected String owner = "";
 
 	/**
-	 * Actual memory structure
+	 * Actual memory structure (values held as primitive floats, in insertion order). 
+	 * Note: Replaces the former LinkedHashMap&lt;K,V&gt;; subclasses outside of this 
+	 * package need to access entries via the ObjectFloatMap API (e.g. indexOf(), 
+	 * valueAt(), put()), or obtain a copy via {@link #getAllEntries()}.
 	 */
-	protected LinkedHashMap<K, V> memory = new LinkedHashMap<>();
+	protected ObjectFloatMap<K> memory = new ObjectFloatMap<>();
+
+	/**
+	 * Type of memorized values (see {@link #registerValueType(Number)}), 
+	 * null if values are returned as Float.
+	 */
+	private Class<?> valueType = null;
+
+	/**
+	 * Registers the type of the given value, so that values are returned as 
+	 * the type passed in by callers (see {@link #toValue(float)}), rather 
+	 * than as Float. Used by memory types that do not discount values.
+	 * @param value
+	 */
+	protected void registerValueType(V value){
+		if(valueType == null && value != null){
+			valueType = value.getClass();
+		}
+	}
+
+	/**
+	 * Converts a value held in memory to the registered value type 
+	 * (Float if none has been registered).
+	 * @param value
+	 * @return
+	 */
+	protected V toValue(float value){
+		if(valueType == null || valueType.equals(Float.class)){
+			return (V)Float.valueOf(value);
+		}
+		if(valueType.equals(Integer.class)){
+			return (V)Integer.valueOf(Math.round(value));
+		}
+		if(valueType.equals(Double.class)){
+			return (V)Double.valueOf(value);
+		}
+		if(valueType.equals(Long.class)){
+			return (V)Long.valueOf(Math.round((double)value));
+		}
+		if(valueType.equals(Short.class)){
+			return (V)Short.valueOf((short)Math.round(value));
+		}
+		//let's think about the rest when errors occur
+		throw new RuntimeException("Check type implementations in toValue() for type " + valueType.getSimpleName());
+	}
+
+	/**
+	 * Brings {@link #memory} up to date before it is read. Does nothing by default; 
+	 * memory types that maintain their entries lazily (e.g. DiscountingMemory) 
+	 * override it.
+	 */
+	protected void updateMemory(){
+	}
+
+	/**
+	 * Optional index ordering memory slots by value (null if not enabled). 
+	 * Needs to be kept in sync by memory types upon change of individual values.
+	 */
+	protected OrderedSlotIndex orderedIndex = null;
+
+	/**
+	 * Optional index of keys by String representation (null if not enabled). 
+	 * Needs to be kept in sync by memory types upon addition and removal of keys.
+	 */
+	protected KeyStringIndex<K> keyIndex = null;
+
+	/**
+	 * Returns the current value held in the given memory slot. Memory types 
+	 * that maintain their entries lazily override it.
+	 * @param slot
+	 * @return
+	 */
+	protected float currentValueAt(int slot){
+		return memory.valueAt(slot);
+	}
+
+	/**
+	 * Creates an index ordering all current memory slots by value.
+	 * @return
+	 */
+	private OrderedSlotIndex createOrderedIndex(){
+		OrderedSlotIndex index = new OrderedSlotIndex(new OrderedSlotIndex.SlotValues() {
+
+			@Override
+			public float valueAt(int slot) {
+				return currentValueAt(slot);
+			}
+		});
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			index.insert(slot);
+		}
+		return index;
+	}
 
 	/**
 	 * Constants to indicate standard deviation
@@ -62,6 +160,7 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	 */
 	@Override
 	public boolean hasEntries(){
+		updateMemory();
 		return !memory.isEmpty();
 	}
 
@@ -95,8 +194,13 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	 */
 	@Override
 	public Float getStandardDeviationOfAllEntries(){
+		updateMemory();
 		StatsCalculator<V> calc = new StatsCalculator<V>();
-		calc.enterValues(STDDEV, new ArrayList<V>(memory.values()));
+		ArrayList<V> values = new ArrayList<V>(memory.size());
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			values.add(toValue(memory.valueAt(slot)));
+		}
+		calc.enterValues(STDDEV, values);
 		return calc.getStdDeviation(STDDEV);
 	}
 	
@@ -104,13 +208,16 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	public HashMap<K, V> getAllEntriesThatStartWith(
 			final String startOfKeyName) {
 		HashMap<K,V> returnedMap = new HashMap<>();
-		final LinkedHashMap<K, V> memoryCopy = new LinkedHashMap<>();
-		for(Entry<K,V> entry0: memory.entrySet()){
-			memoryCopy.put(entry0.getKey(), entry0.getValue());
+		if(keyIndex != null){
+			for(K key: keyIndex.getKeysStartingWith(startOfKeyName)){
+				returnedMap.put(key, toValue(currentValueAt(memory.indexOf(key))));
+			}
+			return returnedMap;
 		}
-		for(Entry<K, V> entry: memoryCopy.entrySet()){
-			if(entry.getKey().toString().startsWith(startOfKeyName)){
-				returnedMap.put(entry.getKey(), entry.getValue());
+		updateMemory();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			if(memory.keyAt(slot).toString().startsWith(startOfKeyName)){
+				returnedMap.put(memory.keyAt(slot), toValue(memory.valueAt(slot)));
 			}
 		}
 		return returnedMap;
@@ -120,13 +227,16 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	public HashMap<K, V> getAllEntriesThatContain(
 			String containedInKeyName) {
 		HashMap<K, V> returnedMap = new HashMap<>();
-		final LinkedHashMap<K, V> memoryCopy = new LinkedHashMap<>();
-		for(Entry<K, V> entry0: memory.entrySet()){
-			memoryCopy.put(entry0.getKey(), entry0.getValue());
+		if(keyIndex != null){
+			for(K key: keyIndex.getKeysContaining(containedInKeyName)){
+				returnedMap.put(key, toValue(currentValueAt(memory.indexOf(key))));
+			}
+			return returnedMap;
 		}
-		for(Entry<K, V> entry: memoryCopy.entrySet()){
-			if(entry.getKey().toString().contains(containedInKeyName)){
-				returnedMap.put(entry.getKey(), entry.getValue());
+		updateMemory();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			if(memory.keyAt(slot).toString().contains(containedInKeyName)){
+				returnedMap.put(memory.keyAt(slot), toValue(memory.valueAt(slot)));
 			}
 		}
 		return returnedMap;
@@ -147,41 +257,19 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	 */
 	private List<K> getAllKeysForValuesWithThreshold(final Float threshold, final boolean greaterOrSmaller, final boolean inclusiveThreshold){
 		List<K> results = new ArrayList<K>();
-		final LinkedHashMap<K, Float> memoryCopy = new LinkedHashMap<>();
-		for(Entry<K,V> entry0: memory.entrySet()){
-			memoryCopy.put(entry0.getKey(), entry0.getValue().floatValue());
-		}
-		if(greaterOrSmaller){
-			//greater
-			if(inclusiveThreshold){
-				//including the threshold value itself
-				for(Entry<K,Float> entry: memoryCopy.entrySet()){
-					if(entry.getValue() >= threshold){
-						results.add(entry.getKey());
-					}
-				}
+		updateMemory();
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			float value = memory.valueAt(slot);
+			boolean selected;
+			if(greaterOrSmaller){
+				//greater (including the threshold value itself if inclusive)
+				selected = inclusiveThreshold ? value >= threshold : value > threshold;
 			} else {
-				for(Entry<K,Float> entry: memoryCopy.entrySet()){
-					if(entry.getValue() > threshold){
-						results.add(entry.getKey());
-					}
-				}
+				//smaller (including the threshold value itself if inclusive)
+				selected = inclusiveThreshold ? value <= threshold : value < threshold;
 			}
-		} else {
-			//smaller
-			if(inclusiveThreshold){
-				//including the threshold itself
-				for(Entry<K,Float> entry: memoryCopy.entrySet()){
-					if(entry.getValue() <= threshold){
-						results.add(entry.getKey());
-					}
-				}
-			} else {
-				for(Entry<K,Float> entry: memoryCopy.entrySet()){
-					if(entry.getValue() < threshold){
-						results.add(entry.getKey());
-					}
-				}
+			if(selected){
+				results.add(memory.keyAt(slot));
 			}
 		}
 		return results;
@@ -193,21 +281,20 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	 */
 	@Override
 	public Entry<K, V> getEntryForHighestValue() {
-		float highestVal = -Float.MAX_VALUE;
-		Entry<K, V> highest = null;
-		// Create a copy prior to iteration
-		final LinkedHashMap<K, V> memoryCopy = new LinkedHashMap<>();
-		for(Entry<K,V> entry0: memory.entrySet()){
-			memoryCopy.put(entry0.getKey(), entry0.getValue());
+		if(orderedIndex != null){
+			return orderedIndex.size() == 0 ? null : createEntry(orderedIndex.last());
 		}
+		float highestVal = -Float.MAX_VALUE;
+		int highest = -1;
+		updateMemory();
 		// Iterate through memory entries to determine highest value
-		for(Entry<K, V> entry: memoryCopy.entrySet()){
-			if(entry.getValue().floatValue() > highestVal){
-				highestVal = entry.getValue().floatValue();
-				highest = entry;
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			if(memory.valueAt(slot) > highestVal){
+				highestVal = memory.valueAt(slot);
+				highest = slot;
 			}
 		}
-		return highest;
+		return highest == -1 ? null : new AbstractMap.SimpleEntry<K, V>(memory.keyAt(highest), toValue(highestVal));
 	}
 
 	/**
@@ -216,21 +303,125 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	 */
 	@Override
 	public Entry<K, V> getEntryForLowestValue() {
-		float lowestVal = Float.MAX_VALUE;
-		Entry<K, V> lowest = null;
-		// Create a copy prior to iteration
-		final LinkedHashMap<K, V> memoryCopy = new LinkedHashMap<>();
-		for(Entry<K,V> entry0: memory.entrySet()){
-			memoryCopy.put(entry0.getKey(), entry0.getValue());
+		if(orderedIndex != null){
+			return orderedIndex.size() == 0 ? null : createEntry(orderedIndex.first());
 		}
+		float lowestVal = Float.MAX_VALUE;
+		int lowest = -1;
+		updateMemory();
 		// Iterate through memory entries to determine lowest value
-		for(Entry<K, V> entry: memoryCopy.entrySet()){
-			if(entry.getValue().floatValue() < lowestVal){
-				lowestVal = entry.getValue().floatValue();
-				lowest = entry;
+		for(int slot = memory.first(); slot != -1; slot = memory.next(slot)){
+			if(memory.valueAt(slot) < lowestVal){
+				lowestVal = memory.valueAt(slot);
+				lowest = slot;
 			}
 		}
-		return lowest;
+		return lowest == -1 ? null : new AbstractMap.SimpleEntry<K, V>(memory.keyAt(lowest), toValue(lowestVal));
+	}
+	
+	/**
+	 * Enables or disables the index that orders memory entries by value. The index 
+	 * serves {@link #getTopK(int)}, {@link #getBottomK(int)}, {@link #getEntriesInRange(float, float)} 
+	 * and the extreme value queries without iterating over all entries, 
+	 * at the cost of O(log n) for each memorization. Discounting all entries does 
+	 * not require updating the index.
+	 * @param enabled
+	 */
+	public void setOrderedIndexEnabled(boolean enabled){
+		if(enabled && orderedIndex == null){
+			orderedIndex = createOrderedIndex();
+		} else if(!enabled){
+			orderedIndex = null;
+		}
+	}
+
+	/**
+	 * Indicates whether the index ordering memory entries by value is enabled.
+	 * @return
+	 */
+	public boolean isOrderedIndexEnabled(){
+		return orderedIndex != null;
+	}
+
+	/**
+	 * Enables or disables the index of keys by String representation. The index 
+	 * serves {@link #getAllEntriesThatStartWith(String)} and {@link #getAllEntriesThatContain(String)} 
+	 * in time proportional to the number of matching keys, at the cost of 
+	 * updating the index whenever keys are added to or removed from memory. 
+	 * Keys must not change their String representation while memorized.
+	 * @param enabled
+	 */
+	public void setKeyIndexEnabled(boolean enabled){
+		if(enabled && keyIndex == null){
+			KeyStringIndex<K> index = new KeyStringIndex<>();
+			for(K key: getAllEntries().keySet()){
+				index.add(key);
+			}
+			keyIndex = index;
+		} else if(!enabled){
+			keyIndex = null;
+		}
+	}
+
+	/**
+	 * Indicates whether the index of keys by String representation is enabled.
+	 * @return
+	 */
+	public boolean isKeyIndexEnabled(){
+		return keyIndex != null;
+	}
+
+	/**
+	 * Returns the k entries with the highest values (in descending order).
+	 * @param k
+	 * @return
+	 */
+	public List<Entry<K, V>> getTopK(int k){
+		OrderedSlotIndex index = orderedIndex != null ? orderedIndex : createOrderedIndex();
+		List<Entry<K, V>> results = new ArrayList<>(Math.min(k, index.size()));
+		for(int slot = index.last(); slot != -1 && results.size() < k; slot = index.lower(slot)){
+			results.add(createEntry(slot));
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the k entries with the lowest values (in ascending order).
+	 * @param k
+	 * @return
+	 */
+	public List<Entry<K, V>> getBottomK(int k){
+		OrderedSlotIndex index = orderedIndex != null ? orderedIndex : createOrderedIndex();
+		List<Entry<K, V>> results = new ArrayList<>(Math.min(k, index.size()));
+		for(int slot = index.first(); slot != -1 && results.size() < k; slot = index.higher(slot)){
+			results.add(createEntry(slot));
+		}
+		return results;
+	}
+
+	/**
+	 * Returns all entries whose values lie within the given bounds (inclusive), 
+	 * in ascending order of values.
+	 * @param lowerBound
+	 * @param upperBound
+	 * @return
+	 */
+	public List<Entry<K, V>> getEntriesInRange(float lowerBound, float upperBound){
+		OrderedSlotIndex index = orderedIndex != null ? orderedIndex : createOrderedIndex();
+		List<Entry<K, V>> results = new ArrayList<>();
+		for(int slot = index.ceiling(lowerBound); slot != -1 && currentValueAt(slot) <= upperBound; slot = index.higher(slot)){
+			results.add(createEntry(slot));
+		}
+		return results;
+	}
+
+	/**
+	 * Creates an entry holding key and current value of the given memory slot.
+	 * @param slot
+	 * @return
+	 */
+	private Entry<K, V> createEntry(int slot){
+		return new AbstractMap.SimpleEntry<K, V>(memory.keyAt(slot), toValue(currentValueAt(slot)));
 	}
 	
 	/**
@@ -282,17 +473,25 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 			throw new RuntimeException("No implementation for discrete non-aggregating memory.");
 		}
 		HashMap<String, Float> integratedMap = new HashMap<>();
-		integratedMap.putAll(firstMemory.memory);
-		for(Entry<String, Float> entry: secondMemory.memory.entrySet()){
-			if(integratedMap.containsKey(entry.getKey())){
-				integratedMap.put(entry.getKey(), integratedMap.get(entry.getKey()) + entry.getValue());
-			} else {
-				integratedMap.put(entry.getKey(), entry.getValue());
-			}
-		}
+		addMemoryEntries(firstMemory, integratedMap);
+		addMemoryEntries(secondMemory, integratedMap);
 		return integratedMap;
 	}
 	
+	/**
+	 * Adds (sums) the entries of a given memory to the values of a given map.
+	 * @param memory
+	 * @param map
+	 */
+	private static void addMemoryEntries(final ForgetfulMemory<String, Float> memory, final HashMap<String, Float> map){
+		memory.updateMemory();
+		ObjectFloatMap<String> entries = memory.memory;
+		for(int slot = entries.first(); slot != -1; slot = entries.next(slot)){
+			Float value = map.get(entries.keyAt(slot));
+			map.put(entries.keyAt(slot), value == null ? entries.valueAt(slot) : value + entries.valueAt(slot));
+		}
+	}
+	
 	/**
 	 * Merges ForgetfulMemories into new memory of same subtypes (right now supported: DiscreteMemory, DiscountingMemory)
 	 * @param firstMemory
@@ -321,15 +520,9 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 				}
 			}
 		} else {
-			//Integration of HashMap-based implementation
-			integratedMap.putAll(firstMemory.memory);
-			for(Entry<String, Float> entry: secondMemory.memory.entrySet()){
-				if(integratedMap.containsKey(entry.getKey())){
-					integratedMap.put(entry.getKey(), integratedMap.get(entry.getKey()) + (Float)entry.getValue());
-				} else {
-					integratedMap.put(entry.getKey(), entry.getValue());
-				}
-			}
+			//Integration of map-based implementation
+			addMemoryEntries(firstMemory, integratedMap);
+			addMemoryEntries(secondMemory, integratedMap);
 		}
 		if(firstMemory.getClass().equals(DiscreteAggregatingMemory.class)){
 			return new DiscreteAggregatingMemory(integratedMap, ((DiscreteAggregatingMemory)firstMemory).getNumberOfMemoryEntries(), firstMemory.getOwner());
@@ -386,6 +579,32 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 
 	private LinkedHashSet<MemoryChangeListener> listeners = new LinkedHashSet<>();
 	
+	/**
+	 * Number of rounds (calls to {@link #forgetAtRoundEnd(float)}) after which 
+	 * coalesced changes are delivered to listeners. 0 notifies listeners upon each change.
+	 */
+	private int notificationInterval = 0;
+	
+	/**
+	 * Rounds passed since the last batched notification.
+	 */
+	private int roundsSinceNotification = 0;
+	
+	/**
+	 * Keys changed since the last batched notification.
+	 */
+	private LinkedHashSet<K> changedKeys = new LinkedHashSet<>();
+	
+	/**
+	 * Indicates that all entries have changed since the last batched notification.
+	 */
+	private boolean allEntriesChanged = false;
+	
+	/**
+	 * Indicates that changes have occurred since the last batched notification.
+	 */
+	private boolean changesPending = false;
+	
 	/**
 	 * Registers a MemoryChangeListener. A MemoryChangeListener is notified upon 
 	 * change to the memory (such as adding new entries or forgetting).
@@ -404,11 +623,101 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	}
 	
 	/**
-	 * Notifies all currently registered listeners.
+	 * Sets the number of rounds after which listeners are notified about the 
+	 * changes that have occurred in the meantime (coalesced into a single 
+	 * notification carrying the changed keys, see {@link MemoryChangeListener#memoryChanged(Set, boolean)}). 
+	 * 0 (default) notifies listeners upon each individual change.
+	 * @param rounds
 	 */
-	protected void notifyMemoryChangeListeners(){
+	public void setMemoryChangeNotificationInterval(int rounds){
+		this.notificationInterval = Math.max(0, rounds);
+		if(this.notificationInterval == 0){
+			flushMemoryChangeNotifications();
+		}
+	}
+	
+	/**
+	 * Returns the number of rounds after which coalesced changes are delivered 
+	 * to listeners (0 if listeners are notified upon each change).
+	 * @return
+	 */
+	public int getMemoryChangeNotificationInterval(){
+		return this.notificationInterval;
+	}
+	
+	/**
+	 * Delivers pending coalesced changes to listeners (if any).
+	 */
+	public void flushMemoryChangeNotifications(){
+		roundsSinceNotification = 0;
+		if(!changesPending){
+			return;
+		}
+		Set<K> keys = changedKeys;
+		boolean allChanged = allEntriesChanged;
+		changedKeys = new LinkedHashSet<>();
+		allEntriesChanged = false;
+		changesPending = false;
 		for(MemoryChangeListener listener: this.listeners){
-			listener.memoryChanged();
+			listener.memoryChanged(keys, allChanged);
+		}
+	}
+	
+	/**
+	 * Notifies all currently registered listeners about a change 
+	 * affecting all entries (or marks it for the next batched notification).
+	 */
+	protected void notifyMemoryChangeListeners(){
+		if(notificationInterval == 0){
+			for(MemoryChangeListener listener: this.listeners){
+				listener.memoryChanged();
+			}
+		} else if(!this.listeners.isEmpty()){
+			allEntriesChanged = true;
+			changesPending = true;
+		}
+	}
+	
+	/**
+	 * Notifies all currently registered listeners about a change of the entry 
+	 * for the given key (or marks it for the next batched notification).
+	 * @param changedKey
+	 */
+	protected void notifyMemoryChangeListeners(K changedKey){
+		if(notificationInterval == 0){
+			for(MemoryChangeListener listener: this.listeners){
+				listener.memoryChanged();
+			}
+		} else if(!this.listeners.isEmpty()){
+			changedKeys.add(changedKey);
+			changesPending = true;
+		}
+	}
+	
+	/**
+	 * Notifies all currently registered listeners (once) about changes of the 
+	 * entries for the given keys (or marks them for the next batched notification).
+	 * @param changedKeys
+	 */
+	protected void notifyMemoryChangeListeners(Collection<K> changedKeys){
+		if(notificationInterval == 0){
+			for(MemoryChangeListener listener: this.listeners){
+				listener.memoryChanged();
+			}
+		} else if(!this.listeners.isEmpty()){
+			this.changedKeys.addAll(changedKeys);
+			changesPending = true;
+		}
+	}
+	
+	/**
+	 * Counts a completed round and delivers coalesced changes once the 
+	 * notification interval has passed. To be called at the end of 
+	 * {@link #forgetAtRoundEnd(float)}.
+	 */
+	protected void roundCompleted(){
+		if(notificationInterval > 0 && ++roundsSinceNotification >= notificationInterval){
+			flushMemoryChangeNotifications();
 		}
 	}
 	
@@ -530,6 +839,7 @@ public abstract class ForgetfulMemory<K,V extends Number> implements Associative
 	 */
 	@Override
 	public String toString(){
+		updateMemory();
 		return owner + "'s memory: " + memory.size() + " entries, mean: " + getMeanOfAllEntries() + ", values: " + memory.toString();
 	}
 	
@@ -0,0 +1,662 @@
+package org.sofosim.environment.memoryTypes;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.sofosim.environment.stats.StatsCalculator;
+
+/**
+ * Holds the discounting memories of a whole population in a shared columnar
+ * layout (owner, key and value arrays with one row per memory entry) instead
+ * of one map per agent. Memories of individual agents are accessed via
+ * lightweight views ({@link #getMemory(String)}) that implement the
+ * AssociativeMemoryInterface. Semantics of memorization and discounting
+ * correspond to DiscountingMemory (without zero base and trend memory):
+ * Values are discounted with the store's discount factor, and values
+ * falling below the deletion threshold are moved to the owner's aggregate
+ * value.
+ * <br>
+ * {@link #forgetAtRoundEnd(float)} discounts all agents' memories in a single
+ * pass over the value array (in parallel if a ForkJoinPool is given). Views
+ * can still be discounted individually using their own forgetAtRoundEnd().
+ * The store is not thread-safe apart from its internal parallelisation.
+ *
+ * @author Christopher Frantz
+ *
+ * @param <K> Key type of memory entries
+ */
+public class MemoryStore<K> {
+
+	/**
+	 * Number of rows discounted sequentially by a single task.
+	 */
+	private static final int rowsPerTask = 8192;
+
+	/**
+	 * Marker for unused entries in lookup table and row links.
+	 */
+	private static final int NONE = -1;
+
+	private float discountFactor;
+
+	/**
+	 * Pool for parallel discounting (sequential if null).
+	 */
+	private final ForkJoinPool pool;
+
+	/*
+	 * Interned keys
+	 */
+	private final HashMap<K, Integer> keyIds = new HashMap<>();
+	private final ArrayList<K> keys = new ArrayList<>();
+
+	/*
+	 * Owners (indexed by owner id)
+	 */
+	private final HashMap<String, MemoryView> views = new HashMap<>();
+	private final ArrayList<MemoryView> ownerViews = new ArrayList<>();
+	/** sum of discounted values below deletion threshold for each owner */
+	private float[] ownerAggregate = new float[16];
+	/** first row of each owner's entries */
+	private int[] ownerHead = new int[16];
+	/** number of entries of each owner */
+	private int[] ownerEntries = new int[16];
+
+	/*
+	 * Columns (one row per memory entry)
+	 */
+	private int[] rowOwner = new int[64];
+	private int[] rowKey = new int[64];
+	private float[] rowValue = new float[64];
+	/** links between rows of the same owner */
+	private int[] rowNext = new int[64];
+	private int[] rowPrev = new int[64];
+	/** rows that have fallen below the deletion threshold in the current pass */
+	private boolean[] rowBelowThreshold = new boolean[64];
+	private int rows = 0;
+
+	/*
+	 * Lookup of row by owner and key (open addressing, linear probing)
+	 */
+	private long[] lookupKeys = new long[128];
+	private int[] lookupRows = new int[128];
+
+	/**
+	 * Creates a store discounting memories sequentially.
+	 * @param discountFactor
+	 */
+	public MemoryStore(float discountFactor){
+		this(discountFactor, null);
+	}
+
+	/**
+	 * Creates a store discounting memories using the given pool.
+	 * @param discountFactor
+	 * @param pool Pool for parallel discounting (sequential if null)
+	 */
+	public MemoryStore(float discountFactor, ForkJoinPool pool){
+		this.discountFactor = discountFactor;
+		this.pool = pool;
+		Arrays.fill(lookupRows, NONE);
+	}
+
+	/**
+	 * Returns the memory of a given owner (creating it if necessary).
+	 * @param owner
+	 * @return
+	 */
+	public MemoryView getMemory(String owner){
+		MemoryView view = views.get(owner);
+		if(view == null){
+			int ownerId = ownerViews.size();
+			if(ownerId == ownerHead.length){
+				ownerAggregate = Arrays.copyOf(ownerAggregate, ownerId * 2);
+				ownerHead = Arrays.copyOf(ownerHead, ownerId * 2);
+				ownerEntries = Arrays.copyOf(ownerEntries, ownerId * 2);
+			}
+			ownerHead[ownerId] = NONE;
+			view = new MemoryView(owner, ownerId);
+			views.put(owner, view);
+			ownerViews.add(view);
+		}
+		return view;
+	}
+
+	/**
+	 * Removes all entries of a given owner. Views obtained for
+	 * that owner before remain valid (but empty).
+	 * @param owner
+	 */
+	public void clearMemory(String owner){
+		MemoryView view = views.get(owner);
+		if(view != null){
+			while(ownerHead[view.ownerId] != NONE){
+				removeRow(ownerHead[view.ownerId]);
+			}
+			ownerAggregate[view.ownerId] = 0f;
+		}
+	}
+
+	public float getDiscountFactor(){
+		return discountFactor;
+	}
+
+	/**
+	 * Updates the discount factor for all memories.
+	 * @param discountFactor
+	 */
+	public void setDiscountFactor(float discountFactor){
+		this.discountFactor = discountFactor;
+	}
+
+	/**
+	 * Returns the number of owners memories have been requested for.
+	 * @return
+	 */
+	public int getNumberOfOwners(){
+		return ownerViews.size();
+	}
+
+	/**
+	 * Returns the number of memory entries across all owners.
+	 * @return
+	 */
+	public int getNumberOfEntries(){
+		return rows;
+	}
+
+	/**
+	 * Returns the mean of all memory entries across all owners (excluding
+	 * the owners' aggregate values), or null if no entries exist.
+	 * @return
+	 */
+	public Double getMeanOfAllEntries(){
+		if(rows == 0){
+			return null;
+		}
+		double sum = 0.0;
+		for(int row = 0; row < rows; row++){
+			sum += rowValue[row];
+		}
+		return sum / rows;
+	}
+
+	/**
+	 * Returns the mean value for each key across all owners holding
+	 * an entry for it (calculated in a single pass).
+	 * @return
+	 */
+	public HashMap<K, Float> getMeanPerKey(){
+		double[] sums = new double[keys.size()];
+		int[] counts = new int[keys.size()];
+		for(int row = 0; row < rows; row++){
+			sums[rowKey[row]] += rowValue[row];
+			counts[rowKey[row]]++;
+		}
+		HashMap<K, Float> means = new HashMap<>();
+		for(int keyId = 0; keyId < sums.length; keyId++){
+			if(counts[keyId] > 0){
+				means.put(keys.get(keyId), (float)(sums[keyId] / counts[keyId]));
+			}
+		}
+		return means;
+	}
+
+	/**
+	 * Discounts all owners' memory entries for the current round (in a single
+	 * pass) and moves entries falling below the given threshold to the
+	 * respective owner's aggregate value. Should only be called once during a round.
+	 * @param thresholdForDeletion
+	 */
+	public void forgetAtRoundEnd(float thresholdForDeletion){
+		if(discountFactor == 1.0f){
+			return;
+		}
+		DiscountTask task = new DiscountTask(discountFactor, thresholdForDeletion, 0, rows);
+		if(pool == null || rows <= rowsPerTask){
+			task.compute();
+		} else {
+			pool.invoke(task);
+		}
+		//remove in descending order, so rows moved into removed rows have been checked already
+		for(int row = rows - 1; row >= 0; row--){
+			if(rowBelowThreshold[row]){
+				rowBelowThreshold[row] = false;
+				ownerAggregate[rowOwner[row]] += rowValue[row];
+				removeRow(row);
+			}
+		}
+		for(int ownerId = 0; ownerId < ownerViews.size(); ownerId++){
+			ownerAggregate[ownerId] *= discountFactor;
+		}
+	}
+
+	/**
+	 * Discounts a range of rows and flags rows falling below the deletion threshold.
+	 * Ranges are split recursively.
+	 */
+	private class DiscountTask extends RecursiveAction {
+
+		final float factor;
+		final float threshold;
+		final int from;
+		final int to;
+
+		DiscountTask(float factor, float threshold, int from, int to){
+			this.factor = factor;
+			this.threshold = threshold;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > rowsPerTask){
+				int middle = (from + to) >>> 1;
+				invokeAll(new DiscountTask(factor, threshold, from, middle),
+						new DiscountTask(factor, threshold, middle, to));
+				return;
+			}
+			final float[] values = rowValue;
+			final boolean[] below = rowBelowThreshold;
+			for(int row = from; row < to; row++){
+				float value = values[row] * factor;
+				values[row] = value;
+				below[row] = threshold != 0.0f && value > -threshold && value < threshold;
+			}
+		}
+
+	}
+
+	/**
+	 * Discounts the entries of a single owner.
+	 * @param ownerId
+	 * @param thresholdForDeletion
+	 */
+	private void forgetAtRoundEnd(int ownerId, float thresholdForDeletion){
+		if(discountFactor == 1.0f){
+			return;
+		}
+		int row = ownerHead[ownerId];
+		while(row != NONE){
+			int next = rowNext[row];
+			float value = rowValue[row] * discountFactor;
+			rowValue[row] = value;
+			if(thresholdForDeletion != 0.0f && value > -thresholdForDeletion && value < thresholdForDeletion){
+				ownerAggregate[ownerId] += value;
+				if(next == rows - 1){
+					//last row will be moved into removed row
+					next = row;
+				}
+				removeRow(row);
+			}
+			row = next;
+		}
+		ownerAggregate[ownerId] *= discountFactor;
+	}
+
+	private int internKey(K key){
+		Integer keyId = keyIds.get(key);
+		if(keyId == null){
+			keyId = keys.size();
+			keys.add(key);
+			keyIds.put(key, keyId);
+		}
+		return keyId;
+	}
+
+	/**
+	 * Adds the given value to the entry of the given owner and key (creating it if necessary).
+	 * @param ownerId
+	 * @param key
+	 * @param value
+	 */
+	private void memorize(int ownerId, K key, float value){
+		int keyId = internKey(key);
+		int row = findRow(ownerId, keyId);
+		if(row != NONE){
+			rowValue[row] += value;
+			return;
+		}
+		if(rows == rowValue.length){
+			int capacity = rows * 2;
+			rowOwner = Arrays.copyOf(rowOwner, capacity);
+			rowKey = Arrays.copyOf(rowKey, capacity);
+			rowValue = Arrays.copyOf(rowValue, capacity);
+			rowNext = Arrays.copyOf(rowNext, capacity);
+			rowPrev = Arrays.copyOf(rowPrev, capacity);
+			rowBelowThreshold = Arrays.copyOf(rowBelowThreshold, capacity);
+		}
+		row = rows++;
+		rowOwner[row] = ownerId;
+		rowKey[row] = keyId;
+		rowValue[row] = value;
+		//link as first row of owner
+		rowPrev[row] = NONE;
+		rowNext[row] = ownerHead[ownerId];
+		if(ownerHead[ownerId] != NONE){
+			rowPrev[ownerHead[ownerId]] = row;
+		}
+		ownerHead[ownerId] = row;
+		ownerEntries[ownerId]++;
+		if(rows * 2 > lookupKeys.length){
+			growLookup();
+		}
+		int pos = lookupPosition(lookupKey(ownerId, keyId));
+		lookupKeys[pos] = lookupKey(ownerId, keyId);
+		lookupRows[pos] = row;
+	}
+
+	/**
+	 * Removes the given row by moving the last row into its place.
+	 * @param row
+	 */
+	private void removeRow(int row){
+		int ownerId = rowOwner[row];
+		//unlink from owner's rows
+		if(rowPrev[row] == NONE){
+			ownerHead[ownerId] = rowNext[row];
+		} else {
+			rowNext[rowPrev[row]] = rowNext[row];
+		}
+		if(rowNext[row] != NONE){
+			rowPrev[rowNext[row]] = rowPrev[row];
+		}
+		ownerEntries[ownerId]--;
+		removeLookup(lookupKey(ownerId, rowKey[row]));
+		int last = --rows;
+		if(row != last){
+			rowOwner[row] = rowOwner[last];
+			rowKey[row] = rowKey[last];
+			rowValue[row] = rowValue[last];
+			rowNext[row] = rowNext[last];
+			rowPrev[row] = rowPrev[last];
+			rowBelowThreshold[row] = rowBelowThreshold[last];
+			if(rowPrev[row] == NONE){
+				ownerHead[rowOwner[row]] = row;
+			} else {
+				rowNext[rowPrev[row]] = row;
+			}
+			if(rowNext[row] != NONE){
+				rowPrev[rowNext[row]] = row;
+			}
+			lookupRows[lookupPosition(lookupKey(rowOwner[row], rowKey[row]))] = row;
+		}
+		rowBelowThreshold[last] = false;
+	}
+
+	private static long lookupKey(int ownerId, int keyId){
+		return ((long)ownerId << 32) | (keyId & 0xFFFFFFFFL);
+	}
+
+	private int home(long lookupKey){
+		long h = lookupKey * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & (lookupKeys.length - 1);
+	}
+
+	/**
+	 * Returns the position of the given key in the lookup table, or
+	 * the free position it would be inserted at.
+	 * @param lookupKey
+	 * @return
+	 */
+	private int lookupPosition(long lookupKey){
+		int mask = lookupKeys.length - 1;
+		int pos = home(lookupKey);
+		while(lookupRows[pos] != NONE && lookupKeys[pos] != lookupKey){
+			pos = (pos + 1) & mask;
+		}
+		return pos;
+	}
+
+	private int findRow(int ownerId, int keyId){
+		return lookupRows[lookupPosition(lookupKey(ownerId, keyId))];
+	}
+
+	private void removeLookup(long lookupKey){
+		int mask = lookupKeys.length - 1;
+		int pos = lookupPosition(lookupKey);
+		//backward shift deletion to keep probe sequences intact
+		int next = (pos + 1) & mask;
+		while(lookupRows[next] != NONE){
+			int home = home(lookupKeys[next]);
+			if(((next - home) & mask) >= ((next - pos) & mask)){
+				lookupKeys[pos] = lookupKeys[next];
+				lookupRows[pos] = lookupRows[next];
+				pos = next;
+			}
+			next = (next + 1) & mask;
+		}
+		lookupRows[pos] = NONE;
+	}
+
+	private void growLookup(){
+		lookupKeys = new long[lookupKeys.length * 2];
+		lookupRows = new int[lookupKeys.length];
+		Arrays.fill(lookupRows, NONE);
+		for(int row = 0; row < rows; row++){
+			long lookupKey = lookupKey(rowOwner[row], rowKey[row]);
+			int pos = lookupPosition(lookupKey);
+			lookupKeys[pos] = lookupKey;
+			lookupRows[pos] = row;
+		}
+	}
+
+	/**
+	 * Memory of an individual owner held in the store.
+	 */
+	public class MemoryView implements AssociativeMemoryInterface<K, Float> {
+
+		private final String owner;
+		private final int ownerId;
+
+		private MemoryView(String owner, int ownerId){
+			this.owner = owner;
+			this.ownerId = ownerId;
+		}
+
+		/**
+		 * Returns this memory's owner.
+		 * @return
+		 */
+		public String getOwner(){
+			return owner;
+		}
+
+		@Override
+		public void memorize(K key, Float value) {
+			MemoryStore.this.memorize(ownerId, key, value);
+		}
+
+		/**
+		 * Returns the mean of all memory entries (including the aggregate of
+		 * entries that have fallen below the deletion threshold).
+		 */
+		@Override
+		public Double getMeanOfAllEntries() {
+			if(ownerEntries[ownerId] == 0){
+				return null;
+			}
+			double sum = 0.0;
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				sum += rowValue[row];
+			}
+			return (sum + ownerAggregate[ownerId]) / (double)ownerEntries[ownerId];
+		}
+
+		/**
+		 * Returns all memory entries.
+		 * @return
+		 */
+		public HashMap<K, Float> getAllEntries() {
+			HashMap<K, Float> entries = new HashMap<>();
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				entries.put(keys.get(rowKey[row]), rowValue[row]);
+			}
+			return entries;
+		}
+
+		@Override
+		public HashMap<K, Float> getAllEntriesThatStartWith(String startOfKeyName) {
+			HashMap<K, Float> entries = new HashMap<>();
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				K key = keys.get(rowKey[row]);
+				if(key.toString().startsWith(startOfKeyName)){
+					entries.put(key, rowValue[row]);
+				}
+			}
+			return entries;
+		}
+
+		@Override
+		public HashMap<K, Float> getAllEntriesThatContain(String containedInKeyName) {
+			HashMap<K, Float> entries = new HashMap<>();
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				K key = keys.get(rowKey[row]);
+				if(key.toString().contains(containedInKeyName)){
+					entries.put(key, rowValue[row]);
+				}
+			}
+			return entries;
+		}
+
+		@Override
+		public Integer getNumberOfEntries() {
+			return ownerEntries[ownerId];
+		}
+
+		/**
+		 * Returns the row with the highest or lowest value.
+		 * @param highestOrLowest true indicates highest value, false lowest value
+		 * @return row, or -1 if no entries
+		 */
+		private int getExtremeRow(boolean highestOrLowest){
+			int extremeRow = NONE;
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				if(extremeRow == NONE
+						|| (highestOrLowest ? rowValue[row] > rowValue[extremeRow] : rowValue[row] < rowValue[extremeRow])){
+					extremeRow = row;
+				}
+			}
+			return extremeRow;
+		}
+
+		@Override
+		public Entry<K, Float> getEntryForHighestValue() {
+			int row = getExtremeRow(true);
+			return row == NONE ? null : new AbstractMap.SimpleEntry<K, Float>(keys.get(rowKey[row]), rowValue[row]);
+		}
+
+		@Override
+		public Entry<K, Float> getEntryForLowestValue() {
+			int row = getExtremeRow(false);
+			return row == NONE ? null : new AbstractMap.SimpleEntry<K, Float>(keys.get(rowKey[row]), rowValue[row]);
+		}
+
+		@Override
+		public Float getValueForKey(K key) {
+			Integer keyId = keyIds.get(key);
+			if(keyId == null){
+				return null;
+			}
+			int row = findRow(ownerId, keyId);
+			return row == NONE ? null : rowValue[row];
+		}
+
+		@Override
+		public K getKeyForHighestValue() {
+			int row = getExtremeRow(true);
+			return row == NONE ? null : keys.get(rowKey[row]);
+		}
+
+		@Override
+		public K getKeyForLowestValue() {
+			int row = getExtremeRow(false);
+			return row == NONE ? null : keys.get(rowKey[row]);
+		}
+
+		@Override
+		public boolean containsKey(K key) {
+			Integer keyId = keyIds.get(key);
+			return keyId != null && findRow(ownerId, keyId) != NONE;
+		}
+
+		@Override
+		public boolean hasEntries() {
+			return ownerEntries[ownerId] > 0;
+		}
+
+		@Override
+		public Float getStandardDeviationOfAllEntries() {
+			ArrayList<Float> values = new ArrayList<>(ownerEntries[ownerId]);
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				values.add(rowValue[row]);
+			}
+			StatsCalculator<Float> calc = new StatsCalculator<Float>();
+			calc.enterValues(ForgetfulMemory.STDDEV, values);
+			return calc.getStdDeviation(ForgetfulMemory.STDDEV);
+		}
+
+		/**
+		 * Returns a list of keys whose values fall into a given threshold selection.
+		 * @param threshold
+		 * @param greaterOrSmaller Indicates if values should be greater or smaller than threshold (true: greater)
+		 * @param inclusiveThreshold Indicates if the threshold value is included or excluded from selection (true: inclusive)
+		 * @return
+		 */
+		private List<K> getAllKeysForValuesWithThreshold(float threshold, boolean greaterOrSmaller, boolean inclusiveThreshold){
+			List<K> results = new ArrayList<>();
+			for(int row = ownerHead[ownerId]; row != NONE; row = rowNext[row]){
+				float value = rowValue[row];
+				if(greaterOrSmaller ? (inclusiveThreshold ? value >= threshold : value > threshold)
+						: (inclusiveThreshold ? value <= threshold : value < threshold)){
+					results.add(keys.get(rowKey[row]));
+				}
+			}
+			return results;
+		}
+
+		@Override
+		public List<K> getAllKeysForValuesGreaterThan(float threshold) {
+			return getAllKeysForValuesWithThreshold(threshold, true, false);
+		}
+
+		@Override
+		public List<K> getAllKeysForValuesSmallerThan(float threshold) {
+			return getAllKeysForValuesWithThreshold(threshold, false, false);
+		}
+
+		@Override
+		public List<K> getAllKeysForValuesGreaterThanOrEqualTo(float threshold) {
+			return getAllKeysForValuesWithThreshold(threshold, true, true);
+		}
+
+		@Override
+		public List<K> getAllKeysForValuesSmallerThanOrEqualTo(float threshold) {
+			return getAllKeysForValuesWithThreshold(threshold, false, true);
+		}
+
+		/**
+		 * Discounts this owner's entries only. Use {@link MemoryStore#forgetAtRoundEnd(float)}
+		 * to discount all owners' memories in one pass.
+		 */
+		@Override
+		public void forgetAtRoundEnd(float thresholdForDeletion) {
+			MemoryStore.this.forgetAtRoundEnd(ownerId, thresholdForDeletion);
+		}
+
+		@Override
+		public String toString() {
+			return "MemoryStore view: " + owner + "'s memory: " + ownerEntries[ownerId] + " entries, mean: " + getMeanOfAllEntries()
+					+ ", values: " + getAllEntries() + ", aggregate value: " + ownerAggregate[ownerId];
+		}
+
+	}
+
+}
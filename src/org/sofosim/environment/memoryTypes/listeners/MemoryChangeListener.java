@@ -1,10 +1,23 @@
 package org.sofosim.environment.memoryTypes.listeners;
 
+import java.util.Set;
+
 public interface MemoryChangeListener {
 
 	/**
 	 * Indicates changes in memory.
 	 */
 	public void memoryChanged();
-	
+
+	/**
+	 * Indicates coalesced changes in memory if the memory batches
+	 * notifications (see ForgetfulMemory#setMemoryChangeNotificationInterval(int)).
+	 * Delegates to {@link #memoryChanged()} unless overridden.
+	 * @param changedKeys Keys of entries that have been memorized or removed since the last notification
+	 * @param allEntriesChanged Indicates that all entries have changed (e.g. due to discounting)
+	 */
+	public default void memoryChanged(Set<?> changedKeys, boolean allEntriesChanged) {
+		memoryChanged();
+	}
+
 }
@@ -0,0 +1,202 @@
+package org.sofosim.environment.memoryTypes.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Indexes keys by their String representation (toString()) to look up keys
+ * starting with a given prefix (using a sorted map) or containing a given
+ * substring (using postings of all n-grams of up to {@link #MAX_GRAM_LENGTH}
+ * characters), so that lookups cost time proportional to the number of
+ * matching keys rather than the number of indexed keys. Keys need to
+ * retain their String representation while indexed.
+ *
+ * @author Christopher Frantz
+ *
+ * @param <K> Key type
+ */
+public class KeyStringIndex<K> {
+
+	/**
+	 * Maximal length of n-grams held in postings.
+	 */
+	public static final int MAX_GRAM_LENGTH = 3;
+
+	/**
+	 * Keys sorted by String representation (holding a KeyList if several
+	 * keys share the same String representation).
+	 */
+	private final TreeMap<String, Object> sortedKeys = new TreeMap<>();
+
+	/**
+	 * Keys by contained n-gram.
+	 */
+	private final HashMap<String, HashSet<K>> postings = new HashMap<>();
+
+	private int size = 0;
+
+	/**
+	 * Keys sharing the same String representation.
+	 */
+	private static class KeyList extends ArrayList<Object> {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	/**
+	 * Adds the given key (if not already indexed).
+	 * @param key
+	 */
+	public void add(K key){
+		String name = key.toString();
+		Object existing = sortedKeys.get(name);
+		if(existing == null){
+			sortedKeys.put(name, key);
+		} else if(existing instanceof KeyList){
+			if(((KeyList)existing).contains(key)){
+				return;
+			}
+			((KeyList)existing).add(key);
+		} else {
+			if(existing.equals(key)){
+				return;
+			}
+			KeyList keys = new KeyList();
+			keys.add(existing);
+			keys.add(key);
+			sortedKeys.put(name, keys);
+		}
+		size++;
+		for(int length = 1; length <= MAX_GRAM_LENGTH; length++){
+			for(int i = 0; i + length <= name.length(); i++){
+				String gram = name.substring(i, i + length);
+				HashSet<K> keys = postings.get(gram);
+				if(keys == null){
+					keys = new HashSet<>();
+					postings.put(gram, keys);
+				}
+				keys.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given key (if indexed).
+	 * @param key
+	 */
+	public void remove(K key){
+		String name = key.toString();
+		Object existing = sortedKeys.get(name);
+		if(existing == null){
+			return;
+		}
+		if(existing instanceof KeyList){
+			KeyList keys = (KeyList)existing;
+			if(!keys.remove(key)){
+				return;
+			}
+			if(keys.size() == 1){
+				sortedKeys.put(name, keys.get(0));
+			}
+		} else {
+			if(!existing.equals(key)){
+				return;
+			}
+			sortedKeys.remove(name);
+		}
+		size--;
+		for(int length = 1; length <= MAX_GRAM_LENGTH; length++){
+			for(int i = 0; i + length <= name.length(); i++){
+				String gram = name.substring(i, i + length);
+				HashSet<K> keys = postings.get(gram);
+				if(keys != null){
+					keys.remove(key);
+					if(keys.isEmpty()){
+						postings.remove(gram);
+					}
+				}
+			}
+		}
+	}
+
+	public void clear(){
+		sortedKeys.clear();
+		postings.clear();
+		size = 0;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Returns all keys whose String representation starts with the given prefix.
+	 * @param prefix
+	 * @return
+	 */
+	public List<K> getKeysStartingWith(String prefix){
+		List<K> results = new ArrayList<>();
+		for(Entry<String, Object> entry: sortedKeys.tailMap(prefix, true).entrySet()){
+			if(!entry.getKey().startsWith(prefix)){
+				break;
+			}
+			addKeys(entry.getValue(), results);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns all keys whose String representation contains the given String.
+	 * @param containedString
+	 * @return
+	 */
+	public List<K> getKeysContaining(String containedString){
+		List<K> results = new ArrayList<>();
+		if(containedString.isEmpty()){
+			for(Object keys: sortedKeys.values()){
+				addKeys(keys, results);
+			}
+			return results;
+		}
+		if(containedString.length() <= MAX_GRAM_LENGTH){
+			HashSet<K> keys = postings.get(containedString);
+			if(keys != null){
+				results.addAll(keys);
+			}
+			return results;
+		}
+		//verify candidates of least frequent n-gram of given String
+		HashSet<K> candidates = null;
+		for(int i = 0; i + MAX_GRAM_LENGTH <= containedString.length(); i++){
+			HashSet<K> keys = postings.get(containedString.substring(i, i + MAX_GRAM_LENGTH));
+			if(keys == null){
+				return results;
+			}
+			if(candidates == null || keys.size() < candidates.size()){
+				candidates = keys;
+			}
+		}
+		for(K key: candidates){
+			if(key.toString().contains(containedString)){
+				results.add(key);
+			}
+		}
+		return results;
+	}
+
+	private void addKeys(Object keys, List<K> results){
+		if(keys instanceof KeyList){
+			for(Object key: (KeyList)keys){
+				results.add((K)key);
+			}
+		} else {
+			results.add((K)keys);
+		}
+	}
+
+}
@@ -0,0 +1,326 @@
+package org.sofosim.environment.memoryTypes.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from object keys to primitive float values, based on open addressing
+ * (linear probing) to avoid entry objects and boxed values. Iteration follows
+ * insertion order (as for LinkedHashMap, re-inserting an existing key does not
+ * change its position).
+ * <br>
+ * Entries are held in slots that remain stable as long as an entry exists
+ * (so callers can maintain additional per-entry data in parallel arrays of
+ * size {@link #getCapacity()}). Slots are iterated using {@link #first()} and
+ * {@link #next(int)}. Null keys are not supported.
+ *
+ * @author Christopher Frantz
+ *
+ * @param <K> Key type
+ */
+public class ObjectFloatMap<K> {
+
+	private static final int DEFAULT_CAPACITY = 8;
+
+	/**
+	 * Empty marker in hash table.
+	 */
+	private static final int FREE = -1;
+
+	/**
+	 * Hash table holding slot indices (or {@link #FREE}).
+	 */
+	private int[] table;
+
+	private Object[] keys;
+	private float[] values;
+	private int[] hashes;
+
+	/**
+	 * Insertion order (doubly-linked across slots); unused
+	 * slots are chained via {@link #after}.
+	 */
+	private int[] before;
+	private int[] after;
+
+	private int head = -1;
+	private int tail = -1;
+	private int freeSlot = -1;
+	private int usedSlots = 0;
+	private int size = 0;
+
+	public ObjectFloatMap(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a map with capacity for the given number of entries.
+	 * @param expectedSize
+	 */
+	public ObjectFloatMap(int expectedSize){
+		int capacity = DEFAULT_CAPACITY;
+		while(capacity < expectedSize){
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity){
+		table = new int[capacity * 2];
+		Arrays.fill(table, FREE);
+		keys = new Object[capacity];
+		values = new float[capacity];
+		hashes = new int[capacity];
+		before = new int[capacity];
+		after = new int[capacity];
+	}
+
+	private static int hash(Object key){
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the slot of the given key, or -1 if not contained.
+	 * @param key
+	 * @return
+	 */
+	public int indexOf(Object key){
+		int h = hash(key);
+		int mask = table.length - 1;
+		for(int pos = h & mask; ; pos = (pos + 1) & mask){
+			int slot = table[pos];
+			if(slot == FREE){
+				return -1;
+			}
+			if(hashes[slot] == h && key.equals(keys[slot])){
+				return slot;
+			}
+		}
+	}
+
+	public boolean containsKey(Object key){
+		return indexOf(key) != -1;
+	}
+
+	/**
+	 * Returns the value for the given key, or the default value if not contained.
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public float get(Object key, float defaultValue){
+		int slot = indexOf(key);
+		return slot == -1 ? defaultValue : values[slot];
+	}
+
+	/**
+	 * Sets the value for the given key. New keys are appended to the iteration order.
+	 * @param key
+	 * @param value
+	 * @return slot of entry
+	 */
+	public int put(K key, float value){
+		int slot = indexOf(key);
+		if(slot == -1){
+			slot = insert(key);
+		}
+		values[slot] = value;
+		return slot;
+	}
+
+	/**
+	 * Adds the given increment to the value of the given key (starting
+	 * from 0 for new keys).
+	 * @param key
+	 * @param increment
+	 * @return updated value
+	 */
+	public float addTo(K key, float increment){
+		int slot = indexOf(key);
+		if(slot == -1){
+			slot = insert(key);
+			values[slot] = increment;
+		} else {
+			values[slot] += increment;
+		}
+		return values[slot];
+	}
+
+	private int insert(K key){
+		if(key == null){
+			throw new NullPointerException("ObjectFloatMap does not support null keys.");
+		}
+		int slot;
+		if(freeSlot != -1){
+			slot = freeSlot;
+			freeSlot = after[slot];
+		} else {
+			if(usedSlots == keys.length){
+				grow();
+			}
+			slot = usedSlots++;
+		}
+		int h = hash(key);
+		keys[slot] = key;
+		hashes[slot] = h;
+		//append to iteration order
+		before[slot] = tail;
+		after[slot] = -1;
+		if(tail == -1){
+			head = slot;
+		} else {
+			after[tail] = slot;
+		}
+		tail = slot;
+		int mask = table.length - 1;
+		int pos = h & mask;
+		while(table[pos] != FREE){
+			pos = (pos + 1) & mask;
+		}
+		table[pos] = slot;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity (slots keep their indices).
+	 */
+	private void grow(){
+		int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		values = Arrays.copyOf(values, capacity);
+		hashes = Arrays.copyOf(hashes, capacity);
+		before = Arrays.copyOf(before, capacity);
+		after = Arrays.copyOf(after, capacity);
+		table = new int[capacity * 2];
+		Arrays.fill(table, FREE);
+		int mask = table.length - 1;
+		for(int slot = head; slot != -1; slot = after[slot]){
+			int pos = hashes[slot] & mask;
+			while(table[pos] != FREE){
+				pos = (pos + 1) & mask;
+			}
+			table[pos] = slot;
+		}
+	}
+
+	/**
+	 * Removes the entry for the given key.
+	 * @param key
+	 * @return true if entry existed
+	 */
+	public boolean remove(Object key){
+		int slot = indexOf(key);
+		if(slot == -1){
+			return false;
+		}
+		removeAt(slot);
+		return true;
+	}
+
+	/**
+	 * Removes the entry in the given slot. The slot may be reused by subsequent insertions.
+	 * @param slot
+	 */
+	public void removeAt(int slot){
+		int mask = table.length - 1;
+		int pos = hashes[slot] & mask;
+		while(table[pos] != slot){
+			pos = (pos + 1) & mask;
+		}
+		//backward shift deletion to keep probe sequences intact
+		int next = (pos + 1) & mask;
+		while(table[next] != FREE){
+			int home = hashes[table[next]] & mask;
+			if(((next - home) & mask) >= ((next - pos) & mask)){
+				table[pos] = table[next];
+				pos = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[pos] = FREE;
+		//unlink from iteration order
+		if(before[slot] == -1){
+			head = after[slot];
+		} else {
+			after[before[slot]] = after[slot];
+		}
+		if(after[slot] == -1){
+			tail = before[slot];
+		} else {
+			before[after[slot]] = before[slot];
+		}
+		keys[slot] = null;
+		after[slot] = freeSlot;
+		freeSlot = slot;
+		size--;
+	}
+
+	public void clear(){
+		Arrays.fill(table, FREE);
+		Arrays.fill(keys, null);
+		head = -1;
+		tail = -1;
+		freeSlot = -1;
+		usedSlots = 0;
+		size = 0;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of slots currently allocated (upper bound for slot indices).
+	 * @return
+	 */
+	public int getCapacity(){
+		return keys.length;
+	}
+
+	/**
+	 * Returns the slot of the oldest entry, or -1 if empty.
+	 * @return
+	 */
+	public int first(){
+		return head;
+	}
+
+	/**
+	 * Returns the slot following the given slot in insertion order, or -1 if last.
+	 * @param slot
+	 * @return
+	 */
+	public int next(int slot){
+		return after[slot];
+	}
+
+	public K keyAt(int slot){
+		return (K)keys[slot];
+	}
+
+	public float valueAt(int slot){
+		return values[slot];
+	}
+
+	public void setValueAt(int slot, float value){
+		values[slot] = value;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		for(int slot = head; slot != -1; slot = after[slot]){
+			if(slot != head){
+				builder.append(", ");
+			}
+			builder.append(keys[slot]).append('=').append(values[slot]);
+		}
+		return builder.append('}').toString();
+	}
+
+}
@@ -0,0 +1,286 @@
+package org.sofosim.environment.memoryTypes.util;
+
+import java.util.Arrays;
+
+/**
+ * Orders the slots of an {@link ObjectFloatMap} by their values (ascending),
+ * based on a treap held in primitive arrays indexed by slot. Slots are
+ * removed by handle (without comparisons), so the index remains valid
+ * as long as the relative order of the values of indexed slots does not
+ * change. This is the case if all values are scaled by the same non-negative
+ * factor (e.g. discounting), since float rounding is monotonic. Values
+ * of individual slots hence need to be removed prior to being changed,
+ * and re-inserted afterwards.
+ *
+ * @author Christopher Frantz
+ *
+ */
+public class OrderedSlotIndex {
+
+	/**
+	 * Provides the current value for a given slot.
+	 */
+	public interface SlotValues {
+
+		float valueAt(int slot);
+
+	}
+
+	private static final int NIL = -1;
+
+	private final SlotValues values;
+
+	private int[] left = new int[0];
+	private int[] right = new int[0];
+	private int[] parent = new int[0];
+	private int[] priority = new int[0];
+	private boolean[] indexed = new boolean[0];
+
+	private int root = NIL;
+	private int size = 0;
+
+	/**
+	 * State of random number generator (xorshift) for priorities.
+	 */
+	private int seed = 0x2545F491;
+
+	public OrderedSlotIndex(SlotValues values){
+		this.values = values;
+	}
+
+	private int compare(int slot, float value){
+		return Float.compare(values.valueAt(slot), value);
+	}
+
+	/**
+	 * Inserts the given slot (after slots with equal values).
+	 * @param slot
+	 */
+	public void insert(int slot){
+		if(slot >= left.length){
+			int capacity = Math.max(slot + 1, left.length * 2);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			priority = Arrays.copyOf(priority, capacity);
+			indexed = Arrays.copyOf(indexed, capacity);
+		}
+		if(indexed[slot]){
+			throw new IllegalStateException("Slot " + slot + " is already indexed.");
+		}
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		priority[slot] = seed;
+		left[slot] = NIL;
+		right[slot] = NIL;
+		indexed[slot] = true;
+		size++;
+		if(root == NIL){
+			parent[slot] = NIL;
+			root = slot;
+			return;
+		}
+		float value = values.valueAt(slot);
+		int node = root;
+		while(true){
+			if(compare(node, value) > 0){
+				if(left[node] == NIL){
+					left[node] = slot;
+					break;
+				}
+				node = left[node];
+			} else {
+				if(right[node] == NIL){
+					right[node] = slot;
+					break;
+				}
+				node = right[node];
+			}
+		}
+		parent[slot] = node;
+		//restore heap order of priorities
+		while(parent[slot] != NIL && priority[parent[slot]] < priority[slot]){
+			rotateUp(slot);
+		}
+	}
+
+	/**
+	 * Removes the given slot (if indexed).
+	 * @param slot
+	 */
+	public void remove(int slot){
+		if(slot >= indexed.length || !indexed[slot]){
+			return;
+		}
+		//rotate slot down to a leaf
+		while(left[slot] != NIL || right[slot] != NIL){
+			int child;
+			if(left[slot] == NIL){
+				child = right[slot];
+			} else if(right[slot] == NIL){
+				child = left[slot];
+			} else {
+				child = priority[left[slot]] > priority[right[slot]] ? left[slot] : right[slot];
+			}
+			rotateUp(child);
+		}
+		replaceChild(parent[slot], slot, NIL);
+		indexed[slot] = false;
+		size--;
+	}
+
+	/**
+	 * Rotates the given node above its parent.
+	 * @param node
+	 */
+	private void rotateUp(int node){
+		int up = parent[node];
+		int grandParent = parent[up];
+		if(left[up] == node){
+			left[up] = right[node];
+			if(right[node] != NIL){
+				parent[right[node]] = up;
+			}
+			right[node] = up;
+		} else {
+			right[up] = left[node];
+			if(left[node] != NIL){
+				parent[left[node]] = up;
+			}
+			left[node] = up;
+		}
+		parent[up] = node;
+		parent[node] = grandParent;
+		replaceChild(grandParent, up, node);
+	}
+
+	private void replaceChild(int node, int child, int replacement){
+		if(node == NIL){
+			root = replacement;
+		} else if(left[node] == child){
+			left[node] = replacement;
+		} else {
+			right[node] = replacement;
+		}
+	}
+
+	public void clear(){
+		Arrays.fill(indexed, false);
+		root = NIL;
+		size = 0;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean contains(int slot){
+		return slot < indexed.length && indexed[slot];
+	}
+
+	/**
+	 * Returns the slot with the lowest value, or -1 if empty.
+	 * @return
+	 */
+	public int first(){
+		int node = root;
+		while(node != NIL && left[node] != NIL){
+			node = left[node];
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the slot with the highest value, or -1 if empty.
+	 * @return
+	 */
+	public int last(){
+		int node = root;
+		while(node != NIL && right[node] != NIL){
+			node = right[node];
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the slot following the given slot in ascending order, or -1 if last.
+	 * @param slot
+	 * @return
+	 */
+	public int higher(int slot){
+		if(right[slot] != NIL){
+			int node = right[slot];
+			while(left[node] != NIL){
+				node = left[node];
+			}
+			return node;
+		}
+		int node = slot;
+		while(parent[node] != NIL && right[parent[node]] == node){
+			node = parent[node];
+		}
+		return parent[node];
+	}
+
+	/**
+	 * Returns the slot preceding the given slot in ascending order, or -1 if first.
+	 * @param slot
+	 * @return
+	 */
+	public int lower(int slot){
+		if(left[slot] != NIL){
+			int node = left[slot];
+			while(right[node] != NIL){
+				node = right[node];
+			}
+			return node;
+		}
+		int node = slot;
+		while(parent[node] != NIL && left[parent[node]] == node){
+			node = parent[node];
+		}
+		return parent[node];
+	}
+
+	/**
+	 * Returns the first slot whose value is greater than or equal to
+	 * the given value, or -1 if none.
+	 * @param value
+	 * @return
+	 */
+	public int ceiling(float value){
+		int node = root;
+		int result = NIL;
+		while(node != NIL){
+			if(compare(node, value) >= 0){
+				result = node;
+				node = left[node];
+			} else {
+				node = right[node];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the last slot whose value is smaller than or equal to
+	 * the given value, or -1 if none.
+	 * @param value
+	 * @return
+	 */
+	public int floor(float value){
+		int node = root;
+		int result = NIL;
+		while(node != NIL){
+			if(compare(node, value) <= 0){
+				result = node;
+				node = right[node];
+			} else {
+				node = left[node];
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,306 @@
+package org.sofosim.forceLayout;
+
+import java.util.Arrays;
+
+/**
+ * Spatial tree (quadtree in 2D, octree in 3D) used to approximate the
+ * forces exerted by groups of distant vertices via their centre of mass
+ * (Barnes-Hut). Nodes are held in flat arrays, and vertices are referenced
+ * by their index in the {@link ForceStepBuffer}. The members of each node
+ * occupy a contiguous range of the member ordering, so the tree is
+ * rebuilt from scratch (by partitioning) whenever positions change.
+ *
+ * @author cfrantz
+ *
+ */
+public class BarnesHutTree {
+
+	/** maximal number of vertices held in a leaf */
+	private static final int leafCapacity = 8;
+	/** maximal depth of tree (to cope with many vertices sharing one position) */
+	private static final int maxDepth = 24;
+
+	private final boolean use3d;
+	private final int childrenPerNode;
+	private final double xSize;
+	private final double ySize;
+	private final double zSize;
+
+	/** vertex positions */
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	private double[] z = new double[0];
+	private int size = 0;
+	/** vertex indices ordered by node membership */
+	private int[] members = new int[0];
+	/** position of each vertex in {@link #members} */
+	private int[] slots = new int[0];
+	/** octant of each vertex during partitioning */
+	private int[] octants = new int[0];
+	/** temporary member ordering during partitioning */
+	private int[] partitioned = new int[0];
+
+	private int nodeCount = 0;
+	private int[] depth = new int[0];
+	private double[] minX = new double[0];
+	private double[] minY = new double[0];
+	private double[] minZ = new double[0];
+	private double[] massX = new double[0];
+	private double[] massY = new double[0];
+	private double[] massZ = new double[0];
+	private int[] firstMember = new int[0];
+	private int[] memberCount = new int[0];
+	/** index of first child node (children are stored consecutively), -1 for leaves */
+	private int[] firstChild = new int[0];
+
+	/**
+	 * Instantiates a tree covering a grid of given dimensions.
+	 *
+	 * @param xSize
+	 * @param ySize
+	 * @param zSize
+	 * @param use3d octree if true, else quadtree (z dimension ignored)
+	 */
+	public BarnesHutTree(double xSize, double ySize, double zSize, boolean use3d) {
+		this.xSize = xSize;
+		this.ySize = ySize;
+		this.zSize = use3d ? zSize : 0;
+		this.use3d = use3d;
+		this.childrenPerNode = use3d ? 8 : 4;
+	}
+
+	/**
+	 * Prepares the tree for the given number of vertices. Positions need
+	 * to be set using {@link #setPosition(int, double, double, double)}
+	 * before calling {@link #build()}.
+	 *
+	 * @param size
+	 */
+	public void clear(int size) {
+		this.size = size;
+		if (x.length < size) {
+			x = new double[size];
+			y = new double[size];
+			z = new double[size];
+			members = new int[size];
+			slots = new int[size];
+			octants = new int[size];
+			partitioned = new int[size];
+		}
+		nodeCount = 0;
+	}
+
+	/**
+	 * Sets the position of the vertex with the given index.
+	 *
+	 * @param index
+	 * @param xPos
+	 * @param yPos
+	 * @param zPos
+	 */
+	public void setPosition(int index, double xPos, double yPos, double zPos) {
+		x[index] = xPos;
+		y[index] = yPos;
+		z[index] = use3d ? zPos : 0;
+	}
+
+	/**
+	 * Builds the tree from the positions set since the last call to
+	 * {@link #clear(int)}.
+	 */
+	public void build() {
+		for (int i = 0; i < size; i++) {
+			members[i] = i;
+		}
+		nodeCount = 0;
+		int root = addNode(0, 0, 0, 0, 0, size);
+		buildNode(root);
+		for (int i = 0; i < size; i++) {
+			slots[members[i]] = i;
+		}
+	}
+
+	private int addNode(int nodeDepth, double nodeMinX, double nodeMinY,
+			double nodeMinZ, int from, int count) {
+		if (nodeCount == depth.length) {
+			int capacity = Math.max(16, nodeCount * 2);
+			depth = Arrays.copyOf(depth, capacity);
+			minX = Arrays.copyOf(minX, capacity);
+			minY = Arrays.copyOf(minY, capacity);
+			minZ = Arrays.copyOf(minZ, capacity);
+			massX = Arrays.copyOf(massX, capacity);
+			massY = Arrays.copyOf(massY, capacity);
+			massZ = Arrays.copyOf(massZ, capacity);
+			firstMember = Arrays.copyOf(firstMember, capacity);
+			memberCount = Arrays.copyOf(memberCount, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+		}
+		int node = nodeCount++;
+		depth[node] = nodeDepth;
+		minX[node] = nodeMinX;
+		minY[node] = nodeMinY;
+		minZ[node] = nodeMinZ;
+		firstMember[node] = from;
+		memberCount[node] = count;
+		firstChild[node] = -1;
+		return node;
+	}
+
+	private void buildNode(int node) {
+		int from = firstMember[node];
+		int count = memberCount[node];
+		if (count == 0) {
+			return;
+		}
+		// centre of mass
+		double sumX = 0;
+		double sumY = 0;
+		double sumZ = 0;
+		for (int i = from; i < from + count; i++) {
+			sumX += x[members[i]];
+			sumY += y[members[i]];
+			sumZ += z[members[i]];
+		}
+		massX[node] = sumX / count;
+		massY[node] = sumY / count;
+		massZ[node] = sumZ / count;
+		if (count <= leafCapacity || depth[node] >= maxDepth) {
+			return;
+		}
+		// partition members into children (counting sort by octant)
+		double halfX = getHalfExtent(xSize, depth[node]);
+		double halfY = getHalfExtent(ySize, depth[node]);
+		double halfZ = getHalfExtent(zSize, depth[node]);
+		double midX = minX[node] + halfX;
+		double midY = minY[node] + halfY;
+		double midZ = minZ[node] + halfZ;
+		int[] childCounts = new int[childrenPerNode];
+		for (int i = from; i < from + count; i++) {
+			int member = members[i];
+			int octant = (x[member] >= midX ? 1 : 0)
+					| (y[member] >= midY ? 2 : 0)
+					| (use3d && z[member] >= midZ ? 4 : 0);
+			octants[member] = octant;
+			childCounts[octant]++;
+		}
+		int[] offsets = new int[childrenPerNode];
+		for (int c = 1; c < childrenPerNode; c++) {
+			offsets[c] = offsets[c - 1] + childCounts[c - 1];
+		}
+		int[] position = offsets.clone();
+		for (int i = from; i < from + count; i++) {
+			int member = members[i];
+			partitioned[from + position[octants[member]]++] = member;
+		}
+		System.arraycopy(partitioned, from, members, from, count);
+		int first = -1;
+		for (int c = 0; c < childrenPerNode; c++) {
+			int child = addNode(depth[node] + 1, (c & 1) != 0 ? midX
+					: minX[node], (c & 2) != 0 ? midY : minY[node],
+					(c & 4) != 0 ? midZ : minZ[node], from + offsets[c],
+					childCounts[c]);
+			if (c == 0) {
+				first = child;
+			}
+		}
+		firstChild[node] = first;
+		for (int c = 0; c < childrenPerNode; c++) {
+			buildNode(first + c);
+		}
+	}
+
+	private static double getHalfExtent(double size, int nodeDepth) {
+		return size / (2L << nodeDepth);
+	}
+
+	/**
+	 * Returns the root node (or -1 if the tree is empty).
+	 *
+	 * @return
+	 */
+	public int getRoot() {
+		return nodeCount == 0 ? -1 : 0;
+	}
+
+	/**
+	 * Returns the number of children of inner nodes (4 or 8).
+	 *
+	 * @return
+	 */
+	public int getChildrenPerNode() {
+		return childrenPerNode;
+	}
+
+	/**
+	 * Returns the first child of a node (further children follow
+	 * consecutively) or -1 if node is a leaf.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getFirstChild(int node) {
+		return firstChild[node];
+	}
+
+	/**
+	 * Returns the number of vertices within a node.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getMemberCount(int node) {
+		return memberCount[node];
+	}
+
+	/**
+	 * Returns the index of the k-th vertex in a node.
+	 *
+	 * @param node
+	 * @param k
+	 * @return
+	 */
+	public int getMember(int node, int k) {
+		return members[firstMember[node] + k];
+	}
+
+	public double getCentreOfMassX(int node) {
+		return massX[node];
+	}
+
+	public double getCentreOfMassY(int node) {
+		return massY[node];
+	}
+
+	public double getCentreOfMassZ(int node) {
+		return massZ[node];
+	}
+
+	/**
+	 * Returns the largest side length of a node.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public double getExtent(int node) {
+		double extent = Math.max(getHalfExtent(xSize, depth[node]),
+				getHalfExtent(ySize, depth[node]));
+		if (use3d) {
+			extent = Math.max(extent, getHalfExtent(zSize, depth[node]));
+		}
+		return extent * 2;
+	}
+
+	/**
+	 * Indicates if the vertex with the given index is a member of a node.
+	 *
+	 * @param node
+	 * @param index
+	 * @return
+	 */
+	public boolean containsMember(int node, int index) {
+		int slot = slots[index];
+		return slot >= firstMember[node]
+				&& slot < firstMember[node] + memberCount[node];
+	}
+
+}
@@ -0,0 +1,170 @@
+package org.sofosim.forceLayout;
+
+import javax.vecmath.Point3d;
+import org.sofosim.structures.CartesianDistance3D;
+
+/**
+ * Holds the running force sums for the vertex currently processed during
+ * a layout step. Each thread calculating forces operates on its own
+ * accumulator, so forces for different vertices can be calculated
+ * concurrently (see {@link ForceDirectedLayout#parallelForceCalculation}).
+ *
+ * @author cfrantz
+ *
+ */
+public class ForceAccumulator {
+
+	/**
+	 * holds sum of individual forces for currently iterated vertex in x
+	 * direction
+	 */
+	public double xForce = 0.0;
+	/**
+	 * holds sum of individual forces for currently iterated vertex in y
+	 * direction
+	 */
+	public double yForce = 0.0;
+	/**
+	 * holds sum of individual forces for currently iterated vertex in z
+	 * direction
+	 */
+	public double zForce = 0.0;
+	/**
+	 * sum of overall force to get a brief indication if forces exist for
+	 * boolean check; (the x + y force sums might result in zero force overall)
+	 */
+	public double overallForce = 0.0;
+
+	/**
+	 * holds sum of individual forces for currently iterated vertex in x
+	 * direction for validation purposes (without natural repulsion)
+	 */
+	public double validationXForce = 0.0;
+	/**
+	 * holds sum of individual forces for currently iterated vertex in y
+	 * direction for validation purposes (without natural repulsion)
+	 */
+	public double validationYForce = 0.0;
+	/**
+	 * holds sum of individual forces for currently iterated vertex in z
+	 * direction for validation purposes (without natural repulsion)
+	 */
+	public double validationZForce = 0.0;
+
+	/**
+	 * holds sum of individual forces for currently iterated vertex in x
+	 * direction for validation purposes (without natural repulsion) for
+	 * individuals that are OUTSIDE of private zones
+	 */
+	public double validationXForceOutsidePrivateZones = 0.0;
+	/**
+	 * holds sum of individual forces for currently iterated vertex in y
+	 * direction for validation purposes (without natural repulsion) for
+	 * individuals that are OUTSIDE of private zones
+	 */
+	public double validationYForceOutsidePrivateZones = 0.0;
+	/**
+	 * holds sum of individual forces for currently iterated vertex in z
+	 * direction for validation purposes (without natural repulsion) for
+	 * individuals that are OUTSIDE of private zones
+	 */
+	public double validationZForceOutsidePrivateZones = 0.0;
+
+	/** indicator if agent is inside private zone of other agent(s) */
+	public boolean insidePrivateZone = false;
+
+	/** debug output for currently iterated vertex (null if debug is deactivated) */
+	public StringBuffer debugBuffer = null;
+	/** debug output on individual planes for currently processed vertex pair */
+	public StringBuffer detailDebugBuffer = null;
+
+	/** step buffer index of vertex currently processed */
+	int vertexIndex = -1;
+	/** stack of tree nodes to be visited during Barnes-Hut traversal */
+	int[] nodeStack = new int[64];
+	/** offset to the vertex (or group of vertices) currently exerting force */
+	final CartesianDistance3D distance = new CartesianDistance3D();
+	/** direction of the force currently added */
+	final Point3d direction = new Point3d();
+	/** position of the vertex currently exerting force (read from step buffer) */
+	final Point3d otherPosition = new Point3d();
+	/** indices of vertices returned by sector grid queries */
+	private int[] neighbours = new int[0];
+
+	/** step buffer indices of vertices in current batch */
+	int[] pairTargets = new int[0];
+	/** offsets to vertices in current batch */
+	double[] pairDx = new double[0];
+	double[] pairDy = new double[0];
+	double[] pairDz = new double[0];
+	/** distances to vertices in current batch */
+	double[] pairDistance = new double[0];
+	/** input and output of batched plane force requests */
+	int[] batchTargets = new int[0];
+	double[] batchDistances = new double[0];
+	double[] batchForces = new double[0];
+	/** pair each entry of a batched plane force request refers to */
+	int[] batchSlots = new int[0];
+	/** raw force per plane (first index) and pair (second index) */
+	double[][] planeForces = new double[0][0];
+
+	/**
+	 * Ensures the batch arrays can hold the given number of pairs for the
+	 * given number of planes.
+	 *
+	 * @param pairs
+	 * @param planes
+	 */
+	void ensureBatchCapacity(int pairs, int planes) {
+		if (pairTargets.length < pairs) {
+			int capacity = Math.max(pairs, pairTargets.length * 2);
+			pairTargets = new int[capacity];
+			pairDx = new double[capacity];
+			pairDy = new double[capacity];
+			pairDz = new double[capacity];
+			pairDistance = new double[capacity];
+			batchTargets = new int[capacity];
+			batchDistances = new double[capacity];
+			batchForces = new double[capacity];
+			batchSlots = new int[capacity];
+		}
+		int capacity = pairTargets.length;
+		if (planeForces.length < planes
+				|| (planes > 0 && planeForces[0].length < capacity)) {
+			planeForces = new double[Math.max(planes, planeForces.length)][capacity];
+		}
+	}
+
+	/**
+	 * Returns the scratch array for sector grid queries, holding at least
+	 * the given number of entries.
+	 *
+	 * @param numberOfVertices
+	 * @return
+	 */
+	int[] getNeighbourArray(int numberOfVertices) {
+		if (neighbours.length < numberOfVertices) {
+			neighbours = new int[numberOfVertices];
+		}
+		return neighbours;
+	}
+
+	/**
+	 * Resets all sums before processing the next vertex.
+	 */
+	public void reset() {
+		xForce = 0.0;
+		yForce = 0.0;
+		zForce = 0.0;
+		overallForce = 0.0;
+		validationXForce = 0.0;
+		validationYForce = 0.0;
+		validationZForce = 0.0;
+		validationXForceOutsidePrivateZones = 0.0;
+		validationYForceOutsidePrivateZones = 0.0;
+		validationZForceOutsidePrivateZones = 0.0;
+		insidePrivateZone = false;
+		debugBuffer = null;
+	}
+
+}
@@ -5,6 +5,7 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
@@ -13,20 +14,30 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javax.vecmath.Point3d;
 import org.apache.commons.collections15.Transformer;
 import org.nzdis.micro.inspector.PlatformInspectorGui;
 import org.nzdis.micro.inspector.PlatformInspectorListener;
+import org.sofosim.clustering.AsynchronousClusterer;
 import org.sofosim.clustering.AttractionClusterer;
 import org.sofosim.clustering.CentroidWithMinMaxValues;
+import org.sofosim.clustering.ClusterChangeEvent;
+import org.sofosim.clustering.ClusterChangeListener;
 import org.sofosim.clustering.ClusterInformationHandler;
 import org.sofosim.clustering.ClusterUtility;
 import org.sofosim.clustering.DBSCAN;
+import org.sofosim.clustering.GridDBSCAN;
+import org.sofosim.clustering.IncrementalDBSCAN;
+import org.sofosim.clustering.OPTICSClusterer;
+import org.sofosim.clustering.ParallelDBSCAN;
 import org.sofosim.clustering.SpatialProximityClusterer;
 import org.sofosim.clustering.VertexPoint3D;
 import org.sofosim.environment.GridSim;
 import org.sofosim.environment.annotations.SimulationParam;
 import org.sofosim.environment.stats.Statistics;
+import org.sofosim.forceLayout.transformers.ForceLocationVertexTransformer;
 import org.sofosim.forceLayout.transformers.VertexShapeRenderer;
 import org.sofosim.forceLayout.util.CircleShape;
 import org.sofosim.forceLayout.util.CircleShape3D;
@@ -39,28 +50,42 @@ import org.sofosim.planes.SocialPlane;
 import org.sofosim.planes.SocialPlaneInitializer;
 import org.sofosim.planes.TagSocialPlane;
 import org.sofosim.structures.DirectionVector;
+import org.sofosim.structures.CartesianDistance3D;
 import org.sofosim.structures.DirectionVector3D;
 import org.sofosim.structures.ForceDistanceContainer;
 import org.sofosim.tags.Tag;
 import org.sofosim.util.ProximityCalculator3D;
 import sim.display.Console;
+import sim.engine.SimState;
+import sim.engine.Steppable;
 import sim.field.network.Edge;
 import sim.util.Double3D;
 import edu.uci.ics.jung.algorithms.layout.AbstractLayout;
 import edu.uci.ics.jung.algorithms.util.IterativeContext;
 import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.SparseMultigraph;
 
 public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
-		IterativeContext, GraphChangeListener<V>, PlatformInspectorListener {
+		IterativeContext, GraphChangeListener<V>, PlatformInspectorListener,
+		Steppable {
 
 	public final GridSim sim;
+	/**
+	 * Indicates if layout runs without visualization (no JUNG graph, glass
+	 * pane, renderer or inspector), e.g. for batch runs.
+	 */
+	public final boolean headless;
+	/**
+	 * Vertices laid out in headless mode (null if vertices are taken from
+	 * graph)
+	 */
+	private final Collection<V> headlessVertices;
 	public final Integer xGridSize;
 	public final Integer yGridSize;
 	public final Integer zGridSize;
 	public final Boolean toroidal;
 	private final ProximityCalculator3D dirCalc;
 	private ArrayList<V> vertices = null;
-	private ArrayList<V> secondaryVertices = null;
 	private HashMap<V, ForceDistanceContainer> verticesInPrivateZone = new HashMap<V, ForceDistanceContainer>();
 	// Double forceMultiplier = 1.0;
 	// Double damping = 0.5;
@@ -204,7 +229,7 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	/**
 	 * Indicates if forces and distances should be drawn on GlassPane instead of content pane
 	 */
-	final boolean drawOnGlassPane = true;
+	final boolean drawOnGlassPane;
 	
 	private ForceGlassPane glassPane = null;
 	final boolean drawForcesOnGlassPane = false;
@@ -325,8 +350,6 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	final boolean writeDebugToOutfileInsteadConsole = false;
 	
 	static ForceGraphWriter writer = null;
-	private StringBuffer debugBuffer = null;
-	private StringBuffer detailDebugBuffer = null;
 	public static final String LINE_SEPARATOR = System
 			.getProperty("line.separator");
 	/**
@@ -478,6 +501,7 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	public void registerWeightProvider(V vertex, IndivWeightProvider provider) {
 		printSofoSimOutput("Registered social plane weight provider " + vertex);
 		weightProviders.put(vertex, provider);
+		weightCache.invalidate(vertex);
 	}
 
 	/**
@@ -487,6 +511,23 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	 */
 	public void removeWeightProvider(V vertex) {
 		weightProviders.remove(vertex);
+		weightCache.invalidate(vertex);
+	}
+
+	/**
+	 * Snapshot of individual weights taken at the start of each round.
+	 */
+	private final IndivWeightCache<V> weightCache = new IndivWeightCache<V>();
+
+	/**
+	 * Indicates that the weights returned by the weight provider of a given
+	 * vertex have changed during the current round. Weights are otherwise
+	 * only requested from providers once per round.
+	 * 
+	 * @param vertex
+	 */
+	public void invalidateIndividualWeights(V vertex) {
+		weightCache.invalidate(vertex);
 	}
 
 	/**
@@ -520,6 +561,11 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	 * @return
 	 */
 	private Float requestTagWeightForTagFromProvider(V vertex, Tag tag) {
+		int index = stepBuffer.indexOf(vertex);
+		if (useIndividualWeights && index != -1) {
+			// weight as of start of round
+			return weightCache.getTagWeight(vertex, index, tag);
+		}
 		if (weightProviders.containsKey(vertex)) {
 			return weightProviders.get(vertex).getTagWeight(tag);
 		}
@@ -548,6 +594,54 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	@SimulationParam
 	public static boolean clusteringOfVertices = true;
 	
+	/**
+	 * Indicates if proximity clustering uses a grid index for neighbour
+	 * queries (same results as exhaustive DBSCAN).
+	 */
+	@SimulationParam
+	public static boolean useGridIndexedClustering = true;
+	
+	/**
+	 * Indicates if proximity clustering reuses the results of the previous
+	 * round and reports changes to {@link ClusterChangeListener}s.
+	 */
+	@SimulationParam
+	public static boolean useIncrementalClustering = false;
+	
+	/**
+	 * Displacement (as fraction of {@link #maxClusterNeighbourDistance}) up
+	 * to which vertices are not re-examined by incremental clustering.
+	 */
+	@SimulationParam
+	public static float incrementalClusteringTolerance = 0.05f;
+	
+	/**
+	 * Indicates if proximity clustering uses OPTICS, which allows extracting
+	 * clusters for any distance up to {@link #maxClusterNeighbourDistance}
+	 * from the same run (see {@link OPTICSClusterer#extractClusters(float)}).
+	 */
+	@SimulationParam
+	public static boolean useOpticsClustering = false;
+	
+	/**
+	 * Indicates if grid-indexed proximity clustering is partitioned across
+	 * {@link #forceCalculationThreads} threads (same results as sequential
+	 * clustering; ignored for incremental clustering).
+	 */
+	@SimulationParam
+	public static boolean parallelClustering = false;
+	
+	/**
+	 * Indicates if proximity clustering runs on a background thread. The
+	 * layout then does not wait for clustering, but uses the last published
+	 * result (which may refer to an earlier round).
+	 */
+	@SimulationParam
+	public static boolean asynchronousClustering = false;
+	
+	/** version of the last asynchronous result passed to listeners */
+	private long lastNotifiedClusterVersion = 0;
+	
 	private SpatialProximityClusterer<V> spatialClusterer = null;
 	@SimulationParam
 	/** Maximal distance between cluster members (to consider them clustered) - only used during initialization, can be changed at runtime via getClusterer() */
@@ -616,15 +710,160 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	public boolean highlightTags = false;
 	public HashMap<String, Color> tagColors = new HashMap<String, Color>();
 
-	/** maintaining calculated forces for printing in Ui */
-	private HashMap<V, Double> forcesMap = new HashMap<V, Double>();
+	/** uniform grid indexing vertices by sector (rebuilt at start of each step) */
+	private SectorGrid sectorGrid = null;
+	/** indicates if sector grid is used to select vertices in current step */
+	private boolean sectorBasedStep = false;
+
+	/**
+	 * Maintains Verlet neighbour lists for each vertex (if perception distance
+	 * is limited). Lists include all vertices within perception distance plus
+	 * {@link #verletSkin} and are only rebuilt once a vertex has moved further
+	 * than half the skin, which avoids searching the sectors for every vertex
+	 * in every step. Rebuilds are counted in
+	 * {@link #getNeighbourListRebuilds()}. Not used (and forces are
+	 * calculated for all vertices) if force calculation is sequential and
+	 * {@link #maxMovementPerStep} is unlimited (-1), since vertices processed
+	 * earlier in a step could then move arbitrarily far beyond the lists'
+	 * range (a message is printed once in this case).
+	 */
+	@SimulationParam
+	public static boolean useVerletLists = false;
+
+	/**
+	 * Ensures that the information on Verlet lists being disabled due to
+	 * unlimited movement per step is printed only once.
+	 */
+	private boolean verletListsDisabledInfoPrinted = false;
+
+	/**
+	 * Skin added to the perception distance for Verlet neighbour lists. In
+	 * sequential mode, it should be well above twice the
+	 * {@link #maxMovementPerStep}, else lists are rebuilt in every step.
+	 */
+	@SimulationParam
+	public static double verletSkin = 50;
+
+	/** neighbour lists used if {@link #useVerletLists} is activated */
+	private final VerletNeighbourLists neighbourLists = new VerletNeighbourLists();
+	/** indicates if neighbour lists are used to select vertices in current step */
+	private boolean verletStep = false;
+
+	/** === CONVERGENCE-RELATED === */
+
+	/**
+	 * Vertices whose resultant force (i.e. movement) stays below this threshold
+	 * are considered calm. The layout is in equilibrium if no vertex has moved
+	 * further than this threshold in the last step.
+	 */
+	@SimulationParam
+	public static double equilibriumThreshold = 0.1;
+
+	/**
+	 * Lets vertices that have been calm for {@link #stepsBeforeSleep}
+	 * consecutive steps sleep, i.e. their forces are not calculated (and
+	 * their links not drawn) until a vertex within perception distance moves
+	 * further than the {@link #equilibriumThreshold} (any vertex if a plane
+	 * is not perceptionally constrained), vertices are added or
+	 * removed, or plane weights change. Not used if second-level clustering
+	 * or distance validation is activated, as those need forces of all
+	 * vertices in every step.
+	 */
+	@SimulationParam
+	public static boolean useSleepingVertices = false;
+
+	/** Number of consecutive calm steps before a vertex falls asleep. */
+	@SimulationParam
+	public static int stepsBeforeSleep = 10;
+
+	/**
+	 * Lets {@link #done()} return true once the layout is in equilibrium,
+	 * which stops JUNG's relaxer. Only useful for batch runs.
+	 */
+	@SimulationParam
+	public static boolean stopAtEquilibrium = false;
+
+	/** sum of all vertices' displacements in last step */
+	private double totalDisplacement = 0.0;
+	/** maximal displacement of any vertex in last step */
+	private double maxDisplacement = 0.0;
+	/** number of vertices asleep after last step */
+	private int sleepingVertices = 0;
+	/** indicates if layout has been in equilibrium after last step */
+	private boolean equilibrium = false;
+	/** indicates if position of any vertex has been changed outside of step (e.g. dragging) */
+	private boolean positionsChangedExternally = false;
+	/** step buffer version as of last step */
+	private int lastBufferVersion = -1;
+	/** planes, their weights and states as of last step (to detect changes) */
+	private final ArrayList<SocialPlane<V>> lastPlanes = new ArrayList<SocialPlane<V>>();
+	private float[] lastPlaneWeights = new float[0];
+	private boolean[] lastPlaneStates = new boolean[0];
+	/** indices of vertices that moved in last step (scratch) */
+	private int[] movedVertices = new int[0];
+	/** scratch space for displacement calculation */
+	private final CartesianDistance3D displacementVector = new CartesianDistance3D();
+
+	/** registered listeners for equilibrium changes */
+	private ArrayList<ForceEquilibriumListener> equilibriumListeners = new ArrayList<ForceEquilibriumListener>();
+
+	/**
+	 * Registers a listener that is notified whenever the layout reaches or
+	 * leaves equilibrium.
+	 * 
+	 * @param listener
+	 */
+	public void registerEquilibriumListener(ForceEquilibriumListener listener) {
+		equilibriumListeners.add(listener);
+	}
+
+	/**
+	 * Unregisters an equilibrium listener.
+	 * 
+	 * @param listener
+	 */
+	public void unregisterEquilibriumListener(
+			ForceEquilibriumListener listener) {
+		equilibriumListeners.remove(listener);
+	}
+
+	/**
+	 * Indicates if no vertex has moved further than the
+	 * {@link #equilibriumThreshold} in the last step.
+	 * 
+	 * @return
+	 */
+	public boolean inEquilibrium() {
+		return equilibrium;
+	}
+
+	/**
+	 * Returns the sum of all vertices' displacements in the last step.
+	 * 
+	 * @return
+	 */
+	public double getTotalDisplacement() {
+		return totalDisplacement;
+	}
+
+	/**
+	 * Returns the maximal displacement of any vertex in the last step.
+	 * 
+	 * @return
+	 */
+	public double getMaxDisplacement() {
+		return maxDisplacement;
+	}
 
-	/** history of vertex positions to manage reregistration to new sectors */
-	private HashMap<V, Point3d> positionHistory = new HashMap<V, Point3d>();
-	/** map handling the mapping of 2D sectors and vertices within those sectors */
-	private HashMap<Point2D, HashSet<V>> sectorMembers2D = new HashMap<Point2D, HashSet<V>>();
-	/** map handling the mapping of 3D sectors and vertices within those sectors */
-	private HashMap<Point3d, HashSet<V>> sectorMembers3D = new HashMap<Point3d, HashSet<V>>();
+	/**
+	 * Returns the number of vertices asleep after the last step (see
+	 * {@link #useSleepingVertices}).
+	 * 
+	 * @return
+	 */
+	public int getSleepingVertices() {
+		return sleepingVertices;
+	}
 	
 	/** will hold the sector scale (i.e. number of sectors after initializeSectors() has been called (for transposing positions) */
 	@SimulationParam
@@ -688,9 +927,35 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	public ForceDirectedLayout(Graph graph,
 			Transformer<V, Point2D> initializer, GridSim simulation,
 			SocialPlaneInitializer planeInitializer) {
+		this(graph, null, initializer, simulation, planeInitializer);
+	}
+
+	/**
+	 * Instantiates a headless layout operating on the given vertices without
+	 * any visualization. Vertices can be added to or removed from the
+	 * collection between steps. The layout can be scheduled on the MASON
+	 * schedule directly (see {@link #step(SimState)}); positions are
+	 * available via {@link #getPosition(Object)} and the MASON 3D field.
+	 * 
+	 * @param vertices
+	 * @param simulation
+	 * @param planeInitializer
+	 */
+	public ForceDirectedLayout(Collection<V> vertices, GridSim simulation,
+			SocialPlaneInitializer planeInitializer) {
+		this(new SparseMultigraph<V, E>(), vertices, null, simulation,
+				planeInitializer);
+	}
+
+	private ForceDirectedLayout(Graph graph, Collection<V> headlessVertices,
+			Transformer<V, Point2D> initializer, GridSim simulation,
+			SocialPlaneInitializer planeInitializer) {
 		super(graph);
 		// set final values
 		this.sim = simulation;
+		this.headlessVertices = headlessVertices;
+		this.headless = headlessVertices != null;
+		this.drawOnGlassPane = !headless;
 		this.xGridSize = sim.GRID_WIDTH;
 		this.yGridSize = sim.GRID_HEIGHT;
 		this.zGridSize = sim.GRID_DEPTH;
@@ -734,6 +999,10 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		registerPlanesFromSocialPlaneInitializer(planeInitializer);
 		if (initializer != null) {
 			this.setInitializer(initializer);
+		} else if (headless) {
+			// same initial positioning as for visualized graphs
+			this.setInitializer((Transformer) new ForceLocationVertexTransformer(
+					this));
 		}
 		// initialize colors for visualization in second-level clustering and
 		// tag-based differentiation in UI
@@ -748,7 +1017,9 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		secClusterColors.put(8, secClusterCol9);
 		// register listener so any click on an agent allows to highlight it on
 		// the visualizer
-		PlatformInspectorGui.getInstance().registerListener(this);
+		if (!headless) {
+			PlatformInspectorGui.getInstance().registerListener(this);
+		}
 		initializeOnce();
 	}
 
@@ -788,12 +1059,13 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	}
 
 	/**
-	 * Returns currently used sectors.
+	 * Returns sector grid holding vertex positions as of the start of the
+	 * current step (or null if sectors are not managed).
 	 * 
 	 * @return
 	 */
-	public HashMap<Point3d, HashSet<V>> getSectors() {
-		return sectorMembers3D;
+	public SectorGrid getSectorGrid() {
+		return sectorGrid;
 	}
 
 	/**
@@ -815,8 +1087,33 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 
 	private void initializeClusterer() {
 		if (clusteringOfVertices && spatialClusterer == null) {
-			this.spatialClusterer = new DBSCAN<V>(maxClusterNeighbourDistance,
-					minNumberOfMembersInCluster, dirCalc);
+			if (useOpticsClustering) {
+				this.spatialClusterer = new OPTICSClusterer<V>(
+						maxClusterNeighbourDistance,
+						minNumberOfMembersInCluster, dirCalc);
+			} else if (useIncrementalClustering) {
+				this.spatialClusterer = new IncrementalDBSCAN<V>(
+						maxClusterNeighbourDistance,
+						minNumberOfMembersInCluster, dirCalc,
+						incrementalClusteringTolerance);
+			} else if (useGridIndexedClustering && parallelClustering) {
+				this.spatialClusterer = new ParallelDBSCAN<V>(
+						maxClusterNeighbourDistance,
+						minNumberOfMembersInCluster, dirCalc,
+						forceCalculationThreads);
+			} else if (useGridIndexedClustering) {
+				this.spatialClusterer = new GridDBSCAN<V>(
+						maxClusterNeighbourDistance,
+						minNumberOfMembersInCluster, dirCalc);
+			} else {
+				this.spatialClusterer = new DBSCAN<V>(
+						maxClusterNeighbourDistance,
+						minNumberOfMembersInCluster, dirCalc);
+			}
+			if (asynchronousClustering) {
+				this.spatialClusterer = new AsynchronousClusterer<V>(
+						spatialClusterer);
+			}
 			initializeAttractionClusterer();
 		}
 	}
@@ -993,7 +1290,22 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	 * @return
 	 */
 	public Double getForceForVertex(V vertex) {
-		return forcesMap.get(vertex);
+		return stepBuffer.getResultantForce(vertex);
+	}
+
+	/**
+	 * Returns the position of a given vertex as of the last step (or null if
+	 * the vertex has not been laid out yet).
+	 * 
+	 * @param vertex
+	 * @return
+	 */
+	public Point3d getPosition(V vertex) {
+		int index = stepBuffer.indexOf(vertex);
+		if (index == -1 || !stepBuffer.isPositioned(index)) {
+			return null;
+		}
+		return stepBuffer.getPosition(index);
 	}
 
 	public static ForceGraphWriter getWriter() {
@@ -1008,9 +1320,14 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 
 	@Override
 	public boolean done() {
-		if (sim.usingMasonSchedulerForGraphs()) {
+		if (headless) {
+			// headless layouts are stepped by MASON, no console to check
+			return stopAtEquilibrium && equilibrium;
+		} else if (sim.usingMasonSchedulerForGraphs()) {
 			System.out.println(prefix + "Switched to Mason scheduling.");
 			return true;
+		} else if (stopAtEquilibrium && equilibrium) {
+			return true;
 		} else {
 			// if set to false, a dedicated thread will update the graph which
 			// is faster, but not steppable/stoppable
@@ -1051,6 +1368,55 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		clusterListeners.remove(listener);
 	}
 
+	/** registered listeners for changes of individual clusters */
+	private ArrayList<ClusterChangeListener<V>> clusterChangeListeners = new ArrayList<ClusterChangeListener<V>>();
+
+	/**
+	 * Adds new Listener for changes of individual clusters. Only notified if
+	 * incremental clustering is activated ({@link #useIncrementalClustering}).
+	 * 
+	 * @param listener
+	 */
+	public void registerClusterChangeListener(ClusterChangeListener<V> listener) {
+		clusterChangeListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener for changes of individual clusters.
+	 * 
+	 * @param listener
+	 */
+	public void unregisterClusterChangeListener(
+			ClusterChangeListener<V> listener) {
+		clusterChangeListeners.remove(listener);
+	}
+
+	/**
+	 * Distributes the changes determined by the incremental clusterer (if
+	 * used) to all registered listeners.
+	 */
+	private void callClusterChangeListeners() {
+		ArrayList<ClusterChangeEvent<V>> changes = null;
+		if (spatialClusterer instanceof IncrementalDBSCAN) {
+			changes = ((IncrementalDBSCAN<V>) spatialClusterer)
+					.getLastChanges();
+		} else if (spatialClusterer instanceof AsynchronousClusterer) {
+			// pass on changes of all results published since last call
+			AsynchronousClusterer<V> clusterer = (AsynchronousClusterer<V>) spatialClusterer;
+			// read version before draining, so results published meanwhile
+			// are not skipped by the next call
+			long version = clusterer.getPublishedResult().version;
+			changes = clusterer.drainChangesSince(lastNotifiedClusterVersion);
+			lastNotifiedClusterVersion = version;
+		}
+		if (changes == null) {
+			return;
+		}
+		for (int i = 0; i < clusterChangeListeners.size(); i++) {
+			clusterChangeListeners.get(i).clustersChanged(changes);
+		}
+	}
+
 	/** information handler for printing of cluster information */
 	private ClusterInformationHandler clusterInformationHandler = null;
 
@@ -1097,25 +1463,92 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	}
 
 	/**
-	 * holds sum of individual forces for currently iterated vertex in x
-	 * direction
+	 * Indicates if forces are calculated in parallel. If activated, the forces
+	 * acting on all vertices are calculated concurrently from the positions at
+	 * the start of the round, and new positions are only applied once all
+	 * forces have been calculated (results are thus independent of the number
+	 * of threads). If deactivated, vertices are processed sequentially and
+	 * positions are updated in place, i.e. vertices processed later in a round
+	 * perceive the new positions of earlier ones.
+	 * Registered social planes and weight providers need to tolerate
+	 * concurrent reads if activated.
+	 */
+	@SimulationParam
+	public static boolean parallelForceCalculation = false;
+
+	/**
+	 * Number of threads used for force calculation if
+	 * {@link #parallelForceCalculation} is activated.
+	 */
+	@SimulationParam
+	public static int forceCalculationThreads = Runtime.getRuntime()
+			.availableProcessors();
+
+	/**
+	 * Maximal number of vertices processed by a single force calculation task
+	 * before it is split further.
+	 */
+	private static final int verticesPerForceCalculationTask = 32;
+
+	/** thread pool for parallel force calculation (lazily initialized) */
+	private ForkJoinPool forceCalculationPool = null;
+
+	/** positions the current step is based on and resulting target positions */
+	private final ForceStepBuffer<V> stepBuffer = new ForceStepBuffer<V>();
+
+	/** accumulator used if forces are calculated sequentially */
+	private final ForceAccumulator sequentialAccumulator = new ForceAccumulator();
+
+	/**
+	 * accumulators used by the threads of {@link #forceCalculationPool}
+	 * (retained across steps to reuse their scratch arrays)
+	 */
+	private final ThreadLocal<ForceAccumulator> parallelAccumulators = new ThreadLocal<ForceAccumulator>() {
+		@Override
+		protected ForceAccumulator initialValue() {
+			return new ForceAccumulator();
+		}
+	};
+
+	/**
+	 * Lock guarding UI and validation structures that are modified during force
+	 * calculation (only contended if {@link #parallelForceCalculation} is
+	 * activated).
 	 */
-	private Double xForce = 0.0;
+	private final Object sideEffectLock = new Object();
+
 	/**
-	 * holds sum of individual forces for currently iterated vertex in y
-	 * direction
+	 * Activates Barnes-Hut approximation of forces exerted by distant vertices
+	 * (quadtree in 2D, octree in 3D). Only used if perception is unlimited
+	 * ({@link #maximalPerceptionDistance} == -1) or
+	 * {@link #makeAllPlanesDistanceIndependent} is activated, and if all
+	 * active planes override {@link SocialPlane#forceDependsOnTargetIdentity()}
+	 * to return false. None of the planes shipped with SofoSim does so, i.e.
+	 * with any identity-dependent plane active, forces are calculated exactly
+	 * (with O(n) cost per vertex) and this flag provides no speedup.
 	 */
-	private Double yForce = 0.0;
+	@SimulationParam
+	public static boolean useBarnesHutApproximation = false;
+
 	/**
-	 * holds sum of individual forces for currently iterated vertex in z
-	 * direction
+	 * Opening angle for Barnes-Hut approximation. A group of vertices is
+	 * approximated by its centre of mass if the ratio of its extent and its
+	 * distance is below this value (0 results in exact calculation).
 	 */
-	private Double zForce = 0.0;
+	@SimulationParam
+	public static double barnesHutOpeningAngle = 0.5;
+
+	/** tree used for Barnes-Hut approximation (lazily initialized) */
+	private BarnesHutTree barnesHutTree = null;
+
+	/** indicates if Barnes-Hut approximation is used in the current step */
+	private boolean barnesHutStep = false;
+
 	/**
-	 * sum of overall force to get a brief indication if forces exist for
-	 * boolean check; (the x + y force sums might result in zero force overall)
+	 * planes forces are calculated for in the current step (in plane order;
+	 * indices correspond to {@link ForceAccumulator#planeForces})
 	 */
-	private Double overallForce = 0.0;
+	private final ArrayList<SocialPlane<V>> activePlanes = new ArrayList<SocialPlane<V>>();
 
 	/**
 	 * Manual override for stepping. Will switch from JUNG scheduler to Mason
@@ -1127,17 +1560,31 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		step();
 	}
 
+	/**
+	 * Steps the layout from the MASON schedule. Headless layouts are always
+	 * stepped; visualized layouts only if the JUNG scheduler has been
+	 * switched off (see {@link GridSim#useMasonSchedulerForForceGraphs(boolean)}).
+	 */
+	@Override
+	public void step(SimState state) {
+		if (headless || sim.usingMasonSchedulerForGraphs()) {
+			step();
+		}
+	}
+
 	@Override
 	public void step() {
 		// System.out.println("Step");
-		if (!runVisualization) {
+		if (!headless && !runVisualization) {
 			return;
 		}
 		if (clusteringOfVertices) {
 			initializeClusterer();
 		}
 
-		vertices = new ArrayList<V>(graph.getVertices());
+		// synchronise position store with graph
+		stepBuffer.load(headless ? headlessVertices : graph.getVertices());
+		vertices = stepBuffer.getVertices();
 		// System.out.println("Vertices: " + vertices);
 		// initialize vector
 		if (clusteringOfVertices) {
@@ -1151,768 +1598,232 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 			distanceDeviationRatio.clear();
 			distanceDeviationRatioOutsidePrivateZones.clear();
 		}
-		// System.out.println("Vertices: " + vertices);
-		// now iterate through all vertices
-		for (int k = 0; k < vertices.size(); k++) {
-			V vertexOne = vertices.get(k);
+		// clear highlighted individuals for next round (or reset if
+		// deselected)
+		if (highlightedIndividual == null
+				|| vertices.contains(highlightedIndividual)) {
+			individualsToBeGreyedOut.clear();
+		}
 
-			// clear highlighted individuals for next round (or reset if
-			// deselected)
-			if (highlightedIndividual == null
-					|| (highlightedIndividual != null && highlightedIndividual == vertexOne)) {
-				individualsToBeGreyedOut.clear();
+		// capture positions at start of round (sequentially, as positions of
+		// new vertices may be randomized)
+		for (int k = 0; k < vertices.size(); k++) {
+			loadPosition(k);
+		}
+		activePlanes.clear();
+		activePlanes.addAll(planes.values());
+		if (useIndividualWeights) {
+			// capture individual weights once per round
+			weightCache.load(stepBuffer, activePlanes, weightProviders);
+		}
+		prepareSleepingVertices();
+		prepareSectorGrid();
+		prepareBarnesHutApproximation();
+		if (parallelForceCalculation) {
+			// calculate target positions for all vertices before moving any
+			getForceCalculationPool().invoke(
+					new ForceCalculationTask(0, vertices.size()));
+			for (int k = 0; k < vertices.size(); k++) {
+				applyTargetPosition(k);
 			}
-
-			// original 2D point from JUNG framework - to set cleanly at the end
-			// - but no operation on that
-			Point2D onePoint2D = transform(vertexOne);
-			// operation on 3D point
-			Point3d onePoint = getXYZForPoint(vertexOne);
-			// System.out.println("Getting pos " + vertexOne + ": " + onePoint);
-			/*
-			 * if(use3d){ //add vertex to 3D representation or update its
-			 * position if different in both visualizers (incl. inversion of y
-			 * axis) (based on 2D comparison) Double3D threeLoc =
-			 * sim.getMason3dLocations().getObjectLocation(vertexOne);
-			 * if(threeLoc == null || threeLoc.x != onePoint.getX() ||
-			 * (yGridSize - threeLoc.y) != onePoint.getY() || threeLoc.z !=
-			 * onePoint.getZ()){
-			 * sim.getMason3dLocations().setObjectLocation(vertexOne, new
-			 * Double3D(onePoint.getX(), yGridSize - onePoint.getY(),
-			 * onePoint.getZ())); } }
-			 */
-
-			// vector calculation:
-			// http://answers.yahoo.com/question/index?qid=20071027121208AAFPJan
-			// http://www.ibm.com/developerworks/java/library/j-antigrav/
-			xForce = 0.0;
-			yForce = 0.0;
-			zForce = 0.0;
-			overallForce = 0.0;
-
-			if (validateDistances) {
-				// reset validation force calculation
-				validationXForce = 0.0;
-				validationYForce = 0.0;
-				validationZForce = 0.0;
-				validationXForceOutsidePrivateZones = 0.0;
-				validationYForceOutsidePrivateZones = 0.0;
-				validationZForceOutsidePrivateZones = 0.0;
-				insidePrivateZone = false;
+		} else {
+			// now iterate through all vertices and move them one after another
+			for (int k = 0; k < vertices.size(); k++) {
+				calculateTargetPosition(k, sequentialAccumulator);
+				applyTargetPosition(k);
 			}
-			/*
-			 * if(useCenterBias){
-			 * 
-			 * //calculate center bias DirectionVector3D centerDistance =
-			 * calculateCenterBias(onePoint, toroidal); Point3d
-			 * centerDistanceAsCoordinate =
-			 * centerDistance.convertVectorToCartesianScreenCoordinates();
-			 * //sqrt bias double centerDistanceLength =
-			 * Math.sqrt(centerDistance.getLength()) / 500; xForce +=
-			 * centerDistanceAsCoordinate.getX() * centerDistanceLength; yForce
-			 * += centerDistanceAsCoordinate.getY() * centerDistanceLength;
-			 * if(use3d){
-			 * 
-			 * } else {
-			 * 
-			 * 
-			 * } //constant bias //xForce += centerBias.getX() *
-			 * this.centerBias; //yForce += centerBias.getY() * this.centerBias;
-			 * }
-			 */
+		}
+		updateConvergence();
+		// processing of individual vertices done - now compound operations
 
-			if (debug
-					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-				// reset debug output buffer
-				debugBuffer = new StringBuffer();
-				debugBuffer.append(LINE_SEPARATOR).append(vertexOne)
-						.append("'s Force at start: ").append(LINE_SEPARATOR);
-				debugBuffer.append("X force: ").append(xForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Y force: ").append(yForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Z force: ").append(zForce)
-						.append(LINE_SEPARATOR);
+		if (clusteringOfVertices && clusterVertexPoints != null
+				&& !clusterVertexPoints.isEmpty()) {
+			// cluster vertices
+			spatialClusterer.setVertexPoints(clusterVertexPoints);
+			if (spatialClusterer instanceof AsynchronousClusterer) {
+				((AsynchronousClusterer<V>) spatialClusterer).setRound(sim.schedule
+						.getSteps());
 			}
-
-			/*
-			 * int minimalDistance = ForceDirectedLayout.minimalDistance;
-			 * if(forceDependentMinimalDistance &&
-			 * forcesMap.containsKey(vertexOne)){ int fc =
-			 * forcesMap.get(vertexOne).intValue(); if(fc < 0){ minimalDistance
-			 * -= fc * 0.5; } }
-			 */
-
-			// if using sector-based calculation and having another than
-			// infinite perception distance
-			if (useSectorBasedCalculation && maximalPerceptionDistance != -1) {
-				if (secondaryVertices != null) {
-					// get visible vertices given my maximum range of perception
-					secondaryVertices = getVisibleVertices(onePoint);
-					// System.out.println("Can potentially see " +
-					// secondaryVertices.size() + " vertices.");
-				} else {
-					// initially do full calculation as no vertex is yet
-					// registered
-					secondaryVertices = vertices;
-				}
-			} else {
-				secondaryVertices = vertices;
+			spatialClusterer.applyClustering();
+			callClusterChangeListeners();
+			ArrayList<ArrayList<V>> clusters = spatialClusterer
+					.getLastResultList();
+			LinkedHashMap<ArrayList<V>, Color> clusterColorMap = new LinkedHashMap<ArrayList<V>, Color>();
+			int totalNumberOfClusteredAgents = 0;
+			// calculate centroids of all clusters in order to print them
+			// (under consideration of toroidal grid)
+			CentroidWithMinMaxValues[] centroids = null;
+			if (drawClustersOnGlassPane && glassPane != null) {
+				centroids = ClusterUtility.calculateCentroids(
+						(List) clusters, sim.GRID_WIDTH, sim.GRID_HEIGHT,
+						toroidal,
+						parallelForceCalculation ? getForceCalculationPool()
+								: null);
 			}
-
-			// fill up secondaryVertices with all vertices that are
-			// location-independent (and not within perception range)
-			if (makeAllPlanesDistanceIndependent) {
-				for (SocialPlane sphere : planes.values()) {
-					if (!sphere.perceptionallyConstrained()) {
-						try {
-							secondaryVertices
-									.addAll(sphere
-											.getPerceptionallyIndependentVertices(vertexOne));
-						} catch (NullPointerException e) {
-							// do nothing
-						} catch (ConcurrentModificationException e) {
-							// do nothing either
+			for (int i = 0; i < clusters.size(); i++) {
+				ArrayList<V> clusterVerticesList = clusters.get(i);
+				boolean contains = false;
+				Color clusterColor = null;
+				// if cluster color is defined, retrieve it from index
+				boolean repeatColorSelection = false;
+				do {
+					try {
+						for (Entry<V, Color> colorEntry : clusterColorIndex
+								.entrySet()) {
+							if (clusterVerticesList.contains(colorEntry
+									.getKey())) {
+								clusterColor = colorEntry.getValue();
+								contains = true;
+								if (purgeUnusedColors) {
+									usedColors.put(colorEntry.getKey(),
+											colorEntry.getValue());
+								}
+								break;
+							}
 						}
+					} catch (ConcurrentModificationException e) {
+						// do it again in case there is a concurrent access
+						repeatColorSelection = true;
 					}
-				}
-			}
+				} while (repeatColorSelection);
 
-			// calculate force between this and all other vertices. They are
-			// accumulated automatically.
-			// for(V vertex2: secondaryVertices){
-			for (int l = 0; l < secondaryVertices.size(); l++) {
-				V vertexTwo = secondaryVertices.get(l);
-				// Point2D twoPoint2D = transform(vertexTwo);
-				// use helper construct to access z dimension
-				Point3d twoPoint = getXYZForPoint(vertexTwo);
-				if (!vertexOne.equals(vertexTwo)
-						&& debug
-						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					debugBuffer.append(
-							"Coordinate for " + vertexTwo + ": " + twoPoint)
-							.append(LINE_SEPARATOR);
-					debugBuffer.append(
-							"About to calculate force between " + onePoint
-									+ " and " + twoPoint)
-							.append(LINE_SEPARATOR);
+				// else assign new color
+				if (!contains) {
+					do {
+						// get new color for cluster
+						clusterColor = getNewColor();
+					} while (clusterColorIndex.values().contains(clusterColor));
+					V newKey = clusterVerticesList.get(random
+							.nextInt(clusterVerticesList.size()));
+					clusterColorIndex.put(newKey, clusterColor);
+					if (purgeUnusedColors) {
+						usedColors.put(newKey, clusterColor);
+					}
 				}
-				calculateForceBetween(vertexOne, onePoint, vertexTwo, twoPoint);
-			}
-
-			// sum up all individual forces and determine actual movement
-			Point3d ultimateTargetPos = new Point3d(onePoint.x + xForce,
-					onePoint.y + yForce, onePoint.z + zForce);
-			// relevant for VALIDATION --> see further down
-
-			// if vertices are not exposed to repulsion when transiting they
-			// will eventually always reach their target
-			/*
-			 * if(noRepulsionWhenTransiting){
-			 * if(dirCalc.calculateAbsoluteDistance(onePoint,
-			 * ultimateTargetPos).getLength() > minimalDistance){ //no repulsion
-			 * as ultimately desired target position is out of range } else {
-			 * System.out.println("Overall force: " + overallForce); //if target
-			 * in proximity, check all related vertices for(Entry<V,
-			 * ForceDistanceContainer> entry: verticesInPrivateZone.entrySet()){
-			 * DirectionVector3D distVector = entry.getValue().distanceVector;
-			 * System.out.println("Force: " + entry.getValue().force);
-			 * //calculate repulsion from reachable ultimate target and indicate
-			 * whether force is attracting or repulsing (to choose in- or
-			 * outgroup repulsion) double force =
-			 * calculateRepulsion((entry.getValue().force > 0),
-			 * distVector.getLength());
-			 * System.out.println("Resulting repulsing force between " +
-			 * onePoint + " and " + transform(entry.getKey()) + ": " + force);
-			 * Point3d convertedForceCoords =
-			 * distVector.convertAngleToCartesianScreenCoordinates(); xForce +=
-			 * convertedForceCoords.getX() * force; yForce +=
-			 * convertedForceCoords.getY() * force; zForce +=
-			 * convertedForceCoords.getZ() * force; overallForce += force; }
-			 * verticesInPrivateZone.clear(); //calculate new ultimate target
-			 * position given amended forces ultimateTargetPos = new
-			 * Point3d(onePoint.getX() + xForce, onePoint.getY() + yForce,
-			 * onePoint.getZ() + zForce); } }
-			 */
-
-			if (debug
-					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-				debugBuffer.append("--- SUM OF FORCES on ").append(vertexOne)
-						.append(" - My position: ").append(onePoint)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Ultimate target pos: ")
-						.append(ultimateTargetPos).append(LINE_SEPARATOR);
-				debugBuffer.append("XForce sum: ").append(xForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("YForce sum: ").append(yForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("ZForce sum: ").append(zForce)
-						.append(LINE_SEPARATOR);
-			}
-
-			// calculate composite force vector (without transposing)
-			DirectionVector3D dirVect = dirCalc.calculateAbsoluteDistance(
-					onePoint, ultimateTargetPos);
-			// get desired force strength
-			double resultantForce = dirVect.getLength();
-			// update map with force information
-			forcesMap.put(vertexOne, resultantForce
-					* (overallForce < 0 ? -1 : 1));
-			// non-transposed target coordinate
-			Point3d targetCoord = null;
-			if (maxMovementPerStep == -1.0) {
-				targetCoord = ultimateTargetPos;
-			} else {
-				// max movement per round is constrained
-
-				if (debug
-						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					debugBuffer.append("Vector: ").append(dirVect.toString())
-							.append(LINE_SEPARATOR);
-					debugBuffer
-							.append("Desired target coordinates: ")
-							.append(dirVect
-									.convertVectorToCartesianScreenCoordinates())
-							.append(LINE_SEPARATOR);
-					debugBuffer.append("Force: ").append(resultantForce)
-							.append(LINE_SEPARATOR);
-				}
-
-				// reduce force to physically reachable distance in one step
-				// (maximum movement) --- -1 for unlimited movement
-				if (resultantForce < 0) {
-					resultantForce = Math.max(resultantForce,
-							-maxMovementPerStep);
-				} else if (resultantForce > 0) {
-					resultantForce = Math.min(resultantForce,
-							maxMovementPerStep);
-				}
-				// adjust length in vector
-				dirVect.setLength(resultantForce);
+				// System.out.println("Cluster " + i + ": " +
+				// clusterVerticesList.size());
+				// Point2D centroid =
+				// ClusterUtility.calculateCentroid(clusterVerticesList).centroid;
+				// System.out.println("Centroid of cluster: " + centroid);
 
-				if (debug
-						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					debugBuffer
-							.append("Reduced target coordinates: ")
-							.append(dirVect
-									.convertVectorToCartesianScreenCoordinates())
-							.append(LINE_SEPARATOR);
-				}
+				// adding to total number of clustered agents
+				totalNumberOfClusteredAgents += clusterVerticesList.size();
 
-				// obtain adjusted relative cartesian coordinates for shortened
-				// force strength
-				targetCoord = dirVect
-						.convertVectorToCartesianScreenCoordinates();
-				// add to current location
-				targetCoord.set(onePoint.x + targetCoord.x, onePoint.y
-						+ targetCoord.y, onePoint.z + targetCoord.z);
+				ArrayList<String> secClusters = new ArrayList<String>();
+				if (clusterSecondLevel) {
+					attractionClusterer
+							.clusterMatrixEntries(clusterVerticesList);
+					secClusters = attractionClusterer
+							.getListOfClusterCharacteristics();
 
-				if (debug
-						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					debugBuffer.append("Calculated target coordinates: ")
-							.append(targetCoord).append(LINE_SEPARATOR);
+					// System.out.println("SubClusters for super cluster " +
+					// clusterVerticesList.size() + ": (" + secClusters.size() +
+					// "), " + secClusters.toString());
 				}
-			}
 
-			// VALIDATION (stuff taken from earlier)
-			// compare desired and actual target position before transposing
-			// actual position to avoid skewed results (if one requires
-			// transposing and the other not (e.g. 599 vs. 601 if grid size is
-			// 600))
-			if (validateDistances) {
-				Point3d validationTargetPos = new Point3d(onePoint.x
-						+ validationXForce, onePoint.y + validationYForce,
-						onePoint.z + validationZForce);
-				Double desiredDistance = dirCalc.calculateGridDistance(
-						onePoint, validationTargetPos).getLength();
-				if (validateDistanceOnCompoundForceLevel) {
-					if (maxMovementPerStep != -1.0) {
-						// - does same transformation as original code -->
-						// conversion to vector and reconversion to coordinates
-						// - minor differences
-						DirectionVector3D validationDirVect = dirCalc
-								.calculateAbsoluteDistance(onePoint,
-										validationTargetPos);
-						Double validationResultantForce = validationDirVect
-								.getLength();
+				if (drawClustersOnGlassPane && glassPane != null) {
 
-						// do force resultant reduction as in full version -
-						// should it do?
-						if (validationResultantForce < 0) {
-							validationResultantForce = Math.max(
-									validationResultantForce,
-									-maxMovementPerStep);
-						} else if (resultantForce > 0) {
-							validationResultantForce = Math.min(
-									validationResultantForce,
-									maxMovementPerStep);
-						}
-						System.err
-								.println("CAUTION: Resultant length reduction applied for validation calculation. Do you want that?");
+					// iterating the cluster elements for every agent
+					for (int j = 0; j < clusterVerticesList.size(); j++) {
+						V vPoint = clusterVerticesList.get(j);
 
-						if (debug
-								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-							debugBuffer
-									.append("Validation: Vector length reduction (as of maxMovementPerRound) from ")
-									.append(validationDirVect.getLength())
-									.append(" to ")
-									.append(validationResultantForce)
-									.append(LINE_SEPARATOR);
+						// System.out.println("Attractor spheres for " +
+						// vPoint.vertex + ": " +
+						// attractionClusterer.getSpheresForAgent((V)
+						// vPoint.vertex));
+						if (clusterSecondLevel) {
+							ArrayList<String> agentPlanes = attractionClusterer
+									.getSpheresForAgent(vPoint);
+							if (agentPlanes != null && !agentPlanes.isEmpty()) {
+								String planesForVertex = agentPlanes.toString();
+								if (!secondaryPlanes
+										.containsKey(planesForVertex)) {
+									secondaryPlanes.put(planesForVertex,
+											secondaryPlanes.size());
+									callSecondaryColorsToListeners();
+									// System.out.println("Now " +
+									// secondarySpheres.size() + " entries.");
+								}
+								// paint circle around vertices in according
+								// colours
+								Color subCol = secClusterColors
+										.get(secondaryPlanes
+												.get(planesForVertex));
+								if (subCol == null) {
+									// if not enough colors predefined, generate
+									// new one and assign to index
+									System.err
+											.println("Not enough colours defined for secondary clusters. Current "
+													+ secClusterColors.size()
+													+ " colors available.\nColor missing for sphere "
+													+ planesForVertex
+													+ "(Index: "
+													+ secondaryPlanes
+															.get(planesForVertex)
+													+ ")");
+									System.out
+											.print("Determining new cluster color... ");
+									do {
+										// get new color and ensure it has not
+										// been used yet
+										subCol = getNewColor();
+									} while (secClusterColors
+											.containsValue(subCol));
+									// add new color
+									secClusterColors.put(secondaryPlanes
+											.get(planesForVertex), subCol);
+									// inform UI listener
+									callSecondaryColorsToListeners();
+									System.out.println(subCol);
+								}
+								// display filled circle around clustered vertex
+								subCol = new Color(subCol.getRed(),
+										subCol.getGreen(), subCol.getBlue(),
+										secondaryAndTagColorAlpha);
+								int circleDist = (int) maxClusterNeighbourDistance;
+								//paint second-level clusters
+								glassPane.paintCircle(new CircleShape3D(
+										((VertexPoint3D) vPoint).point,
+										circleDist, true, subCol)
+										.toCircleShape());
+							}
+						} else {
+							// first level cluster visualization
+							glassPane.paintCircle(new CircleShape3D(
+									((VertexPoint3D) vPoint).point,
+									(int) maxClusterNeighbourDistance, true,
+									clusterColor).toCircleShape());
+							// additionally, send tag distribution information
+							// to eventual listeners (displayed in text area
+							// otherwise showing information on second-level
+							// clustering
+							callTagDistributionListeners();
 						}
-						// adjust length in vector
-						validationDirVect.setLength(validationResultantForce);
+					}
 
-						Point3d validationMappedCoordinate = validationDirVect
-								.convertVectorToCartesianScreenCoordinates();
-						validationMappedCoordinate.add(onePoint);
-						// System.out.println("Orig validation target vs. recalculated: "
-						// +
-						// validationTargetPos.distance(validationMappedCoordinate));
-						validationTargetPos = validationMappedCoordinate;
-						// update desired target position
-						desiredDistance = dirCalc.calculateGridDistance(
-								onePoint, validationTargetPos).getLength();
+					CentroidWithMinMaxValues centroidCalc = centroids[i];
+					Point2D centroid = centroidCalc.centroid;
+					if (clusterSecondLevel && clusterVerticesList.size() > 1) {
+						// indicate number of sub-clusters on centroid (if
+						// second level clustering as activated)
+						glassPane.paintText(new TextShape(centroid, String
+								.valueOf(secClusters.size()),
+								subClusterCountFont, Color.BLACK));
 					}
-					// difference between ideal (correct) position and enforced
-					// one (based on repulsion)
-					Double difference = dirCalc.calculateGridDistance(
-							validationTargetPos, targetCoord).getLength();
+					// paint centroid of cluster
+					
+					glassPane.paintCircle(new CircleShape(centroid, 3, true,
+							Color.black));
 
-					if (!Double.isInfinite(difference)
-							&& sim.schedule.getSteps() > 5
-							// TODO exclude low values
-							&& difference >= 0.1 && desiredDistance >= 0.1) {
-						// calculate difference between calculated target
-						// distance (including natural repulsion and force
-						// manipulations (maxMovementStep)) and purely
-						// force-based target location
-						actualVsDesiredDistance.put(vertexOne.toString(),
-								difference);
-
-						if (!insidePrivateZone) {
-							// System.out.println("Registered difference for " +
-							// vertexOne.toString());
-							actualVsDesiredDistanceOutsidePrivateZone.put(
-									vertexOne.toString(), difference);
-						}
-						// relative distance of (distance between valid and
-						// skewed point) to (distance from current location to
-						// valid point)
-						// System.out.println(vertexOne.toString() +
-						// ": Distance between two coords (right and skewed): "
-						// + validationTargetPos.distance(targetCoord));
-						// System.out.println("Distance between current coordinate and right target: "
-						// + onePoint.distance(validationTargetPos));
-						// System.out.println("Relative difference: " +
-						// validationTargetPos.distance(targetCoord)/onePoint.distance(validationTargetPos));
-						distanceDeviationRatio.put(vertexOne.toString(),
-								difference / desiredDistance);
-						if (!insidePrivateZone) {
-							distanceDeviationRatioOutsidePrivateZones.put(
-									vertexOne.toString(), difference
-											/ desiredDistance);
-						}
-						if (actualVsDesiredDistance.get(vertexOne.toString()) > 50
-								|| distanceDeviationRatio.get(vertexOne
-										.toString()) > 10) {
-							System.out
-									.println(new StringBuffer(vertexOne
-											.toString())
-											.append(": Difference between desired point ")
-											.append(validationTargetPos)
-											.append(" and actual ")
-											.append(targetCoord)
-											.append(": ")
-											.append(LINE_SEPARATOR)
-											.append(actualVsDesiredDistance
-													.get(vertexOne.toString()))
-											.append(", desired distance: ")
-											.append(desiredDistance)
-											.append(", relative deviation: ")
-											.append(distanceDeviationRatio
-													.get(vertexOne.toString()))
-											.append(" --- in private zone: ")
-											.append(insidePrivateZone));
-						}
-						if (debug
-								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-							debugBuffer
-									.append("Difference between desired target point ")
-									.append(validationTargetPos)
-									.append(LINE_SEPARATOR)
-									.append(" and actual target (incl. natural repulsion) ")
-									.append(targetCoord)
-									.append(": ")
-									.append(difference)
-									.append(LINE_SEPARATOR)
-									.append(" (Distance from current to desired position: ")
-									.append(desiredDistance).append("),")
-									.append(LINE_SEPARATOR).append(" ratio: ")
-									.append(difference / desiredDistance)
-									.append(" -- in private zone: ")
-									.append(insidePrivateZone)
-									.append(LINE_SEPARATOR);
-						}
-					}
-				} else {
-					if (sim.schedule.getSteps() > 5) {
-						// individual calculation
-						// sum of aggregated differences divided by 'correct'
-						// distance -> errors/correct distance -> 1 means: as
-						// many errors as correct distance
-						distanceDeviationRatio.put(
-								vertexOne.toString(),
-								actualVsDesiredDistance.get(vertexOne
-										.toString()) / desiredDistance);
-						if (!insidePrivateZone) {
-							distanceDeviationRatioOutsidePrivateZones.put(
-									vertexOne.toString(),
-									actualVsDesiredDistanceOutsidePrivateZone
-											.get(vertexOne.toString())
-											/ desiredDistance);
-						}
-						if (debug
-								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-							Double debugDiff = actualVsDesiredDistance
-									.get(vertexOne.toString());
-							Double debugRatio = distanceDeviationRatio
-									.get(vertexOne.toString());
-							debugBuffer
-									.append("Difference between desired target point ")
-									.append(validationTargetPos)
-									.append(LINE_SEPARATOR)
-									.append(" and actual target (incl. natural repulsion) ")
-									.append(targetCoord)
-									.append(": ")
-									.append(debugDiff)
-									.append(LINE_SEPARATOR)
-									.append(" (Distance from current to desired position: ")
-									.append(desiredDistance).append("),")
-									.append(LINE_SEPARATOR).append(" ratio: ")
-									.append(debugRatio)
-									.append(" -- in private zone: ")
-									.append(insidePrivateZone)
-									.append(LINE_SEPARATOR);
-						}
-					}
-				}
-			}
-
-			// transpose target coordinates for toroidal grid
-			targetCoord = dirCalc.transposeTarget(targetCoord, toroidal);
-
-			/*
-			 * if(!dirCalc.doDimensionBoundaryChecks(targetCoord,
-			 * vertexOne.toString())){ throw new
-			 * RuntimeException("Invalid coordinate for " + vertexOne.toString()
-			 * + " detected: " + targetCoord + " Before transpose: " + before);
-			 * }
-			 */
-
-			if (debug
-					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-				debugBuffer.append("Transposed target coords: ")
-						.append(targetCoord).append(LINE_SEPARATOR);
-			}
-
-			// set new location of vertex - done
-			if (onePoint.equals(targetCoord)) {
-				// System.out.println("Same pos.");
-			} else {
-				// System.out.println("Not same pos.");
-				// set original JUNG 2D point
-				onePoint2D.setLocation(targetCoord.x, targetCoord.y);
-				// onePoint.setLocation(targetCoord);
-				// if(use3d){
-				// update position in 3D graph (invert y axis)
-				setXYZPoint(vertexOne, targetCoord);
-				// sim.getMason3dLocations().setObjectLocation(vertexOne, new
-				// Double3D(targetCoord.getX(), yGridSize - targetCoord.getY(),
-				// targetCoord.getZ()));
-				// }
-				if (drawAndManageSectors) {
-					registerVertexWithSectors(vertexOne, targetCoord);
-				}
-			}
-			// add new position of vertex for cluster calculation
-			if (clusteringOfVertices && clusterVertexPoints != null) {
-				// create new vertex instance - dodgy but fast
-				V vertices = (V) new VertexPoint3D<String>(
-						((VertexPoint3D<String>) vertexOne).vertex,
-						new Point3d(onePoint.x, onePoint.y, onePoint.z));
-				// fill vector if clustering is done
-				clusterVertexPoints.add(vertices);
-			}
-
-			if (drawForces && overallForce != 0) {
-				// raw force sum (very long lines)
-				// double endX = onePoint.getX() + xForce;
-				// double endY = onePoint.getY() + yForce;
-
-				// adjust the length of the vector to make it more visible than
-				// reduced resultant force
-				DirectionVector3D dirCalcDisplay = dirVect;
-				dirCalcDisplay.setLength(resultantForce * 3);
-				Point3d end = dirCalcDisplay
-						.convertVectorToCartesianScreenCoordinates();
-				double endX = onePoint.x + end.x;
-				double endY = onePoint.y + end.y;
-
-				// reduced and transposed force (hardly visible if max. movement
-				// steps is very low)
-				// double endX = targetCoord.getX();
-				// double endY = targetCoord.getY();
-
-				// endX = dirCalc.transposeTargetX(endX, toroidal);
-				// endY = dirCalc.transposeTargetY(endY, toroidal);
-				if (vertexShapeRenderer == null) {
-					vertexShapeRenderer = ((ForceGraphInitializer) sim.graphHandler
-							.getGraphInitializer(ForceGraphInitializer.FORCES_GRAPH)).renderer;
-				} else {
-					// may still be null in the initial rounds (depending on
-					// initialization order)
-					vertexShapeRenderer.forceLine.put(vertexOne, new LineShape(
-							0, onePoint2D, new Point2D.Double(endX, endY),
-							(overallForce > 0), null, null));
-				}
-			}
-
-			// drawing on glass pane is only useful if done() is set to false,
-			// because graph has an own update thread (no delay)
-			if (drawOnGlassPane) {
-				initializeGlassPane();
-				if (drawForcesOnGlassPane && overallForce != 0) {
-
-					// raw force sum
-					double endX = onePoint.x + xForce;
-					double endY = onePoint.y + yForce;
-					// reduced and transposed force (hardly visible if max.
-					// movement steps is very low)
-					// double endX = targetCoord.getX();
-					// double endY = targetCoord.getY();
-
-					// endX = dirCalc.transposeTargetX(endX, toroidal);
-					// endY = dirCalc.transposeTargetY(endY, toroidal);
-					Color col = null;
-					if (overallForce > 0) {
-						col = Color.BLACK;
-					} else {
-						col = Color.RED;
-					}
-
-					glassPane.paintLine(new LineShape(calculateLineShapeId(
-							vertexOne, vertexOne, col), onePoint2D,
-							new Point2D.Double(endX, endY), (overallForce > 0),
-							col, null));
-				}
-				if (drawDistancesOnGlassPane) {
-					// draw distances around agents
-					// System.out.println("Minimal distance: " +
-					// minimalDistance);
-					glassPane.paintCircle(new CircleShape(onePoint2D,
-							minimalDistance));
-					// glassPane.paintCircle(new CircleShape(onePoint,
-					// maximalDistance));
-				}
-				if (drawTagsOnGlassPane) {
-					glassPane.paintText(new TextShape(onePoint2D,
-							requestTextToBePrintedForVertex(vertexOne),
-							individualTagFont, Color.BLACK));
-				}
-			}
-			// finally write all debug stuff for this vertex
-			if (debug && writeDebugToIO) {
-				if (writeDebugToOutfileInsteadConsole) {
-					writer.write(debugBuffer);
-				} else {
-					System.out.print(debugBuffer);
-				}
-			}
-			if (debug && writeDebugToVertexOutputListeners) {
-				notifyDebugOutputListener(vertexOne, debugBuffer);
-			}
-		}
-		// processing of individual vertices done - now compound operations
-
-		if (clusteringOfVertices && clusterVertexPoints != null
-				&& !clusterVertexPoints.isEmpty()) {
-			// cluster vertices
-			spatialClusterer.setVertexPoints(clusterVertexPoints);
-			spatialClusterer.applyClustering();
-			ArrayList<ArrayList<V>> clusters = spatialClusterer
-					.getLastResultList();
-			LinkedHashMap<ArrayList<V>, Color> clusterColorMap = new LinkedHashMap<ArrayList<V>, Color>();
-			int totalNumberOfClusteredAgents = 0;
-			for (int i = 0; i < clusters.size(); i++) {
-				ArrayList<V> clusterVerticesList = clusters.get(i);
-				boolean contains = false;
-				Color clusterColor = null;
-				// if cluster color is defined, retrieve it from index
-				boolean repeatColorSelection = false;
-				do {
-					try {
-						for (Entry<V, Color> colorEntry : clusterColorIndex
-								.entrySet()) {
-							if (clusterVerticesList.contains(colorEntry
-									.getKey())) {
-								clusterColor = colorEntry.getValue();
-								contains = true;
-								if (purgeUnusedColors) {
-									usedColors.put(colorEntry.getKey(),
-											colorEntry.getValue());
-								}
-								break;
-							}
-						}
-					} catch (ConcurrentModificationException e) {
-						// do it again in case there is a concurrent access
-						repeatColorSelection = true;
-					}
-				} while (repeatColorSelection);
-
-				// else assign new color
-				if (!contains) {
-					do {
-						// get new color for cluster
-						clusterColor = getNewColor();
-					} while (clusterColorIndex.values().contains(clusterColor));
-					V newKey = clusterVerticesList.get(random
-							.nextInt(clusterVerticesList.size()));
-					clusterColorIndex.put(newKey, clusterColor);
-					if (purgeUnusedColors) {
-						usedColors.put(newKey, clusterColor);
-					}
-				}
-				// System.out.println("Cluster " + i + ": " +
-				// clusterVerticesList.size());
-				// Point2D centroid =
-				// ClusterUtility.calculateCentroid(clusterVerticesList).centroid;
-				// System.out.println("Centroid of cluster: " + centroid);
-
-				// adding to total number of clustered agents
-				totalNumberOfClusteredAgents += clusterVerticesList.size();
-
-				ArrayList<String> secClusters = new ArrayList<String>();
-				if (clusterSecondLevel) {
-					attractionClusterer
-							.clusterMatrixEntries(clusterVerticesList);
-					secClusters = attractionClusterer
-							.getListOfClusterCharacteristics();
-
-					// System.out.println("SubClusters for super cluster " +
-					// clusterVerticesList.size() + ": (" + secClusters.size() +
-					// "), " + secClusters.toString());
-				}
-
-				if (drawClustersOnGlassPane && glassPane != null) {
-
-					// iterating the cluster elements for every agent
-					for (int j = 0; j < clusterVerticesList.size(); j++) {
-						V vPoint = clusterVerticesList.get(j);
-
-						// System.out.println("Attractor spheres for " +
-						// vPoint.vertex + ": " +
-						// attractionClusterer.getSpheresForAgent((V)
-						// vPoint.vertex));
-						if (clusterSecondLevel) {
-							ArrayList<String> agentPlanes = attractionClusterer
-									.getSpheresForAgent(vPoint);
-							if (agentPlanes != null && !agentPlanes.isEmpty()) {
-								String planesForVertex = agentPlanes.toString();
-								if (!secondaryPlanes
-										.containsKey(planesForVertex)) {
-									secondaryPlanes.put(planesForVertex,
-											secondaryPlanes.size());
-									callSecondaryColorsToListeners();
-									// System.out.println("Now " +
-									// secondarySpheres.size() + " entries.");
-								}
-								// paint circle around vertices in according
-								// colours
-								Color subCol = secClusterColors
-										.get(secondaryPlanes
-												.get(planesForVertex));
-								if (subCol == null) {
-									// if not enough colors predefined, generate
-									// new one and assign to index
-									System.err
-											.println("Not enough colours defined for secondary clusters. Current "
-													+ secClusterColors.size()
-													+ " colors available.\nColor missing for sphere "
-													+ planesForVertex
-													+ "(Index: "
-													+ secondaryPlanes
-															.get(planesForVertex)
-													+ ")");
-									System.out
-											.print("Determining new cluster color... ");
-									do {
-										// get new color and ensure it has not
-										// been used yet
-										subCol = getNewColor();
-									} while (secClusterColors
-											.containsValue(subCol));
-									// add new color
-									secClusterColors.put(secondaryPlanes
-											.get(planesForVertex), subCol);
-									// inform UI listener
-									callSecondaryColorsToListeners();
-									System.out.println(subCol);
-								}
-								// display filled circle around clustered vertex
-								subCol = new Color(subCol.getRed(),
-										subCol.getGreen(), subCol.getBlue(),
-										secondaryAndTagColorAlpha);
-								int circleDist = (int) maxClusterNeighbourDistance;
-								//paint second-level clusters
-								glassPane.paintCircle(new CircleShape3D(
-										((VertexPoint3D) vPoint).point,
-										circleDist, true, subCol)
-										.toCircleShape());
-							}
-						} else {
-							// first level cluster visualization
-							glassPane.paintCircle(new CircleShape3D(
-									((VertexPoint3D) vPoint).point,
-									(int) maxClusterNeighbourDistance, true,
-									clusterColor).toCircleShape());
-							// additionally, send tag distribution information
-							// to eventual listeners (displayed in text area
-							// otherwise showing information on second-level
-							// clustering
-							callTagDistributionListeners();
-						}
-					}
-
-					// calculate centroid of cluster in order to print it (under
-					// consideration of toroidal grid)
-					CentroidWithMinMaxValues centroidCalc = ClusterUtility
-							.calculateCentroid(
-									(List<VertexPoint3D>) clusterVerticesList,
-									maxClusterNeighbourDistance,
-									sim.GRID_WIDTH, sim.GRID_HEIGHT, toroidal);
-					Point2D centroid = centroidCalc.centroid;
-					if (clusterSecondLevel && clusterVerticesList.size() > 1) {
-						// indicate number of sub-clusters on centroid (if
-						// second level clustering as activated)
-						glassPane.paintText(new TextShape(centroid, String
-								.valueOf(secClusters.size()),
-								subClusterCountFont, Color.BLACK));
-					}
-					// paint centroid of cluster
-					
-					glassPane.paintCircle(new CircleShape(centroid, 3, true,
-							Color.black));
-
-					// print cluster information from CommunicationSpace
-					// System.out.println("Printing stats for cluster containing "
-					// + clusterVerticesList.size() + " individuals.");
-					if (printClusterStats && clusterInformationHandler != null) {
-						Point2D offsetPoint = centroid;
-						// derive radius in order to dynamically place cluster
-						// information outside of cluster if possible
-						float xRadius = centroidCalc.xRadius;
-						float yRadius = centroidCalc.yRadius;
+					// print cluster information from CommunicationSpace
+					// System.out.println("Printing stats for cluster containing "
+					// + clusterVerticesList.size() + " individuals.");
+					if (printClusterStats && clusterInformationHandler != null) {
+						Point2D offsetPoint = centroid;
+						// derive radius in order to dynamically place cluster
+						// information outside of cluster if possible
+						float xRadius = centroidCalc.xRadius;
+						float yRadius = centroidCalc.yRadius;
 
 						// if splits in clusters, derive optimal printing place
 						// from that information
@@ -2095,35 +2006,1129 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 				}
 
 			}
-			// inform all listeners about first level clustering results
-			callClusterListeners(clusterColorMap, totalNumberOfClusteredAgents);
-			if (purgeUnusedColors) {
-				// purging unused colors from index
-				if (clusterColorIndex.size() != usedColors.size()) {
-					clusterColorIndex = new HashMap<V, Color>(usedColors);
+			// inform all listeners about first level clustering results
+			callClusterListeners(clusterColorMap, totalNumberOfClusteredAgents);
+			if (purgeUnusedColors) {
+				// purging unused colors from index
+				if (clusterColorIndex.size() != usedColors.size()) {
+					clusterColorIndex = new HashMap<V, Color>(usedColors);
+				}
+				usedColors.clear();
+			}
+			if (clusterSecondLevel) {
+				attractionClusterer.clearAttractionValues();
+				// System.out.println("next round");
+			}
+			// System.out.println("Clustered vertices: " + clusteredVertices +
+			// ", unclustered: " + Math.rint(new
+			// Float(vertices.size()-clusteredVertices)));
+		}
+		// print highlighted tags references in second box instead of clustering
+		// information
+		if (highlightTags && !clusterSecondLevel) {
+			callHighlightedTagColorsToListeners();
+		} else if (!clusteringOfVertices && !clusterSecondLevel) {
+			// update tag distribution if no clustering whatsoever and no
+			// highlighting
+			callTagDistributionListeners();
+		}
+		//System.out.println("Round done.");
+	}
+
+	/**
+	 * Calculates the forces acting on the vertex with the given index (based
+	 * on the positions held in the step buffer) and writes the resulting
+	 * target position to the step buffer. Does not modify any shared state
+	 * other than via {@link #sideEffectLock}, so it can be called concurrently
+	 * for different vertices.
+	 * 
+	 * @param index
+	 *            index of vertex in step buffer
+	 * @param accumulator
+	 *            accumulator used to sum up forces
+	 */
+	private void calculateTargetPosition(int index,
+			ForceAccumulator accumulator) {
+		V vertexOne = stepBuffer.getVertex(index);
+		// operation on 3D point
+		Point3d onePoint = stepBuffer.getPosition(index);
+		accumulator.vertexIndex = index;
+		if (stepBuffer.isAsleep(index)) {
+			// keep position without calculating forces
+			accumulator.reset();
+			stepBuffer.store(index, onePoint, accumulator, 0.0);
+			return;
+		}
+
+		// vector calculation:
+		// http://answers.yahoo.com/question/index?qid=20071027121208AAFPJan
+		// http://www.ibm.com/developerworks/java/library/j-antigrav/
+		accumulator.reset();
+
+		if (debug
+				&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+			// reset debug output buffer
+			accumulator.debugBuffer = new StringBuffer();
+			accumulator.debugBuffer.append(LINE_SEPARATOR).append(vertexOne)
+					.append("'s Force at start: ").append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("X force: ")
+					.append(accumulator.xForce).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Y force: ")
+					.append(accumulator.yForce).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Z force: ")
+					.append(accumulator.zForce).append(LINE_SEPARATOR);
+		}
+
+		if (barnesHutStep) {
+			accumulateForcesUsingBarnesHutTree(accumulator, index, vertexOne,
+					onePoint);
+		} else if (verletStep || sectorBasedStep) {
+			if (verletStep) {
+				// only consider vertices in neighbour list
+				calculateForcesFromVertices(accumulator, index, vertexOne,
+						onePoint, neighbourLists.getMembers(),
+						neighbourLists.getListStart(index),
+						neighbourLists.getListSize(index));
+			} else {
+				// only consider vertices in sectors within perception range
+				int[] neighbours = accumulator.getNeighbourArray(stepBuffer
+						.size());
+				int neighbourCount = sectorGrid.collectNeighbours(onePoint.x,
+						onePoint.y, onePoint.z, neighbours);
+				calculateForcesFromVertices(accumulator, index, vertexOne,
+						onePoint, neighbours, 0, neighbourCount);
+			}
+			if (makeAllPlanesDistanceIndependent) {
+				ArrayList<V> independentVertices = getPerceptionallyIndependentVertices(vertexOne);
+				for (int l = 0; l < independentVertices.size(); l++) {
+					V vertexTwo = independentVertices.get(l);
+					calculateForceFromVertex(accumulator, vertexOne, onePoint,
+							vertexTwo, getPositionForForceCalculation(
+									vertexTwo, accumulator));
+				}
+			}
+		} else {
+			// calculate force between this and all other vertices. They are
+			// accumulated automatically.
+			int[] others = accumulator.getNeighbourArray(stepBuffer.size());
+			for (int l = 0; l < stepBuffer.size(); l++) {
+				others[l] = l;
+			}
+			calculateForcesFromVertices(accumulator, index, vertexOne,
+					onePoint, others, 0, stepBuffer.size());
+			if (makeAllPlanesDistanceIndependent) {
+				ArrayList<V> independentVertices = getPerceptionallyIndependentVertices(vertexOne);
+				for (int l = 0; l < independentVertices.size(); l++) {
+					V vertexTwo = independentVertices.get(l);
+					calculateForceFromVertex(accumulator, vertexOne, onePoint,
+							vertexTwo, getPositionForForceCalculation(
+									vertexTwo, accumulator));
+				}
+			}
+		}
+
+		// sum up all individual forces and determine actual movement
+		Point3d ultimateTargetPos = new Point3d(onePoint.x
+				+ accumulator.xForce, onePoint.y + accumulator.yForce,
+				onePoint.z + accumulator.zForce);
+		// relevant for VALIDATION --> see further down
+
+		if (debug
+				&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+			accumulator.debugBuffer.append("--- SUM OF FORCES on ")
+					.append(vertexOne).append(" - My position: ")
+					.append(onePoint).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Ultimate target pos: ")
+					.append(ultimateTargetPos).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("XForce sum: ")
+					.append(accumulator.xForce).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("YForce sum: ")
+					.append(accumulator.yForce).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("ZForce sum: ")
+					.append(accumulator.zForce).append(LINE_SEPARATOR);
+		}
+
+		// get desired force strength (length of composite force vector)
+		double forceLength = Math.sqrt(accumulator.xForce * accumulator.xForce
+				+ accumulator.yForce * accumulator.yForce + accumulator.zForce
+				* accumulator.zForce);
+		double resultantForce = forceLength;
+		// force information for UI
+		double signedResultantForce = resultantForce
+				* (accumulator.overallForce < 0 ? -1 : 1);
+		// non-transposed target coordinate
+		Point3d targetCoord = null;
+		if (maxMovementPerStep == -1.0) {
+			targetCoord = ultimateTargetPos;
+		} else {
+			// max movement per round is constrained
+
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.debugBuffer
+						.append("Desired target coordinates: ")
+						.append(new Point3d(accumulator.xForce,
+								accumulator.yForce, accumulator.zForce))
+						.append(LINE_SEPARATOR);
+				accumulator.debugBuffer.append("Force: ")
+						.append(resultantForce).append(LINE_SEPARATOR);
+			}
+
+			// reduce force to physically reachable distance in one step
+			// (maximum movement) --- -1 for unlimited movement
+			if (resultantForce < 0) {
+				resultantForce = Math.max(resultantForce, -maxMovementPerStep);
+			} else if (resultantForce > 0) {
+				resultantForce = Math.min(resultantForce, maxMovementPerStep);
+			}
+			// obtain adjusted relative cartesian coordinates for shortened
+			// force strength
+			double scale = forceLength == 0.0 ? 0.0 : resultantForce
+					/ forceLength;
+			targetCoord = new Point3d(accumulator.xForce * scale,
+					accumulator.yForce * scale, accumulator.zForce * scale);
+
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.debugBuffer
+						.append("Reduced target coordinates: ")
+						.append(targetCoord).append(LINE_SEPARATOR);
+			}
+
+			// add to current location
+			targetCoord.add(onePoint);
+
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.debugBuffer.append("Calculated target coordinates: ")
+						.append(targetCoord).append(LINE_SEPARATOR);
+			}
+		}
+
+		// VALIDATION (stuff taken from earlier)
+		// compare desired and actual target position before transposing
+		// actual position to avoid skewed results (if one requires
+		// transposing and the other not (e.g. 599 vs. 601 if grid size is
+		// 600))
+		if (validateDistances) {
+			synchronized (sideEffectLock) {
+				Point3d validationTargetPos = new Point3d(onePoint.x
+						+ accumulator.validationXForce, onePoint.y
+						+ accumulator.validationYForce, onePoint.z
+						+ accumulator.validationZForce);
+				Double desiredDistance = dirCalc.calculateGridDistance(
+						onePoint, validationTargetPos).getLength();
+				if (validateDistanceOnCompoundForceLevel) {
+					if (maxMovementPerStep != -1.0) {
+						// - does same transformation as original code -->
+						// conversion to vector and reconversion to coordinates
+						// - minor differences
+						DirectionVector3D validationDirVect = dirCalc
+								.calculateAbsoluteDistance(onePoint,
+										validationTargetPos);
+						Double validationResultantForce = validationDirVect
+								.getLength();
+
+						// do force resultant reduction as in full version -
+						// should it do?
+						if (validationResultantForce < 0) {
+							validationResultantForce = Math.max(
+									validationResultantForce,
+									-maxMovementPerStep);
+						} else if (resultantForce > 0) {
+							validationResultantForce = Math.min(
+									validationResultantForce,
+									maxMovementPerStep);
+						}
+						System.err
+								.println("CAUTION: Resultant length reduction applied for validation calculation. Do you want that?");
+
+						if (debug
+								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+							accumulator.debugBuffer
+									.append("Validation: Vector length reduction (as of maxMovementPerRound) from ")
+									.append(validationDirVect.getLength())
+									.append(" to ")
+									.append(validationResultantForce)
+									.append(LINE_SEPARATOR);
+						}
+						// adjust length in vector
+						validationDirVect.setLength(validationResultantForce);
+
+						Point3d validationMappedCoordinate = validationDirVect
+								.convertVectorToCartesianScreenCoordinates();
+						validationMappedCoordinate.add(onePoint);
+						// System.out.println("Orig validation target vs. recalculated: "
+						// +
+						// validationTargetPos.distance(validationMappedCoordinate));
+						validationTargetPos = validationMappedCoordinate;
+						// update desired target position
+						desiredDistance = dirCalc.calculateGridDistance(
+								onePoint, validationTargetPos).getLength();
+					}
+					// difference between ideal (correct) position and enforced
+					// one (based on repulsion)
+					Double difference = dirCalc.calculateGridDistance(
+							validationTargetPos, targetCoord).getLength();
+
+					if (!Double.isInfinite(difference)
+							&& sim.schedule.getSteps() > 5
+							// TODO exclude low values
+							&& difference >= 0.1 && desiredDistance >= 0.1) {
+						// calculate difference between calculated target
+						// distance (including natural repulsion and force
+						// manipulations (maxMovementStep)) and purely
+						// force-based target location
+						actualVsDesiredDistance.put(vertexOne.toString(),
+								difference);
+
+						if (!accumulator.insidePrivateZone) {
+							// System.out.println("Registered difference for " +
+							// vertexOne.toString());
+							actualVsDesiredDistanceOutsidePrivateZone.put(
+									vertexOne.toString(), difference);
+						}
+						// relative distance of (distance between valid and
+						// skewed point) to (distance from current location to
+						// valid point)
+						// System.out.println(vertexOne.toString() +
+						// ": Distance between two coords (right and skewed): "
+						// + validationTargetPos.distance(targetCoord));
+						// System.out.println("Distance between current coordinate and right target: "
+						// + onePoint.distance(validationTargetPos));
+						// System.out.println("Relative difference: " +
+						// validationTargetPos.distance(targetCoord)/onePoint.distance(validationTargetPos));
+						distanceDeviationRatio.put(vertexOne.toString(),
+								difference / desiredDistance);
+						if (!accumulator.insidePrivateZone) {
+							distanceDeviationRatioOutsidePrivateZones.put(
+									vertexOne.toString(), difference
+											/ desiredDistance);
+						}
+						if (actualVsDesiredDistance.get(vertexOne.toString()) > 50
+								|| distanceDeviationRatio.get(vertexOne
+										.toString()) > 10) {
+							System.out
+									.println(new StringBuffer(vertexOne
+											.toString())
+											.append(": Difference between desired point ")
+											.append(validationTargetPos)
+											.append(" and actual ")
+											.append(targetCoord)
+											.append(": ")
+											.append(LINE_SEPARATOR)
+											.append(actualVsDesiredDistance
+													.get(vertexOne.toString()))
+											.append(", desired distance: ")
+											.append(desiredDistance)
+											.append(", relative deviation: ")
+											.append(distanceDeviationRatio
+													.get(vertexOne.toString()))
+											.append(" --- in private zone: ")
+											.append(accumulator.insidePrivateZone));
+						}
+						if (debug
+								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+							accumulator.debugBuffer
+									.append("Difference between desired target point ")
+									.append(validationTargetPos)
+									.append(LINE_SEPARATOR)
+									.append(" and actual target (incl. natural repulsion) ")
+									.append(targetCoord)
+									.append(": ")
+									.append(difference)
+									.append(LINE_SEPARATOR)
+									.append(" (Distance from current to desired position: ")
+									.append(desiredDistance).append("),")
+									.append(LINE_SEPARATOR).append(" ratio: ")
+									.append(difference / desiredDistance)
+									.append(" -- in private zone: ")
+									.append(accumulator.insidePrivateZone)
+									.append(LINE_SEPARATOR);
+						}
+					}
+				} else {
+					if (sim.schedule.getSteps() > 5) {
+						// individual calculation
+						// sum of aggregated differences divided by 'correct'
+						// distance -> errors/correct distance -> 1 means: as
+						// many errors as correct distance
+						distanceDeviationRatio.put(
+								vertexOne.toString(),
+								actualVsDesiredDistance.get(vertexOne
+										.toString()) / desiredDistance);
+						if (!accumulator.insidePrivateZone) {
+							distanceDeviationRatioOutsidePrivateZones.put(
+									vertexOne.toString(),
+									actualVsDesiredDistanceOutsidePrivateZone
+											.get(vertexOne.toString())
+											/ desiredDistance);
+						}
+						if (debug
+								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+							Double debugDiff = actualVsDesiredDistance
+									.get(vertexOne.toString());
+							Double debugRatio = distanceDeviationRatio
+									.get(vertexOne.toString());
+							accumulator.debugBuffer
+									.append("Difference between desired target point ")
+									.append(validationTargetPos)
+									.append(LINE_SEPARATOR)
+									.append(" and actual target (incl. natural repulsion) ")
+									.append(targetCoord)
+									.append(": ")
+									.append(debugDiff)
+									.append(LINE_SEPARATOR)
+									.append(" (Distance from current to desired position: ")
+									.append(desiredDistance).append("),")
+									.append(LINE_SEPARATOR).append(" ratio: ")
+									.append(debugRatio)
+									.append(" -- in private zone: ")
+									.append(accumulator.insidePrivateZone)
+									.append(LINE_SEPARATOR);
+						}
+					}
+				}
+			}
+		}
+
+
+		// transpose target coordinates for toroidal grid
+		targetCoord = dirCalc.transposeTarget(targetCoord, toroidal);
+
+		if (debug
+				&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+			accumulator.debugBuffer.append("Transposed target coords: ")
+					.append(targetCoord).append(LINE_SEPARATOR);
+		}
+
+		stepBuffer.store(index, targetCoord, accumulator, signedResultantForce);
+		if (drawForces && !headless && accumulator.overallForce != 0) {
+			// adjust the length of the vector to make it more visible than
+			// reduced resultant force
+			double scale = forceLength == 0.0 ? 0.0 : resultantForce * 3
+					/ forceLength;
+			stepBuffer.forceLineX[index] = accumulator.xForce * scale;
+			stepBuffer.forceLineY[index] = accumulator.yForce * scale;
+		}
+	}
+
+	/**
+	 * Moves the vertex with the given index to the target position previously
+	 * calculated by {@link #calculateTargetPosition(int, ForceAccumulator)}
+	 * and updates sectors, cluster input and UI accordingly. Needs to be called
+	 * in vertex order from the stepping thread.
+	 * 
+	 * @param index
+	 *            index of vertex in step buffer
+	 */
+	private void applyTargetPosition(int index) {
+		V vertexOne = stepBuffer.getVertex(index);
+		Point3d onePoint = stepBuffer.getPosition(index);
+		Point3d targetCoord = new Point3d(stepBuffer.getTargetX(index),
+				stepBuffer.getTargetY(index), stepBuffer.getTargetZ(index));
+		double overallForce = stepBuffer.overallForce[index];
+		StringBuffer debugBuffer = stepBuffer.debugOutput[index];
+		// original 2D point from JUNG framework - to set cleanly at the end
+		// - but no operation on that
+		Point2D onePoint2D = transform(vertexOne);
+		stepBuffer.displacement[index] = dirCalc.calculateGridDistance(
+				onePoint, targetCoord, toroidal, displacementVector)
+				.getLength();
+		// set new location of vertex - done
+		if (onePoint.equals(targetCoord)) {
+			// System.out.println("Same pos.");
+		} else {
+			// set original JUNG 2D point
+			onePoint2D.setLocation(targetCoord.x, targetCoord.y);
+			// update position in 3D graph (invert y axis)
+			setXYZPoint(vertexOne, targetCoord);
+		}
+		// add new position of vertex for cluster calculation
+		if (clusteringOfVertices && clusterVertexPoints != null) {
+			// create new vertex instance - dodgy but fast
+			V vertices = (V) new VertexPoint3D<String>(
+					((VertexPoint3D<String>) vertexOne).vertex, new Point3d(
+							onePoint.x, onePoint.y, onePoint.z));
+			// fill vector if clustering is done
+			clusterVertexPoints.add(vertices);
+		}
+
+		if (drawForces && !headless && overallForce != 0) {
+			// force line with length adjusted in calculateTargetPosition()
+			double endX = onePoint.x + stepBuffer.forceLineX[index];
+			double endY = onePoint.y + stepBuffer.forceLineY[index];
+
+			if (vertexShapeRenderer == null) {
+				vertexShapeRenderer = ((ForceGraphInitializer) sim.graphHandler
+						.getGraphInitializer(ForceGraphInitializer.FORCES_GRAPH)).renderer;
+			} else {
+				// may still be null in the initial rounds (depending on
+				// initialization order)
+				vertexShapeRenderer.forceLine.put(vertexOne, new LineShape(0,
+						onePoint2D, new Point2D.Double(endX, endY),
+						(overallForce > 0), null, null));
+			}
+		}
+
+		// drawing on glass pane is only useful if done() is set to false,
+		// because graph has an own update thread (no delay)
+		if (drawOnGlassPane) {
+			initializeGlassPane();
+			if (drawForcesOnGlassPane && overallForce != 0) {
+
+				// raw force sum
+				double endX = onePoint.x + stepBuffer.xForce[index];
+				double endY = onePoint.y + stepBuffer.yForce[index];
+				Color col = null;
+				if (overallForce > 0) {
+					col = Color.BLACK;
+				} else {
+					col = Color.RED;
+				}
+
+				glassPane.paintLine(new LineShape(calculateLineShapeId(
+						vertexOne, vertexOne, col), onePoint2D,
+						new Point2D.Double(endX, endY), (overallForce > 0),
+						col, null));
+			}
+			if (drawDistancesOnGlassPane) {
+				// draw distances around agents
+				glassPane.paintCircle(new CircleShape(onePoint2D,
+						minimalDistance));
+			}
+			if (drawTagsOnGlassPane) {
+				glassPane.paintText(new TextShape(onePoint2D,
+						requestTextToBePrintedForVertex(vertexOne),
+						individualTagFont, Color.BLACK));
+			}
+		}
+		// finally write all debug stuff for this vertex
+		if (debug && writeDebugToIO && debugBuffer != null) {
+			if (writeDebugToOutfileInsteadConsole) {
+				writer.write(debugBuffer);
+			} else {
+				System.out.print(debugBuffer);
+			}
+		}
+		if (debug && writeDebugToVertexOutputListeners && debugBuffer != null) {
+			notifyDebugOutputListener(vertexOne, debugBuffer);
+		}
+		// make new position visible to vertices processed subsequently
+		stepBuffer.commit(index);
+	}
+
+	/**
+	 * Calculates the force a given vertex exerts on vertexOne and adds it to
+	 * the accumulator (including debug output).
+	 * 
+	 * @param accumulator
+	 * @param vertexOne
+	 * @param onePoint
+	 * @param vertexTwo
+	 * @param twoPoint
+	 */
+	private void calculateForceFromVertex(ForceAccumulator accumulator,
+			V vertexOne, Point3d onePoint, V vertexTwo, Point3d twoPoint) {
+		if (!vertexOne.equals(vertexTwo)
+				&& debug
+				&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+			accumulator.debugBuffer.append(
+					"Coordinate for " + vertexTwo + ": " + twoPoint).append(
+					LINE_SEPARATOR);
+			accumulator.debugBuffer.append(
+					"About to calculate force between " + onePoint + " and "
+							+ twoPoint).append(LINE_SEPARATOR);
+		}
+		calculateForceBetween(accumulator, vertexOne, onePoint, vertexTwo,
+				twoPoint);
+	}
+
+	/**
+	 * Returns all vertices that are perceived by vertexOne independent of
+	 * their location (only used if
+	 * {@link #makeAllPlanesDistanceIndependent} is activated).
+	 * 
+	 * @param vertexOne
+	 * @return
+	 */
+	private ArrayList<V> getPerceptionallyIndependentVertices(V vertexOne) {
+		ArrayList<V> independentVertices = new ArrayList<V>();
+		for (SocialPlane sphere : planes.values()) {
+			if (!sphere.perceptionallyConstrained()) {
+				try {
+					independentVertices.addAll(sphere
+							.getPerceptionallyIndependentVertices(vertexOne));
+				} catch (NullPointerException e) {
+					// do nothing
+				} catch (ConcurrentModificationException e) {
+					// do nothing either
+				}
+			}
+		}
+		return independentVertices;
+	}
+
+	/**
+	 * Indicates if vertices may fall asleep in the current configuration.
+	 * 
+	 * @return
+	 */
+	private boolean sleepingVerticesActive() {
+		return useSleepingVertices && !clusterSecondLevel && !validateDistances;
+	}
+
+	/**
+	 * Wakes up sleeping vertices whose forces may have changed since the
+	 * last step for reasons other than movement of other vertices, i.e.
+	 * vertices being added or removed, positions changed outside of the
+	 * layout, or changes in plane weights.
+	 */
+	private void prepareSleepingVertices() {
+		int size = stepBuffer.size();
+		boolean wakeAll = !sleepingVerticesActive()
+				|| stepBuffer.getVersion() != lastBufferVersion
+				|| positionsChangedExternally || planesChanged();
+		lastBufferVersion = stepBuffer.getVersion();
+		positionsChangedExternally = false;
+		for (int i = 0; i < size; i++) {
+			if (stepBuffer.isAsleep(i)
+					&& (wakeAll || (useIndividualWeights && weightCache
+							.hasChanged(i)))) {
+				stepBuffer.wake(i);
+			}
+		}
+	}
+
+	/**
+	 * Indicates if planes, their global weights or states have changed since
+	 * the last call.
+	 * 
+	 * @return
+	 */
+	private boolean planesChanged() {
+		boolean changed = !lastPlanes.equals(activePlanes);
+		if (changed) {
+			lastPlanes.clear();
+			lastPlanes.addAll(activePlanes);
+			lastPlaneWeights = new float[activePlanes.size()];
+			lastPlaneStates = new boolean[activePlanes.size()];
+		}
+		for (int p = 0; p < activePlanes.size(); p++) {
+			SocialPlane<V> plane = activePlanes.get(p);
+			float weight = plane.weightFactor;
+			if (Float.compare(weight, lastPlaneWeights[p]) != 0
+					|| plane.isEnabled() != lastPlaneStates[p]) {
+				lastPlaneWeights[p] = weight;
+				lastPlaneStates[p] = plane.isEnabled();
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Updates displacement statistics, lets calm vertices fall asleep and
+	 * wakes up sleeping vertices within perception distance of vertices that
+	 * have moved. Notifies equilibrium listeners if the layout has reached or
+	 * left equilibrium.
+	 */
+	private void updateConvergence() {
+		int size = stepBuffer.size();
+		boolean sleepingActive = sleepingVerticesActive();
+		if (movedVertices.length < size) {
+			movedVertices = new int[size];
+		}
+		double total = 0.0;
+		double max = 0.0;
+		int moved = 0;
+		int sleeping = 0;
+		for (int i = 0; i < size; i++) {
+			double displacement = stepBuffer.displacement[i];
+			total += displacement;
+			max = Math.max(max, displacement);
+			if (displacement >= equilibriumThreshold) {
+				movedVertices[moved++] = i;
+			}
+			if (!sleepingActive) {
+				continue;
+			}
+			if (stepBuffer.isAsleep(i)) {
+				sleeping++;
+			} else if (Math.abs(stepBuffer.getResultantForce(i)) < equilibriumThreshold) {
+				if (++stepBuffer.calmSteps[i] >= stepsBeforeSleep) {
+					stepBuffer.asleep[i] = true;
+					sleeping++;
+				}
+			} else {
+				stepBuffer.calmSteps[i] = 0;
+			}
+		}
+		if (sleeping > 0 && moved > 0) {
+			sleeping -= wakeNeighboursOfMovedVertices(moved);
+		}
+		totalDisplacement = total;
+		maxDisplacement = max;
+		sleepingVertices = sleeping;
+		boolean inEquilibrium = size > 0 && max < equilibriumThreshold;
+		if (inEquilibrium != equilibrium) {
+			equilibrium = inEquilibrium;
+			for (int l = 0; l < equilibriumListeners.size(); l++) {
+				equilibriumListeners.get(l).equilibriumChanged(equilibrium,
+						max);
+			}
+		}
+	}
+
+	/**
+	 * Wakes up all sleeping vertices that perceive any of the vertices that
+	 * have moved in the last step (as collected in {@link #movedVertices}).
+	 * Wakes up all sleeping vertices if perception is unlimited or any plane
+	 * exerts forces independent of perception distance.
+	 * 
+	 * @param moved
+	 *            number of moved vertices
+	 * @return number of vertices woken up
+	 */
+	private int wakeNeighboursOfMovedVertices(int moved) {
+		int woken = 0;
+		if (maximalPerceptionDistance == -1 || makeAllPlanesDistanceIndependent
+				|| hasPerceptionallyUnconstrainedPlane()) {
+			for (int i = 0; i < stepBuffer.size(); i++) {
+				if (stepBuffer.isAsleep(i)) {
+					stepBuffer.wake(i);
+					woken++;
+				}
+			}
+			return woken;
+		}
+		double maxRadius = 0.0;
+		if (maxMovementPerStep != -1.0) {
+			// stable radius (avoids recalculating the grid's stencil)
+			maxRadius = maximalPerceptionDistance + maxMovementPerStep;
+		}
+		for (int m = 0; m < moved; m++) {
+			maxRadius = Math.max(maxRadius, maximalPerceptionDistance
+					+ stepBuffer.displacement[movedVertices[m]]);
+		}
+		int[] candidates = null;
+		if (sectorGrid != null) {
+			// sleeping vertices have not moved since the grid has been built
+			sectorGrid.setNeighbourhoodRadius(maxRadius);
+			candidates = sequentialAccumulator.getNeighbourArray(stepBuffer
+					.size());
+		}
+		for (int m = 0; m < moved; m++) {
+			int other = movedVertices[m];
+			// consider positions before and after movement
+			double radius = maximalPerceptionDistance
+					+ stepBuffer.displacement[other];
+			int candidateCount;
+			if (candidates != null) {
+				candidateCount = sectorGrid.collectNeighbours(
+						stepBuffer.getX(other), stepBuffer.getY(other),
+						stepBuffer.getZ(other), candidates);
+			} else {
+				candidateCount = stepBuffer.size();
+			}
+			for (int c = 0; c < candidateCount; c++) {
+				int i = candidates != null ? candidates[c] : c;
+				if (stepBuffer.isAsleep(i)
+						&& dirCalc.calculateGridDistance(stepBuffer.getX(i),
+								stepBuffer.getY(i), stepBuffer.getZ(i),
+								stepBuffer.getX(other), stepBuffer.getY(other),
+								stepBuffer.getZ(other), toroidal,
+								displacementVector).squaredLength <= radius
+								* radius) {
+					stepBuffer.wake(i);
+					woken++;
+				}
+			}
+		}
+		return woken;
+	}
+
+	/**
+	 * Indicates if any active plane exerts forces independent of perception
+	 * distance (see {@link SocialPlane#perceptionallyConstrained()}).
+	 * 
+	 * @return
+	 */
+	private boolean hasPerceptionallyUnconstrainedPlane() {
+		for (int p = 0; p < activePlanes.size(); p++) {
+			if (!activePlanes.get(p).perceptionallyConstrained()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts all vertices into the sector grid based on their positions at the
+	 * start of the step and determines if the grid (or the neighbour lists
+	 * built from it) is used to select the vertices forces are calculated
+	 * with.
+	 */
+	private void prepareSectorGrid() {
+		sectorBasedStep = false;
+		verletStep = false;
+		if (sectorGrid == null) {
+			return;
+		}
+		int size = stepBuffer.size();
+		sectorGrid.clear(size);
+		for (int i = 0; i < size; i++) {
+			sectorGrid.setPosition(i, stepBuffer.getX(i), stepBuffer.getY(i),
+					stepBuffer.getZ(i));
+		}
+		sectorGrid.build();
+		if (maximalPerceptionDistance == -1) {
+			return;
+		}
+		// with unlimited movement per step, vertices could have left the
+		// sectors they were sorted into (or their neighbour lists' range)
+		if (!parallelForceCalculation && maxMovementPerStep == -1.0) {
+			if (useVerletLists && !verletListsDisabledInfoPrinted) {
+				System.out.println(prefix
+						+ "Verlet lists are not used since force calculation is sequential "
+						+ "and movement per step is unlimited (maxMovementPerStep == -1).");
+				verletListsDisabledInfoPrinted = true;
+			}
+			return;
+		}
+		if (useVerletLists) {
+			prepareNeighbourLists();
+		} else if (useSectorBasedCalculation) {
+			double radius = maximalPerceptionDistance;
+			if (!parallelForceCalculation) {
+				// vertices processed earlier in this step may have moved
+				// closer since the grid has been built
+				radius += maxMovementPerStep;
+			}
+			sectorGrid.setNeighbourhoodRadius(radius);
+			sectorBasedStep = true;
+		}
+	}
+
+	/**
+	 * Rebuilds the neighbour lists if any vertex has moved further than half
+	 * the {@link #verletSkin} since they have last been built.
+	 */
+	private void prepareNeighbourLists() {
+		double radius = maximalPerceptionDistance + verletSkin;
+		double maxDisplacement = verletSkin / 2;
+		if (!parallelForceCalculation) {
+			// vertices may move further while the step is processed
+			maxDisplacement -= maxMovementPerStep;
+		}
+		if (neighbourLists.needsRebuild(stepBuffer, radius, maxDisplacement)) {
+			sectorGrid.setNeighbourhoodRadius(radius);
+			neighbourLists.rebuild(stepBuffer, sectorGrid, dirCalc, toroidal,
+					radius, sequentialAccumulator.getNeighbourArray(stepBuffer
+							.size()));
+		}
+		verletStep = true;
+	}
+
+	/**
+	 * Returns the number of neighbour list rebuilds since the layout has been
+	 * instantiated (see {@link #useVerletLists}).
+	 * 
+	 * @return
+	 */
+	public long getNeighbourListRebuilds() {
+		return neighbourLists.getRebuilds();
+	}
+
+	/**
+	 * Builds the Barnes-Hut tree from the positions in the step buffer if
+	 * Barnes-Hut approximation is used in this step. Approximation is only
+	 * used if no active plane depends on the target's identity, since the
+	 * repulsion between vertices depends on the sign of the combined force of
+	 * all planes and thus cannot be approximated per group if parts of that
+	 * force need to be calculated for each vertex.
+	 */
+	private void prepareBarnesHutApproximation() {
+		barnesHutStep = useBarnesHutApproximation
+				&& (maximalPerceptionDistance == -1 || makeAllPlanesDistanceIndependent);
+		for (int p = 0; barnesHutStep && p < activePlanes.size(); p++) {
+			if (activePlanes.get(p).forceDependsOnTargetIdentity()) {
+				barnesHutStep = false;
+			}
+		}
+		if (!barnesHutStep) {
+			return;
+		}
+		if (barnesHutTree == null) {
+			barnesHutTree = new BarnesHutTree(xGridSize, yGridSize, zGridSize,
+					use3d);
+		}
+		barnesHutTree.clear(stepBuffer.size());
+		for (int i = 0; i < stepBuffer.size(); i++) {
+			barnesHutTree.setPosition(i, stepBuffer.getX(i),
+					stepBuffer.getY(i), stepBuffer.getZ(i));
+		}
+		barnesHutTree.build();
+	}
+
+	/**
+	 * Accumulates the forces acting on a vertex using the Barnes-Hut tree.
+	 * Forces from vertices in nodes that are too close (given the
+	 * {@link #barnesHutOpeningAngle}) are calculated exactly. Distant nodes
+	 * are approximated by their centre of mass (only used if no active plane
+	 * depends on the target's identity, see
+	 * {@link #prepareBarnesHutApproximation()}).
+	 * 
+	 * @param accumulator
+	 * @param index
+	 *            index of vertexOne in step buffer
+	 * @param vertexOne
+	 * @param onePoint
+	 */
+	private void accumulateForcesUsingBarnesHutTree(
+			ForceAccumulator accumulator, int index, V vertexOne,
+			Point3d onePoint) {
+		int node = barnesHutTree.getRoot();
+		if (node == -1) {
+			return;
+		}
+		int children = barnesHutTree.getChildrenPerNode();
+		int[] stack = accumulator.nodeStack;
+		int stackSize = 0;
+		stack[stackSize++] = node;
+		while (stackSize > 0) {
+			node = stack[--stackSize];
+			int count = barnesHutTree.getMemberCount(node);
+			if (count == 0) {
+				continue;
+			}
+			int firstChild = barnesHutTree.getFirstChild(node);
+			if (firstChild == -1) {
+				// leaf - calculate forces exactly
+				int[] members = accumulator.getNeighbourArray(count);
+				for (int k = 0; k < count; k++) {
+					members[k] = barnesHutTree.getMember(node, k);
 				}
-				usedColors.clear();
+				calculateForcesFromVertices(accumulator, index, vertexOne,
+						onePoint, members, 0, count);
+				continue;
 			}
-			if (clusterSecondLevel) {
-				attractionClusterer.clearAttractionValues();
-				// System.out.println("next round");
+			if (!barnesHutTree.containsMember(node, index)) {
+				CartesianDistance3D distVector = dirCalc.calculateGridDistance(
+						onePoint.x, onePoint.y, onePoint.z,
+						barnesHutTree.getCentreOfMassX(node),
+						barnesHutTree.getCentreOfMassY(node),
+						barnesHutTree.getCentreOfMassZ(node), toroidal,
+						accumulator.distance);
+				if (barnesHutTree.getExtent(node) < barnesHutOpeningAngle
+						* distVector.getLength()) {
+					accumulateApproximatedForce(accumulator, vertexOne,
+							distVector, count);
+					continue;
+				}
+			}
+			// node too close - visit children
+			if (stackSize + children > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+				accumulator.nodeStack = stack;
+			}
+			for (int c = children - 1; c >= 0; c--) {
+				stack[stackSize++] = firstChild + c;
 			}
-			// System.out.println("Clustered vertices: " + clusteredVertices +
-			// ", unclustered: " + Math.rint(new
-			// Float(vertices.size()-clusteredVertices)));
 		}
-		// print highlighted tags references in second box instead of clustering
-		// information
-		if (highlightTags && !clusterSecondLevel) {
-			callHighlightedTagColorsToListeners();
-		} else if (!clusteringOfVertices && !clusterSecondLevel) {
-			// update tag distribution if no clustering whatsoever and no
-			// highlighting
-			callTagDistributionListeners();
+	}
+
+	/**
+	 * Adds the approximated force exerted by a group of distant vertices
+	 * (represented by their centre of mass) to the accumulator.
+	 * 
+	 * @param accumulator
+	 * @param vertexOne
+	 * @param distVector
+	 *            distance to centre of mass
+	 * @param count
+	 *            number of vertices in group
+	 */
+	private void accumulateApproximatedForce(ForceAccumulator accumulator,
+			V vertexOne, CartesianDistance3D distVector, int count) {
+		double dist = distVector.getLength();
+		double force = 0.0;
+		if (dist > toleranceZone) {
+			for (int p = 0; p < activePlanes.size(); p++) {
+				force += weighPlaneForce(accumulator, vertexOne, p,
+						activePlanes.get(p).getForceAtDistance(vertexOne,
+								dist), dist);
+			}
 		}
-		//System.out.println("Round done.");
+		if (!noRepulsionWhenTransiting) {
+			force = calculateRepulsion(accumulator, force, dist);
+		}
+		addForce(accumulator, distVector, force * count);
+	}
+
+	/**
+	 * Applies distance-dependent amplification as well as individual and
+	 * global weights to the raw force of a given plane (as done in
+	 * {@link #calculateForceBetween(ForceAccumulator, Object, Point3d, Object, Point3d)}).
+	 * 
+	 * @param accumulator
+	 * @param vertexOne
+	 * @param planeIndex
+	 *            index of plane in {@link #activePlanes}
+	 * @param force
+	 * @param dist
+	 * @return
+	 */
+	private double weighPlaneForce(ForceAccumulator accumulator,
+			V vertexOne, int planeIndex, double force, double dist) {
+		SocialPlane<V> plane = activePlanes.get(planeIndex);
+		if (force == 0.0) {
+			return 0.0;
+		}
+		if (amplifyAttractionForDistantVertices && force > 0
+				&& dist > toleranceZone) {
+			force *= Math.pow(dist,
+					amplificationPowerForDistantDependentAttraction);
+		}
+		if (useIndividualWeights) {
+			float idvPlaneWeight = weightCache.getPlaneWeight(vertexOne,
+					accumulator.vertexIndex, planeIndex, plane.getName());
+			if (!Float.isNaN(idvPlaneWeight)) {
+				force *= idvPlaneWeight;
+			}
+		}
+		return force * plane.weightFactor;
+	}
+
+	/**
+	 * Adds a force along the given distance vector to the accumulator.
+	 * 
+	 * @param accumulator
+	 * @param distVector
+	 * @param force
+	 */
+	private void addForce(ForceAccumulator accumulator,
+			CartesianDistance3D distVector, double force) {
+		Point3d convertedForceCoords = getDirection(distVector,
+				distVector.getLength(), accumulator.direction);
+		accumulator.xForce += convertedForceCoords.x * force;
+		accumulator.yForce += convertedForceCoords.y * force;
+		accumulator.zForce += convertedForceCoords.z * force;
+		accumulator.overallForce += force;
+	}
+
+	/**
+	 * Writes the unit vector along the given offset into the given point.
+	 * Coinciding positions are separated along the x axis.
+	 * 
+	 * @param distance
+	 *            offset to other position
+	 * @param length
+	 *            length of offset
+	 * @param result
+	 * @return result
+	 */
+	private static Point3d getDirection(CartesianDistance3D distance,
+			double length, Point3d result) {
+		if (length == 0.0) {
+			result.set(1, 0, 0);
+		} else {
+			result.set(distance.dx / length, distance.dy / length,
+					distance.dz / length);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the position of a given vertex as of the step buffer. Falls back
+	 * to the layout's position for vertices that are not part of the graph
+	 * the current step operates on.
+	 * 
+	 * @param vertex
+	 * @return
+	 */
+	private Point3d getPositionForForceCalculation(V vertex,
+			ForceAccumulator accumulator) {
+		int index = stepBuffer.indexOf(vertex);
+		if (index == -1) {
+			synchronized (sideEffectLock) {
+				return getXYZForPoint(vertex);
+			}
+		}
+		return stepBuffer.getPosition(index, accumulator.otherPosition);
+	}
+
+	/**
+	 * Loads the position of the vertex with the given index into the step
+	 * buffer. Positions of vertices new to the layout are retrieved from
+	 * JUNG (and MASON for the z dimension), while known vertices keep their
+	 * stored position unless it has been changed in JUNG (e.g. by dragging
+	 * the vertex in the UI).
+	 * 
+	 * @param index
+	 */
+	private void loadPosition(int index) {
+		V vertex = stepBuffer.getVertex(index);
+		if (!stepBuffer.isPositioned(index)) {
+			Point3d position = getXYZForPoint(vertex);
+			stepBuffer.setPosition(index, position.x, position.y, position.z);
+			return;
+		}
+		Point2D p2D = transform(vertex);
+		if (p2D.getX() != stepBuffer.getX(index)
+				|| p2D.getY() != stepBuffer.getY(index)) {
+			stepBuffer.setPosition(index, p2D.getX(), p2D.getY(),
+					stepBuffer.getZ(index));
+			positionsChangedExternally = true;
+		}
+	}
+
+	/**
+	 * Returns the thread pool used for parallel force calculation and
+	 * initializes it if not done so before.
+	 * 
+	 * @return
+	 */
+	private ForkJoinPool getForceCalculationPool() {
+		if (forceCalculationPool == null) {
+			forceCalculationPool = new ForkJoinPool(Math.max(1,
+					forceCalculationThreads));
+		}
+		return forceCalculationPool;
+	}
+
+	/**
+	 * Calculates the target positions for a range of vertices in the step
+	 * buffer. Ranges are split recursively, with each leaf task using the
+	 * {@link ForceAccumulator} of the worker thread executing it.
+	 */
+	private class ForceCalculationTask extends RecursiveAction {
+
+		private final int from;
+		private final int to;
+
+		ForceCalculationTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= verticesPerForceCalculationTask) {
+				ForceAccumulator accumulator = parallelAccumulators.get();
+				for (int i = from; i < to; i++) {
+					calculateTargetPosition(i, accumulator);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ForceCalculationTask(from, middle),
+						new ForceCalculationTask(middle, to));
+			}
+		}
+
 	}
 
+
 	float projectNumberOfColors = 60;
 	float interval = 360 / projectNumberOfColors;
 	int colorIndex = 0;
@@ -2259,41 +3264,6 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	 */
 	public final boolean validateDistanceOnCompoundForceLevel = true;
 
-	/**
-	 * holds sum of individual forces for currently iterated vertex in x
-	 * direction for validation purposes (without natural repulsion)
-	 */
-	private Double validationXForce = 0.0;
-	/**
-	 * holds sum of individual forces for currently iterated vertex in y
-	 * direction for validation purposes (without natural repulsion)
-	 */
-	private Double validationYForce = 0.0;
-	/**
-	 * holds sum of individual forces for currently iterated vertex in z
-	 * direction for validation purposes (without natural repulsion)
-	 */
-	private Double validationZForce = 0.0;
-
-	/**
-	 * holds sum of individual forces for currently iterated vertex in x
-	 * direction for validation purposes (without natural repulsion) for
-	 * individuals that are OUTSIDE of private zones
-	 */
-	private Double validationXForceOutsidePrivateZones = 0.0;
-	/**
-	 * holds sum of individual forces for currently iterated vertex in y
-	 * direction for validation purposes (without natural repulsion) for
-	 * individuals that are OUTSIDE of private zones
-	 */
-	private Double validationYForceOutsidePrivateZones = 0.0;
-	/**
-	 * holds sum of individual forces for currently iterated vertex in z
-	 * direction for validation purposes (without natural repulsion) for
-	 * individuals that are OUTSIDE of private zones
-	 */
-	private Double validationZForceOutsidePrivateZones = 0.0;
-
 	/** cache holding all registered 3D edges to be printed in visualizer */
 	private HashMap<String, Edge> edgePrintCache = new HashMap<String, Edge>();
 
@@ -2323,434 +3293,591 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 			edgePrintCache.put(edgeId, edge);
 			sim.getEdges().addEdge(edge);
 		}
-		// System.out.println("Added edge for " + vertexOne.toString());
+		// System.out.println("Added edge for " + vertexOne.toString());
+	}
+
+	/**
+	 * Remove edge from 3D edge registry (and visualizer)
+	 * 
+	 * @param edgeId
+	 */
+	private void removeEdge(String edgeId) {
+		try {
+			sim.getEdges().removeEdge(edgePrintCache.remove(edgeId));
+		} catch (NullPointerException e) {
+			System.out.println("NPE when trying to remove edge from 3D graph: "
+					+ edgeId);
+		} catch (IndexOutOfBoundsException ex){
+			System.out.println("IndexOutOfBounds when trying to remove edge from 3D graph: " + edgeId);
+		}
+	}
+
+	/**
+	 * Clear all edges that have a specified String in their key (agent name or
+	 * plane)
+	 * 
+	 * @param nodeName
+	 */
+	public void clearEdgesForNode(String nodeName) {
+		ArrayList<String> keysForEdges = new ArrayList<String>(
+				edgePrintCache.keySet());
+		for (int i = 0; i < keysForEdges.size(); i++) {
+			if (keysForEdges.get(i).contains(nodeName)) {
+				// System.out.println("Cleared registry for key component " +
+				// nodeName + ": " + keysForEdges.get(i));
+				removeEdge(keysForEdges.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Removes all edges from 3D visualizer (fast).
+	 */
+	public void clearAllEdges() {
+		// removing all nodes will remove all edges
+		sim.getEdges().removeAllNodes();
+	}
+
+	/**
+	 * Calculates force between two vertices (and their respective points). The
+	 * result is added to the xForce and yForce of the given accumulator used to
+	 * calculate the overall resultant force for vertexOne once all individual
+	 * forces have been calculated. Used for vertices not processed in batches
+	 * (see {@link #calculateForcesFromVertices(ForceAccumulator, int, Object, Point3d, int[], int, int)}).
+	 * 
+	 * @param accumulator
+	 * @param vertexOne
+	 * @param onePoint
+	 * @param vertexTwo
+	 * @param twoPoint
+	 */
+	private void calculateForceBetween(ForceAccumulator accumulator,
+			V vertexOne, Point3d onePoint, V vertexTwo, Point3d twoPoint) {
+		if (vertexOne.equals(vertexTwo)) {
+			return;
+		}
+		// current distance between the two vertices
+		CartesianDistance3D distVector = dirCalc.calculateGridDistance(
+				onePoint, twoPoint, toroidal, accumulator.distance);
+		double dist = distVector.getLength();
+		accumulator.ensureBatchCapacity(1, activePlanes.size());
+		for (int p = 0; p < activePlanes.size(); p++) {
+			SocialPlane<V> plane = activePlanes.get(p);
+			accumulator.planeForces[p][0] = perceivesAtDistance(plane, dist) ? plane
+					.getForceTowards(vertexOne, vertexTwo, dist) : 0.0;
+		}
+		accumulatePairForce(accumulator, vertexOne, onePoint, vertexTwo,
+				twoPoint, distVector, dist, 0);
+	}
+
+	/**
+	 * Indicates if a vertex at a given distance exerts force on a given plane.
+	 * 
+	 * @param plane
+	 * @param dist
+	 * @return
+	 */
+	private boolean perceivesAtDistance(SocialPlane<V> plane, double dist) {
+		// calculate force only if distance between vertices greater than
+		// minimal distance
+		if (dist <= toleranceZone) {
+			return false;
+		}
+		// if the perception distance and the perception on the plane is
+		// limited and no distance independence is activated, then only
+		// calculate force if the distance is smaller than max perceivable
+		// distance
+		if (plane.perceptionallyConstrained()
+				&& maximalPerceptionDistance != -1
+				&& !makeAllPlanesDistanceIndependent) {
+			return dist <= maximalPerceptionDistance;
+		}
+		return true;
 	}
 
 	/**
-	 * Remove edge from 3D edge registry (and visualizer)
+	 * Calculates the forces a batch of vertices exerts on vertexOne and adds
+	 * them to the accumulator. Raw forces are requested from each plane for
+	 * all vertices at once (see
+	 * {@link SocialPlane#getForcesTowards(Object, List, int[], double[], int, double[])})
+	 * and subsequently weighed and accumulated per vertex in the given order.
 	 * 
-	 * @param edgeId
+	 * @param accumulator
+	 * @param index
+	 *            index of vertexOne in step buffer (skipped if contained in
+	 *            batch)
+	 * @param vertexOne
+	 * @param onePoint
+	 * @param others
+	 *            step buffer indices of vertices exerting force
+	 * @param first
+	 *            first entry in others to be considered
+	 * @param count
+	 *            number of entries in others to be considered
 	 */
-	private void removeEdge(String edgeId) {
-		try {
-			sim.getEdges().removeEdge(edgePrintCache.remove(edgeId));
-		} catch (NullPointerException e) {
-			System.out.println("NPE when trying to remove edge from 3D graph: "
-					+ edgeId);
-		} catch (IndexOutOfBoundsException ex){
-			System.out.println("IndexOutOfBounds when trying to remove edge from 3D graph: " + edgeId);
+	private void calculateForcesFromVertices(ForceAccumulator accumulator,
+			int index, V vertexOne, Point3d onePoint, int[] others, int first,
+			int count) {
+		int planeCount = activePlanes.size();
+		accumulator.ensureBatchCapacity(count, planeCount);
+		// determine offsets to all other vertices
+		int pairs = 0;
+		for (int l = first; l < first + count; l++) {
+			int other = others[l];
+			if (other == index) {
+				continue;
+			}
+			CartesianDistance3D distVector = dirCalc.calculateGridDistance(
+					onePoint.x, onePoint.y, onePoint.z, stepBuffer.getX(other),
+					stepBuffer.getY(other), stepBuffer.getZ(other), toroidal,
+					accumulator.distance);
+			accumulator.pairTargets[pairs] = other;
+			accumulator.pairDx[pairs] = distVector.dx;
+			accumulator.pairDy[pairs] = distVector.dy;
+			accumulator.pairDz[pairs] = distVector.dz;
+			accumulator.pairDistance[pairs] = distVector.getLength();
+			pairs++;
+		}
+		for (int p = 0; p < planeCount; p++) {
+			Arrays.fill(accumulator.planeForces[p], 0, pairs, 0.0);
+		}
+		// vertices perceived on all planes
+		calculatePlaneForces(accumulator, vertexOne,
+				collectBatch(accumulator, pairs, false), false);
+		// vertices only perceived on planes without constrained perception
+		calculatePlaneForces(accumulator, vertexOne,
+				collectBatch(accumulator, pairs, true), true);
+
+		for (int s = 0; s < pairs; s++) {
+			V vertexTwo = stepBuffer.getVertex(accumulator.pairTargets[s]);
+			Point3d twoPoint = stepBuffer.getPosition(
+					accumulator.pairTargets[s], accumulator.otherPosition);
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.debugBuffer.append(
+						"Coordinate for " + vertexTwo + ": " + twoPoint)
+						.append(LINE_SEPARATOR);
+				accumulator.debugBuffer.append(
+						"About to calculate force between " + onePoint
+								+ " and " + twoPoint).append(LINE_SEPARATOR);
+			}
+			accumulator.distance.set(accumulator.pairDx[s],
+					accumulator.pairDy[s], accumulator.pairDz[s]);
+			accumulatePairForce(accumulator, vertexOne, onePoint, vertexTwo,
+					twoPoint, accumulator.distance,
+					accumulator.pairDistance[s], s);
 		}
 	}
 
 	/**
-	 * Clear all edges that have a specified String in their key (agent name or
-	 * plane)
+	 * Collects the pairs of the current batch that are either inside or
+	 * outside of the maximal perception distance (ignoring pairs within the
+	 * tolerance zone) as input for
+	 * {@link #calculatePlaneForces(ForceAccumulator, Object, int, boolean)}
+	 * and returns their number.
 	 * 
-	 * @param nodeName
+	 * @param accumulator
+	 * @param pairs
+	 *            number of pairs in current batch
+	 * @param outsidePerceptionRange
+	 * @return
 	 */
-	public void clearEdgesForNode(String nodeName) {
-		ArrayList<String> keysForEdges = new ArrayList<String>(
-				edgePrintCache.keySet());
-		for (int i = 0; i < keysForEdges.size(); i++) {
-			if (keysForEdges.get(i).contains(nodeName)) {
-				// System.out.println("Cleared registry for key component " +
-				// nodeName + ": " + keysForEdges.get(i));
-				removeEdge(keysForEdges.get(i));
+	private int collectBatch(ForceAccumulator accumulator, int pairs,
+			boolean outsidePerceptionRange) {
+		boolean limitedPerception = maximalPerceptionDistance != -1
+				&& !makeAllPlanesDistanceIndependent;
+		int batchSize = 0;
+		for (int s = 0; s < pairs; s++) {
+			double dist = accumulator.pairDistance[s];
+			if (dist <= toleranceZone
+					|| (limitedPerception && dist > maximalPerceptionDistance) != outsidePerceptionRange) {
+				continue;
 			}
+			accumulator.batchTargets[batchSize] = accumulator.pairTargets[s];
+			accumulator.batchDistances[batchSize] = dist;
+			accumulator.batchSlots[batchSize] = s;
+			batchSize++;
 		}
+		return batchSize;
 	}
 
 	/**
-	 * Removes all edges from 3D visualizer (fast).
+	 * Requests the raw forces for the collected batch from all planes that
+	 * perceive the batch's vertices and stores them in
+	 * {@link ForceAccumulator#planeForces}.
+	 * 
+	 * @param accumulator
+	 * @param vertexOne
+	 * @param batchSize
+	 * @param outsidePerceptionRange
+	 *            indicates if batch holds vertices outside of maximal
+	 *            perception distance
 	 */
-	public void clearAllEdges() {
-		// removing all nodes will remove all edges
-		sim.getEdges().removeAllNodes();
+	private void calculatePlaneForces(ForceAccumulator accumulator,
+			V vertexOne, int batchSize, boolean outsidePerceptionRange) {
+		if (batchSize == 0) {
+			return;
+		}
+		for (int p = 0; p < activePlanes.size(); p++) {
+			SocialPlane<V> plane = activePlanes.get(p);
+			if (outsidePerceptionRange && plane.perceptionallyConstrained()) {
+				continue;
+			}
+			plane.getForcesTowards(vertexOne, stepBuffer.getVertices(),
+					accumulator.batchTargets, accumulator.batchDistances,
+					batchSize, accumulator.batchForces);
+			double[] forces = accumulator.planeForces[p];
+			for (int b = 0; b < batchSize; b++) {
+				forces[accumulator.batchSlots[b]] = accumulator.batchForces[b];
+			}
+		}
 	}
 
-	/** indicator if agent is inside private zone of other agent(s) */
-	private boolean insidePrivateZone = false;
-
 	/**
-	 * Calculates force between two vertices (and their respective points). The
-	 * result is added to the xForce and yForce for vertexOne used to calculate
-	 * the overall resultant force once all individual forces have been
-	 * calculated.
+	 * Weighs the raw plane forces between two vertices (as stored in the given
+	 * slot of {@link ForceAccumulator#planeForces}), adds repulsion and
+	 * accumulates the resulting force for vertexOne. Also maintains the
+	 * related UI and validation structures.
 	 * 
+	 * @param accumulator
 	 * @param vertexOne
 	 * @param onePoint
 	 * @param vertexTwo
 	 * @param twoPoint
+	 * @param distVector
+	 *            offset from vertexOne to vertexTwo
+	 * @param dist
+	 *            distance between both vertices
+	 * @param slot
+	 *            slot of pair in {@link ForceAccumulator#planeForces}
 	 */
-	private void calculateForceBetween(V vertexOne, Point3d onePoint,
-			V vertexTwo, Point3d twoPoint) {
-		if (!vertexOne.equals(vertexTwo)) {
-			// System.out.println("Calculating force between " + vertexOne +
-			// " and " + vertexTwo);
-			// acts in favour of attraction and thus results in clumping if
-			// increased
-
-			Double force = 0.0;
-
-			// current distance between the two vertices
-			DirectionVector3D distVector = dirCalc.calculateGridDistance(
-					onePoint, twoPoint, toroidal);
-			double dist = distVector.getLength();
-
-			// System.out.println("Max. perception distance: " +
-			// maximalPerceptionDistance);
-			// System.out.println("Distance: " + dist);
-
-			// only calculate if in perception range (to avoid unnecessary
-			// calculations and 'artifact-effect' in case of
-			// distance-insensitive spheres)
-
-			float tempForce = 0.0f;
-			// System.out.println("planes size: " + planes.size());
-			if (debug && (writeDebugToIO || writeDebugToVertexOutputListeners)) {
-				if (detailDebugBuffer == null || detailDebugBuffer.length() > 0) {
-					detailDebugBuffer = new StringBuffer();
+	private void accumulatePairForce(ForceAccumulator accumulator,
+			V vertexOne, Point3d onePoint, V vertexTwo, Point3d twoPoint,
+			CartesianDistance3D distVector, double dist, int slot) {
+		// acts in favour of attraction and thus results in clumping if
+		// increased
+		double force = 0.0;
+
+		float tempForce = 0.0f;
+		// System.out.println("planes size: " + planes.size());
+		if (debug && (writeDebugToIO || writeDebugToVertexOutputListeners)) {
+			if (accumulator.detailDebugBuffer == null
+					|| accumulator.detailDebugBuffer.length() > 0) {
+				accumulator.detailDebugBuffer = new StringBuffer();
+			}
+			if (debugForVertexActivated(vertexOne)) {
+				accumulator.debugBuffer.append("ME: ").append(vertexOne)
+						.append(": Am in position: ").append(onePoint)
+						.append(", temp. xForce: ").append(accumulator.xForce)
+						.append(", temp. yForce: ").append(accumulator.yForce)
+						.append(", temp. zForce: ").append(accumulator.zForce)
+						.append(", temp. Force: ").append(accumulator.overallForce)
+						.append(LINE_SEPARATOR);
+				accumulator.debugBuffer.append("Distance Vector: ").append(distVector)
+						.append(LINE_SEPARATOR);
+			}
+		}
+		// plane calculations for both perceptionally constrained planes and
+		// unconstrained ones
+		for (int p = 0; p < activePlanes.size(); p++) {
+			SocialPlane plane = activePlanes.get(p);
+			tempForce = 0.0f;
+			// calculate force only if distance between vertices greater
+			// than minimal distance
+			if (dist > toleranceZone) {
+				// raw force on this plane (zero if other vertex is
+				// outside of perception range on this plane)
+				tempForce += accumulator.planeForces[p][slot];
+				if (debug
+						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+					accumulator.detailDebugBuffer.append("   Attraction on ")
+							.append(plane.getName()).append(": ")
+							.append(tempForce);
 				}
-				if (debugForVertexActivated(vertexOne)) {
-					debugBuffer.append("ME: ").append(vertexOne)
-							.append(": Am in position: ").append(onePoint)
-							.append(", temp. xForce: ").append(xForce)
-							.append(", temp. yForce: ").append(yForce)
-							.append(", temp. zForce: ").append(zForce)
-							.append(", temp. Force: ").append(overallForce)
-							.append(LINE_SEPARATOR);
-					debugBuffer.append("Distance Vector: ").append(distVector)
-							.append(LINE_SEPARATOR);
+			} else {
+				// distance too small - vertices are inside each other's
+				// private zone
+				if (debug
+						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+					accumulator.detailDebugBuffer.append("   Attraction on ")
+							.append(plane.getName()).append(": ")
+							.append("0 - too close");
 				}
 			}
-			// plane calculations for both perceptionally constrained planes and
-			// unconstrained ones
-			for (SocialPlane plane : planes.values()) {
-				tempForce = 0.0f;
-				// calculate force only if distance between vertices greater
-				// than minimal distance
-				if (dist > toleranceZone) {
-					// if the perception distance and the perception on the
-					// plane is limited and no distance independence is
-					// activated
-					if (plane.perceptionallyConstrained()
-							&& maximalPerceptionDistance != -1
-							&& !makeAllPlanesDistanceIndependent) {
-						// then only calculate force if the distance is smaller
-						// than max perceivable distance
-						if (dist <= maximalPerceptionDistance) {
-							// other vertex INSIDE perception range
-							tempForce += plane.getForceTowards(vertexOne,
-									vertexTwo, dist);
-						}
-						// else do nothing, as other vertex is outside of
-						// perception range on this plane
-					} else {
-						/*
-						 * else: - the plane might be distance-dependent (or
-						 * not), but either the distance is unlimited, or
-						 * distance-independence is activated for all planes, so
-						 * the force is calculated
-						 */
-						tempForce += plane.getForceTowards(vertexOne,
-								vertexTwo, dist);
-					}
-					/*
-					 * if(plane.perceptionallyConstrained() &&
-					 * maximalPerceptionDistance != -1 &&
-					 * maximalPerceptionDistance <= dist &&
-					 * !useDistanceIndependenceInPlanes){ //|| maximalDistance
-					 * == -1){ //if plane has limited perception range and
-					 * global distance-independence override is not activated
-					 * if(dist <= maximalPerceptionDistance || maximalDistance
-					 * == -1){ //other vertex INSIDE perception range
-					 * //System.out
-					 * .println("Calculating constrained perception: smaller " +
-					 * (dist < maximalPerceptionDistance)); tempForce +=
-					 * plane.getForceTowards(vertexOne, vertexTwo, dist); } else
-					 * { //other vertex OUTSIDE perception range
-					 * //System.out.println("Distance too far: " + dist); } }
-					 * else { tempForce += plane.getForceTowards(vertexOne,
-					 * vertexTwo, dist); }
-					 */
-					if (debug
-							&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-						detailDebugBuffer.append("   Attraction on ")
-								.append(plane.getName()).append(": ")
-								.append(tempForce);
-					}
-				} else {
-					// distance too small - vertices are inside each other's
-					// private zone
+			// include distance depended amplification to increase
+			// convergence for distant attracted individuals.
+			if (amplifyAttractionForDistantVertices) {
+				if (tempForce > 0 && dist > toleranceZone) {
+					// square attraction for distance if outside tolerance
+					// zone
+					tempForce *= Math
+							.pow(dist,
+									amplificationPowerForDistantDependentAttraction);
 					if (debug
 							&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-						detailDebugBuffer.append("   Attraction on ")
-								.append(plane.getName()).append(": ")
-								.append("0 - too close");
-					}
-				}
-				// include distance depended amplification to increase
-				// convergence for distant attracted individuals.
-				if (amplifyAttractionForDistantVertices) {
-					if (tempForce > 0 && dist > toleranceZone) {
-						// square attraction for distance if outside tolerance
-						// zone
-						tempForce *= Math
-								.pow(dist,
-										amplificationPowerForDistantDependentAttraction);
-						if (debug
-								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-							detailDebugBuffer
-									.append(" -> distance-dependent amplification with ")
-									.append(Math
-											.pow(dist,
-													amplificationPowerForDistantDependentAttraction))
-									.append(": ").append(tempForce);
-						}
+						accumulator.detailDebugBuffer
+								.append(" -> distance-dependent amplification with ")
+								.append(Math
+										.pow(dist,
+												amplificationPowerForDistantDependentAttraction))
+								.append(": ").append(tempForce);
 					}
 				}
+			}
 
-				// if force has been changed by this sphere, multiply with
-				// weight factor
-				if (tempForce != 0.0f) {
-					// individual weight factor from registered agents
-					if (useIndividualWeights) {
-						// get weight for plane
-						Float idvPlaneWeight = requestWeightForPlaneFromProvider(
-								vertexOne, plane.getName()); 
-						//only consider if weight specified by individual (i.e. not null)
-						if(idvPlaneWeight != null){
-							tempForce *= idvPlaneWeight;
-						}
-						if (debug
-								&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-							detailDebugBuffer
-									.append(" -> indiv. weighing with ")
-									.append(requestWeightForPlaneFromProvider(
-											vertexOne, plane.getName()))
-									.append(": ").append(tempForce);
-						}
+			// if force has been changed by this sphere, multiply with
+			// weight factor
+			if (tempForce != 0.0f) {
+				// individual weight factor from registered agents
+				if (useIndividualWeights) {
+					// get weight for plane (as of start of round)
+					float idvPlaneWeight = weightCache.getPlaneWeight(
+							vertexOne, accumulator.vertexIndex, p,
+							plane.getName());
+					//only consider if weight specified by individual (i.e. not NaN)
+					if(!Float.isNaN(idvPlaneWeight)){
+						tempForce *= idvPlaneWeight;
 					}
-					// global weight factor
-					tempForce *= plane.weightFactor;
 					if (debug
 							&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-						detailDebugBuffer.append(" -> global weighing with ")
-								.append(plane.weightFactor).append(": ")
-								.append(tempForce);
+						accumulator.detailDebugBuffer
+								.append(" -> indiv. weighing with ")
+								.append(idvPlaneWeight)
+								.append(": ").append(tempForce);
 					}
-					// add force for this plane (after weighing) to sum of all
-					// planes
-					force += tempForce;
-					// System.out.println("Multiplied with " +
-					// sphere.weightFactor);
 				}
+				// global weight factor
+				tempForce *= plane.weightFactor;
 				if (debug
 						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					detailDebugBuffer.append(LINE_SEPARATOR);
+					accumulator.detailDebugBuffer.append(" -> global weighing with ")
+							.append(plane.weightFactor).append(": ")
+							.append(tempForce);
 				}
+				// add force for this plane (after weighing) to sum of all
+				// planes
+				force += tempForce;
+				// System.out.println("Multiplied with " +
+				// sphere.weightFactor);
+			}
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.detailDebugBuffer.append(LINE_SEPARATOR);
+			}
 
-				if (drawOnGlassPane) {
-					initializeGlassPane();
-					// generate edge key to check for 3D representation
-					String edgeId = null;
-					if (use3d && print3dLines) {
-						edgeId = generateEdgeId(vertexOne, vertexTwo,
-								plane.getName());
-					}
-					// System.out.println("Plane: " + plane +
-					// plane.linkDrawingEnabled());
-					// draw lines between entities if attraction between them
-					if (plane.linkDrawingEnabled()
-							&& (print2dLines || (use3d && print3dLines))
-							&& ((tempForce != 0.0) || !plane.isEnabled())) {
-						if (highlightedIndividual == null
-								|| (highlightedIndividual.equals(vertexOne) && !individualsToBeGreyedOut
-										.contains(vertexTwo.toString()))) {
-							// check for highlighted individual links only -
-							// else print for everybody
-							if (print2dLines) {
-								Color col = plane
-										.getColor(vertexOne, vertexTwo);
-								if (col != null) {
-									col = new Color(col.getRed(),
-											col.getGreen(), col.getBlue(),
-											linkColorAlpha);
-									// LineShape lShape = new LineShape(0, new
-									// Point2D.Float((float)onePoint.x,
-									// (float)onePoint.y), new
-									// Point2D.Float((float)twoPoint.x,
-									// (float)twoPoint.y), true, col);
-									// System.out.println("Print to line.");
-									glassPane.paintLine(new LineShape(0,
-											new Point2D.Float(
-													(float) onePoint.x,
-													(float) onePoint.y),
-											new Point2D.Float(
-													(float) twoPoint.x,
-													(float) twoPoint.y), true,
-											col, socialPlaneLineStroke));
+			// UI structures are shared by all force calculation threads
+			if (drawOnGlassPane || highlightTags || clusterSecondLevel) {
+				synchronized (sideEffectLock) {
+					if (drawOnGlassPane) {
+						initializeGlassPane();
+						// generate edge key to check for 3D representation
+						String edgeId = null;
+						if (use3d && print3dLines) {
+							edgeId = generateEdgeId(vertexOne, vertexTwo,
+									plane.getName());
+						}
+						// System.out.println("Plane: " + plane +
+						// plane.linkDrawingEnabled());
+						// draw lines between entities if attraction between them
+						if (plane.linkDrawingEnabled()
+								&& (print2dLines || (use3d && print3dLines))
+								&& ((tempForce != 0.0) || !plane.isEnabled())) {
+							if (highlightedIndividual == null
+									|| (highlightedIndividual.equals(vertexOne) && !individualsToBeGreyedOut
+											.contains(vertexTwo.toString()))) {
+								// check for highlighted individual links only -
+								// else print for everybody
+								if (print2dLines) {
+									Color col = plane
+											.getColor(vertexOne, vertexTwo);
+									if (col != null) {
+										col = new Color(col.getRed(),
+												col.getGreen(), col.getBlue(),
+												linkColorAlpha);
+										// LineShape lShape = new LineShape(0, new
+										// Point2D.Float((float)onePoint.x,
+										// (float)onePoint.y), new
+										// Point2D.Float((float)twoPoint.x,
+										// (float)twoPoint.y), true, col);
+										// System.out.println("Print to line.");
+										glassPane.paintLine(new LineShape(0,
+												new Point2D.Float(
+														(float) onePoint.x,
+														(float) onePoint.y),
+												new Point2D.Float(
+														(float) twoPoint.x,
+														(float) twoPoint.y), true,
+												col, socialPlaneLineStroke));
+									}
+								}
+								if (use3d && print3dLines) {
+									// System.out.println("Printing 3d lines " +
+									// print3dLines);
+									// add edge (between vertexOne and vertexTwo) if
+									// not already existing
+									// if(!edgePrintCache.containsKey(edgeId)){
+									addEdge(edgeId, new Edge(vertexOne, vertexTwo,
+											null));
+									// }
+								}
+							} else {
+								if (use3d && print3dLines
+										&& !highlightedIndividual.equals(vertexOne)
+										&& !highlightedIndividual.equals(vertexTwo)) {
+									// remove edge (if exists) - but check that no
+									// highlighted individual is involved (one line
+									// per relationship, not multiple like in 2D)
+									// System.out.println("Trying to remove edge " +
+									// edgeId);
+									removeEdge(edgeId);
 								}
 							}
-							if (use3d && print3dLines) {
-								// System.out.println("Printing 3d lines " +
-								// print3dLines);
-								// add edge (between vertexOne and vertexTwo) if
-								// not already existing
-								// if(!edgePrintCache.containsKey(edgeId)){
-								addEdge(edgeId, new Edge(vertexOne, vertexTwo,
-										null));
-								// }
-							}
-						} else {
-							if (use3d && print3dLines
-									&& !highlightedIndividual.equals(vertexOne)
-									&& !highlightedIndividual.equals(vertexTwo)) {
-								// remove edge (if exists) - but check that no
-								// highlighted individual is involved (one line
-								// per relationship, not multiple like in 2D)
-								// System.out.println("Trying to remove edge " +
-								// edgeId);
-								removeEdge(edgeId);
-							}
-						}
-					} else {// if(!plane.linkDrawingEnabled()){
-						// remove edge if no attraction on that plane
-						if (use3d) {
-							if (print3dLines) {
-								// edge removal will be done by UI switches
-								// remove edge (if exists)
-								removeEdge(edgeId);
+						} else {// if(!plane.linkDrawingEnabled()){
+							// remove edge if no attraction on that plane
+							if (use3d) {
+								if (print3dLines) {
+									// edge removal will be done by UI switches
+									// remove edge (if exists)
+									removeEdge(edgeId);
+								}
 							}
 						}
 					}
-				}
-				if (highlightTags && !clusterSecondLevel) {
-					if (plane.getClass().getSuperclass()
-							.equals(TagSocialPlane.class)
-							&& !((TagSocialPlane) plane).getTags(vertexOne)
-									.isEmpty()) {
-						Color color = null;
-						// returns stringified collection - converted to set
-						// first to ensure unified tags
-						String tagKey = new HashSet<V>(
-								((Collection<V>) ((TagSocialPlane) plane)
-										.getTags(vertexOne))).toString();
-						if (tagColors.containsKey(tagKey)) {
-							// if already color assigned, take
-							color = tagColors.get(tagKey);
-						} else {
-							// generate new one for that tag combination
-							color = secClusterColors.get(tagColors.size());
-							tagColors.put(tagKey, color);
+					if (highlightTags && !clusterSecondLevel) {
+						if (plane.getClass().getSuperclass()
+								.equals(TagSocialPlane.class)
+								&& !((TagSocialPlane) plane).getTags(vertexOne)
+										.isEmpty()) {
+							Color color = null;
+							// returns stringified collection - converted to set
+							// first to ensure unified tags
+							String tagKey = new HashSet<V>(
+									((Collection<V>) ((TagSocialPlane) plane)
+											.getTags(vertexOne))).toString();
+							if (tagColors.containsKey(tagKey)) {
+								// if already color assigned, take
+								color = tagColors.get(tagKey);
+							} else {
+								// generate new one for that tag combination
+								color = secClusterColors.get(tagColors.size());
+								tagColors.put(tagKey, color);
 
+							}
+							// refine color with alpha value
+							// System.out.println("Apl: " +
+							// color.getTransparency());
+							color = new Color(color.getRed(), color.getGreen(),
+									color.getBlue(), secondaryAndTagColorAlpha);
+							// System.out.println("Should print something in " +
+							// color);
+							glassPane.paintCircle(new CircleShape3D(onePoint,
+									(int) maxClusterNeighbourDistance, true, color)
+									.toCircleShape());
 						}
-						// refine color with alpha value
-						// System.out.println("Apl: " +
-						// color.getTransparency());
-						color = new Color(color.getRed(), color.getGreen(),
-								color.getBlue(), secondaryAndTagColorAlpha);
-						// System.out.println("Should print something in " +
-						// color);
-						glassPane.paintCircle(new CircleShape3D(onePoint,
-								(int) maxClusterNeighbourDistance, true, color)
-								.toCircleShape());
 					}
-				}
-				if (clusterSecondLevel) {
-					if (tempForce != 0.0f) {
-						// saves attraction value for particular agent-plane
-						// combination for later clustering
-						attractionClusterer.addAttractionValue(vertexOne,
-								plane.getName(), (float) tempForce);
+					if (clusterSecondLevel) {
+						if (tempForce != 0.0f) {
+							// saves attraction value for particular agent-plane
+							// combination for later clustering
+							attractionClusterer.addAttractionValue(vertexOne,
+									plane.getName(), (float) tempForce);
+						}
 					}
 				}
-			} // END Plane iterations
+			}
+		} // END Plane iterations
 
-			// if no direct attraction exists, grey out the target individual
-			if (force == 0.0 && highlightedIndividual != null
-					&& highlightedIndividual.equals(vertexOne)) {
+		// if no direct attraction exists, grey out the target individual
+		if (force == 0.0 && highlightedIndividual != null
+				&& highlightedIndividual.equals(vertexOne)) {
+			synchronized (sideEffectLock) {
 				individualsToBeGreyedOut.add(vertexTwo.toString());
 			}
+		}
 
-			// store force value before inclusion of repulsion
-			double forceWithoutNaturalRepulsion = force;
+		// store force value before inclusion of repulsion
+		double forceWithoutNaturalRepulsion = force;
 
-			// Calculation of distance-based Attraction/Repulsion measures
+		// Calculation of distance-based Attraction/Repulsion measures
 
-			// if transition through private zones is allowed, do not calculate
-			if (!noRepulsionWhenTransiting) {
-				if (debug
-						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					detailDebugBuffer.append("   Repulsion");
-					// is continued in repulsion calculation methods
-				}
+		// if transition through private zones is allowed, do not calculate
+		if (!noRepulsionWhenTransiting) {
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.detailDebugBuffer.append("   Repulsion");
+				// is continued in repulsion calculation methods
+			}
 
-				// do calculate if transit is NOT allowed
-				force = calculateRepulsion(force, dist);
-				if (debug
-						&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-					detailDebugBuffer.append(LINE_SEPARATOR);
-				}
-			} else {
-				// determine which vertices are within privacy zone
-				if (dist < minimalDistance) {
+			// do calculate if transit is NOT allowed
+			force = calculateRepulsion(accumulator, force, dist);
+			if (debug
+					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+				accumulator.detailDebugBuffer.append(LINE_SEPARATOR);
+			}
+		} else {
+			// determine which vertices are within privacy zone
+			if (dist < minimalDistance) {
+				synchronized (sideEffectLock) {
 					verticesInPrivateZone.put(vertexTwo,
-							new ForceDistanceContainer(distVector, force));
+							new ForceDistanceContainer(dirCalc
+									.calculateGridDistance(onePoint,
+											twoPoint, toroidal), force));
 				}
 			}
+		}
+
+		// add force to vector forces
+		Point3d convertedForceCoords = getDirection(distVector, dist,
+				accumulator.direction);
+		accumulator.xForce += convertedForceCoords.x * force;
+		accumulator.yForce += convertedForceCoords.y * force;
+		accumulator.zForce += convertedForceCoords.z * force;
+		accumulator.overallForce += force;
 
-			// add force to vector forces
-			Point3d convertedForceCoords = distVector
-					.convertAngleToCartesianScreenCoordinates();
-			xForce += convertedForceCoords.x * force;
-			yForce += convertedForceCoords.y * force;
-			zForce += convertedForceCoords.z * force;
-			overallForce += force;
-
-			// Validation of force strength (without natural repulsion)
-			if (validateDistances) {
-				Point3d convertedNonRepulsingForceCoords = convertedForceCoords;
-				// calculate the total 'correct force' in any way (for
-				// percentage calculation later on)
-				validationXForce += convertedNonRepulsingForceCoords.x
+		// Validation of force strength (without natural repulsion)
+		if (validateDistances) {
+			Point3d convertedNonRepulsingForceCoords = convertedForceCoords;
+			// calculate the total 'correct force' in any way (for
+			// percentage calculation later on)
+			accumulator.validationXForce += convertedNonRepulsingForceCoords.x
+					* forceWithoutNaturalRepulsion;
+			accumulator.validationYForce += convertedNonRepulsingForceCoords.y
+					* forceWithoutNaturalRepulsion;
+			accumulator.validationZForce += convertedNonRepulsingForceCoords.z
+					* forceWithoutNaturalRepulsion;
+			if (!accumulator.insidePrivateZone) {
+				accumulator.validationXForceOutsidePrivateZones += convertedNonRepulsingForceCoords.x
 						* forceWithoutNaturalRepulsion;
-				validationYForce += convertedNonRepulsingForceCoords.y
+				accumulator.validationYForceOutsidePrivateZones += convertedNonRepulsingForceCoords.y
 						* forceWithoutNaturalRepulsion;
-				validationZForce += convertedNonRepulsingForceCoords.z
+				accumulator.validationZForceOutsidePrivateZones += convertedNonRepulsingForceCoords.z
 						* forceWithoutNaturalRepulsion;
-				if (!insidePrivateZone) {
-					validationXForceOutsidePrivateZones += convertedNonRepulsingForceCoords.x
-							* forceWithoutNaturalRepulsion;
-					validationYForceOutsidePrivateZones += convertedNonRepulsingForceCoords.y
-							* forceWithoutNaturalRepulsion;
-					validationZForceOutsidePrivateZones += convertedNonRepulsingForceCoords.z
-							* forceWithoutNaturalRepulsion;
-				}
-				if (!validateDistanceOnCompoundForceLevel) {
-					convertedNonRepulsingForceCoords.x = convertedNonRepulsingForceCoords.x
-							* forceWithoutNaturalRepulsion;
-					convertedNonRepulsingForceCoords.y = convertedNonRepulsingForceCoords.y
-							* forceWithoutNaturalRepulsion;
-					convertedNonRepulsingForceCoords.z = convertedNonRepulsingForceCoords.z
-							* forceWithoutNaturalRepulsion;
-					// calculate resulting coordinates INCLUDING repulsion
-					Point3d repulsingForceCoords = new Point3d(
-							convertedForceCoords.x * force,
-							convertedForceCoords.y * force,
-							convertedForceCoords.z * force);
-
-					/*
-					 * value for all deviations for that agent (sum of deviating
-					 * distances to all other agents). Thus distances cannot
-					 * cancel each other (based on the direction) as in the
-					 * compound version (validateDistanceOnCompoundForceLevel ->
-					 * true).
-					 */
-					Double difference = dirCalc.calculateGridDistance(
-							repulsingForceCoords,
-							convertedNonRepulsingForceCoords).getLength();
-					if (!insidePrivateZone) {
+			}
+			if (!validateDistanceOnCompoundForceLevel) {
+				convertedNonRepulsingForceCoords.x = convertedNonRepulsingForceCoords.x
+						* forceWithoutNaturalRepulsion;
+				convertedNonRepulsingForceCoords.y = convertedNonRepulsingForceCoords.y
+						* forceWithoutNaturalRepulsion;
+				convertedNonRepulsingForceCoords.z = convertedNonRepulsingForceCoords.z
+						* forceWithoutNaturalRepulsion;
+				// calculate resulting coordinates INCLUDING repulsion
+				Point3d repulsingForceCoords = new Point3d(
+						convertedForceCoords.x * force,
+						convertedForceCoords.y * force,
+						convertedForceCoords.z * force);
+
+				/*
+				 * value for all deviations for that agent (sum of deviating
+				 * distances to all other agents). Thus distances cannot
+				 * cancel each other (based on the direction) as in the
+				 * compound version (validateDistanceOnCompoundForceLevel ->
+				 * true).
+				 */
+				Double difference = dirCalc.calculateGridDistance(
+						repulsingForceCoords,
+						convertedNonRepulsingForceCoords).getLength();
+				synchronized (sideEffectLock) {
+					if (!accumulator.insidePrivateZone) {
 						// only for agents that are not in private zones
 						if (actualVsDesiredDistanceOutsidePrivateZone
 								.containsKey(vertexOne.toString())) {
@@ -2774,94 +3901,86 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 						actualVsDesiredDistance.put(vertexOne.toString(),
 								difference);
 					}
-					// percentage will be calculated at round end (in step()
-					// method)
 				}
+				// percentage will be calculated at round end (in step()
+				// method)
 			}
+		}
 
-			// have force amount at this point
-			if (debug
-					&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
-				// debugBuffer = new StringBuffer();
-				debugBuffer.append("---TARGET: ").append(vertexTwo)
-						.append(": Others pos: ").append(twoPoint)
-						.append(" ---- my position: ").append(onePoint)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Distance: ").append(dist)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("   -- Forces on individual planes").append(
-						LINE_SEPARATOR);
-				// add details collected for individual planes
-				debugBuffer.append(detailDebugBuffer);
-				debugBuffer.append("   --").append(LINE_SEPARATOR);
-				debugBuffer.append("Force: ").append(force)
-						.append(LINE_SEPARATOR);
-				double angleXY = distVector.getXYAngle();
-				double angleXZ = distVector.getXZAngle();
-				debugBuffer.append("Radians XY: ").append(angleXY);
-				debugBuffer.append(" - Degree: ")
-						.append(distVector.getXYAngleInDegrees())
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Radians XZ: ").append(angleXZ);
-				debugBuffer.append(" - Degree: ")
-						.append(distVector.getXZAngleInDegrees())
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Converted Force Coordinate: ")
-						.append(convertedForceCoords).append(LINE_SEPARATOR);
-				debugBuffer.append("X force addition: ")
-						.append(convertedForceCoords.x * force)
-						.append(", xForce accumulated: ").append(xForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Y force addition: ")
-						.append(convertedForceCoords.y * force)
-						.append(", yForce accumulated: ").append(yForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("Z force addition: ")
-						.append(convertedForceCoords.z * force)
-						.append(", zForce accumulated: ").append(zForce)
-						.append(LINE_SEPARATOR);
-				debugBuffer.append("-------IDV FORCE to/from ")
-						.append(vertexTwo).append(" END-------")
-						.append(LINE_SEPARATOR);
-				/*
-				 * if(writeDebugToOutfileInsteadConsole){
-				 * writer.write(debugBuffer); } else {
-				 * System.out.print(debugBuffer); }
-				 */
-			}
-
-			// at this stage, we have total accumulated force up to vertexTwo
-			// (in xForce, yForce and zForce)
-
+		// have force amount at this point
+		if (debug
+				&& (writeDebugToIO || (writeDebugToVertexOutputListeners && debugForVertexActivated(vertexOne)))) {
+			// debugBuffer = new StringBuffer();
+			accumulator.debugBuffer.append("---TARGET: ").append(vertexTwo)
+					.append(": Others pos: ").append(twoPoint)
+					.append(" ---- my position: ").append(onePoint)
+					.append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Distance: ").append(dist)
+					.append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("   -- Forces on individual planes").append(
+					LINE_SEPARATOR);
+			// add details collected for individual planes
+			accumulator.debugBuffer.append(accumulator.detailDebugBuffer);
+			accumulator.debugBuffer.append("   --").append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Force: ").append(force)
+					.append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Converted Force Coordinate: ")
+					.append(convertedForceCoords).append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("X force addition: ")
+					.append(convertedForceCoords.x * force)
+					.append(", xForce accumulated: ").append(accumulator.xForce)
+					.append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Y force addition: ")
+					.append(convertedForceCoords.y * force)
+					.append(", yForce accumulated: ").append(accumulator.yForce)
+					.append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("Z force addition: ")
+					.append(convertedForceCoords.z * force)
+					.append(", zForce accumulated: ").append(accumulator.zForce)
+					.append(LINE_SEPARATOR);
+			accumulator.debugBuffer.append("-------IDV FORCE to/from ")
+					.append(vertexTwo).append(" END-------")
+					.append(LINE_SEPARATOR);
+			/*
+			 * if(writeDebugToOutfileInsteadConsole){
+			 * writer.write(debugBuffer); } else {
+			 * System.out.print(debugBuffer); }
+			 */
 		}
+
+		// at this stage, we have total accumulated force up to vertexTwo
+		// (in xForce, yForce and zForce)
 	}
 
 	/**
 	 * This method calculates the repulsion for a given vertex and adds it to
 	 * the given force value.
 	 * 
+	 * @param accumulator
+	 *            accumulator marking whether vertex is inside a private zone
 	 * @param force
 	 *            strength of force between two vertices
 	 * @param distance
 	 *            distance between both vertices
 	 * @return
 	 */
-	private double calculateRepulsion(double force, double distance) {
+	private double calculateRepulsion(ForceAccumulator accumulator,
+			double force, double distance) {
 		double netDistance = distance - minimalDistance;
 		if (netDistance <= 0) {
 			// System.out.println("inside private zone");
-			insidePrivateZone = true;
+			accumulator.insidePrivateZone = true;
 		}
 		if (force > 0) {
 			// force *= Math.max(netDistance, 0);
 			// in-group repulsion if too close
-			force += calcIngroupRepulsion(netDistance);
+			force += calcIngroupRepulsion(accumulator, netDistance);
 			// System.out.println("Calculated ingroup repulsion");
 		} else {
 			// out-group repulsion
-			force += calcOutgroupRepulsion(netDistance);
+			force += calcOutgroupRepulsion(accumulator, netDistance);
 			// System.out.println("Calculated outgroup repulsion: " +
-			// calcOutgroupRepulsion(netDistance));
+			// calcOutgroupRepulsion(accumulator, netDistance));
 		}
 		return force;
 	}
@@ -2883,19 +4002,21 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 	 * distance){ double netDistance = distance - minimalDistance; double force
 	 * = 0.0; //REPULSION DESPITE ATTRACTION (IF TOO CLOSE) if(positiveForce){
 	 * //force *= Math.max(netDistance, 0); //in-group repulsion if too close
-	 * force += calcIngroupRepulsion(netDistance); } else { //FURTHER REPULSION
+	 * force += calcIngroupRepulsion(accumulator, netDistance); } else { //FURTHER REPULSION
 	 * DESPITE ALREADY EXISTING REPULSION //out-group repulsion force +=
-	 * calcOutgroupRepulsion(netDistance); } return force; }
+	 * calcOutgroupRepulsion(accumulator, netDistance); } return force; }
 	 */
 
-	private double calcIngroupRepulsion(double netDistance) {
+	private double calcIngroupRepulsion(ForceAccumulator accumulator,
+			double netDistance) {
 		if (activateOutGroupRepulsion) {
 			// INSIDE PRIVATE ZONE
 			if (netDistance < 0) {
 				// only write debug if detail buffer is somewhat filled (i.e.
 				// activated)
-				if (debug && detailDebugBuffer.length() > 0) {
-					detailDebugBuffer.append(" - InGroup: ").append(
+				if (debug && accumulator.detailDebugBuffer != null
+						&& accumulator.detailDebugBuffer.length() > 0) {
+					accumulator.detailDebugBuffer.append(" - InGroup: ").append(
 							(Math.pow(2, Math.abs(netDistance)) * -1));
 				}
 				// linear repulsion if inside private zone
@@ -2907,14 +4028,16 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		return 0.0;
 	}
 
-	private double calcOutgroupRepulsion(double netDistance) {
+	private double calcOutgroupRepulsion(ForceAccumulator accumulator,
+			double netDistance) {
 		if (activateOutGroupRepulsion) {
 			// INSIDE PRIVATE ZONE
 			if (netDistance < 0) {
 				// only write debug if detail buffer is somewhat filled (i.e.
 				// activated)
-				if (debug && detailDebugBuffer.length() > 0) {
-					detailDebugBuffer
+				if (debug && accumulator.detailDebugBuffer != null
+						&& accumulator.detailDebugBuffer.length() > 0) {
+					accumulator.detailDebugBuffer
 							.append(" - OutGroup (IN intimate zone): ").append(
 									(Math.pow(3, Math.abs(netDistance)) * -1));
 				}
@@ -2925,8 +4048,9 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 			if (maximalRepulsionDistance == -1
 					|| netDistance <= maximalRepulsionDistance) {
 				if (outGroupRepulsion == 0.0) {
-					if (debug && detailDebugBuffer.length() > 0) {
-						detailDebugBuffer.append(
+					if (debug && accumulator.detailDebugBuffer != null
+						&& accumulator.detailDebugBuffer.length() > 0) {
+						accumulator.detailDebugBuffer.append(
 								" - OutGroup (OUTSIDE intimate zone): ")
 								.append(outGroupRepulsion);
 					}
@@ -2934,8 +4058,9 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 				}
 				// only write debug if detail buffer is somewhat filled (i.e.
 				// activated)
-				if (debug && detailDebugBuffer.length() > 0) {
-					detailDebugBuffer.append(
+				if (debug && accumulator.detailDebugBuffer != null
+						&& accumulator.detailDebugBuffer.length() > 0) {
+					accumulator.detailDebugBuffer.append(
 							" - OutGroup (OUTSIDE intimate zone): ").append(
 							Math.pow(outGroupRepulsion, 3)
 									/ Math.max(Math.pow(netDistance, 1.2), 1)
@@ -3054,362 +4179,15 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 			System.out
 					.println("Number of sectors: " + Math.pow(sectorScale, 2));
 		}
-		calculateVisibleSectors();
+		sectorGrid = new SectorGrid(xGridSize, yGridSize, zGridSize,
+				xSizeOfSector, ySizeOfSector, zSizeOfSector, use3d, toroidal);
 		// register GraphChangeListener to be informed about changed regarding
 		// vertices
-		sim.graphHandler.registerGraphChangeListener(this);
-	}
-
-	// public static ArrayList<Point2D> visibleSectors2D = new
-	// ArrayList<Point2D>();
-	public static ArrayList<Point3d> visibleSectors3D = new ArrayList<Point3d>();
-
-	@SimulationParam
-	// calculates the granularity of iteration steps in radius to determine
-	// visible sectors (only used when sector-based calculation is activated)
-	int granularityOfAnglesToDetermineVisibleSectors = 100;
-
-	/**
-	 * Calculates relative sectors visible from location 0,0 (using the given
-	 * maximal perception distance) and saves them to visibleSectors.
-	 */
-	private void calculateVisibleSectors() {
-		if (maximalPerceptionDistance == -1) {
-			return;
-		}
-		if (use3d) {
-			// add center itself
-			visibleSectors3D.add(new Point3d(0, 0, 0));
-			// get extreme distances
-			double iterationSteps = Math.PI
-					/ granularityOfAnglesToDetermineVisibleSectors;
-			// create length vector with extended vision in order to capture
-			// corners
-			DirectionVector3D vec = new DirectionVector3D(
-					maximalPerceptionDistance
-							+ Math.sqrt(Math.pow(xSizeOfSector / 2, 2)
-									+ Math.pow(ySizeOfSector / 2, 2)), 0, 0);
-
-			// for each angle step on the z axis
-			for (int m = -granularityOfAnglesToDetermineVisibleSectors; m < granularityOfAnglesToDetermineVisibleSectors; m++) {
-				vec.setXZAngle(iterationSteps * m);
-				// counterclockwise from -180 (left) via 0 to +180 degree (in
-				// radians)
-				for (int n = -granularityOfAnglesToDetermineVisibleSectors; n < granularityOfAnglesToDetermineVisibleSectors; n++) {
-					vec.setXYAngle(iterationSteps * n);
-					Point3d relativeDistance = null;
-					Point3d targetSector = null;
-					relativeDistance = vec
-							.convertVectorToCartesianScreenCoordinates();
-					// if the balance of the sector size is more than half of
-					// the sector size, round up coordinate
-					if (Math.abs(relativeDistance.x % xSizeOfSector) > xSizeOfSector / 2) {
-						if (relativeDistance.x < 0) {
-							relativeDistance.set(relativeDistance.x
-									- xSizeOfSector / 2, relativeDistance.y,
-									relativeDistance.z);
-						} else {
-							relativeDistance.set(relativeDistance.x
-									+ xSizeOfSector / 2, relativeDistance.y,
-									relativeDistance.z);
-						}
-					}
-					if (Math.abs(relativeDistance.y % ySizeOfSector) > ySizeOfSector / 2) {
-						if (relativeDistance.y < 0) {
-							relativeDistance.set(relativeDistance.x,
-									relativeDistance.y - ySizeOfSector / 2,
-									relativeDistance.z);
-						} else {
-							relativeDistance.set(relativeDistance.x,
-									relativeDistance.y + ySizeOfSector / 2,
-									relativeDistance.z);
-						}
-					}
-					if (Math.abs(relativeDistance.z % zSizeOfSector) > zSizeOfSector / 2) {
-						if (relativeDistance.x < 0) {
-							relativeDistance.set(relativeDistance.x,
-									relativeDistance.y, relativeDistance.z
-											- zSizeOfSector / 2);
-						} else {
-							relativeDistance.set(relativeDistance.x,
-									relativeDistance.y, relativeDistance.z
-											+ zSizeOfSector / 2);
-						}
-					}
-					targetSector = convertCartesianCoordinateToSectorCoordinate(relativeDistance);
-					if (targetSector != null
-							&& !visibleSectors3D.contains(targetSector)) {
-						visibleSectors3D.add(targetSector);
-						// System.out.println("Relative coordinates: " +
-						// relativeDistance);
-						// System.out.println("Converted to sectorCoordinate: "
-						// + targetSector);
-					}
-				}
-			}
-			// calculate visible sectors in between the extremes
-			// find highest and lowest individual x's, y's and z's
-			Double lowestX = null;
-			Double lowestY = null;
-			Double lowestZ = null;
-			Double highestX = null;
-			Double highestY = null;
-			Double highestZ = null;
-			for (Point3d inVis : visibleSectors3D) {
-				if (lowestX == null) {
-					lowestX = inVis.x;
-				}
-				if (lowestY == null) {
-					lowestY = inVis.y;
-				}
-				if (lowestZ == null) {
-					lowestZ = inVis.z;
-				}
-				if (highestX == null) {
-					highestX = inVis.x;
-				}
-				if (highestY == null) {
-					highestY = inVis.y;
-				}
-				if (highestZ == null) {
-					highestZ = inVis.z;
-				}
-				if (inVis.x < lowestX) {
-					lowestX = inVis.x;
-				}
-				if (inVis.y < lowestY) {
-					lowestY = inVis.y;
-				}
-				if (inVis.z < lowestZ) {
-					lowestZ = inVis.z;
-				}
-				if (inVis.x > highestX) {
-					highestX = inVis.x;
-				}
-				if (inVis.y > highestY) {
-					highestY = inVis.y;
-				}
-				if (inVis.z > highestZ) {
-					highestZ = inVis.z;
-				}
-			}
-			// fill up coordinate gaps in visibleSectors
-			while (lowestZ <= highestZ) {
-				while (lowestY <= highestY) {
-					Double tpLowestX = null;
-					Double tpHighestX = null;
-					for (Point3d inVis : visibleSectors3D) {
-						/*
-						 * comparison should be ok (despite being of type double) as 
-						 * values have been assigned mutually previously.
-						 * Reason for type double is that Point3d contains coordinate
-						 * values of type double, not int. 
-						 */
-						if (inVis.z == lowestZ) {
-							if (inVis.y == lowestY) {
-								if (tpLowestX == null) {
-									tpLowestX = inVis.x;
-								}
-								if (tpHighestX == null) {
-									tpHighestX = inVis.x;
-								}
-								if (inVis.x < tpLowestX) {
-									tpLowestX = inVis.x;
-								}
-								if (inVis.x > tpHighestX) {
-									tpHighestX = inVis.x;
-								}
-							}
-						}
-					}
-					// System.out.println("Filling up from " + tpLowestX +
-					// " to " + tpHighestX + " for Y " + lowestY);
-					for (int i = tpLowestX.intValue() + 1; i < tpHighestX
-							.intValue(); i++) {
-						Point3d tempPt = new Point3d(i, lowestY, lowestZ);
-						if (!visibleSectors3D.contains(tempPt)) {
-							visibleSectors3D.add(tempPt);
-						}
-					}
-					lowestY++;
-				}
-				lowestZ++;
-			}
-		} else {
-			// add center itself
-			visibleSectors3D.add(new Point3d(0, 0, 0));
-			// get extreme distances
-			double iterationSteps = Math.PI
-					/ granularityOfAnglesToDetermineVisibleSectors;
-			// create length vector with extended vision in order to capture
-			// corners
-			DirectionVector3D vec = new DirectionVector3D(
-					maximalPerceptionDistance
-							+ Math.sqrt(Math.pow(xSizeOfSector / 2, 2)
-									+ Math.pow(ySizeOfSector / 2, 2)), 0, 0);
-
-			// counterclockwise from -180 (left) via 0 to +180 degree (in
-			// radians)
-			for (int n = -granularityOfAnglesToDetermineVisibleSectors; n < granularityOfAnglesToDetermineVisibleSectors; n++) {
-				vec.setXYAngle(iterationSteps * n);
-				Point3d relativeDistance = null;
-				Point3d targetSector = null;
-				relativeDistance = vec
-						.convertVectorToCartesianScreenCoordinates();
-				// if the balance of the sector size is more than half of the
-				// sector size, round up coordinate
-				if (Math.abs(relativeDistance.x % xSizeOfSector) > xSizeOfSector / 2) {
-					if (relativeDistance.x < 0) {
-						relativeDistance.set(relativeDistance.x - xSizeOfSector
-								/ 2, relativeDistance.y, 0);
-					} else {
-						relativeDistance.set(relativeDistance.x + xSizeOfSector
-								/ 2, relativeDistance.y, 0);
-					}
-				}
-				if (Math.abs(relativeDistance.y % ySizeOfSector) > ySizeOfSector / 2) {
-					if (relativeDistance.y < 0) {
-						relativeDistance.set(relativeDistance.x,
-								relativeDistance.y - ySizeOfSector / 2, 0);
-					} else {
-						relativeDistance.set(relativeDistance.x,
-								relativeDistance.y + ySizeOfSector / 2, 0);
-					}
-				}
-
-				targetSector = convertCartesianCoordinateToSectorCoordinate(relativeDistance);
-				if (targetSector != null
-						&& !visibleSectors3D.contains(targetSector)) {
-					visibleSectors3D.add(targetSector);
-					// System.out.println("Relative coordinates: " +
-					// relativeDistance);
-					// System.out.println("Converted to sectorCoordinate: " +
-					// targetSector);
-				}
-			}
-			// calculate visible sectors in between the extremes
-			// find highest and lowest individual x's and y's
-			Double lowestX = null;
-			Double lowestY = null;
-			Double highestX = null;
-			Double highestY = null;
-			for (Point3d inVis : visibleSectors3D) {
-				if (lowestX == null) {
-					lowestX = inVis.x;
-				}
-				if (lowestY == null) {
-					lowestY = inVis.y;
-				}
-				if (highestX == null) {
-					highestX = inVis.x;
-				}
-				if (highestY == null) {
-					highestY = inVis.y;
-				}
-				if (inVis.x < lowestX) {
-					lowestX = inVis.x;
-				}
-				if (inVis.y < lowestY) {
-					lowestY = inVis.y;
-				}
-				if (inVis.x > highestX) {
-					highestX = inVis.x;
-				}
-				if (inVis.y > highestY) {
-					highestY = inVis.y;
-				}
-			}
-			// fill up coordinate gaps in visibleSectors
-			while (lowestY <= highestY) {
-				Double tpLowestX = null;
-				Double tpHighestX = null;
-				for (Point3d inVis : visibleSectors3D) {
-					if (inVis.y == lowestY) {
-						if (tpLowestX == null) {
-							tpLowestX = inVis.x;
-						}
-						if (tpHighestX == null) {
-							tpHighestX = inVis.x;
-						}
-						if (inVis.x < tpLowestX) {
-							tpLowestX = inVis.x;
-						}
-						if (inVis.x > tpHighestX) {
-							tpHighestX = inVis.x;
-						}
-					}
-				}
-				// System.out.println("Filling up from " + tpLowestX + " to " +
-				// tpHighestX + " for Y " + lowestY);
-				for (int i = tpLowestX.intValue() + 1; i < tpHighestX
-						.intValue(); i++) {
-					Point3d tempPt = new Point3d(i, lowestY, 0);
-					if (!visibleSectors3D.contains(tempPt)) {
-						visibleSectors3D.add(tempPt);
-					}
-				}
-				lowestY++;
-			}
-		}
-		System.out.println("Calculated visible sectors: "
-				+ visibleSectors3D.size() + ": " + visibleSectors3D);
-	}
-
-	private ArrayList<V> getVisibleVertices(Point3d ownLocation) {
-		ArrayList<V> visibleVertices = new ArrayList<V>();
-		Point3d ownSector = convertCartesianCoordinateToSectorCoordinate(ownLocation);
-		try {
-			// for(Point2D visibleSector: visibleSectors){
-			for (int i = 0; i < visibleSectors3D.size(); i++) {
-				Point3d visibleSector = visibleSectors3D.get(i);
-				Point3d translatedSector = new Point3d(ownSector.x
-						+ visibleSector.x, ownSector.y + visibleSector.y,
-						ownSector.z + visibleSector.z);
-				// System.out.print("Translated surrounding sector from " +
-				// translatedSector);
-				translatedSector = dirCalc.transposeTarget(translatedSector,
-						sectorScale, toroidal);
-				// System.out.println("to " + translatedSector);
-				if (sectorMembers3D.containsKey(translatedSector)) {
-					try {
-						visibleVertices.addAll(sectorMembers3D
-								.get(translatedSector));
-					} catch (NegativeArraySizeException e) {
-						return getVisibleVertices(ownLocation);
-					}
-				}
-			}
-		} catch (ConcurrentModificationException e) {
-			// System.out.println("ConcurrentMod Exception: " +
-			// visibleVertices);
-			// return getVisibleVertices(ownLocation);
-			return visibleVertices;
+		if (sim.graphHandler != null) {
+			sim.graphHandler.registerGraphChangeListener(this);
 		}
-		return visibleVertices;
 	}
 
-	/*
-	 * private ArrayList<V> getVisibleVertices(Point2D ownLocation){
-	 * ArrayList<V> visibleVertices = new ArrayList<V>(); Point2D ownSector =
-	 * convertCartesianCoordinateToSectorCoordinate(ownLocation); try{
-	 * //for(Point2D visibleSector: visibleSectors){ for(int i=0;
-	 * i<visibleSectors2D.size(); i++){ Point2D visibleSector =
-	 * visibleSectors2D.get(i); Point2D translatedSector = new
-	 * Point2D.Double(ownSector.getX() + visibleSector.getX(), ownSector.getY()
-	 * + visibleSector.getY());
-	 * //System.out.print("Translated surrounding sector from " +
-	 * translatedSector); translatedSector =
-	 * dirCalc.transposeTarget(translatedSector, sectorScale, toroidal);
-	 * //System.out.println("to " + translatedSector);
-	 * if(sectorMembers2D.containsKey(translatedSector)){ try{
-	 * visibleVertices.addAll(sectorMembers2D.get(translatedSector)); } catch
-	 * (NegativeArraySizeException e){ return getVisibleVertices(ownLocation); }
-	 * } } } catch(ConcurrentModificationException e){
-	 * //System.out.println("ConcurrentMod Exception: " + visibleVertices);
-	 * //return getVisibleVertices(ownLocation); return visibleVertices; }
-	 * return visibleVertices; }
-	 */
-
 	private int calculateLineShapeId(V vertexOne, V vertexTwo, Color color) {
 		HashSet<V> toSort = new HashSet<V>();
 		toSort.add(vertexOne);
@@ -3417,80 +4195,6 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		return toSort.hashCode() + color.getRGB();
 	}
 
-	/**
-	 * Registers a vertex (with its new position) with the updated sector.
-	 * 
-	 * @param vertex
-	 * @param newPosition
-	 */
-	private void registerVertexWithSectors(V vertex, Point3d newPosition) {
-		Point3d lastPosition = null;
-		// retrieve old position from history (and update)
-		if (positionHistory.containsKey(vertex)) {
-			lastPosition = positionHistory.get(vertex);
-		}
-		// System.out.println("Reregistered from position " + lastPosition +
-		// " to " + newPosition);
-		positionHistory.put(vertex, newPosition);
-		// calculate new sector
-		Point3d newSector = convertCartesianCoordinateToSectorCoordinate(newPosition);
-		boolean registerNewOne = true;
-		// unregister from last sector coordinate
-		if (lastPosition != null) {
-			Point3d oldSector = convertCartesianCoordinateToSectorCoordinate(lastPosition);
-			if (!oldSector.equals(newSector)) {
-				if (sectorMembers3D.containsKey(oldSector)) {
-					sectorMembers3D.get(oldSector).remove(vertex);
-					// System.out.println("Last coord. after removal of " +
-					// vertex + ": " + sectorMembers3D.get(oldSector));
-				}
-			} else {
-				registerNewOne = false;
-			}
-		}
-		// register in new sector coordinate
-		if (registerNewOne) {
-			if (!sectorMembers3D.containsKey(newSector)) {
-				HashSet<V> tempSet = new HashSet<V>();
-				tempSet.add(vertex);
-				sectorMembers3D.put(newSector, tempSet);
-			} else {
-				sectorMembers3D.get(newSector).add(vertex);
-			}
-		}
-	}
-
-	/**
-	 * Removes a vertex from the sector registry (useful if vertex has been
-	 * deleted).
-	 * 
-	 * @param vertex
-	 */
-	private void removeVertexFromSectors(V vertex) {
-		Point3d lastPosition = null;
-		// retrieve old position from history (and update)
-		if (positionHistory.containsKey(vertex)) {
-			lastPosition = positionHistory.get(vertex);
-		}
-		if (lastPosition != null) {
-			Point3d oldSector = convertCartesianCoordinateToSectorCoordinate(lastPosition);
-			if (sectorMembers3D.containsKey(oldSector)) {
-				sectorMembers3D.get(oldSector).remove(vertex);
-				if (debug && writeDebugToIO) {
-					String msg = "Last coordinate of vertex " + vertex + ": "
-							+ lastPosition;
-					if (writeDebugToOutfileInsteadConsole) {
-						writer.write(msg);
-					} else {
-						System.out.print(msg);
-					}
-				}
-			}
-			// remove from history to reduce list size
-			positionHistory.remove(vertex);
-		}
-	}
-
 	public Point2D convertCartesianCoordinateToSectorCoordinate(
 			Point2D cartesianCoordinate) {
 		// System.out.println("Coordinate: " + cartesianCoordinate.getX() + ", "
@@ -3528,6 +4232,16 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 		if (writer != null) {
 			writer.close();
 		}
+		if (forceCalculationPool != null) {
+			forceCalculationPool.shutdown();
+			forceCalculationPool = null;
+		}
+		if (spatialClusterer instanceof AsynchronousClusterer) {
+			((AsynchronousClusterer<V>) spatialClusterer).shutdown();
+		}
+		if (spatialClusterer instanceof ParallelDBSCAN) {
+			((ParallelDBSCAN<V>) spatialClusterer).shutdown();
+		}
 	}
 
 	@Override
@@ -3538,7 +4252,6 @@ public class ForceDirectedLayout<V, E> extends AbstractLayout<V, E> implements
 
 	@Override
 	public void vertexRemoved(V vertex) {
-		removeVertexFromSectors(vertex);
 		// remove vertex from 3D graph
 		sim.getMason3dLocations().remove(vertex);
 		if (use3d && print3dLines) {
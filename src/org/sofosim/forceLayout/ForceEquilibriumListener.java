@@ -0,0 +1,15 @@
+package org.sofosim.forceLayout;
+
+/**
+ * Is notified whenever the force layout reaches or leaves global
+ * equilibrium, i.e. no vertex has moved further than the equilibrium
+ * threshold in the last step. Register with ForceDirectedLayout.
+ *
+ * @author cfrantz
+ *
+ */
+public interface ForceEquilibriumListener {
+
+	void equilibriumChanged(boolean equilibrium, double maxDisplacement);
+
+}
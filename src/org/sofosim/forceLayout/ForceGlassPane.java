@@ -9,13 +9,8 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map.Entry;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
-import javax.vecmath.Point3d;
 import org.nzdis.micro.messaging.MTRuntime;
 import org.sofosim.forceLayout.util.CircleShape;
 import org.sofosim.forceLayout.util.LineShape;
@@ -212,11 +207,16 @@ public class ForceGlassPane<V> extends JComponent implements WindowListener{
 			}
 			//draw density of sectors
 			if(ForceDirectedLayout.drawSectorDensity){
-				try{
-					for(Entry<Point3d, HashSet<V>> entry: ((HashMap<Point3d, HashSet<V>>)layout.getSectors()).entrySet()){
-						int numberOfEntitiesInSector = entry.getValue().size();
+				SectorGrid grid = layout.getSectorGrid();
+				if(grid != null){
+					int[] occupancy = grid.getOccupancy();
+					for(int sector = 0; sector < occupancy.length; sector++){
+						int numberOfEntitiesInSector = occupancy[sector];
+						if(numberOfEntitiesInSector == 0){
+							continue;
+						}
 						if(meanDensity == -1){
-							numberOfVertices += entry.getValue().size();
+							numberOfVertices += numberOfEntitiesInSector;
 						}
 						Color actualColor = sectorColor;
 						//only paint sectors if number of vertices higher than mean
@@ -231,14 +231,15 @@ public class ForceGlassPane<V> extends JComponent implements WindowListener{
 								actualColor = new Color(actualColor.getRed(), actualColor.getGreen(), actualColor.getBlue(), stepDecrementThreshold);
 							}
 						}
+						int sectorX = grid.getSectorX(sector);
+						int sectorY = grid.getSectorY(sector);
 						g.setColor(actualColor);
-						g.fillRect(new Double(entry.getKey().x * xSectorSize).intValue(), new Double(entry.getKey().y * ySectorSize).intValue(), xSectorSize, ySectorSize);
+						g.fillRect(sectorX * xSectorSize, sectorY * ySectorSize, xSectorSize, ySectorSize);
 						//draw number of entities in sector
 						g.setColor(Color.BLACK);
 						g.setFont(new Font("Serif", Font.PLAIN, 24));
 						//Note: If 3D is activated, densities for all z axis sectors will be printed on top of each other, thus render the feature somewhat unusable
-						g.drawString(String.valueOf(entry.getValue().size()), new Double(entry.getKey().x * xSectorSize + xSectorSize * 2 / (float)5).intValue(), new Double(entry.getKey().y * ySectorSize + ySectorSize * 3 / (float)5).intValue());
-						//g.drawString(String.valueOf(entry.getValue().size()), new Double(entry.getKey().x * xSectorSize + entry.getKey().z /(float)(xSectorSize/layout.sim.GRID_DEPTH)).intValue(), new Double((entry.getKey().y * ySectorSize + ySectorSize * 1.5 / (float)5) /*+ ySectorSize * entry.getKey().z /(float)(xSectorSize/layout.sim.GRID_DEPTH)*/).intValue());
+						g.drawString(String.valueOf(numberOfEntitiesInSector), new Double(sectorX * xSectorSize + xSectorSize * 2 / (float)5).intValue(), new Double(sectorY * ySectorSize + ySectorSize * 3 / (float)5).intValue());
 					}
 					if(meanDensity == -1){
 						//calculate mean vertices per sector
@@ -246,8 +247,6 @@ public class ForceGlassPane<V> extends JComponent implements WindowListener{
 						System.out.println("Number of sectors: " + layout.getSectorCount());
 						System.out.println("Mean density in grid (vertices per sector): " + meanDensity);
 					}
-				} catch(ConcurrentModificationException e) {
-					
 				}
 			}
 			
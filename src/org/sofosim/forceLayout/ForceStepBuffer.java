@@ -0,0 +1,374 @@
+package org.sofosim.forceLayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import javax.vecmath.Point3d;
+
+/**
+ * Dense position store of the layout, holding positions and forces of all
+ * vertices in flat arrays (structure of arrays). Vertices keep their index
+ * across steps; indices of removed vertices are reclaimed by compacting the
+ * arrays.
+ * Within a step, positions all forces are calculated from are held in the
+ * read buffer, while target positions (and the force values shown in the
+ * UI) are written to the write buffer. Target positions only become visible
+ * to the force calculation once committed, which allows the calculation for
+ * all vertices to run concurrently on the positions of the previous round.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class ForceStepBuffer<V> {
+
+	/** vertices in index order */
+	private final ArrayList<V> vertices = new ArrayList<V>();
+	/** index of each vertex in {@link #vertices} */
+	private final HashMap<V, Integer> indices = new HashMap<V, Integer>();
+	/** round in which each vertex has last been loaded */
+	private int[] loadedInRound = new int[0];
+	private int round = 0;
+	/** incremented whenever vertices are added or removed */
+	private int version = 0;
+	/** indicates if position of vertex has been set */
+	private boolean[] positioned = new boolean[0];
+
+	/** read buffer: positions forces are calculated from */
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	private double[] z = new double[0];
+	/** write buffer: transposed target positions */
+	private double[] targetX = new double[0];
+	private double[] targetY = new double[0];
+	private double[] targetZ = new double[0];
+	/** last resultant force (sign indicates attraction or repulsion) */
+	private double[] resultantForce = new double[0];
+
+	/**
+	 * number of consecutive steps the resultant force has stayed below the
+	 * equilibrium threshold
+	 */
+	int[] calmSteps = new int[0];
+	/** indicates if vertex is asleep (i.e. its forces are not calculated) */
+	boolean[] asleep = new boolean[0];
+	/** distance moved in last step */
+	double[] displacement = new double[0];
+
+	/** accumulated force in x direction */
+	double[] xForce = new double[0];
+	/** accumulated force in y direction */
+	double[] yForce = new double[0];
+	/** sum of all forces (sign indicates attraction or repulsion) */
+	double[] overallForce = new double[0];
+	/** x offset of force line drawn in UI */
+	double[] forceLineX = new double[0];
+	/** y offset of force line drawn in UI */
+	double[] forceLineY = new double[0];
+	/** debug output collected for each vertex */
+	StringBuffer[] debugOutput = new StringBuffer[0];
+
+	/**
+	 * Synchronises the buffer with the given vertices. Vertices not yet
+	 * contained are appended (their positions need to be set using
+	 * {@link #setPosition(int, double, double, double)}, see
+	 * {@link #isPositioned(int)}), vertices not contained in the given
+	 * collection are removed.
+	 *
+	 * @param graphVertices
+	 */
+	public void load(Collection<V> graphVertices) {
+		round++;
+		int loaded = 0;
+		for (V vertex : graphVertices) {
+			Integer index = indices.get(vertex);
+			if (index == null) {
+				index = add(vertex);
+			}
+			if (loadedInRound[index] != round) {
+				loadedInRound[index] = round;
+				loaded++;
+			}
+		}
+		if (loaded < vertices.size()) {
+			removeVerticesNotLoaded();
+		}
+	}
+
+	private int add(V vertex) {
+		int index = vertices.size();
+		if (x.length == index) {
+			grow(Math.max(16, index * 2));
+		}
+		vertices.add(vertex);
+		indices.put(vertex, index);
+		version++;
+		positioned[index] = false;
+		resultantForce[index] = 0;
+		calmSteps[index] = 0;
+		asleep[index] = false;
+		return index;
+	}
+
+	private void grow(int capacity) {
+		loadedInRound = Arrays.copyOf(loadedInRound, capacity);
+		positioned = Arrays.copyOf(positioned, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		z = Arrays.copyOf(z, capacity);
+		resultantForce = Arrays.copyOf(resultantForce, capacity);
+		calmSteps = Arrays.copyOf(calmSteps, capacity);
+		asleep = Arrays.copyOf(asleep, capacity);
+		displacement = new double[capacity];
+		targetX = new double[capacity];
+		targetY = new double[capacity];
+		targetZ = new double[capacity];
+		xForce = new double[capacity];
+		yForce = new double[capacity];
+		overallForce = new double[capacity];
+		forceLineX = new double[capacity];
+		forceLineY = new double[capacity];
+		debugOutput = new StringBuffer[capacity];
+	}
+
+	/**
+	 * Removes all vertices that have not been loaded in the current round
+	 * and compacts the remaining ones (retaining their order).
+	 */
+	private void removeVerticesNotLoaded() {
+		int size = vertices.size();
+		int next = 0;
+		for (int i = 0; i < size; i++) {
+			V vertex = vertices.get(i);
+			if (loadedInRound[i] != round) {
+				indices.remove(vertex);
+				continue;
+			}
+			if (next != i) {
+				vertices.set(next, vertex);
+				indices.put(vertex, next);
+				loadedInRound[next] = loadedInRound[i];
+				positioned[next] = positioned[i];
+				x[next] = x[i];
+				y[next] = y[i];
+				z[next] = z[i];
+				resultantForce[next] = resultantForce[i];
+				calmSteps[next] = calmSteps[i];
+				asleep[next] = asleep[i];
+			}
+			next++;
+		}
+		for (int i = size - 1; i >= next; i--) {
+			vertices.remove(i);
+		}
+		version++;
+	}
+
+	/**
+	 * Returns the number of vertices in this buffer.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return vertices.size();
+	}
+
+	/**
+	 * Returns a counter that changes whenever vertices are added or removed
+	 * (i.e. whenever indices may have changed).
+	 *
+	 * @return
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns all vertices in index order. The returned list is modified
+	 * by subsequent calls to {@link #load(Collection)}.
+	 *
+	 * @return
+	 */
+	public ArrayList<V> getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the vertex for a given index.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public V getVertex(int index) {
+		return vertices.get(index);
+	}
+
+	/**
+	 * Returns the index of a given vertex or -1 if the vertex is not
+	 * contained in this buffer.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public int indexOf(V vertex) {
+		Integer index = indices.get(vertex);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Indicates if the position of the vertex with the given index has been
+	 * set since it has been added.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isPositioned(int index) {
+		return positioned[index];
+	}
+
+	/**
+	 * Sets the position of the vertex with the given index in the read buffer.
+	 *
+	 * @param index
+	 * @param xPos
+	 * @param yPos
+	 * @param zPos
+	 */
+	public void setPosition(int index, double xPos, double yPos, double zPos) {
+		x[index] = xPos;
+		y[index] = yPos;
+		z[index] = zPos;
+		positioned[index] = true;
+	}
+
+	public double getX(int index) {
+		return x[index];
+	}
+
+	public double getY(int index) {
+		return y[index];
+	}
+
+	public double getZ(int index) {
+		return z[index];
+	}
+
+	/**
+	 * Returns the position of the vertex with the given index from the read
+	 * buffer as new point.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Point3d getPosition(int index) {
+		return new Point3d(x[index], y[index], z[index]);
+	}
+
+	/**
+	 * Writes the position of the vertex with the given index from the read
+	 * buffer into the given point and returns it.
+	 *
+	 * @param index
+	 * @param result
+	 * @return
+	 */
+	public Point3d getPosition(int index, Point3d result) {
+		result.set(x[index], y[index], z[index]);
+		return result;
+	}
+
+	public double getTargetX(int index) {
+		return targetX[index];
+	}
+
+	public double getTargetY(int index) {
+		return targetY[index];
+	}
+
+	public double getTargetZ(int index) {
+		return targetZ[index];
+	}
+
+	/**
+	 * Returns the last resultant force for the vertex with the given index
+	 * (sign indicates attraction or repulsion).
+	 *
+	 * @param index
+	 * @return
+	 */
+	public double getResultantForce(int index) {
+		return resultantForce[index];
+	}
+
+	/**
+	 * Returns the last resultant force for a given vertex or null if the
+	 * vertex is not contained in this buffer.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Double getResultantForce(V vertex) {
+		Integer index = indices.get(vertex);
+		double[] forces = resultantForce;
+		if (index == null || index >= forces.length) {
+			return null;
+		}
+		return forces[index];
+	}
+
+	/**
+	 * Writes the calculated target position and forces of a vertex to the
+	 * write buffer.
+	 *
+	 * @param index
+	 * @param target transposed target position
+	 * @param accumulator accumulated forces for vertex
+	 * @param resultantForce signed resultant force
+	 */
+	public void store(int index, Point3d target, ForceAccumulator accumulator,
+			double resultantForce) {
+		targetX[index] = target.x;
+		targetY[index] = target.y;
+		targetZ[index] = target.z;
+		xForce[index] = accumulator.xForce;
+		yForce[index] = accumulator.yForce;
+		overallForce[index] = accumulator.overallForce;
+		this.resultantForce[index] = resultantForce;
+		debugOutput[index] = accumulator.debugBuffer;
+	}
+
+	/**
+	 * Indicates if the vertex with the given index is asleep.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isAsleep(int index) {
+		return asleep[index];
+	}
+
+	/**
+	 * Wakes up the vertex with the given index.
+	 *
+	 * @param index
+	 */
+	public void wake(int index) {
+		asleep[index] = false;
+		calmSteps[index] = 0;
+	}
+
+	/**
+	 * Makes the target position of the vertex with the given index its
+	 * current position in the read buffer.
+	 *
+	 * @param index
+	 */
+	public void commit(int index) {
+		x[index] = targetX[index];
+		y[index] = targetY[index];
+		z[index] = targetZ[index];
+		debugOutput[index] = null;
+	}
+
+}
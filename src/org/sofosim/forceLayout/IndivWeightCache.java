@@ -0,0 +1,228 @@
+package org.sofosim.forceLayout;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sofosim.planes.SocialPlane;
+
+/**
+ * Per-round snapshot of the plane and tag weights returned by registered
+ * {@link IndivWeightProvider}s. Weights are captured in primitive arrays
+ * (indexed by the vertices' step buffer indices) at the start of each step,
+ * so the force calculation does not query providers for every vertex pair.
+ * Providers whose weights change during a round need to invalidate their
+ * entry (see {@link #invalidate(Object)}), in which case weights are
+ * queried from the provider directly until the next snapshot.
+ * A missing (null) weight is represented as NaN.
+ *
+ * @author cfrantz
+ *
+ * @param <V>
+ */
+public class IndivWeightCache<V> {
+
+	/** number of vertices captured in last snapshot */
+	private int size = 0;
+	/** number of planes per vertex in {@link #planeWeights} */
+	private int planeCount = 0;
+	/** plane weights (vertex index * planeCount + plane index) */
+	private float[] planeWeights = new float[0];
+	/** provider for each vertex index (null if none registered) */
+	private IndivWeightProvider[] providers = new IndivWeightProvider[0];
+	/** indicates if weights have changed since the previous snapshot */
+	private boolean[] changed = new boolean[0];
+	/** step buffer version of last snapshot */
+	private int bufferVersion = -1;
+	/** tags of each provider at time of snapshot (null if not captured) */
+	private Object[][] tags = new Object[0][];
+	/** weights for tags in {@link #tags} */
+	private float[][] tagWeights = new float[0][];
+
+	/** registered providers (queried directly for invalidated vertices) */
+	private Map<V, IndivWeightProvider> weightProviders = Collections.emptyMap();
+	/** vertices whose weights have changed since the last snapshot */
+	private final Set<V> invalidated = ConcurrentHashMap.<V> newKeySet();
+	/** indicates if any vertex has been invalidated (fast path) */
+	private volatile boolean anyInvalidated = false;
+
+	/**
+	 * Captures the current weights of all providers for the vertices in the
+	 * given step buffer and planes.
+	 *
+	 * @param buffer
+	 * @param planes
+	 * @param weightProviders
+	 */
+	public void load(ForceStepBuffer<V> buffer, List<SocialPlane<V>> planes,
+			Map<V, IndivWeightProvider> weightProviders) {
+		this.weightProviders = weightProviders;
+		// previous snapshot refers to same vertices and planes
+		boolean comparable = buffer.getVersion() == bufferVersion
+				&& buffer.size() == size && planes.size() == planeCount;
+		bufferVersion = buffer.getVersion();
+		size = buffer.size();
+		planeCount = planes.size();
+		if (providers.length < size) {
+			providers = Arrays.copyOf(providers, size);
+			changed = new boolean[size];
+			tags = new Object[size][];
+			tagWeights = new float[size][];
+		}
+		if (planeWeights.length < size * planeCount) {
+			planeWeights = Arrays.copyOf(planeWeights, size * planeCount);
+		}
+		// take over invalidated vertices before capturing, so invalidations
+		// during capture are not lost
+		Set<V> previouslyInvalidated = Collections.emptySet();
+		if (anyInvalidated) {
+			anyInvalidated = false;
+			previouslyInvalidated = new HashSet<V>();
+			for (Iterator<V> it = invalidated.iterator(); it.hasNext();) {
+				previouslyInvalidated.add(it.next());
+				it.remove();
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			V vertex = buffer.getVertex(i);
+			IndivWeightProvider provider = weightProviders.get(vertex);
+			changed[i] = !comparable || providers[i] != provider
+					|| previouslyInvalidated.contains(vertex);
+			providers[i] = provider;
+			tags[i] = null;
+			int offset = i * planeCount;
+			if (provider == null) {
+				Arrays.fill(planeWeights, offset, offset + planeCount, Float.NaN);
+				continue;
+			}
+			for (int p = 0; p < planeCount; p++) {
+				float weight = toPrimitive(provider.getPlaneWeight(planes
+						.get(p).getName()));
+				if (Float.compare(weight, planeWeights[offset + p]) != 0) {
+					changed[i] = true;
+				}
+				planeWeights[offset + p] = weight;
+			}
+			captureTagWeights(i, provider);
+		}
+	}
+
+	/**
+	 * Indicates if the weights of the vertex with the given index have
+	 * changed (or have been invalidated) between the last two snapshots.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean hasChanged(int index) {
+		return index >= size || changed[index];
+	}
+
+	/**
+	 * Captures the weights of all tags currently held by the given provider.
+	 *
+	 * @param index
+	 * @param provider
+	 */
+	private void captureTagWeights(int index, IndivWeightProvider provider) {
+		try {
+			Object[] providerTags = provider.getTags().toArray();
+			float[] weights = new float[providerTags.length];
+			for (int t = 0; t < providerTags.length; t++) {
+				weights[t] = toPrimitive(provider.getTagWeight(providerTags[t]));
+			}
+			tagWeights[index] = weights;
+			tags[index] = providerTags;
+		} catch (ConcurrentModificationException e) {
+			// tags are queried from provider directly
+		}
+	}
+
+	private static float toPrimitive(Float weight) {
+		return weight == null ? Float.NaN : weight;
+	}
+
+	/**
+	 * Returns the weight of the given vertex for the plane with the given
+	 * index (as passed to {@link #load(ForceStepBuffer, List, Map)}), or NaN
+	 * if no weight is specified.
+	 *
+	 * @param vertex
+	 * @param index
+	 *            step buffer index of vertex
+	 * @param plane
+	 *            index of plane
+	 * @param planeName
+	 *            name of plane (used if weight is queried from provider)
+	 * @return
+	 */
+	public float getPlaneWeight(V vertex, int index, int plane,
+			String planeName) {
+		if (!isCaptured(vertex, index)) {
+			IndivWeightProvider provider = weightProviders.get(vertex);
+			return provider == null ? Float.NaN : toPrimitive(provider
+					.getPlaneWeight(planeName));
+		}
+		return planeWeights[index * planeCount + plane];
+	}
+
+	/**
+	 * Returns the weight of the given vertex for a given tag, or null if no
+	 * weight is specified. Tags not held by the provider at the time of the
+	 * snapshot are queried from the provider directly.
+	 *
+	 * @param vertex
+	 * @param index
+	 *            step buffer index of vertex
+	 * @param tag
+	 * @return
+	 */
+	public Float getTagWeight(V vertex, int index, Object tag) {
+		if (!isCaptured(vertex, index)) {
+			IndivWeightProvider provider = weightProviders.get(vertex);
+			return provider == null ? null : provider.getTagWeight(tag);
+		}
+		IndivWeightProvider provider = providers[index];
+		if (provider == null) {
+			return null;
+		}
+		Object[] providerTags = tags[index];
+		if (providerTags != null) {
+			for (int t = 0; t < providerTags.length; t++) {
+				if (providerTags[t].equals(tag)) {
+					float weight = tagWeights[index][t];
+					return Float.isNaN(weight) ? null : weight;
+				}
+			}
+		}
+		return provider.getTagWeight(tag);
+	}
+
+	/**
+	 * Indicates if the snapshot holds valid weights for the given vertex.
+	 *
+	 * @param vertex
+	 * @param index
+	 * @return
+	 */
+	private boolean isCaptured(V vertex, int index) {
+		return index < size && !(anyInvalidated && invalidated.contains(vertex));
+	}
+
+	/**
+	 * Marks the weights of a given vertex as changed. Its weights are
+	 * queried from its provider until the next snapshot.
+	 *
+	 * @param vertex
+	 */
+	public void invalidate(V vertex) {
+		invalidated.add(vertex);
+		anyInvalidated = true;
+	}
+
+}
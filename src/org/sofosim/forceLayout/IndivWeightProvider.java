@@ -36,17 +36,23 @@ public abstract class IndivWeightProvider<T> extends DefaultSocialRole implement
 	
 	public void addTag(T tag){
 		tags.add(tag);
+		//tag weights are cached by layout
+		invalidateWeights();
 		//System.out.println(me() + " have added tag " + tag);
 		CommunicationSpace.shareTags(me(), (HashSet<Tag>) tags);
 	}
 	
 	public void removeTag(T tag){
 		tags.remove(tag);
+		//tag weights are cached by layout
+		invalidateWeights();
 		CommunicationSpace.shareTags(me(), (HashSet<Tag>) tags);
 	}
 	
 	public void removeAllTags(){
 		tags.clear();
+		//tag weights are cached by layout
+		invalidateWeights();
 		CommunicationSpace.shareTags(me(), (HashSet<Tag>) tags);
 	}
 	
@@ -60,7 +66,7 @@ public abstract class IndivWeightProvider<T> extends DefaultSocialRole implement
 	}
 	
 	/**
-	 * Is called during every execution round in order to get 
+	 * Is called once per execution round (see invalidateWeights()) to get 
 	 * the weight for an individual plane.
 	 * @param plane
 	 * @return weight for that plane
@@ -68,7 +74,7 @@ public abstract class IndivWeightProvider<T> extends DefaultSocialRole implement
 	public abstract Float getPlaneWeight(String plane);
 	
 	/**
-	 * Is called during every execution round in order to get 
+	 * Is called once per execution round (see invalidateWeights()) to get 
 	 * the individual's weight for a given tag.
 	 * @param tag
 	 * @return weight for the given tag
@@ -88,6 +94,16 @@ public abstract class IndivWeightProvider<T> extends DefaultSocialRole implement
 	    }
 	}
 	
+	/**
+	 * Informs the layout that plane or tag weights have changed during the
+	 * current round. The layout otherwise only requests weights once per round.
+	 */
+	public void invalidateWeights(){
+		if(sim != null && sim.graphHandler != null && weightProviderRegistered){
+	      ((ForceDirectedLayout)sim.graphHandler.getGraphInitializer(ForceGraphInitializer.FORCES_GRAPH).getLayout()).invalidateIndividualWeights(new VertexPoint3D<String>(me()));
+	    }
+	}
+
 	/**
 	 * Returns text that is to be printed on the GlassPane or other form of UI.
 	 * By default it prints associated tags and eventual rules. However, it 
@@ -0,0 +1,360 @@
+package org.sofosim.forceLayout;
+
+/**
+ * Uniform grid of sectors (cell list) indexing vertices by their position.
+ * Sectors are identified by integer ids and their members are held in flat
+ * arrays that are rebuilt using a counting sort whenever positions change.
+ * Neighbourhood queries use a precomputed stencil of all sectors that
+ * contain at least one point within the neighbourhood radius of some point
+ * of the querying sector, and write vertex indices into caller-provided
+ * arrays, so they do not allocate.
+ *
+ * @author cfrantz
+ *
+ */
+public class SectorGrid {
+
+	private final int xSectors;
+	private final int ySectors;
+	private final int zSectors;
+	private final double xSizeOfSector;
+	private final double ySizeOfSector;
+	private final double zSizeOfSector;
+	private final boolean toroidal;
+	/**
+	 * width the last sector in each dimension lacks compared to the others
+	 * if the grid size is not a multiple of the sector size (only
+	 * considered for toroidal grids, where it shortens distances across the
+	 * wrap)
+	 */
+	private final double xShortfallOfLastSector;
+	private final double yShortfallOfLastSector;
+	private final double zShortfallOfLastSector;
+
+	/** sector offsets of neighbourhood stencil */
+	private int[] stencilX = new int[0];
+	private int[] stencilY = new int[0];
+	private int[] stencilZ = new int[0];
+	private int stencilSize = 0;
+	/** radius the stencil has been calculated for */
+	private double neighbourhoodRadius = Double.NaN;
+
+	private int size = 0;
+	/** sector of each vertex */
+	private int[] sectorOfVertex = new int[0];
+	/** first entry in {@link #sectorMembers} for each sector (plus end marker) */
+	private final int[] sectorStart;
+	/** vertex indices ordered by sector */
+	private int[] sectorMembers = new int[0];
+	/** number of vertices per sector as of last build (for UI) */
+	private volatile int[] occupancy;
+
+	/**
+	 * Instantiates a sector grid for a given grid and sector size.
+	 *
+	 * @param xGridSize
+	 * @param yGridSize
+	 * @param zGridSize
+	 * @param xSizeOfSector
+	 * @param ySizeOfSector
+	 * @param zSizeOfSector
+	 * @param use3d if false, the z dimension is ignored
+	 * @param toroidal
+	 */
+	public SectorGrid(int xGridSize, int yGridSize, int zGridSize,
+			int xSizeOfSector, int ySizeOfSector, int zSizeOfSector,
+			boolean use3d, boolean toroidal) {
+		this.xSizeOfSector = xSizeOfSector;
+		this.ySizeOfSector = ySizeOfSector;
+		this.xSectors = (int) Math.ceil(xGridSize / (double) xSizeOfSector);
+		this.ySectors = (int) Math.ceil(yGridSize / (double) ySizeOfSector);
+		if (use3d) {
+			this.zSizeOfSector = zSizeOfSector;
+			this.zSectors = (int) Math.ceil(zGridSize / (double) zSizeOfSector);
+		} else {
+			this.zSizeOfSector = 1;
+			this.zSectors = 1;
+		}
+		this.toroidal = toroidal;
+		this.xShortfallOfLastSector = getShortfallOfLastSector(xGridSize,
+				this.xSizeOfSector, xSectors);
+		this.yShortfallOfLastSector = getShortfallOfLastSector(yGridSize,
+				this.ySizeOfSector, ySectors);
+		this.zShortfallOfLastSector = use3d ? getShortfallOfLastSector(
+				zGridSize, this.zSizeOfSector, zSectors) : 0;
+		this.sectorStart = new int[getSectorCount() + 1];
+		this.occupancy = new int[getSectorCount()];
+	}
+
+	private double getShortfallOfLastSector(int gridSize,
+			double sizeOfSector, int sectors) {
+		if (!toroidal || sectors == 1) {
+			return 0;
+		}
+		return sectors * sizeOfSector - gridSize;
+	}
+
+	/**
+	 * Returns the total number of sectors.
+	 *
+	 * @return
+	 */
+	public int getSectorCount() {
+		return xSectors * ySectors * zSectors;
+	}
+
+	/**
+	 * Precomputes the stencil of sectors that need to be searched to find
+	 * all vertices within the given radius. Does nothing if the stencil
+	 * has already been calculated for this radius. On toroidal grids whose
+	 * size is not a multiple of the sector size, the narrower last sector
+	 * shortens the gap between sectors across the wrap, which is considered
+	 * for all offsets (as the stencil does not depend on the position).
+	 *
+	 * @param radius
+	 */
+	public void setNeighbourhoodRadius(double radius) {
+		if (radius == neighbourhoodRadius) {
+			return;
+		}
+		neighbourhoodRadius = radius;
+		int xRange = Math.min((int) Math.ceil((radius + xShortfallOfLastSector)
+				/ xSizeOfSector), xSectors);
+		int yRange = Math.min((int) Math.ceil((radius + yShortfallOfLastSector)
+				/ ySizeOfSector), ySectors);
+		int zRange = zSectors == 1 ? 0 : Math.min(
+				(int) Math.ceil((radius + zShortfallOfLastSector)
+						/ zSizeOfSector), zSectors);
+		int maxStencilSize = (2 * xRange + 1) * (2 * yRange + 1)
+				* (2 * zRange + 1);
+		stencilX = new int[maxStencilSize];
+		stencilY = new int[maxStencilSize];
+		stencilZ = new int[maxStencilSize];
+		stencilSize = 0;
+		// avoids visiting the same sector twice if stencil wraps around
+		boolean[] included = new boolean[getSectorCount()];
+		double squaredRadius = radius * radius;
+		for (int dz = -zRange; dz <= zRange; dz++) {
+			for (int dy = -yRange; dy <= yRange; dy++) {
+				for (int dx = -xRange; dx <= xRange; dx++) {
+					// smallest distance between points in both sectors
+					double gapX = getGap(dx, xSizeOfSector, xShortfallOfLastSector);
+					double gapY = getGap(dy, ySizeOfSector, yShortfallOfLastSector);
+					double gapZ = getGap(dz, zSizeOfSector, zShortfallOfLastSector);
+					if (gapX * gapX + gapY * gapY + gapZ * gapZ > squaredRadius) {
+						continue;
+					}
+					if (toroidal) {
+						int key = getSectorId(wrap(dx, xSectors),
+								wrap(dy, ySectors), wrap(dz, zSectors));
+						if (included[key]) {
+							continue;
+						}
+						included[key] = true;
+					} else if (Math.abs(dx) >= xSectors
+							|| Math.abs(dy) >= ySectors
+							|| Math.abs(dz) >= zSectors) {
+						continue;
+					}
+					stencilX[stencilSize] = dx;
+					stencilY[stencilSize] = dy;
+					stencilZ[stencilSize] = dz;
+					stencilSize++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the smallest distance between points in sectors the given
+	 * offset apart, assuming the narrower last sector may lie between them.
+	 *
+	 * @param offset
+	 * @param sizeOfSector
+	 * @param shortfallOfLastSector
+	 * @return
+	 */
+	private static double getGap(int offset, double sizeOfSector,
+			double shortfallOfLastSector) {
+		int sectorsInBetween = Math.abs(offset) - 1;
+		if (sectorsInBetween <= 0) {
+			return 0;
+		}
+		return Math.max(0, sectorsInBetween * sizeOfSector
+				- shortfallOfLastSector);
+	}
+
+	/**
+	 * Prepares the grid for the given number of vertices. Positions need to
+	 * be set using {@link #setPosition(int, double, double, double)} before
+	 * calling {@link #build()}.
+	 *
+	 * @param size
+	 */
+	public void clear(int size) {
+		this.size = size;
+		if (sectorOfVertex.length < size) {
+			sectorOfVertex = new int[size];
+			sectorMembers = new int[size];
+		}
+	}
+
+	/**
+	 * Sets the position of the vertex with the given index.
+	 *
+	 * @param index
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	public void setPosition(int index, double x, double y, double z) {
+		sectorOfVertex[index] = getSector(x, y, z);
+	}
+
+	/**
+	 * Sorts all vertices into their sectors.
+	 */
+	public void build() {
+		int sectors = getSectorCount();
+		for (int s = 0; s <= sectors; s++) {
+			sectorStart[s] = 0;
+		}
+		for (int i = 0; i < size; i++) {
+			sectorStart[sectorOfVertex[i] + 1]++;
+		}
+		int[] counts = new int[sectors];
+		for (int s = 0; s < sectors; s++) {
+			counts[s] = sectorStart[s + 1];
+			sectorStart[s + 1] += sectorStart[s];
+		}
+		// stable placement (ascending vertex index within each sector)
+		int[] next = new int[sectors];
+		System.arraycopy(sectorStart, 0, next, 0, sectors);
+		for (int i = 0; i < size; i++) {
+			sectorMembers[next[sectorOfVertex[i]]++] = i;
+		}
+		occupancy = counts;
+	}
+
+	/**
+	 * Writes the indices of all vertices in sectors within the neighbourhood
+	 * radius of the given position into the result array and returns their
+	 * number. The result array needs to hold at least as many entries as
+	 * vertices in the grid.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param result
+	 * @return
+	 */
+	public int collectNeighbours(double x, double y, double z, int[] result) {
+		int sectorX = getSectorCoordinate(x, xSizeOfSector, xSectors);
+		int sectorY = getSectorCoordinate(y, ySizeOfSector, ySectors);
+		int sectorZ = getSectorCoordinate(z, zSizeOfSector, zSectors);
+		int count = 0;
+		for (int s = 0; s < stencilSize; s++) {
+			int nx = sectorX + stencilX[s];
+			int ny = sectorY + stencilY[s];
+			int nz = sectorZ + stencilZ[s];
+			if (toroidal) {
+				nx = wrap(nx, xSectors);
+				ny = wrap(ny, ySectors);
+				nz = wrap(nz, zSectors);
+			} else if (nx < 0 || nx >= xSectors || ny < 0 || ny >= ySectors
+					|| nz < 0 || nz >= zSectors) {
+				continue;
+			}
+			int sector = getSectorId(nx, ny, nz);
+			for (int m = sectorStart[sector]; m < sectorStart[sector + 1]; m++) {
+				result[count++] = sectorMembers[m];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the sector id for a given position.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getSector(double x, double y, double z) {
+		return getSectorId(getSectorCoordinate(x, xSizeOfSector, xSectors),
+				getSectorCoordinate(y, ySizeOfSector, ySectors),
+				getSectorCoordinate(z, zSizeOfSector, zSectors));
+	}
+
+	private int getSectorId(int sectorX, int sectorY, int sectorZ) {
+		return (sectorZ * ySectors + sectorY) * xSectors + sectorX;
+	}
+
+	private int getSectorCoordinate(double position, double sectorSize,
+			int sectors) {
+		if (sectors == 1) {
+			return 0;
+		}
+		int coordinate = (int) Math.floor(position / sectorSize);
+		if (toroidal) {
+			return wrap(coordinate, sectors);
+		}
+		return Math.max(0, Math.min(sectors - 1, coordinate));
+	}
+
+	private static int wrap(int coordinate, int sectors) {
+		coordinate %= sectors;
+		return coordinate < 0 ? coordinate + sectors : coordinate;
+	}
+
+	/** Returns the x coordinate (in sectors) of a given sector. */
+	public int getSectorX(int sector) {
+		return sector % xSectors;
+	}
+
+	/** Returns the y coordinate (in sectors) of a given sector. */
+	public int getSectorY(int sector) {
+		return (sector / xSectors) % ySectors;
+	}
+
+	/** Returns the z coordinate (in sectors) of a given sector. */
+	public int getSectorZ(int sector) {
+		return sector / (xSectors * ySectors);
+	}
+
+	/**
+	 * Returns the number of vertices per sector as of the last build. The
+	 * returned array is not modified afterwards and can be read from the UI.
+	 *
+	 * @return
+	 */
+	public int[] getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * Returns the number of sectors in the neighbourhood stencil.
+	 *
+	 * @return
+	 */
+	public int getStencilSize() {
+		return stencilSize;
+	}
+
+	/** Returns the x offset (in sectors) of the given stencil entry. */
+	public int getStencilX(int entry) {
+		return stencilX[entry];
+	}
+
+	/** Returns the y offset (in sectors) of the given stencil entry. */
+	public int getStencilY(int entry) {
+		return stencilY[entry];
+	}
+
+	/** Returns the z offset (in sectors) of the given stencil entry. */
+	public int getStencilZ(int entry) {
+		return stencilZ[entry];
+	}
+
+}
@@ -0,0 +1,166 @@
+package org.sofosim.forceLayout;
+
+import java.util.Arrays;
+import org.sofosim.structures.CartesianDistance3D;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * Verlet neighbour lists holding, for each vertex, all vertices within a
+ * list radius (perception distance plus skin) at the time the lists have
+ * been built. As long as no vertex has moved further than half the skin
+ * since then, the lists contain all vertices within perception distance, so
+ * they only need to be rebuilt once the accumulated displacement exceeds
+ * this threshold. Lists are stored in flat arrays (one contiguous range of
+ * step buffer indices per vertex).
+ *
+ * @author cfrantz
+ *
+ */
+public class VerletNeighbourLists {
+
+	/** first entry in {@link #members} for each vertex (plus end marker) */
+	private int[] listStart = new int[1];
+	/** step buffer indices of neighbours, ordered by vertex */
+	private int[] members = new int[0];
+	/** positions of vertices when lists have been built */
+	private double[] referenceX = new double[0];
+	private double[] referenceY = new double[0];
+	private double[] referenceZ = new double[0];
+	private int size = 0;
+	/** radius lists have been built for */
+	private double radius = Double.NaN;
+	/** step buffer version lists have been built for */
+	private int bufferVersion = -1;
+	/** number of rebuilds since instantiation */
+	private long rebuilds = 0;
+	/** scratch space for distance calculation */
+	private final CartesianDistance3D distance = new CartesianDistance3D();
+
+	/**
+	 * Indicates if lists need to be rebuilt, either since vertices have been
+	 * added or removed, the radius has changed, or any vertex has moved
+	 * further than the given displacement since the last build.
+	 *
+	 * @param buffer
+	 * @param radius
+	 * @param maxDisplacement
+	 * @return
+	 */
+	public boolean needsRebuild(ForceStepBuffer<?> buffer, double radius,
+			double maxDisplacement) {
+		if (buffer.getVersion() != bufferVersion || buffer.size() != size
+				|| radius != this.radius || maxDisplacement <= 0) {
+			return true;
+		}
+		double squaredMaxDisplacement = maxDisplacement * maxDisplacement;
+		for (int i = 0; i < size; i++) {
+			double dx = buffer.getX(i) - referenceX[i];
+			double dy = buffer.getY(i) - referenceY[i];
+			double dz = buffer.getZ(i) - referenceZ[i];
+			if (dx * dx + dy * dy + dz * dz > squaredMaxDisplacement) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rebuilds the lists from the positions in the given buffer. The given
+	 * sector grid needs to hold the buffer's current positions and a
+	 * neighbourhood radius of at least the given radius.
+	 *
+	 * @param buffer
+	 * @param grid
+	 * @param calculator
+	 * @param toroidal
+	 * @param radius
+	 * @param scratch
+	 *            array holding at least as many entries as vertices in buffer
+	 */
+	public void rebuild(ForceStepBuffer<?> buffer, SectorGrid grid,
+			ProximityCalculator3D calculator, boolean toroidal, double radius,
+			int[] scratch) {
+		size = buffer.size();
+		this.radius = radius;
+		bufferVersion = buffer.getVersion();
+		if (referenceX.length < size) {
+			referenceX = new double[size];
+			referenceY = new double[size];
+			referenceZ = new double[size];
+		}
+		if (listStart.length < size + 1) {
+			listStart = new int[size + 1];
+		}
+		double squaredRadius = radius * radius;
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			double x = buffer.getX(i);
+			double y = buffer.getY(i);
+			double z = buffer.getZ(i);
+			referenceX[i] = x;
+			referenceY[i] = y;
+			referenceZ[i] = z;
+			listStart[i] = count;
+			int candidates = grid.collectNeighbours(x, y, z, scratch);
+			for (int c = 0; c < candidates; c++) {
+				int other = scratch[c];
+				if (other == i) {
+					continue;
+				}
+				calculator.calculateGridDistance(x, y, z, buffer.getX(other),
+						buffer.getY(other), buffer.getZ(other), toroidal,
+						distance);
+				if (distance.squaredLength <= squaredRadius) {
+					if (count == members.length) {
+						members = Arrays.copyOf(members,
+								Math.max(16, count * 2));
+					}
+					members[count++] = other;
+				}
+			}
+		}
+		listStart[size] = count;
+		rebuilds++;
+	}
+
+	/**
+	 * Returns the array holding all lists (see {@link #getListStart(int)}).
+	 *
+	 * @return
+	 */
+	public int[] getMembers() {
+		return members;
+	}
+
+	/**
+	 * Returns the index of the first entry of the list for the vertex with
+	 * the given index in {@link #getMembers()}.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getListStart(int index) {
+		return listStart[index];
+	}
+
+	/**
+	 * Returns the number of neighbours listed for the vertex with the given
+	 * index.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getListSize(int index) {
+		return listStart[index + 1] - listStart[index];
+	}
+
+	/**
+	 * Returns the number of rebuilds since instantiation.
+	 *
+	 * @return
+	 */
+	public long getRebuilds() {
+		return rebuilds;
+	}
+
+}
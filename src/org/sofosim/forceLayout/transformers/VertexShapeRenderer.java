@@ -8,12 +8,12 @@ import java.awt.Stroke;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
 import java.util.HashMap;
 import javax.vecmath.Point3d;
 import org.apache.commons.collections15.Transformer;
 import org.sofosim.clustering.VertexPoint3D;
 import org.sofosim.forceLayout.ForceDirectedLayout;
+import org.sofosim.forceLayout.SectorGrid;
 import org.sofosim.forceLayout.util.LineShape;
 import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.visualization.RenderContext;
@@ -90,14 +90,13 @@ public class VertexShapeRenderer<V,E> implements Renderer.Vertex<V, E>{
       }
       //visualize visible sectors
       if(ForceDirectedLayout.drawVisibleSectors){
-	      Point3d ownSector = this.layout.convertCartesianCoordinateToSectorCoordinate(center3D);
-	      //for(Point2D visibleSector: ForceDirectedLayout.visibleSectors){
-	      ArrayList<Point3d> visibleSectors = ForceDirectedLayout.visibleSectors3D;
-	      for(int i = 0; i < visibleSectors.size(); i++){
-	    	  Point3d visibleSector = visibleSectors.get(i);
-	    	  Point3d translatedSector = new Point3d(ownSector.x + visibleSector.x, ownSector.y + visibleSector.y, ownSector.z + visibleSector.z);
-	    	  graphicsContext.setStroke(new BasicStroke(5));
-	    	  graphicsContext.drawRect(new Double(translatedSector.x * this.layout.xSizeOfSector).intValue(), new Double(translatedSector.y * this.layout.ySizeOfSector).intValue(), this.layout.xSizeOfSector, this.layout.ySizeOfSector);
+	      SectorGrid grid = this.layout.getSectorGrid();
+	      if(grid != null){
+		      Point3d ownSector = this.layout.convertCartesianCoordinateToSectorCoordinate(center3D);
+		      for(int i = 0; i < grid.getStencilSize(); i++){
+		    	  graphicsContext.setStroke(new BasicStroke(5));
+		    	  graphicsContext.drawRect(new Double((ownSector.x + grid.getStencilX(i)) * this.layout.xSizeOfSector).intValue(), new Double((ownSector.y + grid.getStencilY(i)) * this.layout.ySizeOfSector).intValue(), this.layout.xSizeOfSector, this.layout.ySizeOfSector);
+		      }
 	      }
       }
     }
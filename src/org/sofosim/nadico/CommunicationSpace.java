@@ -14,6 +14,11 @@ import org.nzdis.micro.inspector.annotations.Inspect;
 import org.nzdis.micro.messaging.MTRuntime;
 import org.nzdis.micro.util.Comprehensions;
 import org.nzdis.micro.util.Func;
+import org.sofosim.clustering.AsynchronousClusterer;
+import org.sofosim.clustering.ClusterChangeEvent;
+import org.sofosim.clustering.ClusterChangeListener;
+import org.sofosim.clustering.ClusterResult;
+import org.sofosim.clustering.IncrementalDBSCAN;
 import org.sofosim.clustering.VertexPoint;
 import org.sofosim.clustering.VertexPoint3D;
 import org.sofosim.environment.GridSim;
@@ -27,7 +32,7 @@ import sim.engine.SimState;
 import sim.engine.Steppable;
 
 
-public class CommunicationSpace extends ClusterKeys implements Steppable{
+public class CommunicationSpace extends ClusterKeys implements Steppable, ClusterChangeListener<VertexPoint3D<String>>{
  
 	/** allows the adoption of established rules independent from local cluster */
 	@SimulationParam
@@ -40,6 +45,17 @@ public class CommunicationSpace extends ClusterKeys implements Steppable{
 	 */
 	public static boolean notifyExperimenterUponRuleCreation = false;
 	
+	/**
+	 * Indicates if rule formation conditions are only checked for clusters 
+	 * that have changed since the last step (requires incremental clustering 
+	 * in ForceDirectedLayout), else all clusters are checked in each step.
+	 */
+	@SimulationParam
+	public static boolean checkRuleFormationForChangedClustersOnly = false;
+	
+	/** Ids of clusters that have formed or changed since the last step */
+	private HashSet<Integer> changedClusterIds = new HashSet<Integer>();
+	
 	static final boolean printRuleComparisonDebug = false;
 	
 	/**
@@ -169,6 +185,7 @@ public class CommunicationSpace extends ClusterKeys implements Steppable{
 		if(this.sim == null){
 			CommunicationSpace.sim = sim;
 			l = ((ForceDirectedLayout)sim.graphHandler.getGraphInitializer(ForceGraphInitializer.FORCES_GRAPH).getLayout());
+			l.registerClusterChangeListener(this);
 			printOutput("CommunicationSpace initialized.");
 			if(showOutputControlUi){
 				//start controller for output options of individuals on UI
@@ -1052,6 +1069,26 @@ public class CommunicationSpace extends ClusterKeys implements Steppable{
 	
 	
 	
+	@Override
+	public synchronized void clustersChanged(ArrayList<ClusterChangeEvent<VertexPoint3D<String>>> changes) {
+		for(int i=0; i<changes.size(); i++){
+			if(changes.get(i).type != ClusterChangeEvent.Type.DISSOLVED){
+				changedClusterIds.add(changes.get(i).clusterId);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the ids of all clusters that have formed or changed since the 
+	 * last call and starts collecting anew.
+	 * @return
+	 */
+	private synchronized HashSet<Integer> takeChangedClusterIds(){
+		HashSet<Integer> changed = changedClusterIds;
+		changedClusterIds = new HashSet<Integer>();
+		return changed;
+	}
+	
 	@Override
 	public void step(SimState state) {
 		
@@ -1071,10 +1108,31 @@ public class CommunicationSpace extends ClusterKeys implements Steppable{
 		getAllClustersStats(statsCalc, 10);
 		
 		//retrieve cluster
-		ArrayList<ArrayList<VertexPoint3D<String>>> clusters = l.getProximityClusterer().getLastResultList();
+		ArrayList<ArrayList<VertexPoint3D<String>>> clusters = null;
+		ClusterResult<VertexPoint3D<String>> publishedResult = null;
+		if(l.getProximityClusterer() instanceof AsynchronousClusterer){
+			//clusters and ids of the same (completed) clustering run
+			publishedResult = ((AsynchronousClusterer) l.getProximityClusterer()).getPublishedResult();
+			clusters = publishedResult.getClusters();
+		} else {
+			clusters = l.getProximityClusterer().getLastResultList();
+		}
+		//stable cluster ids are only available for incremental clustering
+		IncrementalDBSCAN incrementalClusterer = null;
+		if(l.getProximityClusterer() instanceof IncrementalDBSCAN){
+			incrementalClusterer = (IncrementalDBSCAN) l.getProximityClusterer();
+		}
+		boolean checkChangedClustersOnly = checkRuleFormationForChangedClustersOnly 
+				&& (incrementalClusterer != null || (publishedResult != null && publishedResult.getChanges() != null));
+		HashSet<Integer> changedClusters = takeChangedClusterIds();
 		
 		//iterate over each cluster
 		for(int i=0; i<clusters.size(); i++){
+			if(checkChangedClustersOnly && !changedClusters.contains(publishedResult != null ? 
+					publishedResult.getClusterId(i) : incrementalClusterer.getClusterId(i))){
+				//no change since last check
+				continue;
+			}
 			ArrayList<VertexPoint3D<String>> cluster = clusters.get(i);
 			//for each cluster check if rule formation condition is fulfilled
 			for(int l=0; l<ruleFormationConditions.size(); l++){
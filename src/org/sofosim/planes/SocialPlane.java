@@ -1,6 +1,8 @@
 package org.sofosim.planes;
 
 import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import org.sofosim.forceLayout.ForceDirectedLayout;
 
@@ -132,6 +134,64 @@ public abstract class SocialPlane<V> {
 	}
 	
 	protected abstract double getForce(V sourceVertex, V targetVertex, double distance);
+
+	/**
+	 * Calculates the forces exerted on a source vertex by a batch of target vertices
+	 * and writes them to the given output array. Targets are given as indices into
+	 * the given vertex list along with their respective distances. Delegates to
+	 * {@link #getForce(Object, Object, double)} by default; implementations can
+	 * override it to look up forces for all targets at once.
+	 * As with {@link #getForceTowards(Object, Object, double)}, disabled planes exert
+	 * no force and targets whose calculation raises a NullPointerException are
+	 * assigned a force of zero.
+	 * @param sourceVertex
+	 * @param vertices vertex list the target indices refer to
+	 * @param targets indices of target vertices
+	 * @param distances distances of target vertices
+	 * @param count number of targets
+	 * @param forces output array for forces (one entry per target)
+	 */
+	public void getForcesTowards(V sourceVertex, List<V> vertices, int[] targets, double[] distances, int count, double[] forces){
+		if(!this.enabled){
+			Arrays.fill(forces, 0, count, 0.0);
+			return;
+		}
+		int i = 0;
+		while(i < count){
+			try{
+				for(; i < count; i++){
+					forces[i] = getForce(sourceVertex, vertices.get(targets[i]), distances[i]);
+				}
+			} catch(NullPointerException e){
+				forces[i++] = 0.0;
+			}
+		}
+	}
+
+	/**
+	 * Indicates if the force on this plane depends on the identity of the target vertex. 
+	 * Planes whose force only depends on the source vertex and the distance can override 
+	 * this method to return false. The layout only approximates forces of groups of 
+	 * distant vertices (see ForceDirectedLayout#useBarnesHutApproximation) if all active 
+	 * planes do so; otherwise forces are calculated exactly for each pair of vertices.
+	 * @return
+	 */
+	public boolean forceDependsOnTargetIdentity(){
+		return true;
+	}
+	
+	/**
+	 * Returns the force exerted on a source vertex by a vertex at a given distance. 
+	 * Only used for planes whose force does not depend on the target's identity 
+	 * (see {@link #forceDependsOnTargetIdentity()}). Passes null as target vertex to 
+	 * {@link #getForce(Object, Object, double)} by default.
+	 * @param sourceVertex
+	 * @param distance
+	 * @return
+	 */
+	public double getForceAtDistance(V sourceVertex, double distance){
+		return getForceTowards(sourceVertex, null, distance);
+	}
 	
 	public abstract Set<V> getPerceptionallyIndependentVertices(V perceivingVertex);
 	
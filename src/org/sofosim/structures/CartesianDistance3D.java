@@ -0,0 +1,40 @@
+package org.sofosim.structures;
+
+/**
+ * Cartesian offset from a first to a second point (in screen coordinates)
+ * as calculated by ProximityCalculator3D's primitive grid distance methods.
+ * Instances are mutable and meant to be reused as scratch space by a
+ * single thread to avoid allocation in distance-heavy loops.
+ *
+ * @author cfrantz
+ *
+ */
+public class CartesianDistance3D {
+
+	/** offset in x direction */
+	public double dx = 0.0;
+	/** offset in y direction */
+	public double dy = 0.0;
+	/** offset in z direction */
+	public double dz = 0.0;
+	/** squared length of offset */
+	public double squaredLength = 0.0;
+
+	public void set(double dx, double dy, double dz){
+		this.dx = dx;
+		this.dy = dy;
+		this.dz = dz;
+		this.squaredLength = dx * dx + dy * dy + dz * dz;
+	}
+
+	public double getLength(){
+		return Math.sqrt(squaredLength);
+	}
+
+	@Override
+	public String toString() {
+		return "CartesianDistance3D [dx=" + dx + ", dy=" + dy + ", dz=" + dz
+				+ ", length=" + getLength() + "]";
+	}
+
+}
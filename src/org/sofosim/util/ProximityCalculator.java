@@ -23,6 +23,14 @@ public class ProximityCalculator {
 		return this.toroidal;
 	}
 	
+	public Integer getXGridSize(){
+		return this.xGridSize;
+	}
+	
+	public Integer getYGridSize(){
+		return this.yGridSize;
+	}
+	
 	/**
 	 * Calculates absolute distance between two points irrespective of grid size and toroidal 
 	 * setup. Useful to calculate the angle of a resultant force.
@@ -30,7 +38,7 @@ public class ProximityCalculator {
 	 * @param secondPoint coordinate of vector target
 	 * @return
 	 */
-	public synchronized DirectionVector calculateAbsoluteDistance(Point2D firstPoint, Point2D secondPoint){
+	public DirectionVector calculateAbsoluteDistance(Point2D firstPoint, Point2D secondPoint){
 		
 		double xDistance = 0;
 		double yDistance = 0;
@@ -76,7 +84,7 @@ public class ProximityCalculator {
 	 * @param secondPoint coordinate of second (target) point
 	 * @return
 	 */
-	public synchronized DirectionVector calculateGridDistance(Point2D firstPoint, Point2D secondPoint){
+	public DirectionVector calculateGridDistance(Point2D firstPoint, Point2D secondPoint){
 		return calculateGridDistance(firstPoint, secondPoint, toroidal, true);
 	}
 	
@@ -89,7 +97,7 @@ public class ProximityCalculator {
 	 * @param secondPoint coordinate of second (target) point
 	 * @return
 	 */
-	public synchronized DirectionVector calculateGridDistanceWithoutConvertedY(Point2D firstPoint, Point2D secondPoint){
+	public DirectionVector calculateGridDistanceWithoutConvertedY(Point2D firstPoint, Point2D secondPoint){
 		return calculateGridDistance(firstPoint, secondPoint, toroidal, false);
 	}
 	
@@ -102,7 +110,7 @@ public class ProximityCalculator {
 	 * @param useScreenYCoordinate indicates if y coordinate should be translated for screens (inverted)
 	 * @return
 	 */
-	public synchronized DirectionVector calculateGridDistance(Point2D firstPoint, Point2D secondPoint, boolean toroidal, boolean useScreenYCoordinate){
+	public DirectionVector calculateGridDistance(Point2D firstPoint, Point2D secondPoint, boolean toroidal, boolean useScreenYCoordinate){
 		
 		double xDistance = 0;
 		double yDistance = 0;
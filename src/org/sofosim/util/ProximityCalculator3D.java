@@ -2,6 +2,7 @@ package org.sofosim.util;
 
 import java.awt.geom.Point2D;
 import javax.vecmath.Point3d;
+import org.sofosim.structures.CartesianDistance3D;
 import org.sofosim.structures.DirectionVector;
 import org.sofosim.structures.DirectionVector3D;
 
@@ -10,10 +11,87 @@ public class ProximityCalculator3D extends ProximityCalculator {
 	private Integer zGridSize = null;
 	private static final float tolerance = 0.0f;
 	
+	/** grid dimensions and their halves for primitive distance calculation */
+	private final double xSize;
+	private final double ySize;
+	private final double zSize;
+	private final double xHalfSize;
+	private final double yHalfSize;
+	private final double zHalfSize;
+	
 	public ProximityCalculator3D(Integer xGridSize, Integer yGridSize, Integer zGridSize,
 			boolean toroidal) {
 		super(xGridSize, yGridSize, toroidal);
 		this.zGridSize = zGridSize;
+		this.xSize = xGridSize;
+		this.ySize = yGridSize;
+		//2D callers may not provide a z dimension
+		this.zSize = zGridSize == null ? 0 : zGridSize;
+		this.xHalfSize = xSize / 2;
+		this.yHalfSize = ySize / 2;
+		this.zHalfSize = zSize / 2;
+	}
+	
+	public Integer getZGridSize(){
+		return this.zGridSize;
+	}
+	
+	/**
+	 * Calculates the Cartesian offset from the first to the second point taking 
+	 * grid dimensions and toroidal nature into account (minimum image, i.e. the 
+	 * offset is taken across the grid boundary if that is shorter). Writes the 
+	 * result into the given instance and does not allocate, thus it can be used 
+	 * by multiple threads as long as each uses its own result instance.
+	 * @param firstX
+	 * @param firstY
+	 * @param firstZ
+	 * @param secondX
+	 * @param secondY
+	 * @param secondZ
+	 * @param toroidal indicator if grid should be considered toroidal
+	 * @param result instance the offset is written to
+	 * @return result instance
+	 */
+	public CartesianDistance3D calculateGridDistance(double firstX, double firstY, double firstZ, 
+			double secondX, double secondY, double secondZ, boolean toroidal, CartesianDistance3D result){
+		double dx = secondX - firstX;
+		double dy = secondY - firstY;
+		double dz = secondZ - firstZ;
+		if(toroidal){
+			if(dx > xHalfSize){
+				dx -= xSize;
+			} else if(dx < -xHalfSize){
+				dx += xSize;
+			}
+			if(dy > yHalfSize){
+				dy -= ySize;
+			} else if(dy < -yHalfSize){
+				dy += ySize;
+			}
+			if(dz > zHalfSize){
+				dz -= zSize;
+			} else if(dz < -zHalfSize){
+				dz += zSize;
+			}
+		}
+		result.set(dx, dy, dz);
+		return result;
+	}
+	
+	/**
+	 * Calculates the Cartesian offset from the first to the second point taking 
+	 * grid dimensions and toroidal nature into account and writes it into the 
+	 * given instance (see {@link #calculateGridDistance(double, double, double, double, double, double, boolean, CartesianDistance3D)}).
+	 * @param firstPoint
+	 * @param secondPoint
+	 * @param toroidal indicator if grid should be considered toroidal
+	 * @param result instance the offset is written to
+	 * @return result instance
+	 */
+	public CartesianDistance3D calculateGridDistance(Point3d firstPoint, Point3d secondPoint, 
+			boolean toroidal, CartesianDistance3D result){
+		return calculateGridDistance(firstPoint.x, firstPoint.y, firstPoint.z, 
+				secondPoint.x, secondPoint.y, secondPoint.z, toroidal, result);
 	}
 	
 	/**
@@ -23,7 +101,7 @@ public class ProximityCalculator3D extends ProximityCalculator {
 	 * @param secondPoint coordinate of vector target
 	 * @return
 	 */
-	public synchronized DirectionVector3D calculateAbsoluteDistance(Point3d firstPoint, Point3d secondPoint){
+	public DirectionVector3D calculateAbsoluteDistance(Point3d firstPoint, Point3d secondPoint){
 		/*DirectionVector xyResult = calculateAbsoluteDistance(new Point2D.Float((float)firstPoint.x, (float)firstPoint.y), new Point2D.Float((float)secondPoint.x, (float)secondPoint.y));
 		DirectionVector xzResult = calculateAbsoluteDistance(new Point2D.Float((float)firstPoint.x, (float)firstPoint.z), new Point2D.Float((float)secondPoint.x, (float)secondPoint.z));
 		return new DirectionVector3D(xyResult, xzResult);*/
@@ -305,7 +383,7 @@ public class ProximityCalculator3D extends ProximityCalculator {
 	    return (float) Math.acos(amt);
 	  }
 
-	public synchronized DirectionVector calculateGridDistance(Point3d firstPoint, Point3d secondPoint){
+	public DirectionVector calculateGridDistance(Point3d firstPoint, Point3d secondPoint){
 		return calculateGridDistance(firstPoint, secondPoint, toroidal);
 	}*/
 
@@ -318,7 +396,7 @@ public class ProximityCalculator3D extends ProximityCalculator {
 	 * @return
 	 */
 	/*
-	public synchronized DirectionVector calculateGridDistance(Point3d firstPoint, Point3d secondPoint, boolean toroidal){
+	public DirectionVector calculateGridDistance(Point3d firstPoint, Point3d secondPoint, boolean toroidal){
 		
 		double xDistance = 0;
 		double yDistance = 0;
@@ -0,0 +1,119 @@
+package org.sofosim.util.test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import javax.vecmath.Point3d;
+import org.sofosim.clustering.DBSCAN;
+import org.sofosim.clustering.GridDBSCAN;
+import org.sofosim.clustering.VertexPoint3D;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * Compares the clusters found by GridDBSCAN with the ones found by DBSCAN
+ * on random point sets (toroidal and non-toroidal, 2D and 3D, including
+ * grid sizes epsilon does not divide evenly).
+ */
+public class GridDBSCANTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(4711L);
+        int mismatches = 0;
+        int runs = 0;
+        int clusters = 0;
+        // x/y/z grid sizes (z 0 for 2D)
+        int[][] grids = { {100, 100, 0}, {97, 97, 0}, {64, 64, 0}, {50, 50, 50}, {41, 41, 41} };
+        float[] epsilons = { 3f, 7f, 4.5f, 10f, 33f };
+        for (int[] grid : grids) {
+            for (float epsilon : epsilons) {
+                for (boolean toroidal : new boolean[] {false, true}) {
+                    for (int minMembers = 2; minMembers <= 5; minMembers += 3) {
+                        ProximityCalculator3D proxCalc = new ProximityCalculator3D(grid[0], grid[1],
+                                grid[2] == 0 ? null : grid[2], toroidal);
+                        ArrayList<VertexPoint3D<String>> points = createRandomPoints(random, 400, grid);
+
+                        DBSCAN<VertexPoint3D<String>> reference = new DBSCAN<VertexPoint3D<String>>(epsilon, minMembers, proxCalc);
+                        reference.setVertexPoints(points);
+                        reference.applyClustering();
+
+                        GridDBSCAN<VertexPoint3D<String>> gridDbscan = new GridDBSCAN<VertexPoint3D<String>>(epsilon, minMembers, proxCalc);
+                        gridDbscan.setVertexPoints(points);
+                        gridDbscan.applyClustering();
+
+                        runs++;
+                        clusters += reference.getLastResultList().size();
+                        if (!sameClusters(reference, gridDbscan, points.size())) {
+                            mismatches++;
+                            System.out.println("Mismatch for grid " + grid[0] + "x" + grid[1] + "x" + grid[2]
+                                    + ", epsilon " + epsilon + ", toroidal " + toroidal + ", min. members " + minMembers);
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Runs: " + runs + ", clusters: " + clusters + ", mismatches: " + mismatches);
+        if (mismatches > 0) {
+            throw new RuntimeException("GridDBSCAN results differ from DBSCAN.");
+        }
+    }
+
+    /**
+     * Creates random points within the given grid, partly scattered around
+     * a few centres (some of them close to the grid boundaries), partly
+     * uniformly distributed.
+     * @param random
+     * @param numberOfPoints
+     * @param grid x/y/z grid size (z 0 for 2D)
+     * @return
+     */
+    public static ArrayList<VertexPoint3D<String>> createRandomPoints(Random random, int numberOfPoints, int[] grid) {
+        ArrayList<VertexPoint3D<String>> points = new ArrayList<VertexPoint3D<String>>();
+        Point3d[] centres = new Point3d[6];
+        for (int c = 0; c < centres.length; c++) {
+            centres[c] = new Point3d(random.nextDouble() * grid[0], random.nextDouble() * grid[1],
+                    random.nextDouble() * grid[2]);
+        }
+        // centres next to the boundaries to exercise the toroidal wrap
+        centres[0].x = 0.5;
+        centres[1].y = grid[1] - 0.5;
+        for (int i = 0; i < numberOfPoints; i++) {
+            Point3d point;
+            if (random.nextInt(3) == 0) {
+                point = new Point3d(random.nextDouble() * grid[0], random.nextDouble() * grid[1],
+                        random.nextDouble() * grid[2]);
+            } else {
+                Point3d centre = centres[random.nextInt(centres.length)];
+                point = new Point3d(wrap(centre.x + random.nextGaussian() * 4, grid[0]),
+                        wrap(centre.y + random.nextGaussian() * 4, grid[1]),
+                        grid[2] == 0 ? 0 : wrap(centre.z + random.nextGaussian() * 4, grid[2]));
+            }
+            points.add(new VertexPoint3D<String>("p" + i, point));
+        }
+        return points;
+    }
+
+    private static double wrap(double value, int size) {
+        return ((value % size) + size) % size;
+    }
+
+    /**
+     * Indicates if both clusterers found the same clusters (in the same
+     * order and with the same members) and assigned each point to the
+     * same cluster.
+     * @param reference
+     * @param candidate
+     * @param numberOfPoints
+     * @return
+     */
+    public static boolean sameClusters(DBSCAN<?> reference, DBSCAN<?> candidate, int numberOfPoints) {
+        if (!reference.getLastResultList().equals(candidate.getLastResultList())) {
+            return false;
+        }
+        for (int i = 0; i < numberOfPoints; i++) {
+            if (reference.getClusterIndex(i) != candidate.getClusterIndex(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
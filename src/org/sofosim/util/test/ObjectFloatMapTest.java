@@ -0,0 +1,204 @@
+package org.sofosim.util.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+import org.sofosim.environment.memoryTypes.util.ObjectFloatMap;
+
+/**
+ * Tests ObjectFloatMap's backward-shift deletion, insertion order after
+ * removing and re-inserting keys, and stability of slots, followed by
+ * a randomized comparison with LinkedHashMap.
+ */
+public class ObjectFloatMapTest {
+
+    private static int failures = 0;
+
+    /**
+     * Key with configurable hash code (to produce collisions).
+     */
+    private static class CollidingKey {
+
+        private final String name;
+        private final int hash;
+
+        CollidingKey(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CollidingKey && ((CollidingKey) obj).name.equals(name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static void main(String[] args) {
+        testBackwardShiftDeletion();
+        testInsertionOrderAfterRemoval();
+        testSlotStability();
+        testAgainstLinkedHashMap();
+        System.out.println("Failures: " + failures);
+        if (failures > 0) {
+            throw new RuntimeException("ObjectFloatMap test failed.");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("Failed: " + message);
+        }
+    }
+
+    /**
+     * Removes entries from the start, middle and end of probe sequences
+     * (formed by keys sharing the same hash code) and checks that all
+     * remaining keys are found.
+     */
+    private static void testBackwardShiftDeletion() {
+        for (int removed = 0; removed < 6; removed++) {
+            ObjectFloatMap<CollidingKey> map = new ObjectFloatMap<CollidingKey>();
+            ArrayList<CollidingKey> keys = new ArrayList<CollidingKey>();
+            for (int i = 0; i < 6; i++) {
+                keys.add(new CollidingKey("k" + i, i % 3 == 2 ? 1 : 0));
+                map.put(keys.get(i), i);
+            }
+            map.remove(keys.get(removed));
+            check(!map.containsKey(keys.get(removed)), "removed key " + removed + " still found");
+            check(map.size() == 5, "size after removal of key " + removed);
+            for (int i = 0; i < keys.size(); i++) {
+                if (i != removed) {
+                    check(map.get(keys.get(i), -1f) == i, "key " + i + " not found after removal of key " + removed);
+                }
+            }
+            // re-insertion must not create a duplicate entry
+            map.put(keys.get(removed), 10f);
+            map.put(keys.get(removed), 20f);
+            check(map.size() == 6, "size after re-insertion of key " + removed);
+            check(map.get(keys.get(removed), -1f) == 20f, "value after re-insertion of key " + removed);
+        }
+    }
+
+    /**
+     * Checks that removed and re-inserted keys are appended to the
+     * iteration order, while updating existing keys retains their position.
+     */
+    private static void testInsertionOrderAfterRemoval() {
+        ObjectFloatMap<String> map = new ObjectFloatMap<String>();
+        map.put("a", 1f);
+        map.put("b", 2f);
+        map.put("c", 3f);
+        map.remove("b");
+        map.put("b", 4f);
+        map.put("a", 5f);
+        check(map.toString().equals("{a=5.0, c=3.0, b=4.0}"), "order after removal and re-insertion: " + map);
+        map.remove("a");
+        map.addTo("a", 1f);
+        map.addTo("c", 1f);
+        check(map.toString().equals("{c=4.0, b=4.0, a=1.0}"), "order after addTo(): " + map);
+        map.clear();
+        check(map.isEmpty() && map.first() == -1, "map not empty after clear()");
+        map.put("d", 1f);
+        check(map.toString().equals("{d=1.0}"), "order after clear(): " + map);
+    }
+
+    /**
+     * Checks that slots of existing entries remain unchanged while other
+     * entries are inserted (including growing the map) and removed, and
+     * that freed slots are reused.
+     */
+    private static void testSlotStability() {
+        ObjectFloatMap<String> map = new ObjectFloatMap<String>();
+        HashMap<String, Integer> slots = new HashMap<String, Integer>();
+        for (int i = 0; i < 5; i++) {
+            slots.put("s" + i, map.put("s" + i, i));
+        }
+        int freedSlot = slots.remove("s2");
+        map.remove("s2");
+        int reusedSlot = map.put("new", 0f);
+        check(reusedSlot == freedSlot, "freed slot " + freedSlot + " not reused (got " + reusedSlot + ")");
+        slots.put("new", reusedSlot);
+        int capacity = map.getCapacity();
+        for (int i = 5; i < 100; i++) {
+            slots.put("s" + i, map.put("s" + i, i));
+        }
+        check(map.getCapacity() > capacity, "map did not grow");
+        for (int i = 5; i < 100; i += 3) {
+            map.remove("s" + i);
+            slots.remove("s" + i);
+        }
+        for (Entry<String, Integer> entry : slots.entrySet()) {
+            check(map.indexOf(entry.getKey()) == entry.getValue(), "slot of " + entry.getKey() + " changed");
+            check(entry.getKey().equals(map.keyAt(entry.getValue())), "key in slot of " + entry.getKey() + " changed");
+        }
+    }
+
+    /**
+     * Applies random insertions, updates and removals (with many hash
+     * collisions) to ObjectFloatMap and LinkedHashMap and compares
+     * contents, iteration order and slots.
+     */
+    private static void testAgainstLinkedHashMap() {
+        Random random = new Random(42L);
+        ObjectFloatMap<CollidingKey> map = new ObjectFloatMap<CollidingKey>();
+        LinkedHashMap<CollidingKey, Float> reference = new LinkedHashMap<CollidingKey, Float>();
+        HashMap<CollidingKey, Integer> slots = new HashMap<CollidingKey, Integer>();
+        for (int step = 0; step < 200000; step++) {
+            String name = "k" + random.nextInt(300);
+            CollidingKey key = new CollidingKey(name, name.hashCode() % 40);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                float value = random.nextFloat();
+                int slot = map.put(key, value);
+                Integer previousSlot = slots.put(key, slot);
+                check(previousSlot == null || previousSlot == slot, "slot of existing key changed on put()");
+                reference.put(key, value);
+            } else if (operation < 7) {
+                float value = random.nextFloat();
+                map.addTo(key, value);
+                Float previous = reference.get(key);
+                reference.put(key, previous == null ? value : previous + value);
+                Integer previousSlot = slots.put(key, map.indexOf(key));
+                check(previousSlot == null || previousSlot == map.indexOf(key), "slot of existing key changed on addTo()");
+            } else {
+                check(map.remove(key) == (reference.remove(key) != null), "remove() result differs");
+                slots.remove(key);
+            }
+            if (step % 1000 == 0) {
+                compare(map, reference, slots, step);
+            }
+        }
+        compare(map, reference, slots, -1);
+    }
+
+    private static void compare(ObjectFloatMap<CollidingKey> map, LinkedHashMap<CollidingKey, Float> reference,
+            HashMap<CollidingKey, Integer> slots, int step) {
+        check(map.size() == reference.size(), "size differs in step " + step);
+        int slot = map.first();
+        for (Entry<CollidingKey, Float> entry : reference.entrySet()) {
+            if (slot == -1) {
+                check(false, "iteration ends early in step " + step);
+                return;
+            }
+            check(entry.getKey().equals(map.keyAt(slot)), "iteration order differs in step " + step);
+            check(entry.getValue() == map.valueAt(slot), "value differs in step " + step);
+            check(slots.get(entry.getKey()) == slot, "slot differs in step " + step);
+            slot = map.next(slot);
+        }
+        check(slot == -1, "iteration continues beyond last entry in step " + step);
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.sofosim.util.test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import org.sofosim.clustering.DBSCAN;
+import org.sofosim.clustering.ParallelDBSCAN;
+import org.sofosim.clustering.VertexPoint3D;
+import org.sofosim.util.ProximityCalculator3D;
+
+/**
+ * Compares the clusters found by ParallelDBSCAN (using different numbers
+ * of threads, and thus slabs) with the ones found by DBSCAN on random
+ * point sets (toroidal and non-toroidal, 2D and 3D).
+ */
+public class ParallelDBSCANTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(815L);
+        int mismatches = 0;
+        int runs = 0;
+        int clusters = 0;
+        // x/y/z grid sizes (z 0 for 2D)
+        int[][] grids = { {100, 100, 0}, {97, 97, 0}, {50, 50, 50}, {41, 41, 41} };
+        float[] epsilons = { 2f, 4.5f, 7f, 15f };
+        int[] threadCounts = { 1, 2, 3, 8 };
+        for (int threads : threadCounts) {
+            ParallelDBSCAN<VertexPoint3D<String>> parallel = null;
+            for (int[] grid : grids) {
+                for (float epsilon : epsilons) {
+                    for (boolean toroidal : new boolean[] {false, true}) {
+                        for (int repetition = 0; repetition < 3; repetition++) {
+                            int minMembers = 2 + random.nextInt(4);
+                            ProximityCalculator3D proxCalc = new ProximityCalculator3D(grid[0], grid[1],
+                                    grid[2] == 0 ? null : grid[2], toroidal);
+                            ArrayList<VertexPoint3D<String>> points = GridDBSCANTest.createRandomPoints(random,
+                                    200 + random.nextInt(800), grid);
+
+                            DBSCAN<VertexPoint3D<String>> reference = new DBSCAN<VertexPoint3D<String>>(epsilon, minMembers, proxCalc);
+                            reference.setVertexPoints(points);
+                            reference.applyClustering();
+
+                            parallel = new ParallelDBSCAN<VertexPoint3D<String>>(epsilon, minMembers, proxCalc, threads);
+                            parallel.setVertexPoints(points);
+                            parallel.applyClustering();
+                            // second run on same instance to check reuse of its structures
+                            parallel.applyClustering();
+                            parallel.shutdown();
+
+                            runs++;
+                            clusters += reference.getLastResultList().size();
+                            if (!GridDBSCANTest.sameClusters(reference, parallel, points.size())) {
+                                mismatches++;
+                                System.out.println("Mismatch for " + threads + " threads, grid " + grid[0] + "x"
+                                        + grid[1] + "x" + grid[2] + ", epsilon " + epsilon + ", toroidal "
+                                        + toroidal + ", min. members " + minMembers);
+                            }
+                        }
+                    }
+                }
+            }
+            System.out.println("Threads: " + threads + ", slabs in last run: " + parallel.getNumberOfSlabs()
+                    + ", border merges in last run: " + parallel.getBorderMerges());
+        }
+        System.out.println("Runs: " + runs + ", clusters: " + clusters + ", mismatches: " + mismatches);
+        if (mismatches > 0) {
+            throw new RuntimeException("ParallelDBSCAN results differ from DBSCAN.");
+        }
+    }
+
+}
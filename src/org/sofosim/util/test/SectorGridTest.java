@@ -0,0 +1,169 @@
+package org.sofosim.util.test;
+
+import java.util.Random;
+import org.sofosim.forceLayout.SectorGrid;
+
+/**
+ * Checks that SectorGrid's neighbourhood queries return all points within
+ * the neighbourhood radius (compared with brute force) and no point twice,
+ * for toroidal and non-toroidal, 2D and 3D grids, including grid sizes the
+ * sector size does not divide evenly.
+ */
+public class SectorGridTest {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        testWrapWithNarrowLastSector();
+        testAgainstBruteForce();
+        testWakeUpAcrossWrap();
+        System.out.println("Failures: " + failures);
+        if (failures > 0) {
+            throw new RuntimeException("SectorGrid test failed.");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("Failed: " + message);
+        }
+    }
+
+    /**
+     * Points at x=599 and x=10 on a toroidal grid of width 605 are 16 apart
+     * across the wrap, which passes the last sector (5 wide) and the first
+     * one (60 wide).
+     */
+    private static void testWrapWithNarrowLastSector() {
+        SectorGrid grid = new SectorGrid(605, 605, 0, 60, 60, 0, false, true);
+        grid.setNeighbourhoodRadius(50);
+        grid.clear(2);
+        grid.setPosition(0, 599, 300, 0);
+        grid.setPosition(1, 10, 300, 0);
+        grid.build();
+        int[] result = new int[2];
+        int count = grid.collectNeighbours(599, 300, 0, result);
+        check(contains(result, count, 1), "neighbour across wrap from x=599 not found");
+        count = grid.collectNeighbours(10, 300, 0, result);
+        check(contains(result, count, 0), "neighbour across wrap from x=10 not found");
+    }
+
+    /**
+     * Compares neighbourhood queries for random points with brute force.
+     */
+    private static void testAgainstBruteForce() {
+        Random random = new Random(2112L);
+        // x/y/z grid sizes (z 0 for 2D) and x/y/z sector sizes
+        int[][] grids = { {600, 600, 0}, {605, 605, 0}, {97, 103, 0}, {100, 100, 0}, {50, 50, 50}, {41, 43, 47} };
+        int[][] sectorSizes = { {60, 60, 0}, {60, 60, 0}, {10, 7, 0}, {30, 45, 0}, {10, 10, 10}, {6, 9, 11} };
+        for (int g = 0; g < grids.length; g++) {
+            int[] size = grids[g];
+            int[] sector = sectorSizes[g];
+            boolean use3d = size[2] > 0;
+            for (boolean toroidal : new boolean[] {false, true}) {
+                SectorGrid grid = new SectorGrid(size[0], size[1], size[2], sector[0], sector[1], sector[2],
+                        use3d, toroidal);
+                double[][] points = new double[300][3];
+                grid.clear(points.length);
+                for (int i = 0; i < points.length; i++) {
+                    points[i][0] = random.nextDouble() * size[0];
+                    points[i][1] = random.nextDouble() * size[1];
+                    points[i][2] = use3d ? random.nextDouble() * size[2] : 0;
+                    // points on the boundaries to exercise the wrap
+                    if (i % 10 == 0) {
+                        points[i][0] = random.nextBoolean() ? 0 : size[0] - 0.01;
+                    }
+                    grid.setPosition(i, points[i][0], points[i][1], points[i][2]);
+                }
+                grid.build();
+                int[] result = new int[points.length];
+                for (double radius : new double[] {1, 5, 16.5, 50, 90, 400}) {
+                    grid.setNeighbourhoodRadius(radius);
+                    for (int i = 0; i < points.length; i++) {
+                        int count = grid.collectNeighbours(points[i][0], points[i][1], points[i][2], result);
+                        boolean[] found = new boolean[points.length];
+                        for (int k = 0; k < count; k++) {
+                            check(!found[result[k]], "point " + result[k] + " returned twice");
+                            found[result[k]] = true;
+                        }
+                        for (int j = 0; j < points.length; j++) {
+                            if (!found[j] && distance(points[i], points[j], size, toroidal) <= radius) {
+                                check(false, "neighbour missing for grid " + size[0] + "x" + size[1] + "x"
+                                        + size[2] + ", toroidal " + toroidal + ", radius " + radius);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Mimics the wake-up of sleeping vertices by moved ones in
+     * ForceDirectedLayout: the grid holds the (unchanged) positions of
+     * sleeping vertices, while queries start from positions of moved
+     * vertices next to the wrap that are not part of the grid, using the
+     * perception distance plus the displacement as radius.
+     */
+    private static void testWakeUpAcrossWrap() {
+        Random random = new Random(1234L);
+        int[] size = {605, 605, 0};
+        double perception = 40;
+        for (int sectorSize : new int[] {45, 60, 85}) {
+            SectorGrid grid = new SectorGrid(size[0], size[1], 0, sectorSize, sectorSize, 0, false, true);
+            double[][] sleeping = new double[400][3];
+            grid.clear(sleeping.length);
+            for (int i = 0; i < sleeping.length; i++) {
+                sleeping[i][0] = random.nextDouble() * size[0];
+                sleeping[i][1] = random.nextDouble() * size[1];
+                grid.setPosition(i, sleeping[i][0], sleeping[i][1], 0);
+            }
+            grid.build();
+            // stable radius for maximal movement per step of 15
+            grid.setNeighbourhoodRadius(perception + 15);
+            int[] result = new int[sleeping.length];
+            for (int q = 0; q < 2000; q++) {
+                double displacement = random.nextDouble() * 15;
+                double radius = perception + displacement;
+                // moved vertex within reach of the wrap in x or y
+                double[] moved = {random.nextDouble() * size[0], random.nextDouble() * size[1], 0};
+                moved[q % 2] = random.nextBoolean() ? random.nextDouble() * radius
+                        : size[q % 2] - random.nextDouble() * radius;
+                int count = grid.collectNeighbours(moved[0], moved[1], 0, result);
+                boolean[] found = new boolean[sleeping.length];
+                for (int k = 0; k < count; k++) {
+                    found[result[k]] = true;
+                }
+                for (int j = 0; j < sleeping.length; j++) {
+                    if (!found[j] && distance(moved, sleeping[j], size, true) <= radius) {
+                        check(false, "sleeping vertex " + j + " not woken across wrap (sector size "
+                                + sectorSize + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean contains(int[] result, int count, int index) {
+        for (int k = 0; k < count; k++) {
+            if (result[k] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double distance(double[] one, double[] two, int[] size, boolean toroidal) {
+        double sum = 0;
+        for (int d = 0; d < 3; d++) {
+            double delta = Math.abs(one[d] - two[d]);
+            if (toroidal && size[d] > 0) {
+                delta = Math.min(delta, size[d] - delta);
+            }
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum);
+    }
+
+}